@@ -0,0 +1,828 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.cm.file;
+
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.AccessControlContext;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.apache.felix.cm.PersistenceManager;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+
+
+/**
+ * The <code>LogPersistenceManager</code> class stores all configurations in a
+ * single append-only log file named <code>configurations.log</code>, located
+ * in the same directory the {@link FilePersistenceManager} uses for the same
+ * location. Storing or deleting a configuration appends a record to the log,
+ * so large numbers of configurations neither need a file each nor a
+ * directory scan to be enumerated.
+ * <p>
+ * The position of the current record of every PID is kept in memory. This
+ * index is built by scanning the log once when the persistence manager is
+ * created. Records are protected by a checksum: a record only partially
+ * written when the system crashed is detected and truncated by this scan.
+ * <p>
+ * Every {@link #store(String, Dictionary)} and {@link #delete(String)} only
+ * returns after its record has been forced to the storage device. Writes by
+ * concurrent threads share a single force, such that bursts of updates do
+ * not need a synchronous disk write each.
+ * <p>
+ * Records replaced by newer records for the same PID are garbage. Once the
+ * garbage makes up more than half of the log, the log is compacted by
+ * writing the current records to a new log file which then replaces the old
+ * one.
+ * <p>
+ * When the log file does not exist yet, the configurations stored by the
+ * {@link FilePersistenceManager} in the directory are migrated to the new
+ * log file. The configuration files are not removed by the migration.
+ */
+public class LogPersistenceManager implements PersistenceManager
+{
+
+    /**
+     * The name of this persistence manager when registered in the service
+     * registry (value is "log").
+     */
+    public static final String DEFAULT_PERSISTENCE_MANAGER_NAME = "log";
+
+    /**
+     * The name of the log file in the configuration directory (value is
+     * "configurations.log").
+     */
+    public static final String LOG_FILE = "configurations.log";
+
+    /**
+     * The extension of the log file while it is written by a migration or a
+     * compaction (value is ".tmp").
+     */
+    private static final String TMP_EXT = ".tmp";
+
+    // "FCML", the first bytes of the log file
+    private static final int MAGIC = 0x46434d4c;
+
+    // version of the log file format
+    private static final int FORMAT_VERSION = 1;
+
+    // size of the magic and the version at the start of the log
+    private static final int HEADER_SIZE = 8;
+
+    // size of the length and the checksum at the start of a record
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final byte TYPE_STORE = 1;
+
+    private static final byte TYPE_DELETE = 2;
+
+    // the log is not compacted before it contains this many garbage bytes
+    private static final long MIN_COMPACT_GARBAGE = 64 * 1024;
+
+    /**
+     * The access control context we use in the presence of a security manager.
+     */
+    private final AccessControlContext acc;
+
+    /**
+     * The log file.
+     */
+    private final File file;
+
+    // read locked to read the log, write locked to modify it
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // serializes forcing the log to the storage device
+    private final Object syncLock = new Object();
+
+    // the current record of every PID, guarded by lock
+    private final Map<String, Record> index = new HashMap<>();
+
+    // the open log file, guarded by lock
+    private FileChannel channel;
+
+    // the end of the log, guarded by lock
+    private long size;
+
+    // the number of bytes of records no longer current, guarded by lock
+    private long garbage;
+
+    // the number of bytes ever appended to the log, guarded by lock
+    private long written;
+
+    // the number of bytes ever appended which are known to be forced
+    private final AtomicLong synced = new AtomicLong();
+
+
+    /**
+     * Creates an instance of this persistence manager using the given location
+     * as the directory to store the log file. The location is resolved like
+     * the {@link FilePersistenceManager#FilePersistenceManager(BundleContext, String)}
+     * constructor does.
+     *
+     * @param bundleContext The <code>BundleContext</code> to optionally get
+     *      the data location for the log file. This may be <code>null</code>.
+     * @param location The directory of the log file. If this is
+     *      <code>null</code> the default location is used.
+     *
+     * @throws IllegalArgumentException If the location exists but is not a
+     *      directory or does not exist and cannot be created.
+     * @throws IOException If the log file cannot be created, migrated or
+     *      read or is not a configuration log.
+     */
+    public LogPersistenceManager( final BundleContext bundleContext, final String location ) throws IOException
+    {
+        // setup the access control context from the calling setup
+        if ( System.getSecurityManager() != null )
+        {
+            acc = AccessController.getContext();
+        }
+        else
+        {
+            acc = null;
+        }
+
+        final FilePersistenceManager fpm = new FilePersistenceManager( bundleContext, location );
+        this.file = new File( fpm.getLocation(), LOG_FILE );
+        if ( !file.exists() )
+        {
+            migrate( fpm );
+        }
+        open();
+    }
+
+
+    /**
+     * Returns the log file.
+     *
+     * @return The log file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+
+    /**
+     * Closes the log file. The persistence manager cannot be used any more
+     * afterwards.
+     *
+     * @throws IOException If an error occurs closing the log file.
+     */
+    public void close() throws IOException
+    {
+        lock.writeLock().lock();
+        try
+        {
+            channel.close();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    @Override
+    public boolean exists( final String pid )
+    {
+        lock.readLock().lock();
+        try
+        {
+            return index.containsKey( pid );
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public Dictionary load( final String pid ) throws IOException
+    {
+        return privileged( new PrivilegedExceptionAction<Dictionary>()
+        {
+            @Override
+            public Dictionary run() throws IOException
+            {
+                return _load( pid );
+            }
+        } );
+    }
+
+
+    /**
+     * Loads the configurations lazily, the set of PIDs enumerated is the one
+     * at the time of calling this method. Configurations deleted before they
+     * are loaded by the enumeration are skipped.
+     */
+    @SuppressWarnings("rawtypes")
+    @Override
+    public Enumeration getDictionaries()
+    {
+        final List<String> pids;
+        lock.readLock().lock();
+        try
+        {
+            pids = new ArrayList<>( index.keySet() );
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        return new DictionaryEnumeration( pids.iterator() );
+    }
+
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public void store( final String pid, final Dictionary properties ) throws IOException
+    {
+        privileged( new PrivilegedExceptionAction<Object>()
+        {
+            @Override
+            public Object run() throws IOException
+            {
+                _store( pid, properties );
+                return null;
+            }
+        } );
+    }
+
+
+    @Override
+    public void delete( final String pid ) throws IOException
+    {
+        privileged( new PrivilegedExceptionAction<Object>()
+        {
+            @Override
+            public Object run() throws IOException
+            {
+                _delete( pid );
+                return null;
+            }
+        } );
+    }
+
+
+    private <T> T privileged( final PrivilegedExceptionAction<T> action ) throws IOException
+    {
+        if ( acc == null )
+        {
+            try
+            {
+                return action.run();
+            }
+            catch ( IOException ioe )
+            {
+                throw ioe;
+            }
+            catch ( Exception e )
+            {
+                // the actions only throw IOExceptions
+                throw new IOException( e );
+            }
+        }
+
+        try
+        {
+            return AccessController.doPrivileged( action, acc );
+        }
+        catch ( PrivilegedActionException pae )
+        {
+            throw ( IOException ) pae.getException();
+        }
+    }
+
+
+    @SuppressWarnings("rawtypes")
+    Dictionary _load( final String pid ) throws IOException
+    {
+        // this method is not part of the API of this class but is made
+        // package private to prevent the creation of a synthetic method
+        // for use by the DictionaryEnumeration
+        final ByteBuffer record;
+        lock.readLock().lock();
+        try
+        {
+            final Record current = index.get( pid );
+            if ( current == null )
+            {
+                throw new FileNotFoundException( "No configuration " + pid + " in " + file );
+            }
+            record = read( current );
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+
+        // parse outside of the lock, the record is not shared
+        final DataInputStream in = new DataInputStream( new ByteArrayInputStream( record.array(),
+            RECORD_HEADER_SIZE, record.limit() - RECORD_HEADER_SIZE ) );
+        in.readByte();
+        in.readUTF();
+        return ConfigurationHandler.read( in );
+    }
+
+
+    @SuppressWarnings("rawtypes")
+    private void _store( final String pid, final Dictionary properties ) throws IOException
+    {
+        // serialize outside of the lock
+        final ByteBuffer record = encode( TYPE_STORE, pid, properties );
+
+        final long end;
+        lock.writeLock().lock();
+        try
+        {
+            final long position = size;
+            end = append( record );
+            final Record previous = index.put( pid, new Record( position, record.limit() ) );
+            if ( previous != null )
+            {
+                garbage += previous.length;
+            }
+            compactIfNeeded();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+        sync( end );
+    }
+
+
+    private void _delete( final String pid ) throws IOException
+    {
+        final long end;
+        lock.writeLock().lock();
+        try
+        {
+            if ( !index.containsKey( pid ) )
+            {
+                return;
+            }
+
+            final ByteBuffer record = encode( TYPE_DELETE, pid, null );
+            end = append( record );
+            final Record previous = index.remove( pid );
+            garbage += previous.length + record.limit();
+            compactIfNeeded();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+        sync( end );
+    }
+
+
+    /**
+     * Opens the log file and builds the index, truncating the log at the
+     * first record which is incomplete or has an invalid checksum.
+     */
+    private void open() throws IOException
+    {
+        channel = new RandomAccessFile( file, "rw" ).getChannel();
+        try
+        {
+            final long length = channel.size();
+            final DataInputStream in = new DataInputStream(
+                new BufferedInputStream( Channels.newInputStream( channel.position( 0 ) ), 64 * 1024 ) );
+            if ( length < HEADER_SIZE || in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION )
+            {
+                throw new IOException( file + " is not a configuration log" );
+            }
+
+            long position = HEADER_SIZE;
+            final CRC32 crc = new CRC32();
+            while ( position + RECORD_HEADER_SIZE <= length )
+            {
+                final int bodyLength = in.readInt();
+                final int checksum = in.readInt();
+                if ( bodyLength <= 0 || position + RECORD_HEADER_SIZE + bodyLength > length )
+                {
+                    break;
+                }
+                final byte[] body = new byte[bodyLength];
+                in.readFully( body );
+                crc.reset();
+                crc.update( body, 0, bodyLength );
+                if ( ( int ) crc.getValue() != checksum )
+                {
+                    break;
+                }
+
+                final DataInputStream bodyIn = new DataInputStream( new ByteArrayInputStream( body ) );
+                final byte type = bodyIn.readByte();
+                final String pid = bodyIn.readUTF();
+                final int recordLength = RECORD_HEADER_SIZE + bodyLength;
+                final Record previous;
+                if ( type == TYPE_STORE )
+                {
+                    previous = index.put( pid, new Record( position, recordLength ) );
+                }
+                else
+                {
+                    previous = index.remove( pid );
+                    garbage += recordLength;
+                }
+                if ( previous != null )
+                {
+                    garbage += previous.length;
+                }
+                position += recordLength;
+            }
+
+            // drop whatever follows the last valid record
+            if ( position < length )
+            {
+                channel.truncate( position );
+                channel.force( true );
+            }
+            size = position;
+        }
+        catch ( IOException ioe )
+        {
+            channel.close();
+            throw ioe;
+        }
+
+        lock.writeLock().lock();
+        try
+        {
+            compactIfNeeded();
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Writes the configurations of the file persistence manager into a new
+     * log file. The log file is only created once all configurations have
+     * been written, such that an interrupted migration is started again.
+     */
+    @SuppressWarnings("rawtypes")
+    private void migrate( final FilePersistenceManager fpm ) throws IOException
+    {
+        final File tmpFile = new File( file.getPath() + TMP_EXT );
+        final FileChannel out = new RandomAccessFile( tmpFile, "rw" ).getChannel();
+        try
+        {
+            out.truncate( 0 );
+            long position = writeHeader( out );
+            final Enumeration dictionaries = fpm.getDictionaries();
+            while ( dictionaries.hasMoreElements() )
+            {
+                final Dictionary dictionary = ( Dictionary ) dictionaries.nextElement();
+                final Object pid = dictionary.get( Constants.SERVICE_PID );
+                if ( pid instanceof String )
+                {
+                    position += write( out, encode( TYPE_STORE, ( String ) pid, dictionary ), position );
+                }
+            }
+            out.force( true );
+        }
+        finally
+        {
+            out.close();
+        }
+        Files.move( tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE );
+    }
+
+
+    /**
+     * Compacts the log if enough of it is garbage. A failing compaction
+     * leaves the log as it is and is tried again with the next modification.
+     * Must be called with the write lock held.
+     */
+    private void compactIfNeeded()
+    {
+        if ( garbage < MIN_COMPACT_GARBAGE || garbage * 2 < size )
+        {
+            return;
+        }
+
+        final File tmpFile = new File( file.getPath() + TMP_EXT );
+        final Map<String, Record> compacted = new HashMap<>();
+        long position;
+        try
+        {
+            final FileChannel out = new RandomAccessFile( tmpFile, "rw" ).getChannel();
+            try
+            {
+                out.truncate( 0 );
+                position = writeHeader( out );
+                for ( Map.Entry<String, Record> entry : index.entrySet() )
+                {
+                    final int length = write( out, read( entry.getValue() ), position );
+                    compacted.put( entry.getKey(), new Record( position, length ) );
+                    position += length;
+                }
+                out.force( true );
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        catch ( IOException ioe )
+        {
+            tmpFile.delete();
+            return;
+        }
+
+        boolean moved = false;
+        try
+        {
+            channel.close();
+            Files.move( tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE );
+            moved = true;
+        }
+        catch ( IOException ioe )
+        {
+            // the old log is still in place
+            tmpFile.delete();
+        }
+        finally
+        {
+            try
+            {
+                channel = new RandomAccessFile( file, "rw" ).getChannel();
+            }
+            catch ( FileNotFoundException fnfe )
+            {
+                // the persistence manager is not usable any more, the
+                // operations fail with the closed channel
+            }
+        }
+
+        if ( !moved )
+        {
+            return;
+        }
+
+        index.clear();
+        index.putAll( compacted );
+        size = position;
+        garbage = 0;
+
+        // the new log has been forced completely
+        advanceSynced( written );
+    }
+
+
+    /**
+     * Appends the record to the log. Must be called with the write lock held.
+     *
+     * @return The number of bytes ever appended after this record, to be
+     *      given to {@link #sync(long)}
+     */
+    private long append( final ByteBuffer record ) throws IOException
+    {
+        final int length = write( channel, record, size );
+        size += length;
+        written += length;
+        return written;
+    }
+
+
+    /**
+     * Forces the log to the storage device, unless another thread already
+     * did since the record has been appended.
+     *
+     * @param end The number of bytes ever appended after the record
+     */
+    private void sync( final long end ) throws IOException
+    {
+        synchronized ( syncLock )
+        {
+            if ( synced.get() >= end )
+            {
+                return;
+            }
+
+            final long target;
+            lock.readLock().lock();
+            try
+            {
+                target = written;
+                channel.force( false );
+            }
+            finally
+            {
+                lock.readLock().unlock();
+            }
+            advanceSynced( target );
+        }
+    }
+
+
+    private void advanceSynced( final long target )
+    {
+        long current = synced.get();
+        while ( current < target && !synced.compareAndSet( current, target ) )
+        {
+            current = synced.get();
+        }
+    }
+
+
+    /**
+     * Reads a complete record. Must be called with the read or write lock
+     * held.
+     */
+    private ByteBuffer read( final Record record ) throws IOException
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate( record.length );
+        long position = record.position;
+        while ( buffer.hasRemaining() )
+        {
+            final int read = channel.read( buffer, position );
+            if ( read < 0 )
+            {
+                throw new EOFException( "Unexpected end of " + file );
+            }
+            position += read;
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+
+    private static int write( final FileChannel out, final ByteBuffer record, long position ) throws IOException
+    {
+        final ByteBuffer buffer = record.duplicate();
+        buffer.rewind();
+        final int length = buffer.remaining();
+        while ( buffer.hasRemaining() )
+        {
+            position += out.write( buffer, position );
+        }
+        return length;
+    }
+
+
+    private static long writeHeader( final FileChannel out ) throws IOException
+    {
+        final ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+        header.putInt( MAGIC ).putInt( FORMAT_VERSION ).flip();
+        return write( out, header, 0 );
+    }
+
+
+    /**
+     * Creates a record for the given PID: the length of the body, the
+     * checksum of the body and the body made of the record type, the PID
+     * and the configuration in the format of the {@link ConfigurationHandler}.
+     */
+    @SuppressWarnings("rawtypes")
+    private static ByteBuffer encode( final byte type, final String pid, final Dictionary properties )
+        throws IOException
+    {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream( body );
+        out.writeByte( type );
+        out.writeUTF( pid );
+        if ( properties != null )
+        {
+            ConfigurationHandler.write( out, properties );
+        }
+        out.flush();
+
+        final byte[] bytes = body.toByteArray();
+        final CRC32 crc = new CRC32();
+        crc.update( bytes, 0, bytes.length );
+        final ByteBuffer record = ByteBuffer.allocate( RECORD_HEADER_SIZE + bytes.length );
+        record.putInt( bytes.length ).putInt( ( int ) crc.getValue() ).put( bytes ).flip();
+        return record;
+    }
+
+
+    /**
+     * The position and the length of a record in the log.
+     */
+    private static final class Record
+    {
+        final long position;
+
+        final int length;
+
+        Record( final long position, final int length )
+        {
+            this.position = position;
+            this.length = length;
+        }
+    }
+
+
+    /**
+     * The <code>DictionaryEnumeration</code> class loads the configurations
+     * for the {@link LogPersistenceManager#getDictionaries()} method with a
+     * look ahead of one dictionary.
+     */
+    @SuppressWarnings("rawtypes")
+    private class DictionaryEnumeration implements Enumeration
+    {
+        private final Iterator<String> pids;
+
+        private Dictionary next;
+
+
+        DictionaryEnumeration( final Iterator<String> pids )
+        {
+            this.pids = pids;
+            this.next = seek();
+        }
+
+
+        @Override
+        public boolean hasMoreElements()
+        {
+            return next != null;
+        }
+
+
+        @Override
+        public Object nextElement()
+        {
+            if ( next == null )
+            {
+                throw new NoSuchElementException();
+            }
+
+            final Dictionary toReturn = next;
+            next = seek();
+            return toReturn;
+        }
+
+
+        private Dictionary seek()
+        {
+            while ( pids.hasNext() )
+            {
+                try
+                {
+                    return load( pids.next() );
+                }
+                catch ( IOException ioe )
+                {
+                    // deleted in the meantime or not readable, check next
+                }
+            }
+
+            // exhausted
+            return null;
+        }
+    }
+}
@@ -18,6 +18,7 @@
  */
 package org.apache.felix.cm.impl;
 
+import java.io.IOException;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.Dictionary;
@@ -25,6 +26,7 @@ import java.util.Hashtable;
 
 import org.apache.felix.cm.PersistenceManager;
 import org.apache.felix.cm.file.FilePersistenceManager;
+import org.apache.felix.cm.file.LogPersistenceManager;
 import org.apache.felix.cm.impl.persistence.PersistenceManagerTracker;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleActivator;
@@ -50,6 +52,11 @@ import org.osgi.service.log.LogService;
  * this property is not set the <code>config</code> directory in the current
  * working directory as specified in the <code>user.dir</code> system property
  * is used.
+ * <p>
+ * If the <code>felix.cm.pm</code> framework property is set to
+ * <code>log</code>, a {@link LogPersistenceManager} storing all
+ * configurations in a single log file in the same location is registered and
+ * used instead of the {@link FilePersistenceManager}.
  */
 public class Activator implements BundleActivator
 {
@@ -67,7 +74,8 @@ public class Activator implements BundleActivator
      * manager to be used. If this property is not set or empty, the built-in
      * persistence manager (named file) is used. If it is specified it refers
      * to the name property of a persistence manager and that persistence manager
-     * needs to be registered.
+     * needs to be registered. The value <code>log</code> selects the built-in
+     * {@link LogPersistenceManager} instead of the file one.
      *
      * @see #start(BundleContext)
      */
@@ -75,27 +83,39 @@ public class Activator implements BundleActivator
 
     private volatile PersistenceManagerTracker tracker;
 
-    // the service registration of the default file persistence manager
+    // the service registration of the default file or log persistence manager
     private volatile ServiceRegistration<PersistenceManager> filepmRegistration;
 
+    // the default log persistence manager, if used instead of the file one
+    private volatile LogPersistenceManager logpm;
+
     @Override
     public void start( final BundleContext bundleContext ) throws BundleException
     {
         // setup log
         Log.logger.start(bundleContext);
 
-        // register default file persistence manager
-        final PersistenceManager defaultPM = this.registerFilePersistenceManager(bundleContext);
-        if ( defaultPM == null )
+        String configuredPM = bundleContext.getProperty(CM_CONFIG_PM);
+        if ( configuredPM != null && configuredPM.isEmpty() )
         {
-            throw new BundleException("Unable to register default persistence manager.");
+            configuredPM = null;
         }
 
-        String configuredPM = bundleContext.getProperty(CM_CONFIG_PM);
-        if ( configuredPM != null && configuredPM.isEmpty() )
+        // register default file or log persistence manager
+        final PersistenceManager defaultPM;
+        if ( LogPersistenceManager.DEFAULT_PERSISTENCE_MANAGER_NAME.equals( configuredPM ) )
         {
+            defaultPM = this.registerLogPersistenceManager(bundleContext);
             configuredPM = null;
         }
+        else
+        {
+            defaultPM = this.registerFilePersistenceManager(bundleContext);
+        }
+        if ( defaultPM == null )
+        {
+            throw new BundleException("Unable to register default persistence manager.");
+        }
         try
         {
             this.tracker = new PersistenceManagerTracker(bundleContext, defaultPM, configuredPM);
@@ -148,6 +168,34 @@ public class Activator implements BundleActivator
         return null;
     }
 
+    private PersistenceManager registerLogPersistenceManager(final BundleContext bundleContext)
+    {
+        try
+        {
+            final LogPersistenceManager lpm = new LogPersistenceManager( bundleContext,
+                    bundleContext.getProperty( CM_CONFIG_DIR ) );
+            final Dictionary<String, Object> props = new Hashtable<>();
+            props.put( Constants.SERVICE_DESCRIPTION, "Platform Log File Persistence Manager" );
+            props.put( Constants.SERVICE_VENDOR, "The Apache Software Foundation" );
+            props.put( Constants.SERVICE_RANKING, new Integer( Integer.MIN_VALUE ) );
+            props.put( PersistenceManager.PROPERTY_NAME, LogPersistenceManager.DEFAULT_PERSISTENCE_MANAGER_NAME);
+            filepmRegistration = bundleContext.registerService( PersistenceManager.class, lpm, props );
+            logpm = lpm;
+
+            return lpm;
+
+        }
+        catch ( final IllegalArgumentException iae )
+        {
+            Log.logger.log( LogService.LOG_ERROR, "Cannot create the LogPersistenceManager", iae );
+        }
+        catch ( final IOException ioe )
+        {
+            Log.logger.log( LogService.LOG_ERROR, "Cannot create the LogPersistenceManager", ioe );
+        }
+        return null;
+    }
+
     private void unregisterFilePersistenceManager()
     {
         if ( this.filepmRegistration != null )
@@ -155,6 +203,18 @@ public class Activator implements BundleActivator
             this.filepmRegistration.unregister();
             this.filepmRegistration = null;
         }
+        if ( this.logpm != null )
+        {
+            try
+            {
+                this.logpm.close();
+            }
+            catch ( final IOException ioe )
+            {
+                Log.logger.log( LogService.LOG_WARNING, "Cannot close the LogPersistenceManager", ioe );
+            }
+            this.logpm = null;
+        }
     }
 
     public static String getLocation(final Bundle bundle)
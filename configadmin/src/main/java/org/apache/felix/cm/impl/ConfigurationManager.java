@@ -87,6 +87,18 @@ import org.osgi.util.tracker.ServiceTracker;
  */
 public class ConfigurationManager implements BundleListener
 {
+    /**
+     * The name of the framework context property defining the number of
+     * threads updating <code>ManagedService[Factory]</code> services
+     * (value is "felix.cm.update.threads"). Updates for the same PID or
+     * the same service are always delivered in order, a service is never
+     * updated concurrently. The default is a single thread.
+     */
+    private static final String CM_UPDATE_THREADS = "felix.cm.update.threads";
+
+    // the default number of threads updating managed services
+    private static final int DEFAULT_UPDATE_THREADS = 1;
+
     // random number generator to create configuration PIDs for factory
     // configurations
     private static Random numberGenerator;
@@ -168,7 +180,7 @@ public class ConfigurationManager implements BundleListener
         // initialize the asynchonous updater thread
         ThreadGroup tg = new ThreadGroup( "Configuration Admin Service" );
         tg.setDaemon( true );
-        this.updateThread = new UpdateThread( tg, "CM Configuration Updater" );
+        this.updateThread = new UpdateThread( tg, "CM Configuration Updater", getUpdateThreads() );
         this.eventThread = new UpdateThread( tg, "CM Event Dispatcher" );
 
         // register as bundle and service listener
@@ -207,6 +219,25 @@ public class ConfigurationManager implements BundleListener
     }
 
 
+    private int getUpdateThreads()
+    {
+        final String value = bundleContext.getProperty( CM_UPDATE_THREADS );
+        if ( value != null )
+        {
+            try
+            {
+                return Integer.parseInt( value.trim() );
+            }
+            catch ( NumberFormatException nfe )
+            {
+                Log.logger.log( LogService.LOG_WARNING, "Ignoring invalid number of update threads {0}", new Object[]
+                        { value } );
+            }
+        }
+        return DEFAULT_UPDATE_THREADS;
+    }
+
+
     public void stop( )
     {
 
@@ -1035,13 +1066,23 @@ public class ConfigurationManager implements BundleListener
 
     // ---------- inner classes
 
+    // the keys ordering the updates of a service: its PIDs and the service
+    private static Object[] getServiceKeys( final String[] pids, final ServiceReference<?> sr )
+    {
+        final Object[] keys = new Object[pids.length + 1];
+        System.arraycopy( pids, 0, keys, 0, pids.length );
+        keys[pids.length] = sr;
+        return keys;
+    }
+
+
     /**
      * The <code>ManagedServiceUpdate</code> updates a freshly registered
      * <code>ManagedService</code> with a specific configuration. If a
      * ManagedService is registered with multiple PIDs an instance of this
      * class is used for each registered PID.
      */
-    private class ManagedServiceUpdate implements Runnable
+    private class ManagedServiceUpdate implements UpdateThread.UpdateTask
     {
         private final String[] pids;
 
@@ -1083,6 +1124,20 @@ public class ConfigurationManager implements BundleListener
         }
 
 
+        @Override
+        public Object[] getKeys()
+        {
+            return getServiceKeys( this.pids, this.sr );
+        }
+
+
+        @Override
+        public boolean supersedes( Runnable task )
+        {
+            return false;
+        }
+
+
         private void provide(final String servicePid, final ConfigurationImpl config)
         {
             // check configuration
@@ -1127,7 +1182,7 @@ public class ConfigurationManager implements BundleListener
      * multiple PIDs an instance of this class is used for each registered
      * PID.
      */
-    private class ManagedServiceFactoryUpdate implements Runnable
+    private class ManagedServiceFactoryUpdate implements UpdateThread.UpdateTask
     {
         private final String[] factoryPids;
 
@@ -1251,6 +1306,20 @@ public class ConfigurationManager implements BundleListener
         }
 
 
+        @Override
+        public Object[] getKeys()
+        {
+            return getServiceKeys( this.factoryPids, this.sr );
+        }
+
+
+        @Override
+        public boolean supersedes( Runnable task )
+        {
+            return false;
+        }
+
+
         @Override
         public String toString()
         {
@@ -1258,7 +1327,7 @@ public class ConfigurationManager implements BundleListener
         }
     }
 
-    private abstract class ConfigurationProvider<T> implements Runnable
+    private abstract class ConfigurationProvider<T> implements UpdateThread.UpdateTask
     {
 
         protected final ConfigurationImpl config;
@@ -1289,6 +1358,36 @@ public class ConfigurationManager implements BundleListener
         }
 
 
+        // the services currently registered for the configuration are
+        // updated by this task, so it is ordered with their other updates.
+        // Before the service trackers are opened no service can be known,
+        // so the task is only ordered by its PID.
+        @Override
+        public Object[] getKeys()
+        {
+            final BaseTracker<T> helper = this.getHelper();
+            if ( helper == null )
+            {
+                return new Object[] { getTargetedServicePid().getServicePid() };
+            }
+            final List<ServiceReference<T>> srList = helper.getServices( getTargetedServicePid() );
+            final Object[] keys = new Object[srList.size() + 1];
+            keys[0] = getTargetedServicePid().getServicePid();
+            for ( int i = 0; i < srList.size(); i++ )
+            {
+                keys[i + 1] = srList.get( i );
+            }
+            return keys;
+        }
+
+
+        @Override
+        public boolean supersedes( Runnable task )
+        {
+            return false;
+        }
+
+
         protected BaseTracker<T> getHelper()
         {
             if ( this.helper == null )
@@ -1420,6 +1519,16 @@ public class ConfigurationManager implements BundleListener
         }
 
 
+        // a pending update of the same configuration is superseded since
+        // this update provides a newer revision of the configuration
+        @Override
+        public boolean supersedes( Runnable task )
+        {
+            return ( task instanceof UpdateConfiguration )
+                    && ( ( UpdateConfiguration ) task ).config.getPid().equals( this.config.getPid() );
+        }
+
+
         @Override
         public String toString()
         {
@@ -22,7 +22,12 @@ import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.ListIterator;
+import java.util.Set;
 
 import org.osgi.service.log.LogService;
 
@@ -30,88 +35,153 @@ import org.osgi.service.log.LogService;
 /**
  * The <code>UpdateThread</code> is the thread used to update managed services
  * and managed service factories as well as to send configuration events.
+ * <p>
+ * The tasks may be run by more than one worker thread. Tasks implementing
+ * {@link UpdateTask} are run in the order they have been scheduled with
+ * respect to other tasks for any of the same keys, that is the same PIDs or
+ * the same target services, but concurrently with other tasks. Thus a
+ * service registered with several PIDs is never updated concurrently.
+ * A pending {@link UpdateTask} is replaced by a task
+ * {@link UpdateTask#supersedes(Runnable) superseding} it. Any other task
+ * is run on its own after all tasks scheduled before it have terminated
+ * and before any task scheduled after it is started.
  */
 public class UpdateThread implements Runnable
 {
 
-    // the thread group into which the worker thread will be placed
+    /**
+     * A task to be run in order with the other tasks for its keys.
+     */
+    interface UpdateTask extends Runnable
+    {
+        /**
+         * Returns the keys this task must be ordered with: the PIDs and the
+         * references of the services the task updates.
+         */
+        Object[] getKeys();
+
+
+        /**
+         * Returns <code>true</code> if this task makes running the given
+         * task, scheduled before this task for the same keys, unnecessary.
+         */
+        boolean supersedes( Runnable task );
+    }
+
+    // the thread group into which the worker threads will be placed
     private final ThreadGroup workerThreadGroup;
 
-    // the thread's base name
+    // the threads' base name
     private final String workerBaseName;
 
-    // the queue of Runnable instances  to be run
-    private final LinkedList updateTasks;
+    // the number of worker threads
+    private final int workerCount;
+
+    // the queue of Task instances to be run
+    private final LinkedList<Task> updateTasks;
+
+    // the keys of the tasks currently running
+    private final Set<Object> activeKeys;
+
+    // the number of tasks currently running
+    private int activeTasks;
+
+    // whether a task not ordered by keys is currently running
+    private boolean barrierActive;
+
+    // whether the worker threads have been asked to terminate
+    private boolean terminated;
 
-    // the actual thread
-    private Thread worker;
+    // the number of tasks run and of tasks superseded before running; these
+    // and the other counts are internal, they are only used by the tests
+    // and logged at debug level when the workers terminate
+    private long completedTasks;
+    private long coalescedTasks;
+
+    // the actual threads
+    private Thread[] workers;
 
     // the access control context
     private final AccessControlContext acc;
 
     public UpdateThread( final ThreadGroup tg, final String name )
+    {
+        this( tg, name, 1 );
+    }
+
+
+    public UpdateThread( final ThreadGroup tg, final String name, final int workerCount )
     {
         this.workerThreadGroup = tg;
         this.workerBaseName = name;
+        this.workerCount = Math.max( 1, workerCount );
         this.acc = AccessController.getContext();
 
-        this.updateTasks = new LinkedList();
+        this.updateTasks = new LinkedList<>();
+        this.activeKeys = new HashSet<>();
     }
 
 
-    // waits on Runnable instances coming into the queue. As instances come
+    // waits on Task instances coming into the queue. As instances come
     // in, this method calls the Runnable.run method, logs any exception
-    // happening and keeps on waiting for the next Runnable. If the Runnable
-    // taken from the queue is this thread instance itself, the thread
-    // terminates.
+    // happening and keeps on waiting for the next Task. If the Runnable
+    // taken from the queue is this thread instance itself, all worker
+    // threads terminate.
     @Override
     public void run()
     {
+        final String name = Thread.currentThread().getName();
         for ( ;; )
         {
-            Runnable task;
+            final Task task;
             synchronized ( updateTasks )
             {
-                while ( updateTasks.isEmpty() )
+                task = take();
+                if ( task == null )
                 {
-                    try
-                    {
-                        updateTasks.wait();
-                    }
-                    catch ( InterruptedException ie )
-                    {
-                        // don't care
-                    }
+                    return;
                 }
-
-                task = ( Runnable ) updateTasks.removeFirst();
             }
 
-            // return if the task is this thread itself
-            if ( task == this )
-            {
-                return;
-            }
-
-            // otherwise execute the task, log any issues
             try
             {
-                // set the thread name indicating the current task
-                Thread.currentThread().setName( workerBaseName + " (" + task + ")" );
+                // return if the task is this thread itself
+                if ( task.task == this )
+                {
+                    synchronized ( updateTasks )
+                    {
+                        terminated = true;
+                    }
+                    return;
+                }
+
+                // otherwise execute the task, log any issues
+                try
+                {
+                    // set the thread name indicating the current task
+                    Thread.currentThread().setName( name + " (" + task.task + ")" );
 
-                Log.logger.log( LogService.LOG_DEBUG, "Running task {0}", new Object[]
-                    { task } );
+                    Log.logger.log( LogService.LOG_DEBUG, "Running task {0}", new Object[]
+                        { task.task } );
 
-                run0(task);
-            }
-            catch ( Throwable t )
-            {
-                Log.logger.log( LogService.LOG_ERROR, "Unexpected problem executing task", t );
+                    run0( task.task );
+                }
+                catch ( Throwable t )
+                {
+                    Log.logger.log( LogService.LOG_ERROR, "Unexpected problem executing task", t );
+                }
+                finally
+                {
+                    // reset the thread name to "idle"
+                    Thread.currentThread().setName( name );
+                }
             }
             finally
             {
-                // reset the thread name to "idle"
-                Thread.currentThread().setName( workerBaseName );
+                synchronized ( updateTasks )
+                {
+                    completed( task );
+                }
             }
         }
     }
@@ -141,30 +211,42 @@ public class UpdateThread implements Runnable
 
     /**
      * Starts processing the queued tasks. This method does nothing if the
-     * worker has already been started.
+     * workers have already been started.
      */
     synchronized void start()
     {
-        if ( this.worker == null )
+        if ( this.workers == null )
         {
-            Thread workerThread = new Thread( workerThreadGroup, this, workerBaseName );
-            workerThread.setDaemon( true );
-            workerThread.start();
-            this.worker = workerThread;
+            Thread[] workerThreads = new Thread[workerCount];
+            for ( int i = 0; i < workerThreads.length; i++ )
+            {
+                final String name = ( workerCount == 1 ) ? workerBaseName : workerBaseName + " #" + ( i + 1 );
+                workerThreads[i] = new Thread( workerThreadGroup, this, name );
+                workerThreads[i].setDaemon( true );
+            }
+            synchronized ( updateTasks )
+            {
+                terminated = false;
+            }
+            for ( Thread workerThread : workerThreads )
+            {
+                workerThread.start();
+            }
+            this.workers = workerThreads;
         }
     }
 
 
     /**
-     * Terminates the worker thread and waits for the thread to have processed
-     * all outstanding events up to and including the termination job. All
-     * jobs {@link #schedule(Runnable) scheduled} after termination has been
-     * initiated will not be processed any more. This method does nothing if
-     * the worker thread is not currently active.
+     * Terminates the worker threads and waits for the threads to have
+     * processed all outstanding events up to and including the termination
+     * job. All jobs {@link #schedule(Runnable) scheduled} after termination
+     * has been initiated will not be processed any more. This method does
+     * nothing if the worker threads are not currently active.
      * <p>
-     * If the worker thread does not terminate within 5 seconds it is killed
+     * If the worker threads do not terminate within 5 seconds they are killed
      * by calling the (deprecated) <code>Thread.stop()</code> method. It may
-     * be that the worker thread may be blocked by a deadlock (it should not,
+     * be that a worker thread may be blocked by a deadlock (it should not,
      * though). In this case hope is that <code>Thread.stop()</code> will be
      * able to released that deadlock at the expense of one or more tasks to
      * not be executed any longer.... In any case an ERROR message is logged
@@ -172,30 +254,37 @@ public class UpdateThread implements Runnable
      */
     synchronized void terminate()
     {
-        if ( this.worker != null )
+        if ( this.workers != null )
         {
-            Thread workerThread = this.worker;
-            this.worker = null;
+            Thread[] workerThreads = this.workers;
+            this.workers = null;
 
             schedule( this );
 
-            // wait for all updates to terminate (<= 10 seconds !)
-            try
-            {
-                workerThread.join( 5000 );
-            }
-            catch ( InterruptedException ie )
+            // wait for all updates to terminate (<= 5 seconds !)
+            final long end = System.currentTimeMillis() + 5000;
+            for ( Thread workerThread : workerThreads )
             {
-                // don't really care
-            }
+                try
+                {
+                    workerThread.join( Math.max( 1, end - System.currentTimeMillis() ) );
+                }
+                catch ( InterruptedException ie )
+                {
+                    // don't really care
+                }
 
-            if ( workerThread.isAlive() )
-            {
-                Log.logger.log( LogService.LOG_ERROR,
-                    "Worker thread {0} did not terminate within 5 seconds; trying to kill", new Object[]
-                        { workerBaseName } );
-                workerThread.stop();
+                if ( workerThread.isAlive() )
+                {
+                    Log.logger.log( LogService.LOG_ERROR,
+                        "Worker thread {0} did not terminate within 5 seconds; trying to kill", new Object[]
+                            { workerThread.getName() } );
+                    workerThread.stop();
+                }
             }
+
+            Log.logger.log( LogService.LOG_DEBUG, "{0} terminated: {1} tasks completed, {2} tasks coalesced", new Object[]
+                { workerBaseName, getCompletedTasks(), getCoalescedTasks() } );
         }
     }
 
@@ -203,16 +292,236 @@ public class UpdateThread implements Runnable
     // queue the given runnable to be run as soon as possible
     void schedule( Runnable update )
     {
+        // get the keys of the task before locking the queue
+        final Task task = new Task( update );
+
         synchronized ( updateTasks )
         {
             Log.logger.log( LogService.LOG_DEBUG, "Scheduling task {0}", new Object[]
                 { update } );
 
+            // replace the last pending task for the same keys if superseded
+            if ( task.keys != null )
+            {
+                for ( ListIterator<Task> i = updateTasks.listIterator( updateTasks.size() ); i.hasPrevious(); )
+                {
+                    final Task pending = i.previous();
+                    if ( pending.keys == null )
+                    {
+                        break;
+                    }
+                    if ( intersects( pending.keys, task.keys ) )
+                    {
+                        if ( ( ( UpdateTask ) update ).supersedes( pending.task ) )
+                        {
+                            Log.logger.log( LogService.LOG_DEBUG, "Task {0} superseded by {1}", new Object[]
+                                { pending.task, update } );
+                            i.set( task );
+                            coalescedTasks++;
+                            return;
+                        }
+                        break;
+                    }
+                }
+            }
+
             // append to the task queue
-            updateTasks.add( update );
+            updateTasks.add( task );
 
-            // notify the waiting thread
+            // notify the waiting threads
             updateTasks.notifyAll();
         }
     }
+
+
+    /**
+     * Returns the number of tasks waiting to be run.
+     */
+    public int getQueueSize()
+    {
+        synchronized ( updateTasks )
+        {
+            return updateTasks.size();
+        }
+    }
+
+
+    /**
+     * Returns the number of tasks currently running.
+     */
+    public int getActiveTasks()
+    {
+        synchronized ( updateTasks )
+        {
+            return activeTasks;
+        }
+    }
+
+
+    /**
+     * Returns the number of tasks run so far.
+     */
+    public long getCompletedTasks()
+    {
+        synchronized ( updateTasks )
+        {
+            return completedTasks;
+        }
+    }
+
+
+    /**
+     * Returns the number of tasks not run because they have been superseded
+     * by a task scheduled later.
+     */
+    public long getCoalescedTasks()
+    {
+        synchronized ( updateTasks )
+        {
+            return coalescedTasks;
+        }
+    }
+
+
+    // removes the next task which may be run now from the queue, waiting for
+    // one if there is none. Returns null if the workers are terminated.
+    // Must be called with the queue lock held.
+    private Task take()
+    {
+        for ( ;; )
+        {
+            if ( terminated )
+            {
+                return null;
+            }
+
+            final Task task = next();
+            if ( task != null )
+            {
+                activeTasks++;
+                if ( task.keys == null )
+                {
+                    barrierActive = true;
+                }
+                else
+                {
+                    Collections.addAll( activeKeys, task.keys );
+                }
+                return task;
+            }
+
+            try
+            {
+                updateTasks.wait();
+            }
+            catch ( InterruptedException ie )
+            {
+                // don't care
+            }
+        }
+    }
+
+
+    // finds and removes the first task whose keys are neither in use by a
+    // running task nor by a pending task scheduled before it
+    private Task next()
+    {
+        if ( barrierActive )
+        {
+            return null;
+        }
+
+        Set<Object> blockedKeys = null;
+        for ( Iterator<Task> i = updateTasks.iterator(); i.hasNext(); )
+        {
+            final Task task = i.next();
+            if ( task.keys == null )
+            {
+                // run on its own once all tasks before it have terminated
+                if ( blockedKeys == null && activeTasks == 0 )
+                {
+                    i.remove();
+                    return task;
+                }
+                return null;
+            }
+
+            if ( !intersects( activeKeys, task.keys ) && ( blockedKeys == null || !intersects( blockedKeys, task.keys ) ) )
+            {
+                i.remove();
+                return task;
+            }
+
+            if ( blockedKeys == null )
+            {
+                blockedKeys = new HashSet<>();
+            }
+            Collections.addAll( blockedKeys, task.keys );
+        }
+        return null;
+    }
+
+
+    private void completed( final Task task )
+    {
+        activeTasks--;
+        if ( task.keys == null )
+        {
+            barrierActive = false;
+        }
+        else
+        {
+            for ( Object key : task.keys )
+            {
+                activeKeys.remove( key );
+            }
+        }
+        if ( task.task != this )
+        {
+            completedTasks++;
+        }
+        updateTasks.notifyAll();
+    }
+
+
+    private static boolean intersects( final Set<Object> set, final Object[] keys )
+    {
+        for ( Object key : keys )
+        {
+            if ( set.contains( key ) )
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private static boolean intersects( final Object[] first, final Object[] second )
+    {
+        for ( Object key : first )
+        {
+            for ( Object other : second )
+            {
+                if ( key.equals( other ) )
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // a queued task with the keys it is ordered by, null if not ordered by keys
+    private static final class Task
+    {
+        final Runnable task;
+        final Object[] keys;
+
+        Task( final Runnable task )
+        {
+            this.task = task;
+            this.keys = ( task instanceof UpdateTask ) ? ( ( UpdateTask ) task ).getKeys() : null;
+        }
+    }
 }
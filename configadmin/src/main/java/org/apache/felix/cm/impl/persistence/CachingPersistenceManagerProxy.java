@@ -30,6 +30,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -46,6 +47,13 @@ import org.osgi.service.cm.ConfigurationAdmin;
  * underlying actual {@link PersistenceManager} implementation. All API calls
  * are also (or primarily) routed through a local cache of dictionaries indexed
  * by the <code>service.pid</code>.
+ * <p>
+ * The cached dictionaries are indexed by the values of the
+ * <code>service.pid</code>, <code>service.factoryPid</code> and
+ * <code>service.bundleLocation</code> properties and of any additional
+ * properties given to the constructor. Filters comparing an indexed property
+ * for equality, or combining such comparisons, are only evaluated against
+ * the dictionaries found with the indexes.
  */
 public class CachingPersistenceManagerProxy implements ExtPersistenceManager
 {
@@ -66,16 +74,50 @@ public class CachingPersistenceManagerProxy implements ExtPersistenceManager
      */
     private volatile boolean fullyLoaded;
 
-    /** Factory configuration cache. */
-    private final Map<String, Set<String>> factoryConfigCache = new HashMap<>();
+    /** Indexes of the cached dictionaries by property name. */
+    private final Map<String, PropertyIndex> indexes = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+
+    /** Index of the factory configurations, also contained in indexes. */
+    private final PropertyIndex factoryPidIndex;
 
     /**
      * Creates a new caching layer for the given actual {@link PersistenceManager}.
      * @param pm The actual {@link PersistenceManager}
      */
     public CachingPersistenceManagerProxy( final PersistenceManager pm )
+    {
+        this( pm, Collections.<String> emptyList() );
+    }
+
+    /**
+     * Creates a new caching layer for the given actual {@link PersistenceManager}
+     * indexing the dictionaries by additional properties.
+     * @param pm The actual {@link PersistenceManager}
+     * @param indexedKeys The names of the properties to index in addition to
+     *      <code>service.pid</code>, <code>service.factoryPid</code> and
+     *      <code>service.bundleLocation</code>
+     */
+    public CachingPersistenceManagerProxy( final PersistenceManager pm, final Collection<String> indexedKeys )
     {
         this.pm = pm;
+        addIndex( Constants.SERVICE_PID );
+        addIndex( ConfigurationAdmin.SERVICE_BUNDLELOCATION );
+        for ( final String key : indexedKeys )
+        {
+            addIndex( key );
+        }
+        this.factoryPidIndex = addIndex( ConfigurationAdmin.SERVICE_FACTORYPID );
+    }
+
+    private PropertyIndex addIndex( final String key )
+    {
+        PropertyIndex index = this.indexes.get( key );
+        if ( index == null )
+        {
+            index = new PropertyIndex( key );
+            this.indexes.put( key, index );
+        }
+        return index;
     }
 
     @Override
@@ -96,23 +138,7 @@ public class CachingPersistenceManagerProxy implements ExtPersistenceManager
         try
         {
             lock.lock();
-            final Dictionary props = cache.remove( pid );
-            if ( props != null )
-            {
-                final String factoryPid = (String)props.get(ConfigurationAdmin.SERVICE_FACTORYPID);
-                if ( factoryPid != null )
-                {
-                    final Set<String> factoryPids = this.factoryConfigCache.get(factoryPid);
-                    if ( factoryPids != null )
-                    {
-                        factoryPids.remove(pid);
-                        if ( factoryPids.isEmpty() )
-                        {
-                            this.factoryConfigCache.remove(factoryPid);
-                        }
-                    }
-                }
-            }
+            this.uncache( pid );
             pm.delete(pid);
         }
         finally
@@ -170,22 +196,76 @@ public class CachingPersistenceManagerProxy implements ExtPersistenceManager
             {
                 dict = new CaseInsensitiveDictionary(props);
                 cache.put( pid, dict );
-                final String factoryPid = (String)props.get(ConfigurationAdmin.SERVICE_FACTORYPID);
-                if ( factoryPid != null )
+                for ( final PropertyIndex index : this.indexes.values() )
                 {
-                    Set<String> factoryPids = this.factoryConfigCache.get(factoryPid);
-                    if ( factoryPids == null )
-                    {
-                        factoryPids = new HashSet<>();
-                        this.factoryConfigCache.put(factoryPid, factoryPids);
-                    }
-                    factoryPids.add(pid);
+                    index.add( pid, dict );
                 }
             }
         }
         return dict;
     }
 
+    private final void uncache(final String pid)
+    {
+        final CaseInsensitiveDictionary dict = cache.remove( pid );
+        if ( dict != null )
+        {
+            for ( final PropertyIndex index : this.indexes.values() )
+            {
+                index.remove( pid, dict );
+            }
+        }
+    }
+
+    /**
+     * Returns the PIDs of the cached dictionaries which may match the
+     * filter according to the indexes, or <code>null</code> if the indexes
+     * cannot be used for the filter and all dictionaries may match.
+     */
+    private Set<String> getCandidates(final SimpleFilter filter)
+    {
+        switch ( filter.getOperation() )
+        {
+            case SimpleFilter.EQ:
+                final PropertyIndex index = this.indexes.get( filter.getName() );
+                if ( index != null && filter.getValue() instanceof String )
+                {
+                    return index.get( (String) filter.getValue() );
+                }
+                return null;
+
+            case SimpleFilter.AND:
+                // any indexed operand limits the candidates, use the smallest
+                Set<String> smallest = null;
+                for ( final SimpleFilter operand : (List<SimpleFilter>) filter.getValue() )
+                {
+                    final Set<String> candidates = getCandidates( operand );
+                    if ( candidates != null && ( smallest == null || candidates.size() < smallest.size() ) )
+                    {
+                        smallest = candidates;
+                    }
+                }
+                return smallest;
+
+            case SimpleFilter.OR:
+                // all operands must be indexed
+                final Set<String> union = new HashSet<>();
+                for ( final SimpleFilter operand : (List<SimpleFilter>) filter.getValue() )
+                {
+                    final Set<String> candidates = getCandidates( operand );
+                    if ( candidates == null )
+                    {
+                        return null;
+                    }
+                    union.addAll( candidates );
+                }
+                return union;
+
+            default:
+                return null;
+        }
+    }
+
     @Override
     public Collection<Dictionary> getDictionaries( final SimpleFilter filter ) throws IOException
     {
@@ -212,9 +292,28 @@ public class CachingPersistenceManagerProxy implements ExtPersistenceManager
                 }
             }
 
+            final Collection<CaseInsensitiveDictionary> dicts;
+            final Set<String> candidates = filter == null ? null : getCandidates( filter );
+            if ( candidates == null )
+            {
+                dicts = cache.values();
+            }
+            else
+            {
+                dicts = new ArrayList<>( candidates.size() );
+                for ( final String pid : candidates )
+                {
+                    final CaseInsensitiveDictionary d = cache.get( pid );
+                    if ( d != null )
+                    {
+                        dicts.add( d );
+                    }
+                }
+            }
+
             // Deep copy the configuration to avoid any threading issue
             final List<Dictionary> configs = new ArrayList<>();
-            for (final Dictionary d : cache.values())
+            for (final Dictionary d : dicts)
             {
                 if ( d.get( Constants.SERVICE_PID ) != null && ( filter == null || filter.matches( d ) ) )
                 {
@@ -289,7 +388,7 @@ public class CachingPersistenceManagerProxy implements ExtPersistenceManager
         {
             lock.lock();
             pm.store( pid, properties );
-            this.cache.remove(pid);
+            this.uncache(pid);
             this.cache(properties);
         }
         finally
@@ -328,11 +427,7 @@ public class CachingPersistenceManagerProxy implements ExtPersistenceManager
             }
             for(final String targetFactoryPid : targetedFactoryPids)
             {
-                final Set<String> cachedPids = this.factoryConfigCache.get(targetFactoryPid);
-                if ( cachedPids != null )
-                {
-                    pids.addAll(cachedPids);
-                }
+                pids.addAll(this.factoryPidIndex.get(targetFactoryPid));
             }
         }
         finally
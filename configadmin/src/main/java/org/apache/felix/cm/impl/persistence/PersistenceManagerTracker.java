@@ -49,6 +49,13 @@ import org.osgi.util.tracker.ServiceTrackerCustomizer;
 public class PersistenceManagerTracker
     implements ServiceTrackerCustomizer<PersistenceManager, PersistenceManagerTracker.Holder>
 {
+    /**
+     * The name of the framework context property listing the configuration
+     * properties to index in addition to the PIDs and the bundle location,
+     * separated by commas (value is "felix.cm.index").
+     */
+    private static final String CM_CONFIG_INDEX = "felix.cm.index";
+
     /** Tracker for the persistence manager. */
     private final ServiceTracker<PersistenceManager, Holder> persistenceManagerTracker;
 
@@ -144,11 +151,28 @@ public class PersistenceManagerTracker
         }
         else
         {
-            extPM = new CachingPersistenceManagerProxy( pm );
+            extPM = new CachingPersistenceManagerProxy( pm, getIndexedKeys() );
         }
         return extPM;
     }
 
+    private List<String> getIndexedKeys()
+    {
+        final List<String> keys = new ArrayList<>();
+        final String value = this.bundleContext.getProperty( CM_CONFIG_INDEX );
+        if ( value != null )
+        {
+            for ( final String key : value.split( "," ) )
+            {
+                if ( !key.trim().isEmpty() )
+                {
+                    keys.add( key.trim() );
+                }
+            }
+        }
+        return keys;
+    }
+
     @Override
     public Holder addingService(final ServiceReference<PersistenceManager> reference)
     {
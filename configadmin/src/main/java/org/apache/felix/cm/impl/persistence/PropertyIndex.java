@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.cm.impl.persistence;
+
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * The <code>PropertyIndex</code> maps the string values of a configuration
+ * property to the PIDs of the configurations having this value. Multi-value
+ * properties are indexed by each of their values. Configurations with a value
+ * which is not a string cannot be looked up by value, they are returned for
+ * any value and have to be checked by the caller.
+ * <p>
+ * This class is not thread-safe, it is guarded by the lock of the
+ * {@link CachingPersistenceManagerProxy}.
+ */
+class PropertyIndex
+{
+    /** The indexed property */
+    private final String key;
+
+    /** The PIDs per property value */
+    private final Map<String, Set<String>> values = new HashMap<>();
+
+    /** The PIDs of configurations with a value which is not indexed */
+    private final Set<String> unindexed = new HashSet<>();
+
+    PropertyIndex( final String key )
+    {
+        this.key = key;
+    }
+
+    String getKey()
+    {
+        return key;
+    }
+
+    void add( final String pid, final Dictionary<?, ?> props )
+    {
+        final Object value = props.get( key );
+        if ( value == null )
+        {
+            return;
+        }
+        if ( !isIndexable( value ) )
+        {
+            unindexed.add( pid );
+            return;
+        }
+        for ( String v : toStrings( value ) )
+        {
+            Set<String> pids = values.get( v );
+            if ( pids == null )
+            {
+                pids = new HashSet<>();
+                values.put( v, pids );
+            }
+            pids.add( pid );
+        }
+    }
+
+    void remove( final String pid, final Dictionary<?, ?> props )
+    {
+        final Object value = props.get( key );
+        if ( value == null )
+        {
+            return;
+        }
+        if ( !isIndexable( value ) )
+        {
+            unindexed.remove( pid );
+            return;
+        }
+        for ( String v : toStrings( value ) )
+        {
+            final Set<String> pids = values.get( v );
+            if ( pids != null )
+            {
+                pids.remove( pid );
+                if ( pids.isEmpty() )
+                {
+                    values.remove( v );
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the PIDs of the configurations which have the given value for
+     * the property or have a value which is not indexed.
+     *
+     * @param value The property value
+     * @return A new set of PIDs
+     */
+    Set<String> get( final String value )
+    {
+        final Set<String> pids = values.get( value );
+        final Set<String> result = new HashSet<>( unindexed );
+        if ( pids != null )
+        {
+            result.addAll( pids );
+        }
+        return result;
+    }
+
+    private static boolean isIndexable( final Object value )
+    {
+        if ( value instanceof String || value instanceof String[] )
+        {
+            return true;
+        }
+        if ( value instanceof Collection )
+        {
+            for ( Object element : ( Collection<?> ) value )
+            {
+                if ( !( element instanceof String ) )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Collection<String> toStrings( final Object value )
+    {
+        if ( value instanceof String )
+        {
+            return Collections.singleton( ( String ) value );
+        }
+        if ( value instanceof String[] )
+        {
+            final Set<String> strings = new HashSet<>();
+            Collections.addAll( strings, ( String[] ) value );
+            return strings;
+        }
+        return new HashSet<>( ( Collection<String> ) value );
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.cm.file;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.RandomAccessFile;
+import java.util.Dictionary;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.osgi.framework.Constants;
+
+public class LogPersistenceManagerTest
+{
+    private File file = new File( System.getProperty( "java.io.tmpdir" ), "config-log" );
+
+    private LogPersistenceManager lpm;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        delete( file );
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if ( lpm != null )
+        {
+            lpm.close();
+        }
+        delete( file );
+    }
+
+    @Test
+    public void testStoreLoadDelete() throws Exception
+    {
+        lpm = new LogPersistenceManager( null, file.getAbsolutePath() );
+        assertFalse( lpm.exists( "a" ) );
+
+        lpm.store( "a", dictionary( "a", "value", "1" ) );
+        lpm.store( "b", dictionary( "b", "value", "2" ) );
+        lpm.store( "a", dictionary( "a", "value", "3" ) );
+        lpm.delete( "b" );
+        lpm.delete( "missing" );
+
+        assertTrue( lpm.exists( "a" ) );
+        assertFalse( lpm.exists( "b" ) );
+        assertEquals( "3", lpm.load( "a" ).get( "value" ) );
+        assertEquals( pids( "a" ), pids( lpm.getDictionaries() ) );
+        try
+        {
+            lpm.load( "b" );
+            fail( "Expected FileNotFoundException" );
+        }
+        catch ( FileNotFoundException expected )
+        {
+            // expected
+        }
+
+        // the log is read again
+        lpm.close();
+        lpm = new LogPersistenceManager( null, file.getAbsolutePath() );
+        assertEquals( "3", lpm.load( "a" ).get( "value" ) );
+        assertFalse( lpm.exists( "b" ) );
+        assertEquals( pids( "a" ), pids( lpm.getDictionaries() ) );
+    }
+
+    @Test
+    public void testIncompleteRecordIsTruncated() throws Exception
+    {
+        lpm = new LogPersistenceManager( null, file.getAbsolutePath() );
+        lpm.store( "a", dictionary( "a", "value", "1" ) );
+        final long length = lpm.getFile().length();
+        lpm.store( "b", dictionary( "b", "value", "2" ) );
+        lpm.close();
+
+        // a crash while writing the second record
+        final RandomAccessFile raf = new RandomAccessFile( lpm.getFile(), "rw" );
+        raf.setLength( raf.length() - 3 );
+        raf.close();
+
+        lpm = new LogPersistenceManager( null, file.getAbsolutePath() );
+        assertEquals( pids( "a" ), pids( lpm.getDictionaries() ) );
+        assertEquals( length, lpm.getFile().length() );
+
+        // appending continues after the last complete record
+        lpm.store( "c", dictionary( "c", "value", "3" ) );
+        lpm.close();
+        lpm = new LogPersistenceManager( null, file.getAbsolutePath() );
+        assertEquals( pids( "a", "c" ), pids( lpm.getDictionaries() ) );
+    }
+
+    @Test
+    public void testCompaction() throws Exception
+    {
+        lpm = new LogPersistenceManager( null, file.getAbsolutePath() );
+        final StringBuilder large = new StringBuilder();
+        for ( int i = 0; i < 1024; i++ )
+        {
+            large.append( "0123456789" );
+        }
+        for ( int i = 0; i < 100; i++ )
+        {
+            lpm.store( "a", dictionary( "a", "value", large.toString() + i ) );
+            lpm.store( "b" + i, dictionary( "b" + i, "value", "b" ) );
+        }
+
+        // the log only holds about one version of a
+        assertTrue( lpm.getFile().length() < 3 * large.length() );
+        assertEquals( large.toString() + 99, lpm.load( "a" ).get( "value" ) );
+        assertEquals( 101, pids( lpm.getDictionaries() ).size() );
+
+        lpm.close();
+        lpm = new LogPersistenceManager( null, file.getAbsolutePath() );
+        assertEquals( large.toString() + 99, lpm.load( "a" ).get( "value" ) );
+        assertEquals( 101, pids( lpm.getDictionaries() ).size() );
+    }
+
+    @Test
+    public void testMigration() throws Exception
+    {
+        final FilePersistenceManager fpm = new FilePersistenceManager( file.getAbsolutePath() );
+        fpm.store( "a", dictionary( "a", "value", "1" ) );
+        fpm.store( "org.sample.b", dictionary( "org.sample.b", "value", "2" ) );
+
+        lpm = new LogPersistenceManager( null, file.getAbsolutePath() );
+        assertEquals( pids( "a", "org.sample.b" ), pids( lpm.getDictionaries() ) );
+        assertEquals( "2", lpm.load( "org.sample.b" ).get( "value" ) );
+
+        // the migration is only done once
+        lpm.delete( "a" );
+        lpm.close();
+        lpm = new LogPersistenceManager( null, file.getAbsolutePath() );
+        assertEquals( pids( "org.sample.b" ), pids( lpm.getDictionaries() ) );
+    }
+
+    private static Dictionary<String, Object> dictionary( final String pid, final String key, final String value )
+    {
+        final Dictionary<String, Object> dictionary = new Hashtable<>();
+        dictionary.put( Constants.SERVICE_PID, pid );
+        dictionary.put( key, value );
+        return dictionary;
+    }
+
+    private static Set<String> pids( final String... pids )
+    {
+        final Set<String> set = new HashSet<>();
+        for ( String pid : pids )
+        {
+            set.add( pid );
+        }
+        return set;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Set<String> pids( final Enumeration dictionaries )
+    {
+        final Set<String> set = new HashSet<>();
+        while ( dictionaries.hasMoreElements() )
+        {
+            set.add( ( String ) ( ( Dictionary ) dictionaries.nextElement() ).get( Constants.SERVICE_PID ) );
+        }
+        return set;
+    }
+
+    private static void delete( final File file )
+    {
+        final File[] children = file.listFiles();
+        for ( int i = 0; children != null && i < children.length; i++ )
+        {
+            delete( children[i] );
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.cm.impl;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+
+public class UpdateThreadTest
+{
+
+    @Test public void test_tasks_of_a_pid_run_in_order()
+    {
+        final UpdateThread thread = new UpdateThread( null, "Test updater", 4 );
+        final List<String> first = Collections.synchronizedList( new ArrayList<String>() );
+        final List<String> second = Collections.synchronizedList( new ArrayList<String>() );
+        final List<String> expected = new ArrayList<>();
+        thread.start();
+        for ( int i = 0; i < 100; i++ )
+        {
+            thread.schedule( new Task( "first", first, String.valueOf( i ), null, false ) );
+            thread.schedule( new Task( "second", second, String.valueOf( i ), null, false ) );
+            expected.add( String.valueOf( i ) );
+        }
+        thread.terminate();
+
+        assertEquals( expected, first );
+        assertEquals( expected, second );
+        assertEquals( 200, thread.getCompletedTasks() );
+        assertEquals( 0, thread.getQueueSize() );
+    }
+
+
+    @Test public void test_pids_run_in_parallel() throws Exception
+    {
+        final UpdateThread thread = new UpdateThread( null, "Test updater", 2 );
+        final CountDownLatch blocked = new CountDownLatch( 1 );
+        final CountDownLatch other = new CountDownLatch( 1 );
+        thread.start();
+        thread.schedule( new Task( "blocked", null, null, null, false )
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    other.await( 10, TimeUnit.SECONDS );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                blocked.countDown();
+            }
+        } );
+        thread.schedule( new Task( "other", null, null, other, false ) );
+
+        // the task of the other PID runs while the first task waits for it
+        assertTrue( blocked.await( 10, TimeUnit.SECONDS ) );
+        thread.terminate();
+    }
+
+
+    @Test public void test_tasks_of_a_service_do_not_overlap() throws Exception
+    {
+        final UpdateThread thread = new UpdateThread( null, "Test updater", 4 );
+        final Object service = new Object();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        for ( int i = 0; i < 20; i++ )
+        {
+            // tasks for different PIDs updating the same service
+            thread.schedule( new Task( "pid" + i, null, null, null, false )
+            {
+                @Override
+                public void run()
+                {
+                    if ( running.incrementAndGet() > 1 )
+                    {
+                        overlaps.incrementAndGet();
+                    }
+                    try
+                    {
+                        Thread.sleep( 5 );
+                    }
+                    catch ( InterruptedException e )
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                }
+
+
+                @Override
+                public Object[] getKeys()
+                {
+                    return new Object[]
+                        { super.getKeys()[0], service };
+                }
+            } );
+        }
+        thread.start();
+        thread.terminate();
+
+        assertEquals( 20, thread.getCompletedTasks() );
+        assertEquals( 0, overlaps.get() );
+    }
+
+
+    @Test public void test_superseded_tasks_are_skipped()
+    {
+        final UpdateThread thread = new UpdateThread( null, "Test updater", 2 );
+        final List<String> ran = Collections.synchronizedList( new ArrayList<String>() );
+
+        // queue before starting so that no task is taken before coalescing
+        thread.schedule( new Task( "pid", ran, "v1", null, true ) );
+        thread.schedule( new Task( "pid", ran, "v2", null, true ) );
+        thread.schedule( new Task( "other", ran, "o1", null, true ) );
+        thread.schedule( new Task( "pid", ran, "v3", null, true ) );
+        assertEquals( 2, thread.getQueueSize() );
+
+        // a task not ordered by PIDs prevents coalescing across it
+        thread.schedule( new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ran.add( "barrier" );
+            }
+        } );
+        thread.schedule( new Task( "pid", ran, "v4", null, true ) );
+
+        thread.start();
+        thread.terminate();
+
+        assertEquals( 2, thread.getCoalescedTasks() );
+        assertEquals( 4, thread.getCompletedTasks() );
+        assertEquals( Arrays.asList( "barrier", "v4" ), ran.subList( 2, 4 ) );
+        assertTrue( ran.containsAll( Arrays.asList( "v3", "o1" ) ) );
+    }
+
+
+    private static class Task implements UpdateThread.UpdateTask
+    {
+        private final String pid;
+        private final List<String> list;
+        private final String value;
+        private final CountDownLatch latch;
+        private final boolean coalesce;
+
+        Task( final String pid, final List<String> list, final String value, final CountDownLatch latch,
+            final boolean coalesce )
+        {
+            this.pid = pid;
+            this.list = list;
+            this.value = value;
+            this.latch = latch;
+            this.coalesce = coalesce;
+        }
+
+
+        @Override
+        public void run()
+        {
+            if ( list != null )
+            {
+                list.add( value );
+            }
+            if ( latch != null )
+            {
+                latch.countDown();
+            }
+        }
+
+
+        @Override
+        public Object[] getKeys()
+        {
+            return new Object[]
+                { pid };
+        }
+
+
+        @Override
+        public boolean supersedes( final Runnable task )
+        {
+            return coalesce && ( task instanceof Task ) && ( ( Task ) task ).pid.equals( pid );
+        }
+    }
+}
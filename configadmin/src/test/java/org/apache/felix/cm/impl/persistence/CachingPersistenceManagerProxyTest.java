@@ -24,6 +24,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Dictionary;
 import java.util.Hashtable;
@@ -178,4 +179,32 @@ public class CachingPersistenceManagerProxyTest
         assertTrue(pids.contains("new_pid_for_newf1"));
         assertTrue(pids.contains("new_pid_for_newf2"));
     }
-}
\ No newline at end of file
+
+    @Test public void testIndexedFilters() throws Exception
+    {
+        final CachingPersistenceManagerProxy cpm = new CachingPersistenceManagerProxy(
+            this.createAndPopulatePersistenceManager(), Arrays.asList("value"));
+
+        assertEquals(3, cpm.getDictionaries(SimpleFilter.parse("(service.factoryPid=" + FACTORY_PID_A + ")")).size());
+        assertEquals(1, cpm.getDictionaries(SimpleFilter.parse(
+            "(&(service.factoryPid=" + FACTORY_PID_A + ")(value=" + PREFIX + FA_PID_B + "))")).size());
+        assertEquals(2, cpm.getDictionaries(SimpleFilter.parse(
+            "(|(service.pid=" + PID_A + ")(service.pid=" + PID_B + "))")).size());
+        assertEquals(1, cpm.getDictionaries(SimpleFilter.parse("(VALUE=" + PREFIX + PID_C + ")")).size());
+        assertEquals(3, cpm.getDictionaries(SimpleFilter.parse("(service.pid=foo.*)")).size());
+        assertEquals(0, cpm.getDictionaries(SimpleFilter.parse("(service.factoryPid=missing)")).size());
+
+        // the indexes follow changes
+        final Dictionary<String, Object> moved = createConfiguration(FA_PID_A, FACTORY_PID_B);
+        moved.put("value", 5);
+        cpm.store(FA_PID_A, moved);
+        cpm.delete(FB_PID_A);
+        assertEquals(2, cpm.getDictionaries(SimpleFilter.parse("(service.factoryPid=" + FACTORY_PID_A + ")")).size());
+        assertEquals(2, cpm.getDictionaries(SimpleFilter.parse("(service.factoryPid=" + FACTORY_PID_B + ")")).size());
+
+        // values which are not strings are still found
+        final Collection<Dictionary> found = cpm.getDictionaries(SimpleFilter.parse("(value=5)"));
+        assertEquals(1, found.size());
+        assertEquals(FA_PID_A, found.iterator().next().get(Constants.SERVICE_PID));
+    }
+}
@@ -32,6 +32,7 @@ import org.apache.felix.eventadmin.impl.adapter.LogEventAdapter;
 import org.apache.felix.eventadmin.impl.adapter.ServiceEventAdapter;
 import org.apache.felix.eventadmin.impl.handler.EventAdminImpl;
 import org.apache.felix.eventadmin.impl.security.SecureEventAdminFactory;
+import org.apache.felix.eventadmin.impl.tasks.AsyncDeliverTasks;
 import org.apache.felix.eventadmin.impl.tasks.DefaultThreadPool;
 import org.apache.felix.eventadmin.impl.util.LogWrapper;
 import org.osgi.framework.BundleContext;
@@ -116,6 +117,47 @@ import org.osgi.service.metatype.MetaTypeProvider;
  * </p>
  * <p>
  * <p>
+ *      <tt>org.apache.felix.eventadmin.VirtualThreads</tt> - Deliver events to
+ *         <tt>EventHandler</tt>s in virtual threads.
+ * </p>
+ * <p>
+ * The default is <tt>false</tt>. If enabled and supported by the JVM, each event
+ * is delivered to a handler in a new virtual thread instead of a thread from the
+ * pool, so handlers blocking on I/O do not hold up the delivery to other handlers.
+ * Timeouts and black-listing apply as usual. The thread pool size still applies
+ * to the asynchronous delivery threads and if virtual threads are not supported.
+ * </p>
+ * <p>
+ * <p>
+ *      <tt>org.apache.felix.eventadmin.AsyncOrdering</tt> - The ordering of
+ *         asynchronous events.
+ * </p>
+ * <p>
+ * The default is <tt>thread</tt>: events posted by the same thread are delivered
+ * in the order they have been posted, as required by the specification. With
+ * <tt>topic</tt> events of the same topic are delivered in order, with
+ * <tt>none</tt> events are delivered in any order.
+ * </p>
+ * <p>
+ * <p>
+ *      <tt>org.apache.felix.eventadmin.AsyncQueueSize</tt> - The maximum number
+ *         of asynchronous events waiting for delivery.
+ * </p>
+ * <p>
+ * The default is 0, which means that the number of waiting events is not limited.
+ * </p>
+ * <p>
+ * <p>
+ *      <tt>org.apache.felix.eventadmin.AsyncQueuePolicy</tt> - What happens if an
+ *         event is posted while the queue is full.
+ * </p>
+ * <p>
+ * The default is <tt>block</tt>: posting blocks until an event has been delivered.
+ * With <tt>drop</tt> the event is dropped and a warning is logged. Threads
+ * delivering events never block.
+ * </p>
+ * <p>
+ * <p>
  * These properties are read at startup and serve as a default configuration.
  * If a configuration admin is configured, the event admin can be configured
  * through the config admin.
@@ -135,6 +177,18 @@ public class Configuration
     static final String PROP_IGNORE_TIMEOUT = "org.apache.felix.eventadmin.IgnoreTimeout";
     static final String PROP_IGNORE_TOPIC = "org.apache.felix.eventadmin.IgnoreTopic";
     static final String PROP_LOG_LEVEL = "org.apache.felix.eventadmin.LogLevel";
+    static final String PROP_VIRTUAL_THREADS = "org.apache.felix.eventadmin.VirtualThreads";
+    static final String PROP_ASYNC_ORDERING = "org.apache.felix.eventadmin.AsyncOrdering";
+    static final String PROP_ASYNC_QUEUE_SIZE = "org.apache.felix.eventadmin.AsyncQueueSize";
+    static final String PROP_ASYNC_QUEUE_POLICY = "org.apache.felix.eventadmin.AsyncQueuePolicy";
+
+    /** The allowed values for the ordering of async events, the first is the default. */
+    static final String[] ASYNC_ORDERINGS = {AsyncDeliverTasks.ORDERING_THREAD,
+        AsyncDeliverTasks.ORDERING_TOPIC, AsyncDeliverTasks.ORDERING_NONE};
+
+    /** The allowed values for the async queue policy, the first is the default. */
+    static final String[] ASYNC_QUEUE_POLICIES = {AsyncDeliverTasks.POLICY_BLOCK,
+        AsyncDeliverTasks.POLICY_DROP};
 
     /** The bundle context. */
     private final BundleContext m_bundleContext;
@@ -155,6 +209,14 @@ public class Configuration
 
     private int m_logLevel;
 
+    private boolean m_virtualThreads;
+
+    private String m_asyncOrdering;
+
+    private int m_asyncQueueSize;
+
+    private String m_asyncQueuePolicy;
+
     // The thread pool used - this is a member because we need to close it on stop
     private volatile DefaultThreadPool m_sync_pool;
 
@@ -329,6 +391,18 @@ public class Configuration
                     m_bundleContext.getProperty(PROP_LOG_LEVEL),
                     LogWrapper.LOG_WARNING, // default log level is WARNING
                     LogWrapper.LOG_ERROR);
+
+            // Deliver events to the handlers in virtual threads instead of the pool
+            m_virtualThreads = getBooleanProperty(
+                m_bundleContext.getProperty(PROP_VIRTUAL_THREADS), false);
+
+            // The ordering of asynchronous events and the limit of queued events
+            m_asyncOrdering = getStringProperty(PROP_ASYNC_ORDERING,
+                    m_bundleContext.getProperty(PROP_ASYNC_ORDERING), ASYNC_ORDERINGS);
+            m_asyncQueueSize = getIntProperty(PROP_ASYNC_QUEUE_SIZE,
+                    m_bundleContext.getProperty(PROP_ASYNC_QUEUE_SIZE), 0, 0);
+            m_asyncQueuePolicy = getStringProperty(PROP_ASYNC_QUEUE_POLICY,
+                    m_bundleContext.getProperty(PROP_ASYNC_QUEUE_POLICY), ASYNC_QUEUE_POLICIES);
         }
         else
         {
@@ -371,6 +445,12 @@ public class Configuration
                     config.get(PROP_LOG_LEVEL),
                     LogWrapper.LOG_WARNING, // default log level is WARNING
                     LogWrapper.LOG_ERROR);
+            m_virtualThreads = getBooleanProperty(config.get(PROP_VIRTUAL_THREADS), false);
+            m_asyncOrdering = getStringProperty(PROP_ASYNC_ORDERING,
+                    config.get(PROP_ASYNC_ORDERING), ASYNC_ORDERINGS);
+            m_asyncQueueSize = getIntProperty(PROP_ASYNC_QUEUE_SIZE, config.get(PROP_ASYNC_QUEUE_SIZE), 0, 0);
+            m_asyncQueuePolicy = getStringProperty(PROP_ASYNC_QUEUE_POLICY,
+                    config.get(PROP_ASYNC_QUEUE_POLICY), ASYNC_QUEUE_POLICIES);
         }
         // a timeout less or equals to 100 means : disable timeout
         if ( m_timeout <= 100 )
@@ -395,6 +475,14 @@ public class Configuration
             PROP_TIMEOUT + "=" + m_timeout);
         LogWrapper.getLogger().log(LogWrapper.LOG_DEBUG,
             PROP_REQUIRE_TOPIC + "=" + m_requireTopic);
+        LogWrapper.getLogger().log(LogWrapper.LOG_DEBUG,
+            PROP_VIRTUAL_THREADS + "=" + m_virtualThreads);
+        LogWrapper.getLogger().log(LogWrapper.LOG_DEBUG,
+            PROP_ASYNC_ORDERING + "=" + m_asyncOrdering);
+        LogWrapper.getLogger().log(LogWrapper.LOG_DEBUG,
+            PROP_ASYNC_QUEUE_SIZE + "=" + m_asyncQueueSize);
+        LogWrapper.getLogger().log(LogWrapper.LOG_DEBUG,
+            PROP_ASYNC_QUEUE_POLICY + "=" + m_asyncQueuePolicy);
 
         // Note that this uses a lazy thread pool that will create new threads on
         // demand - in case none of its cached threads is free - until threadPoolSize
@@ -402,11 +490,11 @@ public class Configuration
         // caching of threads.
         if ( m_sync_pool == null )
         {
-            m_sync_pool = new DefaultThreadPool(m_threadPoolSize, true);
+            m_sync_pool = new DefaultThreadPool(m_threadPoolSize, true, m_virtualThreads);
         }
         else
         {
-            m_sync_pool.configure(m_threadPoolSize);
+            m_sync_pool.configure(m_threadPoolSize, m_virtualThreads);
         }
         final int asyncThreadPoolSize = m_asyncThreadPoolSize;
         if ( m_async_pool == null )
@@ -426,7 +514,10 @@ public class Configuration
                     m_timeout,
                     m_ignoreTimeout,
                     m_requireTopic,
-                    m_ignoreTopics);
+                    m_ignoreTopics,
+                    m_asyncOrdering,
+                    m_asyncQueueSize,
+                    m_asyncQueuePolicy);
 
             // Finally, adapt the outside events to our kind of events as per spec
             adaptEvents(m_admin);
@@ -439,7 +530,8 @@ public class Configuration
         }
         else
         {
-            m_admin.update(m_timeout, m_ignoreTimeout, m_requireTopic, m_ignoreTopics);
+            m_admin.update(m_timeout, m_ignoreTimeout, m_requireTopic, m_ignoreTopics,
+                    m_asyncOrdering, m_asyncQueueSize, m_asyncQueuePolicy);
         }
 
     }
@@ -510,7 +602,8 @@ public class Configuration
         {
             return new MetaTypeProviderImpl((ManagedService)managedService,
                     m_threadPoolSize, m_timeout, m_requireTopic,
-                    m_ignoreTimeout, m_ignoreTopics, m_asyncToSyncThreadRatio);
+                    m_ignoreTimeout, m_ignoreTopics, m_asyncToSyncThreadRatio,
+                    m_virtualThreads, m_asyncOrdering, m_asyncQueueSize, m_asyncQueuePolicy);
         }
         catch (final Throwable t)
         {
@@ -621,6 +714,32 @@ public class Configuration
         return defaultValue;
     }
 
+    /**
+     * Returns the value of the property if it is set and one of the allowed values
+     * or the default, which is the first allowed value. Additionally, a warning is
+     * generated in case the value is not allowed.
+     */
+    private String getStringProperty(final String key, final Object value,
+        final String[] allowedValues)
+    {
+        if(null != value)
+        {
+            final String result = value.toString().trim().toLowerCase();
+            for(final String allowed : allowedValues)
+            {
+                if ( allowed.equals(result) )
+                {
+                    return allowed;
+                }
+            }
+
+            LogWrapper.getLogger().log(LogWrapper.LOG_WARNING,
+                    "Value for property: " + key + " is invalid - Using default");
+        }
+
+        return allowedValues[0];
+    }
+
     /**
      * Returns true if the value of the property is set and is either 1, true, or yes
      * Returns false if the value of the property is set and is either 0, false, or no
@@ -42,6 +42,10 @@ public class MetaTypeProviderImpl
     private final String[] m_ignoreTimeout;
     private final String[] m_ignoreTopic;
     private final double m_asyncThreadPoolRatio;
+    private final boolean m_virtualThreads;
+    private final String m_asyncOrdering;
+    private final int m_asyncQueueSize;
+    private final String m_asyncQueuePolicy;
 
     private final ManagedService m_delegatee;
 
@@ -50,7 +54,11 @@ public class MetaTypeProviderImpl
             final int timeout, final boolean requireTopic,
             final String[] ignoreTimeout,
             final String[] ignoreTopic,
-            final double asyncThreadPoolRatio)
+            final double asyncThreadPoolRatio,
+            final boolean virtualThreads,
+            final String asyncOrdering,
+            final int asyncQueueSize,
+            final String asyncQueuePolicy)
     {
         m_threadPoolSize = threadPoolSize;
         m_timeout = timeout;
@@ -59,6 +67,10 @@ public class MetaTypeProviderImpl
         m_ignoreTimeout = ignoreTimeout;
         m_ignoreTopic = ignoreTopic;
         m_asyncThreadPoolRatio = asyncThreadPoolRatio;
+        m_virtualThreads = virtualThreads;
+        m_asyncOrdering = asyncOrdering;
+        m_asyncQueueSize = asyncQueueSize;
+        m_asyncQueuePolicy = asyncQueuePolicy;
     }
 
     private ObjectClassDefinition ocd;
@@ -143,6 +155,29 @@ public class MetaTypeProviderImpl
                     "are ignored. If a single value neither ends with a dot nor with a start, this is assumed " +
                     "to define an exact topic. A single star can be used to disable delivery completely.",
                     AttributeDefinition.STRING, m_ignoreTopic, Integer.MAX_VALUE, null, null));
+            adList.add( new AttributeDefinitionImpl( Configuration.PROP_VIRTUAL_THREADS, "Virtual Threads",
+                    "Deliver events to event handlers in virtual threads instead of threads from the pool, " +
+                    "if supported by the JVM. This is disabled by default. With virtual threads event handlers " +
+                    "blocking on I/O do not hold up the delivery to other handlers, the thread pool size " +
+                    "does not limit the number of handlers called concurrently. Timeouts and black-listing " +
+                    "apply as usual.",
+                    m_virtualThreads ) );
+            adList.add( new AttributeDefinitionImpl( Configuration.PROP_ASYNC_ORDERING, "Async Ordering",
+                    "The ordering of asynchronous events. By default events posted by the same thread are " +
+                    "delivered in the order they have been posted, as required by the specification. " +
+                    "Events can also be delivered in order per topic or in any order.",
+                    AttributeDefinition.STRING, new String[] {m_asyncOrdering}, 0,
+                    new String[] {"Posting Thread", "Topic", "None"}, Configuration.ASYNC_ORDERINGS));
+            adList.add( new AttributeDefinitionImpl( Configuration.PROP_ASYNC_QUEUE_SIZE, "Async Queue Size",
+                    "The maximum number of asynchronous events waiting for delivery. The default value " +
+                    "is 0, which means that the number of waiting events is not limited.",
+                    m_asyncQueueSize ) );
+            adList.add( new AttributeDefinitionImpl( Configuration.PROP_ASYNC_QUEUE_POLICY, "Async Queue Policy",
+                    "What happens if an event is posted while the async queue is full. By default posting " +
+                    "blocks until an event has been delivered, alternatively the event is dropped and a " +
+                    "warning is logged. Threads delivering events never block.",
+                    AttributeDefinition.STRING, new String[] {m_asyncQueuePolicy}, 0,
+                    new String[] {"Block", "Drop"}, Configuration.ASYNC_QUEUE_POLICIES));
             ocd = new ObjectClassDefinition()
             {
 
@@ -18,6 +18,7 @@
  */
 package org.apache.felix.eventadmin.impl.adapter;
 
+import org.apache.felix.eventadmin.impl.handler.EventAdminImpl;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.event.EventAdmin;
 
@@ -51,5 +52,23 @@ public abstract class AbstractAdapter
         return m_admin;
     }
 
+    /**
+     * Check whether an event for the topic might be delivered to a handler.
+     * Adapters call this before creating an event to avoid creating events
+     * nobody receives.
+     *
+     * @param topic The topic of the event
+     * @return <tt>false</tt> if no handler receives events for the topic
+     */
+    protected boolean hasHandlers(final String topic)
+    {
+        final EventAdmin admin = m_admin;
+        if ( admin instanceof EventAdminImpl )
+        {
+            return ((EventAdminImpl) admin).hasHandlers(topic);
+        }
+        return true;
+    }
+
     public abstract void destroy(final BundleContext bundleContext);
 }
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.eventadmin.impl.adapter;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A lightweight map for the properties of the events created by the adapters.
+ * The properties are kept in two arrays in the order they are put, which is
+ * cheaper than a <tt>Hashtable</tt> for the few properties of an event that
+ * are copied by the <tt>Event</tt> anyway. Keys must not be <tt>null</tt>
+ * and values set to <tt>null</tt> are ignored.
+ *
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+class AdapterProperties extends AbstractMap<String, Object>
+{
+    private String[] m_keys;
+
+    private Object[] m_values;
+
+    private int m_size;
+
+    /**
+     * Create the properties.
+     *
+     * @param capacity The expected number of properties
+     */
+    AdapterProperties(final int capacity)
+    {
+        m_keys = new String[capacity];
+        m_values = new Object[capacity];
+    }
+
+    @Override
+    public Object put(final String key, final Object value)
+    {
+        if ( value == null )
+        {
+            return null;
+        }
+        final int index = indexOf(key);
+        if ( index >= 0 )
+        {
+            final Object old = m_values[index];
+            m_values[index] = value;
+            return old;
+        }
+        if ( m_size == m_keys.length )
+        {
+            final int capacity = m_size * 2 + 1;
+            final String[] keys = new String[capacity];
+            final Object[] values = new Object[capacity];
+            System.arraycopy(m_keys, 0, keys, 0, m_size);
+            System.arraycopy(m_values, 0, values, 0, m_size);
+            m_keys = keys;
+            m_values = values;
+        }
+        m_keys[m_size] = key;
+        m_values[m_size] = value;
+        m_size++;
+        return null;
+    }
+
+    @Override
+    public Object get(final Object key)
+    {
+        final int index = indexOf(key);
+        return index < 0 ? null : m_values[index];
+    }
+
+    @Override
+    public boolean containsKey(final Object key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size()
+    {
+        return m_size;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet()
+    {
+        return new AbstractSet<Map.Entry<String, Object>>()
+        {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator()
+            {
+                return new Iterator<Map.Entry<String, Object>>()
+                {
+                    private int m_index;
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return m_index < m_size;
+                    }
+
+                    @Override
+                    public Map.Entry<String, Object> next()
+                    {
+                        if ( m_index >= m_size )
+                        {
+                            throw new NoSuchElementException();
+                        }
+                        final Map.Entry<String, Object> entry = new AbstractMap.SimpleImmutableEntry<String, Object>(
+                                m_keys[m_index], m_values[m_index]);
+                        m_index++;
+                        return entry;
+                    }
+
+                    @Override
+                    public void remove()
+                    {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size()
+            {
+                return m_size;
+            }
+        };
+    }
+
+    private int indexOf(final Object key)
+    {
+        for(int i = 0; i < m_size; i++)
+        {
+            if ( m_keys[i].equals(key) )
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -18,8 +18,7 @@
  */
 package org.apache.felix.eventadmin.impl.adapter;
 
-import java.util.Dictionary;
-import java.util.Hashtable;
+import java.util.Map;
 
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.BundleEvent;
@@ -36,6 +35,8 @@ import org.osgi.service.event.EventConstants;
  */
 public class BundleEventAdapter extends AbstractAdapter implements BundleListener
 {
+    private static final String TOPIC_PREFIX = "org/osgi/framework/BundleEvent/";
+
     /**
      * The constructor of the adapter. This will register the adapter with the given
      * context as a <tt>BundleListener</tt> and subsequently, will post received
@@ -64,55 +65,54 @@ public class BundleEventAdapter extends AbstractAdapter implements BundleListene
     @Override
     public void bundleChanged(final BundleEvent event)
     {
-        final Dictionary<String, Object> properties = new Hashtable<String, Object>();
-
-        properties.put(EventConstants.EVENT, event);
-
-        properties.put("bundle.id", new Long(event.getBundle()
-            .getBundleId()));
-
-        final String symbolicName = event.getBundle().getSymbolicName();
-
-        if (null != symbolicName)
-        {
-            properties.put(EventConstants.BUNDLE_SYMBOLICNAME,
-                symbolicName);
-        }
-
-        properties.put("bundle", event.getBundle());
-
-        final StringBuffer topic = new StringBuffer(BundleEvent.class
-            .getName().replace('.', '/')).append('/');
+        final String topic;
 
         switch (event.getType())
         {
             case BundleEvent.INSTALLED:
-                topic.append("INSTALLED");
+                topic = TOPIC_PREFIX + "INSTALLED";
                 break;
             case BundleEvent.STARTED:
-                topic.append("STARTED");
+                topic = TOPIC_PREFIX + "STARTED";
                 break;
             case BundleEvent.STOPPED:
-                topic.append("STOPPED");
+                topic = TOPIC_PREFIX + "STOPPED";
                 break;
             case BundleEvent.UPDATED:
-                topic.append("UPDATED");
+                topic = TOPIC_PREFIX + "UPDATED";
                 break;
             case BundleEvent.UNINSTALLED:
-                topic.append("UNINSTALLED");
+                topic = TOPIC_PREFIX + "UNINSTALLED";
                 break;
             case BundleEvent.RESOLVED:
-                topic.append("RESOLVED");
+                topic = TOPIC_PREFIX + "RESOLVED";
                 break;
             case BundleEvent.UNRESOLVED:
-                topic.append("UNRESOLVED");
+                topic = TOPIC_PREFIX + "UNRESOLVED";
                 break;
             default:
                 return; // IGNORE EVENT
         }
 
+        if (!hasHandlers(topic))
+        {
+            return; // NOBODY LISTENS
+        }
+
+        final Map<String, Object> properties = new AdapterProperties(4);
+
+        properties.put(EventConstants.EVENT, event);
+
+        properties.put("bundle.id", Long.valueOf(event.getBundle()
+            .getBundleId()));
+
+        properties.put(EventConstants.BUNDLE_SYMBOLICNAME,
+            event.getBundle().getSymbolicName());
+
+        properties.put("bundle", event.getBundle());
+
         try {
-            getEventAdmin().postEvent(new Event(topic.toString(), properties));
+            getEventAdmin().postEvent(new Event(topic, properties));
         } catch (IllegalStateException e) {
             // This is o.k. - indicates that we are stopped.
         }
@@ -18,8 +18,7 @@
  */
 package org.apache.felix.eventadmin.impl.adapter;
 
-import java.util.Dictionary;
-import java.util.Hashtable;
+import java.util.Map;
 
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
@@ -37,6 +36,8 @@ import org.osgi.service.event.EventConstants;
  */
 public class FrameworkEventAdapter extends AbstractAdapter implements FrameworkListener
 {
+    private static final String TOPIC_PREFIX = "org/osgi/framework/FrameworkEvent/";
+
     /**
      * The constructor of the adapter. This will register the adapter with the
      * given context as a <tt>FrameworkListener</tt> and subsequently, will
@@ -66,7 +67,38 @@ public class FrameworkEventAdapter extends AbstractAdapter implements FrameworkL
     @Override
     public void frameworkEvent(final FrameworkEvent event)
     {
-        final Dictionary<String, Object> properties = new Hashtable<String, Object>();
+        final String topic;
+
+        switch (event.getType())
+        {
+            case FrameworkEvent.STARTED:
+                topic = TOPIC_PREFIX + "STARTED";
+                break;
+            case FrameworkEvent.ERROR:
+                topic = TOPIC_PREFIX + "ERROR";
+                break;
+            case FrameworkEvent.PACKAGES_REFRESHED:
+                topic = TOPIC_PREFIX + "PACKAGES_REFRESHED";
+                break;
+            case FrameworkEvent.STARTLEVEL_CHANGED:
+                topic = TOPIC_PREFIX + "STARTLEVEL_CHANGED";
+                break;
+            case FrameworkEvent.WARNING:
+                topic = TOPIC_PREFIX + "WARNING";
+                break;
+            case FrameworkEvent.INFO:
+                topic = TOPIC_PREFIX + "INFO";
+                break;
+            default:
+                return; // IGNORE EVENT
+        }
+
+        if (!hasHandlers(topic))
+        {
+            return; // NOBODY LISTENS
+        }
+
+        final Map<String, Object> properties = new AdapterProperties(7);
 
         properties.put(EventConstants.EVENT, event);
 
@@ -74,15 +106,10 @@ public class FrameworkEventAdapter extends AbstractAdapter implements FrameworkL
 
         if (null != bundle)
         {
-            properties.put("bundle.id", new Long(bundle.getBundleId()));
-
-            final String symbolicName = bundle.getSymbolicName();
+            properties.put("bundle.id", Long.valueOf(bundle.getBundleId()));
 
-            if (null != symbolicName)
-            {
-                properties.put(EventConstants.BUNDLE_SYMBOLICNAME,
-                    symbolicName);
-            }
+            properties.put(EventConstants.BUNDLE_SYMBOLICNAME,
+                bundle.getSymbolicName());
 
             properties.put("bundle", bundle);
         }
@@ -94,47 +121,14 @@ public class FrameworkEventAdapter extends AbstractAdapter implements FrameworkL
             properties.put(EventConstants.EXCEPTION_CLASS,
                 thrown.getClass().getName());
 
-            final String message = thrown.getMessage();
-
-            if (null != message)
-            {
-                properties.put(EventConstants.EXCEPTION_MESSAGE,
-                    message);
-            }
+            properties.put(EventConstants.EXCEPTION_MESSAGE,
+                thrown.getMessage());
 
             properties.put(EventConstants.EXCEPTION, thrown);
         }
 
-        final StringBuffer topic = new StringBuffer(
-            FrameworkEvent.class.getName().replace('.', '/'))
-            .append('/');
-
-        switch (event.getType())
-        {
-            case FrameworkEvent.STARTED:
-                topic.append("STARTED");
-                break;
-            case FrameworkEvent.ERROR:
-                topic.append("ERROR");
-                break;
-            case FrameworkEvent.PACKAGES_REFRESHED:
-                topic.append("PACKAGES_REFRESHED");
-                break;
-            case FrameworkEvent.STARTLEVEL_CHANGED:
-                topic.append("STARTLEVEL_CHANGED");
-                break;
-            case FrameworkEvent.WARNING:
-                topic.append("WARNING");
-                break;
-            case FrameworkEvent.INFO:
-                topic.append("INFO");
-                break;
-            default:
-                return; // IGNORE EVENT
-        }
-
         try {
-            getEventAdmin().postEvent(new Event(topic.toString(), properties));
+            getEventAdmin().postEvent(new Event(topic, properties));
         } catch(IllegalStateException e) {
             // This is o.k. - indicates that we are stopped.
         }
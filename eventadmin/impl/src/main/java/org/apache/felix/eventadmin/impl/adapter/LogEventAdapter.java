@@ -18,8 +18,7 @@
  */
 package org.apache.felix.eventadmin.impl.adapter;
 
-import java.util.Dictionary;
-import java.util.Hashtable;
+import java.util.Map;
 
 import org.apache.felix.eventadmin.impl.util.LogWrapper;
 import org.osgi.framework.Bundle;
@@ -47,6 +46,8 @@ import org.osgi.service.event.EventConstants;
  */
 public class LogEventAdapter extends AbstractAdapter implements ServiceListener
 {
+    private static final String TOPIC_PREFIX = "org/osgi/service/log/LogEntry/";
+
     // The internal lock for this object used instead synchronized(this)
     private final Object m_lock = new Object();
 
@@ -155,32 +156,53 @@ public class LogEventAdapter extends AbstractAdapter implements ServiceListener
                     // compendium is taking place (i.e., the log entry is adapted to
                     // an event and posted via the EventAdmin)
 
-                    final Dictionary<String, Object> properties = new Hashtable<String, Object>();
+                    final String topic;
+
+                    switch (entry.getLevel())
+                    {
+                        case org.osgi.service.log.LogService.LOG_ERROR:
+                            topic = TOPIC_PREFIX + "LOG_ERROR";
+                            break;
+                        case org.osgi.service.log.LogService.LOG_WARNING:
+                            topic = TOPIC_PREFIX + "LOG_WARNING";
+                            break;
+                        case org.osgi.service.log.LogService.LOG_INFO:
+                            topic = TOPIC_PREFIX + "LOG_INFO";
+                            break;
+                        case org.osgi.service.log.LogService.LOG_DEBUG:
+                            topic = TOPIC_PREFIX + "LOG_DEBUG";
+                            break;
+                        default:
+                            topic = TOPIC_PREFIX + "LOG_OTHER";
+                            break;
+                    }
+
+                    if (!hasHandlers(topic))
+                    {
+                        return; // NOBODY LISTENS
+                    }
+
+                    final Map<String, Object> properties = new AdapterProperties(14);
 
                     final Bundle bundle = entry.getBundle();
 
                     if (null != bundle)
                     {
-                        properties.put("bundle.id", new Long(bundle
+                        properties.put("bundle.id", Long.valueOf(bundle
                             .getBundleId()));
 
-                        final String symbolicName = bundle.getSymbolicName();
-
-                        if (null != symbolicName)
-                        {
-                            properties.put(EventConstants.BUNDLE_SYMBOLICNAME,
-                                symbolicName);
-                        }
+                        properties.put(EventConstants.BUNDLE_SYMBOLICNAME,
+                            bundle.getSymbolicName());
 
                         properties.put("bundle", bundle);
                     }
 
-                    properties.put("log.level", new Integer(entry.getLevel()));
+                    properties.put("log.level", Integer.valueOf(entry.getLevel()));
 
-		    properties.put(EventConstants.MESSAGE,
-				   (entry.getMessage()) != null ? entry.getMessage() : "" );
+                    properties.put(EventConstants.MESSAGE,
+                        (entry.getMessage()) != null ? entry.getMessage() : "" );
 
-                    properties.put(EventConstants.TIMESTAMP, new Long(
+                    properties.put(EventConstants.TIMESTAMP, Long.valueOf(
                         entry.getTime()));
 
                     properties.put("log.entry", entry);
@@ -192,13 +214,8 @@ public class LogEventAdapter extends AbstractAdapter implements ServiceListener
                         properties.put(EventConstants.EXCEPTION_CLASS,
                             exception.getClass().getName());
 
-                        final String message = exception.getMessage();
-
-                        if (null != message)
-                        {
-                            properties.put(EventConstants.EXCEPTION_MESSAGE,
-                                message);
-                        }
+                        properties.put(EventConstants.EXCEPTION_MESSAGE,
+                            exception.getMessage());
 
                         properties.put(EventConstants.EXCEPTION, exception);
                     }
@@ -218,7 +235,7 @@ public class LogEventAdapter extends AbstractAdapter implements ServiceListener
                             try
                             {
                                 properties.put(EventConstants.SERVICE_ID,
-                                    new Long(id.toString()));
+                                    Long.valueOf(id.toString()));
                             } catch (NumberFormatException ne)
                             {
                                 // LOG and IGNORE
@@ -258,31 +275,8 @@ public class LogEventAdapter extends AbstractAdapter implements ServiceListener
                         }
                     }
 
-                    final StringBuffer topic = new StringBuffer(
-                        org.osgi.service.log.LogEntry.class.getName().replace(
-                            '.', '/')).append('/');
-
-                    switch (entry.getLevel())
-                    {
-                        case org.osgi.service.log.LogService.LOG_ERROR:
-                            topic.append("LOG_ERROR");
-                            break;
-                        case org.osgi.service.log.LogService.LOG_WARNING:
-                            topic.append("LOG_WARNING");
-                            break;
-                        case org.osgi.service.log.LogService.LOG_INFO:
-                            topic.append("LOG_INFO");
-                            break;
-                        case org.osgi.service.log.LogService.LOG_DEBUG:
-                            topic.append("LOG_DEBUG");
-                            break;
-                        default:
-                            topic.append("LOG_OTHER");
-                            break;
-                    }
-
                     try {
-                        getEventAdmin().postEvent(new Event(topic.toString(), properties));
+                        getEventAdmin().postEvent(new Event(topic, properties));
                     } catch(IllegalStateException e) {
                         // This is o.k. - indicates that we are stopped.
                     }
@@ -18,8 +18,7 @@
  */
 package org.apache.felix.eventadmin.impl.adapter;
 
-import java.util.Dictionary;
-import java.util.Hashtable;
+import java.util.Map;
 
 import org.apache.felix.eventadmin.impl.util.LogWrapper;
 import org.osgi.framework.BundleContext;
@@ -38,6 +37,8 @@ import org.osgi.service.event.EventConstants;
  */
 public class ServiceEventAdapter extends AbstractAdapter implements ServiceListener
 {
+    private static final String TOPIC_PREFIX = "org/osgi/framework/ServiceEvent/";
+
     /**
      * The constructor of the adapter. This will register the adapter with the
      * given context as a <tt>ServiceListener</tt> and subsequently, will
@@ -67,7 +68,29 @@ public class ServiceEventAdapter extends AbstractAdapter implements ServiceListe
     @Override
     public void serviceChanged(final ServiceEvent event)
     {
-        final Dictionary<String, Object> properties = new Hashtable<String, Object>();
+        final String topic;
+
+        switch (event.getType())
+        {
+            case ServiceEvent.REGISTERED:
+                topic = TOPIC_PREFIX + "REGISTERED";
+                break;
+            case ServiceEvent.MODIFIED:
+                topic = TOPIC_PREFIX + "MODIFIED";
+                break;
+            case ServiceEvent.UNREGISTERING:
+                topic = TOPIC_PREFIX + "UNREGISTERING";
+                break;
+            default:
+                return; // IGNORE
+        }
+
+        if (!hasHandlers(topic))
+        {
+            return; // NOBODY LISTENS
+        }
+
+        final Map<String, Object> properties = new AdapterProperties(5);
 
         properties.put(EventConstants.EVENT, event);
 
@@ -81,7 +104,7 @@ public class ServiceEventAdapter extends AbstractAdapter implements ServiceListe
         {
             try
             {
-                properties.put(EventConstants.SERVICE_ID, new Long(id
+                properties.put(EventConstants.SERVICE_ID, Long.valueOf(id
                     .toString()));
             } catch (NumberFormatException ne)
             {
@@ -117,26 +140,8 @@ public class ServiceEventAdapter extends AbstractAdapter implements ServiceListe
             }
         }
 
-        final StringBuffer topic = new StringBuffer(ServiceEvent.class
-            .getName().replace('.', '/')).append('/');
-
-        switch (event.getType())
-        {
-            case ServiceEvent.REGISTERED:
-                topic.append("REGISTERED");
-                break;
-            case ServiceEvent.MODIFIED:
-                topic.append("MODIFIED");
-                break;
-            case ServiceEvent.UNREGISTERING:
-                topic.append("UNREGISTERING");
-                break;
-            default:
-                return; // IGNORE
-        }
-
         try {
-            getEventAdmin().postEvent(new Event(topic.toString(), properties));
+            getEventAdmin().postEvent(new Event(topic, properties));
         } catch(IllegalStateException e) {
             // This is o.k. - indicates that we are stopped.
         }
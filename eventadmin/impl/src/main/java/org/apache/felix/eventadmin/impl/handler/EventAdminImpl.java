@@ -21,6 +21,7 @@ package org.apache.felix.eventadmin.impl.handler;
 import org.apache.felix.eventadmin.impl.tasks.AsyncDeliverTasks;
 import org.apache.felix.eventadmin.impl.tasks.DefaultThreadPool;
 import org.apache.felix.eventadmin.impl.tasks.SyncDeliverTasks;
+import org.apache.felix.eventadmin.impl.util.LogWrapper;
 import org.apache.felix.eventadmin.impl.util.Matchers;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.event.Event;
@@ -66,7 +67,10 @@ public class EventAdminImpl implements EventAdmin
                     final int timeout,
                     final String[] ignoreTimeout,
                     final boolean requireTopic,
-                    final String[] ignoreTopics)
+                    final String[] ignoreTopics,
+                    final String asyncOrdering,
+                    final int asyncQueueSize,
+                    final String asyncQueuePolicy)
     {
         checkNull(syncPool, "syncPool");
         checkNull(asyncPool, "asyncPool");
@@ -76,6 +80,7 @@ public class EventAdminImpl implements EventAdmin
         this.tracker.open();
         m_sendManager = new SyncDeliverTasks(syncPool, timeout);
         m_postManager = new AsyncDeliverTasks(asyncPool, m_sendManager);
+        m_postManager.update(asyncOrdering, asyncQueueSize, asyncQueuePolicy);
         m_ignoreTopics = Matchers.createEventTopicMatchers(ignoreTopics);
     }
 
@@ -95,14 +100,14 @@ public class EventAdminImpl implements EventAdmin
     /**
      * Check whether the topic should be delivered at all
      */
-    private boolean checkTopic( final Event event )
+    private boolean checkTopic( final String topic )
     {
         boolean result = true;
         if ( this.m_ignoreTopics != null )
         {
             for(final Matchers.Matcher m : this.m_ignoreTopics)
             {
-                if ( m.match(event.getTopic()) )
+                if ( m.match(topic) )
                 {
                     result = false;
                     break;
@@ -112,6 +117,21 @@ public class EventAdminImpl implements EventAdmin
         return result;
     }
 
+    /**
+     * Check whether an event for the topic might be delivered to a handler.
+     * The filters of the handlers are not evaluated, so an event might still
+     * not be delivered to any handler.
+     *
+     * @param topic The topic of the event
+     * @return <tt>false</tt> if the topic is ignored, no handler is registered
+     *         for the topic or if we are stopped
+     */
+    public boolean hasHandlers(final String topic)
+    {
+        final EventHandlerTracker localTracker = tracker;
+        return localTracker != null && checkTopic(topic) && localTracker.getHandlers(topic).length > 0;
+    }
+
     /**
      * Post an asynchronous event.
      *
@@ -124,7 +144,7 @@ public class EventAdminImpl implements EventAdmin
     @Override
     public void postEvent(final Event event)
     {
-        if ( checkTopic(event) )
+        if ( checkTopic(event.getTopic()) )
         {
             m_postManager.execute(this.getTracker().getHandlers(event), event);
         }
@@ -142,7 +162,7 @@ public class EventAdminImpl implements EventAdmin
     @Override
     public void sendEvent(final Event event)
     {
-        if ( checkTopic(event) )
+        if ( checkTopic(event.getTopic()) )
         {
             m_sendManager.execute(this.getTracker().getHandlers(event), event, false);
         }
@@ -155,6 +175,10 @@ public class EventAdminImpl implements EventAdmin
     {
         this.tracker.close();
         this.tracker = null;
+        LogWrapper.getLogger().log(LogWrapper.LOG_DEBUG,
+                "Asynchronous events posted=" + m_postManager.getPostedEvents()
+                + ", delivered=" + m_postManager.getDeliveredEvents()
+                + ", dropped=" + m_postManager.getDroppedEvents());
     }
 
     /**
@@ -163,11 +187,15 @@ public class EventAdminImpl implements EventAdmin
     public void update(final int timeout,
                     final String[] ignoreTimeout,
                     final boolean requireTopic,
-                    final String[] ignoreTopics)
+                    final String[] ignoreTopics,
+                    final String asyncOrdering,
+                    final int asyncQueueSize,
+                    final String asyncQueuePolicy)
     {
         this.tracker.close();
         this.tracker.update(ignoreTimeout, requireTopic);
         this.m_sendManager.update(timeout);
+        this.m_postManager.update(asyncOrdering, asyncQueueSize, asyncQueuePolicy);
         this.tracker.open();
         this.m_ignoreTopics = Matchers.createEventTopicMatchers(ignoreTopics);
     }
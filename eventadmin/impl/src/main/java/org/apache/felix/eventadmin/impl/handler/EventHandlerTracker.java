@@ -18,13 +18,15 @@
  */
 package org.apache.felix.eventadmin.impl.handler;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.felix.eventadmin.impl.util.Matchers;
 import org.osgi.framework.BundleContext;
@@ -40,18 +42,20 @@ import org.osgi.util.tracker.ServiceTracker;
  */
 public class EventHandlerTracker extends ServiceTracker<EventHandler, EventHandlerProxy> {
 
+    /** The maximum number of topics for which the handlers are cached. */
+    private static final int MAX_CACHED_TOPICS = 1024;
+
     /** The proxies in this list match all events. */
 	private final List<EventHandlerProxy> matchingAllEvents;
 
-    /** This is a map for exact topic matches. The key is the topic,
-     * the value is a list of proxies.
-     */
-    private final Map<String, List<EventHandlerProxy>> matchingTopic;
+    /** The proxies for exact and wildcard topics. */
+    private final TopicTrie<EventHandlerProxy> matchingTopics;
 
-	/** This is a map for wildcard topics. The key is the prefix of the topic,
-	 * the value is a list of proxies
-	 */
-	private final Map<String, List<EventHandlerProxy>> matchingPrefixTopic;
+    /** The cached proxies for the topics of the events delivered so far.
+     * The arrays are never modified, the cache is cleared whenever a
+     * handler is added, modified or removed.
+     */
+    private final Map<String, EventHandlerProxy[]> handlersByTopic;
 
 
 	/** The context for the proxies. */
@@ -61,9 +65,9 @@ public class EventHandlerTracker extends ServiceTracker<EventHandler, EventHandl
 		super(context, EventHandler.class.getName(), null);
 
 		// we start with empty collections
-		this.matchingAllEvents = new CopyOnWriteArrayList<>();
-		this.matchingTopic = new ConcurrentHashMap<>();
-		this.matchingPrefixTopic = new ConcurrentHashMap<>();
+		this.matchingAllEvents = new ArrayList<>();
+		this.matchingTopics = new TopicTrie<>();
+		this.handlersByTopic = new ConcurrentHashMap<>();
 	}
 
     /**
@@ -107,32 +111,6 @@ public class EventHandlerTracker extends ServiceTracker<EventHandler, EventHandl
         proxy.dispose();
 	}
 
-	private void updateMap(final Map<String, List<EventHandlerProxy>> proxyListMap, final String key, final EventHandlerProxy proxy, final boolean add) {
-        List<EventHandlerProxy> proxies = proxyListMap.get(key);
-        if (proxies == null)
-        {
-            if ( !add )
-            {
-                return;
-            }
-            proxies = new CopyOnWriteArrayList<>();
-            proxyListMap.put(key, proxies);
-        }
-
-        if ( add )
-        {
-            proxies.add(proxy);
-        }
-        else
-        {
-            proxies.remove(proxy);
-            if ( proxies.size() == 0 )
-            {
-                proxyListMap.remove(key);
-            }
-        }
-	}
-
 	/**
 	 * Check the topics of the event handler and put it into the
 	 * corresponding collections.
@@ -146,21 +124,10 @@ public class EventHandlerTracker extends ServiceTracker<EventHandler, EventHandl
 		else
 		{
     		for(int i = 0; i < topics.length; i++) {
-    			final String topic = topics[i];
-
-    			if ( topic.endsWith("/*") )
-    			{
-                    // prefix topic: we remove the /*
-    				final String prefix = topic.substring(0, topic.length() - 2);
-                    this.updateMap(this.matchingPrefixTopic, prefix, proxy, true);
-    			}
-    			else
-    			{
-    			    // exact match
-                    this.updateMap(this.matchingTopic, topic, proxy, true);
-    			}
+                this.matchingTopics.add(topics[i], proxy);
     		}
 		}
+		this.handlersByTopic.clear();
 	}
 
     /**
@@ -174,21 +141,10 @@ public class EventHandlerTracker extends ServiceTracker<EventHandler, EventHandl
             this.matchingAllEvents.remove(proxy);
         } else {
             for(int i = 0; i < topics.length; i++) {
-                final String topic = topics[i];
-
-                if ( topic.endsWith("/*") )
-                {
-                    // prefix topic: we remove the /*
-                    final String prefix = topic.substring(0, topic.length() - 2);
-                    this.updateMap(this.matchingPrefixTopic, prefix, proxy, false);
-                }
-                else
-                {
-                    // exact match
-                    this.updateMap(this.matchingTopic, topic, proxy, false);
-                }
+                this.matchingTopics.remove(topics[i], proxy);
             }
         }
+        this.handlersByTopic.clear();
 	}
 
 	/**
@@ -198,50 +154,70 @@ public class EventHandlerTracker extends ServiceTracker<EventHandler, EventHandl
 	 * @return All handlers for the event
 	 */
 	public Collection<EventHandlerProxy> getHandlers(final Event event) {
-	    final String topic = event.getTopic();
+	    final EventHandlerProxy[] proxies = this.getHandlers(event.getTopic());
 
-		final Set<EventHandlerProxy> handlers = new HashSet<>();
-
-		// Add all handlers matching everything
-        this.checkHandlerAndAdd(handlers, this.matchingAllEvents, event);
-
-		// Now check for prefix matches
-		if ( !this.matchingPrefixTopic.isEmpty() )
-		{
-		    int pos = topic.lastIndexOf('/');
-			while (pos != -1)
-			{
-			    final String prefix = topic.substring(0, pos);
-		        this.checkHandlerAndAdd(handlers, this.matchingPrefixTopic.get(prefix), event);
-
-				pos = prefix.lastIndexOf('/');
-			}
-		}
-
-		// Add the handlers for matching topic names
-		this.checkHandlerAndAdd(handlers, this.matchingTopic.get(topic), event);
-
-		return handlers;
+        // usually all handlers can deliver the event, in this case the
+        // cached handlers are returned without copying them
+        List<EventHandlerProxy> handlers = null;
+        for(int i = 0; i < proxies.length; i++)
+        {
+            if ( !proxies[i].canDeliver(event) )
+            {
+                if ( handlers == null )
+                {
+                    handlers = new ArrayList<>(proxies.length - 1);
+                    for(int j = 0; j < i; j++)
+                    {
+                        handlers.add(proxies[j]);
+                    }
+                }
+            }
+            else if ( handlers != null )
+            {
+                handlers.add(proxies[i]);
+            }
+        }
+        if ( handlers != null )
+        {
+            return handlers;
+        }
+        return proxies.length == 0 ? Collections.<EventHandlerProxy> emptyList() : Arrays.asList(proxies);
 	}
 
 	/**
-	 * Checks each handler from the proxy list if it can deliver the event
-	 * If the event can be delivered, the proxy is added to the handlers.
+	 * Get the handlers registered for a topic, regardless of their filter.
+	 *
+	 * @param topic The event topic
+	 * @return The handlers, the array must not be modified
 	 */
-	private void checkHandlerAndAdd( final Set<EventHandlerProxy> handlers,
-	        final List<EventHandlerProxy> proxies,
-	        final Event event)
-	{
+	public EventHandlerProxy[] getHandlers(final String topic) {
+	    final EventHandlerProxy[] proxies = this.handlersByTopic.get(topic);
 	    if ( proxies != null )
 	    {
-            for(final EventHandlerProxy p : proxies)
-            {
-                if ( p.canDeliver(event) )
-                {
-                    handlers.add(p);
-                }
-            }
+	        return proxies;
+	    }
+	    return this.collectHandlers(topic);
+	}
+
+	/**
+	 * Collect the handlers for a topic and cache them.
+	 */
+	private synchronized EventHandlerProxy[] collectHandlers(final String topic) {
+	    EventHandlerProxy[] proxies = this.handlersByTopic.get(topic);
+	    if ( proxies == null )
+	    {
+	        // a handler registered for several matching topics is only added once
+	        final Set<EventHandlerProxy> handlers = new LinkedHashSet<>(this.matchingAllEvents);
+	        this.matchingTopics.collect(topic, handlers);
+	        proxies = handlers.toArray(new EventHandlerProxy[handlers.size()]);
+
+	        if ( this.handlersByTopic.size() >= MAX_CACHED_TOPICS )
+	        {
+	            this.handlersByTopic.clear();
+	        }
+	        this.handlersByTopic.put(topic, proxies);
 	    }
+	    return proxies;
 	}
 
     /**
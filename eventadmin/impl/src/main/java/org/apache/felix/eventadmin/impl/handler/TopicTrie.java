@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.eventadmin.impl.handler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A tree of the topics event handlers are registered for, with one node per
+ * topic segment. A topic is either an exact topic like <code>a/b</code> or a
+ * prefix topic like <code>a/*</code> matching all topics below
+ * <code>a</code>. Looking up the values for a topic walks the tree once
+ * instead of looking up every prefix of the topic.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+class TopicTrie<T>
+{
+    /** The root node, representing the empty prefix. */
+    private final Node<T> root = new Node<>();
+
+    /**
+     * Add a value for a topic.
+     * @param topic The exact or prefix topic
+     * @param value The value
+     */
+    public void add(final String topic, final T value)
+    {
+        final boolean prefix = topic.endsWith("/*");
+        final String path = prefix ? topic.substring(0, topic.length() - 2) : topic;
+
+        Node<T> node = this.root;
+        int start = 0;
+        while ( start <= path.length() )
+        {
+            int end = path.indexOf('/', start);
+            if ( end == -1 )
+            {
+                end = path.length();
+            }
+            node = node.child(path.substring(start, end), true);
+            start = end + 1;
+        }
+        if ( prefix )
+        {
+            node.prefix = add(node.prefix, value);
+        }
+        else
+        {
+            node.exact = add(node.exact, value);
+        }
+    }
+
+    /**
+     * Remove a value for a topic.
+     * @param topic The exact or prefix topic
+     * @param value The value
+     */
+    public void remove(final String topic, final T value)
+    {
+        final boolean prefix = topic.endsWith("/*");
+        final String path = prefix ? topic.substring(0, topic.length() - 2) : topic;
+        this.remove(this.root, path, 0, prefix, value);
+    }
+
+    /**
+     * Remove the value from the node for the path starting at the given
+     * position below the node, and remove nodes which got empty.
+     * @return <code>true</code> if the node is empty now
+     */
+    private boolean remove(final Node<T> node, final String path, final int start,
+            final boolean prefix, final T value)
+    {
+        if ( start > path.length() )
+        {
+            if ( prefix )
+            {
+                node.prefix = remove(node.prefix, value);
+            }
+            else
+            {
+                node.exact = remove(node.exact, value);
+            }
+        }
+        else
+        {
+            int end = path.indexOf('/', start);
+            if ( end == -1 )
+            {
+                end = path.length();
+            }
+            final String segment = path.substring(start, end);
+            final Node<T> child = node.child(segment, false);
+            if ( child != null && this.remove(child, path, end + 1, prefix, value) )
+            {
+                node.children.remove(segment);
+                if ( node.children.isEmpty() )
+                {
+                    node.children = null;
+                }
+            }
+        }
+        return node.isEmpty();
+    }
+
+    /**
+     * Collect the values matching a topic: first the values of the prefix
+     * topics from the shortest to the longest prefix, then the values of
+     * the exact topic.
+     * @param topic The topic of an event
+     * @param result The collection the values are added to
+     */
+    public void collect(final String topic, final Collection<T> result)
+    {
+        Node<T> node = this.root;
+        int start = 0;
+        while ( node != null )
+        {
+            int end = topic.indexOf('/', start);
+            final boolean last = end == -1;
+            if ( last )
+            {
+                end = topic.length();
+            }
+            node = node.child(topic.substring(start, end), false);
+            if ( node == null )
+            {
+                return;
+            }
+            if ( last )
+            {
+                addAll(node.exact, result);
+                return;
+            }
+            addAll(node.prefix, result);
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Is this trie empty?
+     */
+    public boolean isEmpty()
+    {
+        return this.root.isEmpty();
+    }
+
+    private static <T> List<T> add(List<T> list, final T value)
+    {
+        if ( list == null )
+        {
+            list = new ArrayList<>(1);
+        }
+        list.add(value);
+        return list;
+    }
+
+    private static <T> List<T> remove(final List<T> list, final T value)
+    {
+        if ( list != null )
+        {
+            list.remove(value);
+            if ( list.isEmpty() )
+            {
+                return null;
+            }
+        }
+        return list;
+    }
+
+    private static <T> void addAll(final List<T> list, final Collection<T> result)
+    {
+        if ( list != null )
+        {
+            result.addAll(list);
+        }
+    }
+
+    /**
+     * A node of the trie, representing a topic or topic prefix.
+     */
+    private static final class Node<T>
+    {
+        /** The child nodes by their segment, <code>null</code> if none. */
+        Map<String, Node<T>> children;
+
+        /** The values for the exact topic, <code>null</code> if none. */
+        List<T> exact;
+
+        /** The values for the topics below, <code>null</code> if none. */
+        List<T> prefix;
+
+        Node<T> child(final String segment, final boolean create)
+        {
+            Node<T> child = this.children == null ? null : this.children.get(segment);
+            if ( child == null && create )
+            {
+                if ( this.children == null )
+                {
+                    this.children = new HashMap<>();
+                }
+                child = new Node<>();
+                this.children.put(segment, child);
+            }
+            return child;
+        }
+
+        boolean isEmpty()
+        {
+            return this.children == null && this.exact == null && this.prefix == null;
+        }
+    }
+}
@@ -18,20 +18,63 @@
  */
 package org.apache.felix.eventadmin.impl.tasks;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.felix.eventadmin.impl.handler.EventHandlerProxy;
+import org.apache.felix.eventadmin.impl.util.LogWrapper;
 import org.osgi.service.event.Event;
 
 /**
  * This class does the actual work of the asynchronous event dispatch.
  *
+ * Events are queued per ordering key and the events of a key are delivered
+ * in the order they have been posted by a single task at a time. The key
+ * is the posting thread by default, it may also be the event topic or no
+ * key at all, in which case each event is delivered on its own. Consecutive
+ * events of a key for the same handlers are delivered to each handler in
+ * one go.
+ *
+ * If a queue size is configured, posting an event while this number of
+ * events is queued either blocks until an event has been delivered or
+ * drops the event.
+ *
  * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
  */
 public class AsyncDeliverTasks
 {
+    /** Events posted by the same thread are delivered in order. */
+    public static final String ORDERING_THREAD = "thread";
+
+    /** Events of the same topic are delivered in order. */
+    public static final String ORDERING_TOPIC = "topic";
+
+    /** Events are delivered in any order. */
+    public static final String ORDERING_NONE = "none";
+
+    /** Posting blocks while the queue is full. */
+    public static final String POLICY_BLOCK = "block";
+
+    /** Events posted while the queue is full are dropped. */
+    public static final String POLICY_DROP = "drop";
+
+    /** The maximum number of events delivered to the handlers in one go. */
+    private static final int MAX_BATCH_SIZE = 64;
+
+    /** Marker for a dropped event. */
+    private static final Semaphore DROPPED = new Semaphore(0);
+
+    /** Marks the threads delivering asynchronous events, which never block. */
+    private static final ThreadLocal<Boolean> DELIVERING = new ThreadLocal<>();
+
     /** The thread pool to use to spin-off new threads. */
     private final DefaultThreadPool m_pool;
 
@@ -41,8 +84,29 @@ public class AsyncDeliverTasks
      */
     private final SyncDeliverTasks m_deliver_task;
 
-    /** A map of running threads currently delivering async events. */
-    private final Map<Long, TaskExecuter> m_running_threads = new ConcurrentHashMap<Long, TaskExecuter>();
+    /** The executers currently delivering events, by their ordering key. */
+    private final ConcurrentMap<Object, TaskExecuter> m_executers = new ConcurrentHashMap<>();
+
+    /** The ordering of the events. */
+    private volatile String m_ordering = ORDERING_THREAD;
+
+    /** The maximum number of queued events, 0 if unbounded. */
+    private int m_queueSize;
+
+    /** The permits for queueing events, <code>null</code> if unbounded. */
+    private volatile Semaphore m_queueLimit;
+
+    /** Whether events are dropped if the queue is full. */
+    private volatile boolean m_dropWhenFull;
+
+    /** Whether the queue is full and dropping events. */
+    private final AtomicBoolean m_dropping = new AtomicBoolean();
+
+    private final AtomicLong m_posted = new AtomicLong();
+
+    private final AtomicLong m_delivered = new AtomicLong();
+
+    private final AtomicLong m_dropped = new AtomicLong();
 
     /**
      * The constructor of the class that will use the asynchronous.
@@ -58,6 +122,26 @@ public class AsyncDeliverTasks
         m_deliver_task = deliverTask;
     }
 
+    /**
+     * Update the ordering and queue configuration.
+     *
+     * @param ordering One of {@link #ORDERING_THREAD}, {@link #ORDERING_TOPIC}
+     *      or {@link #ORDERING_NONE}
+     * @param queueSize The maximum number of queued events, 0 for no limit
+     * @param policy One of {@link #POLICY_BLOCK} or {@link #POLICY_DROP}
+     */
+    public synchronized void update(final String ordering, final int queueSize, final String policy)
+    {
+        m_ordering = ordering;
+        m_dropWhenFull = POLICY_DROP.equals(policy);
+        if ( queueSize != m_queueSize )
+        {
+            // events queued with the old limit release their permit there
+            m_queueSize = Math.max(0, queueSize);
+            m_queueLimit = m_queueSize == 0 ? null : new Semaphore(m_queueSize);
+        }
+    }
+
     /**
      * This does not block an unrelated thread used to send a synchronous event.
      *
@@ -66,127 +150,313 @@ public class AsyncDeliverTasks
      */
     public void execute(final Collection<EventHandlerProxy> tasks, final Event event)
     {
-        /*
-        final Iterator i = tasks.iterator();
-        boolean hasOrdered = false;
-        while ( i.hasNext() )
+        if ( tasks.isEmpty() )
+        {
+            return;
+        }
+
+        final Semaphore limit = this.acquire(event);
+        if ( limit == DROPPED )
+        {
+            return;
+        }
+        m_posted.incrementAndGet();
+        final TaskInfo info = new TaskInfo(tasks, event, limit);
+
+        final Object key;
+        if ( ORDERING_THREAD.equals(m_ordering) )
+        {
+            key = Thread.currentThread();
+        }
+        else if ( ORDERING_TOPIC.equals(m_ordering) )
+        {
+            key = event.getTopic();
+        }
+        else
         {
-            final EventHandlerProxy task = (EventHandlerProxy)i.next();
-            if ( !task.isAsyncOrderedDelivery() )
+            key = null;
+        }
+
+        if ( key == null )
+        {
+            final TaskExecuter executer = new TaskExecuter(null);
+            executer.pending.set(1);
+            executer.queue.offer(info);
+            this.schedule(executer);
+            return;
+        }
+
+        for(;;)
+        {
+            TaskExecuter executer = m_executers.get(key);
+            if ( executer == null )
+            {
+                executer = new TaskExecuter(key);
+                final TaskExecuter existing = m_executers.putIfAbsent(key, executer);
+                if ( existing != null )
+                {
+                    executer = existing;
+                }
+            }
+
+            final int pending = executer.pending.getAndIncrement();
+            if ( pending < 0 )
             {
-                // do somethimg
+                // the executer has just terminated, use a new one
+                m_executers.remove(key, executer);
+                continue;
             }
-            else
+            executer.queue.offer(info);
+            if ( pending == 0 )
             {
-                hasOrdered = true;
+                this.schedule(executer);
             }
+            return;
+        }
+    }
+
+    /**
+     * Returns the number of events posted and not delivered yet.
+     */
+    public long getQueuedEvents()
+    {
+        return m_posted.get() - m_delivered.get();
+    }
+
+    /**
+     * Returns the number of events posted so far, excluding dropped events.
+     */
+    public long getPostedEvents()
+    {
+        return m_posted.get();
+    }
+
+    /**
+     * Returns the number of posted events delivered so far.
+     */
+    public long getDeliveredEvents()
+    {
+        return m_delivered.get();
+    }
+
+    /**
+     * Returns the number of events dropped because the queue was full.
+     */
+    public long getDroppedEvents()
+    {
+        return m_dropped.get();
+    }
 
+    /**
+     * Acquire a permit for queueing an event.
+     * @return The semaphore to release the permit to, <code>null</code> if
+     *      no permit is required, or {@link #DROPPED} if the event is dropped
+     */
+    private Semaphore acquire(final Event event)
+    {
+        final Semaphore limit = m_queueLimit;
+        if ( limit == null )
+        {
+            return null;
         }
-        if ( hasOrdered )
-        {*/
-            final TaskInfo info = new TaskInfo(tasks, event);
-            final Long currentThreadId = Thread.currentThread().getId();
-            TaskExecuter executer = m_running_threads.get(currentThreadId);
-            if ( executer == null )
+        if ( limit.tryAcquire() )
+        {
+            if ( m_dropping.get() )
             {
-                executer = new TaskExecuter(currentThreadId, m_running_threads);
+                m_dropping.set(false);
             }
-            synchronized ( executer )
+            return limit;
+        }
+
+        if ( m_dropWhenFull )
+        {
+            m_dropped.incrementAndGet();
+            if ( m_dropping.compareAndSet(false, true) )
             {
-                executer.add(info);
-                if ( !executer.isActive() )
-                {
-                    // reactivate thread
-                    executer.setSyncDeliverTasks(m_deliver_task);
-                    if ( !m_pool.executeTask(executer) )
-                    {
-                        // scheduling failed: last resort, call directly
-                        executer.run();
-                    }
-                    m_running_threads.put(currentThreadId, executer);
-                }
+                LogWrapper.getLogger().log(
+                        LogWrapper.LOG_WARNING,
+                        "Asynchronous event queue is full, dropping events starting with " + event);
+            }
+            return DROPPED;
+        }
+
+        // threads delivering events never block as they are needed to
+        // make progress, they exceed the limit instead
+        if ( DELIVERING.get() != null || SyncThread.isSyncThread() )
+        {
+            return null;
+        }
+        try
+        {
+            limit.acquire();
+            return limit;
+        }
+        catch ( final InterruptedException ie )
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void schedule(final TaskExecuter executer)
+    {
+        if ( !m_pool.executeTask(executer) )
+        {
+            // scheduling failed: last resort, call directly
+            executer.run();
+        }
+    }
+
+    /**
+     * Check whether two events are delivered to the same handlers.
+     */
+    private static boolean sameHandlers(final Collection<EventHandlerProxy> first,
+            final Collection<EventHandlerProxy> second)
+    {
+        if ( first == second )
+        {
+            return true;
+        }
+        if ( first.size() != second.size() )
+        {
+            return false;
+        }
+        final Iterator<EventHandlerProxy> i = second.iterator();
+        for(final EventHandlerProxy proxy : first)
+        {
+            if ( proxy != i.next() )
+            {
+                return false;
             }
-        //}
+        }
+        return true;
     }
 
     private final static class TaskInfo {
         public final Collection<EventHandlerProxy> tasks;
         public final Event event;
+        public final Semaphore limit;
 
-        public TaskInfo next;
-
-        public TaskInfo(final Collection<EventHandlerProxy> tasks, final Event event) {
+        public TaskInfo(final Collection<EventHandlerProxy> tasks, final Event event, final Semaphore limit) {
             this.tasks = tasks;
             this.event = event;
+            this.limit = limit;
         }
     }
 
-    private final static class TaskExecuter implements Runnable
+    /**
+     * Delivers the events of an ordering key. The executer is scheduled by
+     * the thread incrementing the number of pending events from zero. Once
+     * all events have been delivered it marks itself as terminated by
+     * setting the number of pending events to a negative value, so that no
+     * further events are added to it.
+     */
+    private final class TaskExecuter implements Runnable
     {
-        private volatile TaskInfo first;
-        private volatile TaskInfo last;
-
-        private volatile SyncDeliverTasks m_deliver_task;
-
-        private final Map<Long, TaskExecuter> m_running_threads;
+        final MpscQueue<TaskInfo> queue = new MpscQueue<>();
 
-        private final long threadId;
+        final AtomicInteger pending = new AtomicInteger();
 
-        public TaskExecuter(final long threadId, final Map<Long, TaskExecuter> runningThreads) {
-            m_running_threads = runningThreads;
-            this.threadId = threadId;
-        }
+        private final Object key;
 
-        public boolean isActive()
-        {
-            return this.m_deliver_task != null;
-        }
-
-        public void setSyncDeliverTasks(final SyncDeliverTasks syncDeliverTasks)
-        {
-            this.m_deliver_task = syncDeliverTasks;
+        public TaskExecuter(final Object key) {
+            this.key = key;
         }
 
         @Override
         public void run()
         {
-            boolean running;
-            do
+            // the executer may run in a delivering thread if scheduling failed
+            final boolean nested = DELIVERING.get() != null;
+            DELIVERING.set(Boolean.TRUE);
+            try
             {
-                TaskInfo info = null;
-                synchronized ( this )
+                for(;;)
                 {
-                    info = first;
-                    first = info.next;
-                    if ( first == null )
+                    TaskInfo info;
+                    while ( (info = queue.poll()) == null )
                     {
-                        last = null;
+                        // the event is being added
+                        Thread.yield();
                     }
-                }
-                m_deliver_task.execute(info.tasks, info.event, true);
-                synchronized ( this )
-                {
-                    running = first != null;
-                    if ( !running )
+
+                    // collect the following events for the same handlers
+                    List<TaskInfo> batch = null;
+                    TaskInfo next;
+                    while ( (batch == null || batch.size() < MAX_BATCH_SIZE)
+                            && (next = queue.peek()) != null
+                            && sameHandlers(info.tasks, next.tasks) )
                     {
-                        this.m_deliver_task = null;
-                        this.m_running_threads.remove(threadId);
+                        if ( batch == null )
+                        {
+                            batch = new ArrayList<>();
+                            batch.add(info);
+                        }
+                        batch.add(queue.poll());
+                    }
+
+                    final int count;
+                    if ( batch == null )
+                    {
+                        count = 1;
+                        this.deliver(info.tasks, new Event[] {info.event});
+                        this.release(info);
+                    }
+                    else
+                    {
+                        count = batch.size();
+                        final Event[] events = new Event[count];
+                        for(int i = 0; i < count; i++)
+                        {
+                            events[i] = batch.get(i).event;
+                        }
+                        this.deliver(info.tasks, events);
+                        for(final TaskInfo done : batch)
+                        {
+                            this.release(done);
+                        }
+                    }
+                    m_delivered.addAndGet(count);
+
+                    if ( pending.addAndGet(-count) == 0 && pending.compareAndSet(0, Integer.MIN_VALUE) )
+                    {
+                        if ( key != null )
+                        {
+                            m_executers.remove(key, this);
+                        }
+                        return;
                     }
                 }
-            } while ( running );
+            }
+            finally
+            {
+                if ( !nested )
+                {
+                    DELIVERING.remove();
+                }
+            }
         }
 
-        public void add(final TaskInfo info)
+        private void deliver(final Collection<EventHandlerProxy> tasks, final Event[] events)
         {
-            if ( first == null )
+            try
+            {
+                m_deliver_task.execute(tasks, events);
+            }
+            catch (final Throwable t)
             {
-                first = info;
-                last = info;
+                // just to be sure the queue keeps being processed
+                LogWrapper.getLogger().log(
+                        LogWrapper.LOG_WARNING,
+                        "Exception: " + t, t);
             }
-            else
+        }
+
+        private void release(final TaskInfo info)
+        {
+            if ( info.limit != null )
             {
-                last.next = info;
-                last = info;
+                info.limit.release();
             }
         }
     }
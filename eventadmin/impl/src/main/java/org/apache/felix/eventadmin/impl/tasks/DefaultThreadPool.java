@@ -16,6 +16,7 @@
  */
 package org.apache.felix.eventadmin.impl.tasks;
 
+import java.lang.reflect.Method;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
@@ -29,6 +30,11 @@ import org.apache.felix.eventadmin.impl.util.LogWrapper;
  * A thread pool that allows to execute tasks using pooled threads in order
  * to ease the thread creation overhead.
  *
+ * Alternatively the tasks can be executed in a new virtual thread each, if the
+ * JVM supports virtual threads. The pool size does not apply in this case, so
+ * blocking tasks do not hold up other tasks. The virtual threads are created
+ * through reflection as this bundle is compiled for older JVMs.
+ *
  * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
  */
 public class DefaultThreadPool
@@ -38,8 +44,12 @@ public class DefaultThreadPool
 
     private final ThreadFactory threadFactory;
 
+    private final boolean syncThreads;
+
     private int oldSize = -1;
 
+    private boolean oldVirtualThreads;
+
     private final AtomicLong threadCounter = new AtomicLong(1);
 
     /**
@@ -47,6 +57,15 @@ public class DefaultThreadPool
      */
     public DefaultThreadPool(final int poolSize, final boolean syncThreads)
     {
+        this(poolSize, syncThreads, false);
+    }
+
+    /**
+     * Create a new pool, optionally using virtual threads.
+     */
+    public DefaultThreadPool(final int poolSize, final boolean syncThreads, final boolean virtualThreads)
+    {
+        this.syncThreads = syncThreads;
         if ( syncThreads )
         {
             threadFactory = new ThreadFactory()
@@ -81,7 +100,7 @@ public class DefaultThreadPool
                 }
             };
         }
-   	    configure(poolSize);
+   	    configure(poolSize, virtualThreads);
     }
 
     /**
@@ -89,11 +108,36 @@ public class DefaultThreadPool
      */
     public synchronized void configure(final int poolSize)
     {
-        if ( oldSize != poolSize)
+        configure(poolSize, oldVirtualThreads);
+    }
+
+    /**
+     * Configure a new pool size and whether virtual threads are used. If
+     * virtual threads are not supported by the JVM, the pool is used.
+     */
+    public synchronized void configure(final int poolSize, final boolean virtualThreads)
+    {
+        if ( oldSize != poolSize || oldVirtualThreads != virtualThreads )
         {
             oldSize = poolSize;
+            oldVirtualThreads = virtualThreads;
+            ExecutorService newService = null;
+            if ( virtualThreads )
+            {
+                newService = createVirtualThreadExecutor();
+                if ( newService == null )
+                {
+                    LogWrapper.getLogger().log(
+                            LogWrapper.LOG_WARNING,
+                            "Virtual threads are not supported by this JVM - Using a thread pool of size " + poolSize);
+                }
+            }
+            if ( newService == null )
+            {
+                newService = Executors.newFixedThreadPool(poolSize, threadFactory);
+            }
             final ExecutorService oldService = this.executor;
-            this.executor = Executors.newFixedThreadPool(poolSize, threadFactory);
+            this.executor = newService;
             if ( oldService != null )
             {
                 oldService.shutdown();
@@ -101,6 +145,50 @@ public class DefaultThreadPool
         }
     }
 
+    /**
+     * Create an executor running each task in a new virtual thread.
+     * @return The executor or {@code null} if virtual threads are not supported
+     */
+    private ExecutorService createVirtualThreadExecutor()
+    {
+        try
+        {
+            // Thread.ofVirtual().name(prefix, 1).factory()
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder,
+                    syncThreads ? "EventAdminVirtualThread #" : "EventAdminAsyncVirtualThread #", 1L);
+            final ThreadFactory virtualFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+
+            final ThreadFactory factory;
+            if ( syncThreads )
+            {
+                factory = new ThreadFactory()
+                {
+
+                    @Override
+                    public Thread newThread( final Runnable command )
+                    {
+                        return virtualFactory.newThread( SyncThread.mark( command ) );
+                    }
+                };
+            }
+            else
+            {
+                factory = virtualFactory;
+            }
+
+            // Executors.newThreadPerTaskExecutor(factory)
+            final Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        }
+        catch ( final Throwable t )
+        {
+            // not available (before Java 21) or not enabled (preview in Java 19 and 20)
+            return null;
+        }
+    }
+
     /**
      * Returns current pool size.
      */
@@ -29,7 +29,7 @@ public class HandlerTask implements Runnable
 {
 	private final EventHandlerProxy task;
 
-	private final Event event;
+	private final Event[] events;
 
 	private final long timeout;
 
@@ -48,9 +48,22 @@ public class HandlerTask implements Runnable
 	 * @param handlerLatch The latch used to ensure events fire in proper order
 	 */
 	public HandlerTask(final EventHandlerProxy task, final Event event, final long timeout, final BlacklistLatch handlerLatch)
+	{
+		this(task, new Event[] {event}, timeout, handlerLatch);
+	}
+
+	/**
+	 *
+	 *
+	 * @param task Proxy to the event handler
+	 * @param events The events to send to the handler, in this order
+	 * @param timeout Timeout for handler blacklisting, applied to each event
+	 * @param handlerLatch The latch used to ensure events fire in proper order
+	 */
+	public HandlerTask(final EventHandlerProxy task, final Event[] events, final long timeout, final BlacklistLatch handlerLatch)
 	{
 		this.task = task;
-		this.event = event;
+		this.events = events;
 		this.timeout = timeout;
 		this.handlerLatch = handlerLatch;
 		this.startTime = -1l;
@@ -65,11 +78,15 @@ public class HandlerTask implements Runnable
     {
         try
         {
-            startTime = System.currentTimeMillis();
-            // execute the task
-            task.sendEvent(event);
-            endTime = System.currentTimeMillis();
-            checkForBlacklist();
+            for(final Event event : events)
+            {
+                startTime = System.currentTimeMillis();
+                endTime = -1l;
+                // execute the task
+                task.sendEvent(event);
+                endTime = System.currentTimeMillis();
+                checkForBlacklist();
+            }
         }
         finally
         {
@@ -79,7 +96,10 @@ public class HandlerTask implements Runnable
 
     public void runWithoutBlacklistTiming()
     {
-    	task.sendEvent(event);
+    	for(final Event event : events)
+    	{
+    	    task.sendEvent(event);
+    	}
     	handlerLatch.countDown();
     }
 
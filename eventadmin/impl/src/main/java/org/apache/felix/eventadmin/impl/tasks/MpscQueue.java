@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.eventadmin.impl.tasks;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An unbounded lock free queue for many producers and a single consumer.
+ * Producers append a node by swapping the tail and linking the previous
+ * tail to it, the consumer removes nodes from the head without any
+ * synchronization with other consumers.
+ *
+ * @author <a href="mailto:dev@felix.apache.org">Felix Project Team</a>
+ */
+final class MpscQueue<E>
+{
+    /** The last node, updated by the producers. */
+    private final AtomicReference<Node<E>> tail;
+
+    /** The node before the first element, only used by the consumer. */
+    private Node<E> head;
+
+    MpscQueue()
+    {
+        this.head = new Node<>(null);
+        this.tail = new AtomicReference<>(this.head);
+    }
+
+    /**
+     * Append an element. May be called by any thread.
+     */
+    public void offer(final E value)
+    {
+        final Node<E> node = new Node<>(value);
+        final Node<E> prev = this.tail.getAndSet(node);
+        prev.next = node;
+    }
+
+    /**
+     * Get the first element without removing it. Must only be called by
+     * the consumer.
+     * @return The first element or <code>null</code> if the queue is empty
+     */
+    public E peek()
+    {
+        final Node<E> next = this.next();
+        return next == null ? null : next.value;
+    }
+
+    /**
+     * Remove the first element. Must only be called by the consumer.
+     * @return The first element or <code>null</code> if the queue is empty
+     */
+    public E poll()
+    {
+        final Node<E> next = this.next();
+        if ( next == null )
+        {
+            return null;
+        }
+        final E value = next.value;
+        next.value = null;
+        this.head = next;
+        return value;
+    }
+
+    private Node<E> next()
+    {
+        Node<E> next = this.head.next;
+        if ( next == null && this.head != this.tail.get() )
+        {
+            // a producer has swapped the tail but not linked its node yet
+            while ( (next = this.head.next) == null )
+            {
+                Thread.yield();
+            }
+        }
+        return next;
+    }
+
+    private static final class Node<E>
+    {
+        E value;
+
+        volatile Node<E> next;
+
+        Node(final E value)
+        {
+            this.value = value;
+        }
+    }
+}
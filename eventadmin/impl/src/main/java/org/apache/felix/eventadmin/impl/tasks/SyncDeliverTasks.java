@@ -87,8 +87,21 @@ public class SyncDeliverTasks
      */
     public void execute(final Collection<EventHandlerProxy> tasks, final Event event, final boolean filterAsyncUnordered)
     {
-        final Thread sleepingThread = Thread.currentThread();
-        final SyncThread syncThread = sleepingThread instanceof SyncThread ? (SyncThread)sleepingThread : null;
+        this.execute(tasks, new Event[] {event});
+    }
+
+    /**
+     * This blocks an unrelated thread used to send synchronous events until
+     * the events are send (or a timeout occurs). Each handler receives all
+     * events in the given order before the next handler task is started
+     * in the same thread.
+     *
+     * @param tasks The event handler dispatch tasks to execute
+     * @param events The events, which must be deliverable to all handlers
+     */
+    public void execute(final Collection<EventHandlerProxy> tasks, final Event[] events)
+    {
+        final boolean syncThread = SyncThread.isSyncThread();
 
         final Iterator<EventHandlerProxy> i = tasks.iterator();
         final BlacklistLatch handlerLatch = new BlacklistLatch(tasks.size(), this.timeout/2);
@@ -96,14 +109,14 @@ public class SyncDeliverTasks
         while ( i.hasNext() )
         {
             final EventHandlerProxy task = i.next();
-            HandlerTask handlerTask = new HandlerTask(task, event, this.timeout, handlerLatch);
+            HandlerTask handlerTask = new HandlerTask(task, events, this.timeout, handlerLatch);
 //            if ( !filterAsyncUnordered || task.isAsyncOrderedDelivery() )
 //            {
                 if( !handlerTask.useTimeout() )
                 {
                 	handlerTask.runWithoutBlacklistTiming();
                 }
-            	else if ( syncThread != null  )
+            	else if ( syncThread )
                 {
                     // if this is a cascaded event, we directly use this thread
                     // otherwise we could end up in a starvation
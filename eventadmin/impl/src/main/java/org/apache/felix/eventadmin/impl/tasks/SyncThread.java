@@ -27,6 +27,8 @@ package org.apache.felix.eventadmin.impl.tasks;
  */
 public class SyncThread extends Thread
 {
+    /** Marks the virtual threads sending events, which cannot extend this class. */
+    private static final ThreadLocal<Boolean> VIRTUAL_SYNC_THREAD = new ThreadLocal<>();
 
     /**
      * Constructor used by the thread pool.
@@ -35,4 +37,36 @@ public class SyncThread extends Thread
     {
         super(target);
     }
+
+    /**
+     * Is the current thread used for sending the events?
+     */
+    public static boolean isSyncThread()
+    {
+        return Thread.currentThread() instanceof SyncThread || VIRTUAL_SYNC_THREAD.get() != null;
+    }
+
+    /**
+     * Wrap the target of a virtual thread used for sending the events
+     * to mark it as such.
+     */
+    static Runnable mark(final Runnable target)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                VIRTUAL_SYNC_THREAD.set(Boolean.TRUE);
+                try
+                {
+                    target.run();
+                }
+                finally
+                {
+                    VIRTUAL_SYNC_THREAD.remove();
+                }
+            }
+        };
+    }
 }
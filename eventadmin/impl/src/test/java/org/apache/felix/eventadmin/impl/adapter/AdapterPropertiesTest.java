@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.eventadmin.impl.adapter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.osgi.service.event.Event;
+
+public class AdapterPropertiesTest {
+
+    @Test public void testPutAndGet() {
+        final AdapterProperties props = new AdapterProperties(1);
+        props.put("a", "1");
+        props.put("b", "2");
+        props.put("c", null);
+        assertEquals(2, props.size());
+        assertEquals("2", props.get("b"));
+        assertNull(props.get("c"));
+        assertFalse(props.containsKey("c"));
+
+        assertEquals("1", props.put("a", "3"));
+        assertEquals(2, props.size());
+        assertEquals("3", props.get("a"));
+    }
+
+    @Test public void testEquals() {
+        final AdapterProperties props = new AdapterProperties(4);
+        final Map<String, Object> expected = new HashMap<String, Object>();
+        for(int i = 0; i < 10; i++) {
+            props.put("key" + i, i);
+            expected.put("key" + i, i);
+        }
+        assertEquals(expected, props);
+        assertEquals(expected.hashCode(), props.hashCode());
+    }
+
+    @Test public void testEvent() {
+        final AdapterProperties props = new AdapterProperties(2);
+        props.put("bundle.id", 5L);
+        props.put("bundle.symbolicName", "test");
+        final Event event = new Event("org/osgi/framework/BundleEvent/STARTED", props);
+        assertEquals(5L, event.getProperty("bundle.id"));
+        assertEquals("test", event.getProperty("bundle.symbolicName"));
+    }
+}
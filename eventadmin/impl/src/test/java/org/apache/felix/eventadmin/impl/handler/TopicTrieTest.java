@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.eventadmin.impl.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TopicTrieTest {
+
+    private static List<String> collect(final TopicTrie<String> trie, final String topic)
+    {
+        final List<String> result = new ArrayList<>();
+        trie.collect(topic, result);
+        return result;
+    }
+
+    @Test public void testExactTopics()
+    {
+        final TopicTrie<String> trie = new TopicTrie<>();
+        trie.add("org/osgi/framework/BundleEvent/STARTED", "started");
+        trie.add("org/osgi/framework/BundleEvent/STOPPED", "stopped");
+
+        assertEquals(Arrays.asList("started"), collect(trie, "org/osgi/framework/BundleEvent/STARTED"));
+        assertEquals(Arrays.asList("stopped"), collect(trie, "org/osgi/framework/BundleEvent/STOPPED"));
+        assertTrue(collect(trie, "org/osgi/framework/BundleEvent").isEmpty());
+        assertTrue(collect(trie, "org/osgi/framework/BundleEvent/STARTED/more").isEmpty());
+        assertTrue(collect(trie, "other").isEmpty());
+    }
+
+    @Test public void testPrefixTopics()
+    {
+        final TopicTrie<String> trie = new TopicTrie<>();
+        trie.add("org/osgi/framework/BundleEvent/STARTED", "started");
+        trie.add("org/osgi/framework/BundleEvent/*", "bundle");
+        trie.add("org/osgi/*", "osgi");
+
+        assertEquals(Arrays.asList("osgi", "bundle", "started"),
+                collect(trie, "org/osgi/framework/BundleEvent/STARTED"));
+        assertEquals(Arrays.asList("osgi", "bundle"), collect(trie, "org/osgi/framework/BundleEvent/STOPPED"));
+        assertEquals(Arrays.asList("osgi"), collect(trie, "org/osgi/framework/BundleEvent"));
+        assertEquals(Collections.emptyList(), collect(trie, "org/osgi"));
+    }
+
+    @Test public void testRemove()
+    {
+        final TopicTrie<String> trie = new TopicTrie<>();
+        trie.add("a/b/c", "exact");
+        trie.add("a/b/c", "other");
+        trie.add("a/*", "prefix");
+
+        trie.remove("a/b/c", "exact");
+        assertEquals(Arrays.asList("prefix", "other"), collect(trie, "a/b/c"));
+
+        trie.remove("a/*", "prefix");
+        trie.remove("a/b/c", "other");
+        assertTrue(collect(trie, "a/b/c").isEmpty());
+        assertTrue(trie.isEmpty());
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.eventadmin.impl.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MpscQueueTest {
+
+    @Test public void testSingleThread()
+    {
+        final MpscQueue<String> queue = new MpscQueue<>();
+        assertNull(queue.poll());
+        queue.offer("a");
+        queue.offer("b");
+        assertEquals("a", queue.peek());
+        assertEquals("a", queue.poll());
+        assertEquals("b", queue.poll());
+        assertNull(queue.peek());
+        assertNull(queue.poll());
+    }
+
+    @Test public void testProducersKeepTheirOrder() throws Exception
+    {
+        final int producers = 4;
+        final int count = 10000;
+        final MpscQueue<int[]> queue = new MpscQueue<>();
+        final List<Thread> threads = new ArrayList<>();
+        for(int p = 0; p < producers; p++)
+        {
+            final int producer = p;
+            final Thread t = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for(int i = 0; i < count; i++)
+                    {
+                        queue.offer(new int[] {producer, i});
+                    }
+                }
+            };
+            t.start();
+            threads.add(t);
+        }
+
+        final int[] next = new int[producers];
+        int received = 0;
+        while ( received < producers * count )
+        {
+            final int[] value = queue.poll();
+            if ( value == null )
+            {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(next[value[0]], value[1]);
+            next[value[0]]++;
+            received++;
+        }
+        for(final Thread t : threads)
+        {
+            t.join();
+        }
+        assertNull(queue.poll());
+    }
+}
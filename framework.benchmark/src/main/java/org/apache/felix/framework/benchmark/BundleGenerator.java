@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.osgi.framework.Constants;
+
+/**
+ * Generates synthetic bundles and manifests. The generated content only
+ * depends on the arguments, so that benchmark results are reproducible.
+**/
+public class BundleGenerator
+{
+    /**
+     * Creates the headers of a bundle with the given number of exported
+     * and imported packages.
+    **/
+    public static Map<String, Object> createHeaders(String bsn, int packages)
+    {
+        Map<String, Object> headers = new HashMap<String, Object>();
+        headers.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+        headers.put(Constants.BUNDLE_SYMBOLICNAME, bsn + ";singleton:=true");
+        headers.put(Constants.BUNDLE_VERSION, "1.2.3.qualifier");
+        StringBuilder exports = new StringBuilder();
+        StringBuilder imports = new StringBuilder();
+        for (int i = 0; i < packages; i++)
+        {
+            if (i > 0)
+            {
+                exports.append(',');
+                imports.append(',');
+            }
+            exports.append(bsn).append(".export").append(i)
+                .append(";version=\"1.").append(i % 10).append(".0\"")
+                .append(";uses:=\"").append(bsn).append(".import").append(i).append('"');
+            imports.append(bsn).append(".import").append(i)
+                .append(";version=\"[1.").append(i % 10).append(",2)\"");
+        }
+        if (packages > 0)
+        {
+            headers.put(Constants.EXPORT_PACKAGE, exports.toString());
+            headers.put(Constants.IMPORT_PACKAGE, imports.toString());
+        }
+        headers.put(Constants.REQUIRE_CAPABILITY,
+            "osgi.ee;filter:=\"(&(osgi.ee=JavaSE)(version>=1.6))\"");
+        return headers;
+    }
+
+    /**
+     * Creates a bundle jar with the given headers, which may be
+     * <tt>null</tt>, containing the class files of the given classes.
+    **/
+    public static byte[] createBundle(
+        String bsn, String exports, String imports, Class<?>... classes)
+        throws IOException
+    {
+        Manifest mf = new Manifest();
+        Attributes attrs = mf.getMainAttributes();
+        attrs.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attrs.putValue(Constants.BUNDLE_MANIFESTVERSION, "2");
+        attrs.putValue(Constants.BUNDLE_SYMBOLICNAME, bsn);
+        attrs.putValue(Constants.BUNDLE_VERSION, "1.0.0");
+        if (exports != null)
+        {
+            attrs.putValue(Constants.EXPORT_PACKAGE, exports);
+        }
+        if (imports != null)
+        {
+            attrs.putValue(Constants.IMPORT_PACKAGE, imports);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JarOutputStream os = new JarOutputStream(bytes, mf);
+        try
+        {
+            for (Class<?> clazz : classes)
+            {
+                String name = clazz.getName().replace('.', '/') + ".class";
+                os.putNextEntry(new JarEntry(name));
+                InputStream is = clazz.getClassLoader().getResourceAsStream(name);
+                try
+                {
+                    byte[] buf = new byte[4096];
+                    for (int n = is.read(buf); n >= 0; n = is.read(buf))
+                    {
+                        os.write(buf, 0, n);
+                    }
+                }
+                finally
+                {
+                    is.close();
+                }
+                os.closeEntry();
+            }
+        }
+        finally
+        {
+            os.close();
+        }
+        return bytes.toByteArray();
+    }
+}
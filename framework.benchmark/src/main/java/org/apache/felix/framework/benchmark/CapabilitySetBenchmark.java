@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.benchmark;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.framework.capabilityset.CapabilitySet;
+import org.apache.felix.framework.capabilityset.SimpleFilter;
+import org.apache.felix.framework.wiring.BundleCapabilityImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Constants;
+import org.osgi.framework.Version;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.resource.Capability;
+
+/**
+ * Benchmarks of matching requirement filters against a capability set
+ * indexed like the package capabilities of the resolver state.
+**/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CapabilitySetBenchmark
+{
+    @Param({ "100", "10000" })
+    public int capabilities;
+
+    private CapabilitySet m_capSet;
+    private SimpleFilter m_indexed;
+    private SimpleFilter m_range;
+    private SimpleFilter m_unindexed;
+
+    @Setup
+    public void setUp()
+    {
+        m_capSet = new CapabilitySet(
+            Collections.singletonList(BundleRevision.PACKAGE_NAMESPACE),
+            Constants.VERSION_ATTRIBUTE, true);
+        for (int i = 0; i < capabilities; i++)
+        {
+            // Every package is exported in several versions.
+            Map<String, Object> attrs = new HashMap<String, Object>();
+            attrs.put(BundleRevision.PACKAGE_NAMESPACE, "pkg" + (i / 10));
+            attrs.put(Constants.VERSION_ATTRIBUTE, new Version(i % 10, 0, 0));
+            attrs.put(Constants.BUNDLE_SYMBOLICNAME_ATTRIBUTE, "bundle" + i);
+            m_capSet.addCapability(new BundleCapabilityImpl(
+                null, BundleRevision.PACKAGE_NAMESPACE,
+                Collections.<String, String>emptyMap(), attrs));
+        }
+
+        m_indexed = SimpleFilter.parse("(osgi.wiring.package=pkg5)");
+        m_range = SimpleFilter.parse(
+            "(&(osgi.wiring.package=pkg5)(version>=2.0.0)(!(version>=4.0.0)))");
+        m_unindexed = SimpleFilter.parse("(bundle-symbolic-name=bundle42)");
+    }
+
+    @Benchmark
+    public Set<Capability> matchIndexed()
+    {
+        return m_capSet.match(m_indexed, false);
+    }
+
+    @Benchmark
+    public Set<Capability> matchVersionRange()
+    {
+        return m_capSet.match(m_range, false);
+    }
+
+    @Benchmark
+    public Set<Capability> matchUnindexed()
+    {
+        return m_capSet.match(m_unindexed, false);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.benchmark;
+
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.framework.FilterImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Constants;
+import org.osgi.framework.Version;
+
+/**
+ * Benchmarks of matching an LDAP filter against service properties.
+**/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FilterBenchmark
+{
+    @Param({ "(objectClass=org.example.Service)",
+        "(&(objectClass=org.example.Service)(service.ranking>=10)(|(name=ex*)(version>=2.0)))" })
+    public String filter;
+
+    private FilterImpl m_filter;
+    private Map<String, Object> m_map;
+    private Hashtable<String, Object> m_dictionary;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        m_filter = new FilterImpl(filter);
+        m_map = new HashMap<String, Object>();
+        m_map.put(Constants.OBJECTCLASS, new String[] { "org.example.Other", "org.example.Service" });
+        m_map.put(Constants.SERVICE_RANKING, Integer.valueOf(42));
+        m_map.put(Constants.SERVICE_ID, Long.valueOf(7));
+        m_map.put("name", "example");
+        m_map.put("version", new Version(2, 1, 0));
+        m_dictionary = new Hashtable<String, Object>(m_map);
+    }
+
+    @Benchmark
+    public boolean matchMap()
+    {
+        return m_filter.matches(m_map);
+    }
+
+    @Benchmark
+    public boolean matchDictionary()
+    {
+        return m_filter.match(m_dictionary);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.felix.framework.Felix;
+import org.apache.felix.framework.cache.BundleCache;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.wiring.FrameworkWiring;
+
+/**
+ * Reports the heap used by a framework with a number of installed and
+ * resolved synthetic bundles, where every bundle exports some packages
+ * and imports the packages of other bundles. Run it against different
+ * framework builds to compare their footprint, or pass <tt>true</tt> as
+ * second argument to memory-map the bundle JAR files of the cache:
+ * <pre>
+ * java -cp target/benchmarks.jar \
+ *     org.apache.felix.framework.benchmark.FootprintReport [bundles] [mmap]
+ * </pre>
+**/
+public class FootprintReport
+{
+    private static final int PACKAGES = 5;
+
+    public static void main(String[] args) throws Exception
+    {
+        int bundles = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+        String mmap = (args.length > 1) ? args[1] : "false";
+
+        File cacheDir = File.createTempFile("felix-footprint", ".dir");
+        cacheDir.delete();
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(Constants.FRAMEWORK_STORAGE, cacheDir.getPath());
+        params.put(Constants.FRAMEWORK_STORAGE_CLEAN,
+            Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+        params.put(BundleCache.CACHE_MMAP_PROP, mmap);
+        Framework framework = new Felix(params);
+        framework.start();
+        try
+        {
+            long before = usedHeap();
+            BundleContext context = framework.getBundleContext();
+            for (int i = 0; i < bundles; i++)
+            {
+                context.installBundle("bundle" + i,
+                    new ByteArrayInputStream(BundleGenerator.createBundle(
+                        "bundle" + i, exports(i), imports(i, bundles))));
+            }
+            framework.adapt(FrameworkWiring.class).resolveBundles(null);
+            long after = usedHeap();
+
+            System.out.println("Bundles:             " + bundles);
+            System.out.println("Mapped JAR files:    " + mmap);
+            System.out.println("Heap used (KB):      " + ((after - before) / 1024));
+            System.out.println("Per bundle (bytes):  " + ((after - before) / bundles));
+        }
+        finally
+        {
+            framework.stop();
+            framework.waitForStop(10000);
+            deleteDir(cacheDir);
+        }
+    }
+
+    private static String exports(int bundle)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < PACKAGES; i++)
+        {
+            if (i > 0)
+            {
+                sb.append(',');
+            }
+            sb.append("org.example.bundle").append(bundle).append(".pkg").append(i)
+                .append(";version=\"1.").append(i).append(".0\"")
+                .append(";uses:=\"org.example.bundle").append(bundle).append(".pkg0\"");
+        }
+        return sb.toString();
+    }
+
+    private static String imports(int bundle, int bundles)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= PACKAGES; i++)
+        {
+            if (i > 1)
+            {
+                sb.append(',');
+            }
+            sb.append("org.example.bundle").append((bundle + i) % bundles).append(".pkg").append(i - 1)
+                .append(";version=\"[1.").append(i - 1).append(",2)\"");
+        }
+        return sb.toString();
+    }
+
+    private static long usedHeap() throws InterruptedException
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++)
+        {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void deleteDir(File root) throws IOException
+    {
+        File[] files = root.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                deleteDir(file);
+            }
+        }
+        root.delete();
+    }
+}
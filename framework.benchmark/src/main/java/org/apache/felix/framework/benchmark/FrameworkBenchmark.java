@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.felix.framework.Felix;
+import org.apache.felix.framework.benchmark.exported.Exported;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.launch.Framework;
+
+/**
+ * Benchmarks of the bundle and service operations of a running framework
+ * with a configurable number of installed bundles and registered services.
+**/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FrameworkBenchmark
+{
+    private static final String PKG = Exported.class.getPackage().getName();
+
+    @Param({ "10", "100" })
+    public int bundles;
+
+    @Param({ "10", "1000" })
+    public int services;
+
+    private File m_cacheDir;
+    private Framework m_framework;
+    private BundleContext m_context;
+    private Bundle m_importer;
+    private ServiceReference<?> m_reference;
+    private byte[] m_bundle;
+    private int m_installs;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        m_cacheDir = File.createTempFile("felix-benchmark", ".dir");
+        m_cacheDir.delete();
+        m_cacheDir.mkdirs();
+
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(Constants.FRAMEWORK_STORAGE, m_cacheDir.getPath());
+        params.put(Constants.FRAMEWORK_STORAGE_CLEAN,
+            Constants.FRAMEWORK_STORAGE_CLEAN_ONFIRSTINIT);
+        m_framework = new Felix(params);
+        m_framework.start();
+        m_context = m_framework.getBundleContext();
+
+        // One bundle exports the package of a class, the others import it.
+        m_context.installBundle("exporter", new ByteArrayInputStream(
+            BundleGenerator.createBundle("exporter", PKG, null, Exported.class)));
+        for (int i = 0; i < bundles; i++)
+        {
+            Bundle b = m_context.installBundle("importer" + i, new ByteArrayInputStream(
+                BundleGenerator.createBundle("importer" + i, null, PKG)));
+            b.start();
+            if (m_importer == null)
+            {
+                m_importer = b;
+            }
+        }
+
+        for (int i = 0; i < services; i++)
+        {
+            Hashtable<String, Object> props = new Hashtable<String, Object>();
+            props.put("index", Integer.valueOf(i));
+            props.put("group", "g" + (i % 10));
+            m_context.registerService(
+                (i % 2 == 0) ? Runnable.class.getName() : Object.class.getName(),
+                new Runnable()
+                {
+                    public void run()
+                    {
+                    }
+                }, props);
+        }
+        m_reference = m_context.getServiceReference(Runnable.class.getName());
+
+        m_bundle = BundleGenerator.createBundle("installed", null, PKG);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        m_framework.stop();
+        m_framework.waitForStop(10000);
+        deleteDir(m_cacheDir);
+    }
+
+    @Benchmark
+    public long installBundle() throws Exception
+    {
+        Bundle b = m_context.installBundle(
+            "installed" + (m_installs++), new ByteArrayInputStream(m_bundle));
+        long id = b.getBundleId();
+        b.uninstall();
+        return id;
+    }
+
+    @Benchmark
+    public ServiceReference<?>[] getServiceReferences() throws Exception
+    {
+        return m_context.getServiceReferences(Runnable.class.getName(), null);
+    }
+
+    @Benchmark
+    public ServiceReference<?>[] getServiceReferencesFiltered() throws Exception
+    {
+        return m_context.getServiceReferences(
+            Runnable.class.getName(), "(&(group=g4)(index>=4))");
+    }
+
+    @Benchmark
+    public ServiceReference<?>[] getServiceReferencesFilterOnly() throws Exception
+    {
+        return m_context.getServiceReferences((String) null, "(group=g4)");
+    }
+
+    @Benchmark
+    public Object getAndUngetService()
+    {
+        Object service = m_context.getService(m_reference);
+        m_context.ungetService(m_reference);
+        return service;
+    }
+
+    @Benchmark
+    public Class<?> loadClassThroughImport() throws Exception
+    {
+        return m_importer.loadClass(Exported.class.getName());
+    }
+
+    @Benchmark
+    public Object loadMissingClassThroughImport()
+    {
+        try
+        {
+            return m_importer.loadClass(PKG + ".Missing");
+        }
+        catch (ClassNotFoundException ex)
+        {
+            return ex;
+        }
+    }
+
+    private static void deleteDir(File root) throws IOException
+    {
+        File[] files = root.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                deleteDir(file);
+            }
+        }
+        root.delete();
+    }
+}
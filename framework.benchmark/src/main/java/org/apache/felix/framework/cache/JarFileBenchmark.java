@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.cache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.apache.felix.framework.Logger;
+import org.apache.felix.framework.util.WeakZipFileFactory;
+import org.apache.felix.framework.util.WeakZipFileFactory.WeakZipFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of opening a bundle JAR file from the cache and reading an
+ * entry of it, once as a ZIP file, like the cache does by default, and once
+ * memory-mapped together with its persisted index, like the cache does if
+ * <tt>felix.cache.mmap</tt> is set. The benchmark lives in the package of
+ * the cache, as the mapped JAR file is internal. Run it with <tt>-prof gc</tt>
+ * to compare the heap allocated per open.
+**/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JarFileBenchmark
+{
+    @Param({ "100", "5000" })
+    public int entries;
+
+    private final Logger m_logger = new Logger();
+    private final WeakZipFileFactory m_zipFactory = new WeakZipFileFactory(0);
+    private File m_dir;
+    private File m_jar;
+    private File m_index;
+    private String m_entry;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        m_dir = File.createTempFile("felix-jarfile", ".dir");
+        m_dir.delete();
+        m_dir.mkdirs();
+        m_jar = new File(m_dir, "bundle.jar");
+        m_index = new File(m_dir, m_jar.getName() + MappedJarFile.INDEX_SUFFIX);
+
+        Manifest mf = new Manifest();
+        mf.getMainAttributes().putValue("Manifest-Version", "1.0");
+        JarOutputStream os = new JarOutputStream(new FileOutputStream(m_jar), mf);
+        try
+        {
+            byte[] content = new byte[512];
+            for (int i = 0; i < entries; i++)
+            {
+                os.putNextEntry(new JarEntry(
+                    "org/example/pkg" + (i % 50) + "/Class" + i + ".class"));
+                os.write(content);
+                os.closeEntry();
+            }
+        }
+        finally
+        {
+            os.close();
+        }
+        m_entry = "org/example/pkg" + ((entries / 2) % 50)
+            + "/Class" + (entries / 2) + ".class";
+
+        // Persist the index up front, as it is on every open but the first.
+        MappedJarFile.open(m_logger, m_jar, m_index).close();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        m_index.delete();
+        m_jar.delete();
+        m_dir.delete();
+    }
+
+    @Benchmark
+    public int openZip() throws IOException
+    {
+        WeakZipFile zipFile = m_zipFactory.create(m_jar);
+        try
+        {
+            InputStream is = zipFile.getInputStream(zipFile.getEntry(m_entry));
+            try
+            {
+                return is.read(new byte[512]);
+            }
+            finally
+            {
+                is.close();
+            }
+        }
+        finally
+        {
+            zipFile.close();
+        }
+    }
+
+    @Benchmark
+    public int openMapped() throws IOException
+    {
+        MappedJarFile mappedFile = MappedJarFile.open(m_logger, m_jar, m_index);
+        try
+        {
+            return mappedFile.getBytes(mappedFile.find(m_entry)).length;
+        }
+        finally
+        {
+            mappedFile.close();
+        }
+    }
+}
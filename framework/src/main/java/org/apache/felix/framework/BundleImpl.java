@@ -1272,7 +1272,8 @@ class BundleImpl implements Bundle, BundleRevisions
             Long.toString(getBundleId())
                 + "." + m_archive.getCurrentRevisionNumber().toString(),
             headerMap,
-            m_archive.getCurrentRevision().getContent());
+            m_archive.getCurrentRevision().getContent(),
+            m_archive.getCurrentRevision().getManifestModelFile());
 
         // For R4 bundles, verify that the bundle symbolic name + version
         // is unique unless this check has been disabled.
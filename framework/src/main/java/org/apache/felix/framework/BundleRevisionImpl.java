@@ -36,6 +36,7 @@ import org.osgi.resource.Capability;
 import org.osgi.resource.Requirement;
 import org.osgi.resource.Resource;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
@@ -107,36 +108,62 @@ public class BundleRevisionImpl implements BundleRevision, Resource
     BundleRevisionImpl(
         BundleImpl bundle, String id, Map<String, Object> headerMap, Content content)
         throws BundleException
+    {
+        this(bundle, id, headerMap, content, null);
+    }
+
+    /**
+     * Creates a revision whose parsed manifest is cached in the given file,
+     * if it is not <tt>null</tt>.
+    **/
+    BundleRevisionImpl(
+        BundleImpl bundle, String id, Map<String, Object> headerMap, Content content,
+        File modelFile)
+        throws BundleException
     {
         m_bundle = bundle;
         m_id = id;
         m_headerMap = headerMap;
         m_content = content;
 
-        ManifestParser mp = new ManifestParser(
-            bundle.getFramework().getLogger(),
-            bundle.getFramework().getConfig(),
-            this,
-            m_headerMap);
+        // Use the cached manifest model, if there is one for these headers.
+        ManifestModel model = (modelFile == null)
+            ? null
+            : ManifestModel.read(bundle.getFramework(), this, m_headerMap, modelFile);
+        List<NativeLibrary> nativeLibs = null;
+        if (model == null)
+        {
+            ManifestParser mp = new ManifestParser(
+                bundle.getFramework().getLogger(),
+                bundle.getFramework().getConfig(),
+                this,
+                m_headerMap);
+            model = new ManifestModel(mp);
+            nativeLibs = mp.getLibraries();
+            if (modelFile != null)
+            {
+                model.write(bundle.getFramework(), m_headerMap, modelFile);
+            }
+        }
 
         // Record some of the parsed metadata. Note, if this is an extension
         // bundle it's exports are removed, since they will be added to the
         // system bundle directly later on.
 
-        m_isExtension = mp.isExtension();
-        m_manifestVersion = mp.getManifestVersion();
-        m_version = mp.getBundleVersion();
-        m_declaredCaps = mp.getCapabilities();
-        m_declaredReqs = mp.getRequirements();
-        m_declaredNativeLibs = mp.getLibraries();
-        m_declaredActivationPolicy = mp.getActivationPolicy();
-        m_activationExcludes = (mp.getActivationExcludeDirective() == null)
+        m_isExtension = model.isExtension();
+        m_manifestVersion = model.getManifestVersion();
+        m_version = model.getBundleVersion();
+        m_declaredCaps = model.getCapabilities();
+        m_declaredReqs = model.getRequirements();
+        m_declaredNativeLibs = nativeLibs;
+        m_declaredActivationPolicy = model.getActivationPolicy();
+        m_activationExcludes = (model.getActivationExcludeDirective() == null)
             ? null
-            : ManifestParser.parseDelimitedString(mp.getActivationExcludeDirective(), ",");
-        m_activationIncludes = (mp.getActivationIncludeDirective() == null)
+            : ManifestParser.parseDelimitedString(model.getActivationExcludeDirective(), ",");
+        m_activationIncludes = (model.getActivationIncludeDirective() == null)
             ? null
-            : ManifestParser.parseDelimitedString(mp.getActivationIncludeDirective(), ",");
-        m_symbolicName = mp.getSymbolicName();
+            : ManifestParser.parseDelimitedString(model.getActivationIncludeDirective(), ",");
+        m_symbolicName = model.getSymbolicName();
         m_isFragment = m_headerMap.containsKey(Constants.FRAGMENT_HOST);
     }
 
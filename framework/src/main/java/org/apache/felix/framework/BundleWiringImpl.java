@@ -172,6 +172,13 @@ public class BundleWiringImpl implements BundleWiring
 
     private volatile ConcurrentHashMap<String, ClassLoader> m_accessorLookupCache;
 
+    // Cache of lookup results by delegation, null if disabled.
+    private final WiringLookupCache m_lookupCache;
+
+    // Flag indicating whether the resolved or woven requirements contain
+    // dynamic imports, which may make missing packages available later.
+    private volatile boolean m_hasDynamicImports;
+
     BundleWiringImpl(
         Logger logger, Map configMap, StatefulResolver resolver,
         BundleRevisionImpl revision, List<BundleRevision> fragments,
@@ -271,6 +278,8 @@ public class BundleWiringImpl implements BundleWiring
             }
         }
         m_resolvedReqs = Util.newImmutableList(reqList);
+        List<BundleRequirement> dynamics = Util.getDynamicRequirements(m_resolvedReqs);
+        m_hasDynamicImports = (dynamics != null) && !dynamics.isEmpty();
 
         // Calculate resolved list of capabilities, which includes:
         // 1. All capabilities from host and any fragments except for exported
@@ -463,6 +472,21 @@ public class BundleWiringImpl implements BundleWiring
 
         m_useLocalURLs =
             m_configMap.get(FelixConstants.USE_LOCALURLS_PROP) != null;
+
+        int lookupCacheSize = 0;
+        String lookupCacheStr = (String) m_configMap.get(FelixConstants.WIRING_LOOKUPCACHE_SIZE_PROP);
+        if (lookupCacheStr != null)
+        {
+            try
+            {
+                lookupCacheSize = Integer.parseInt(lookupCacheStr.trim());
+            }
+            catch (NumberFormatException ex)
+            {
+                lookupCacheSize = 0;
+            }
+        }
+        m_lookupCache = (lookupCacheSize > 0) ? new WiringLookupCache(lookupCacheSize) : null;
     }
 
     private static List<List<String>> parsePkgFilters(BundleCapability cap, String filtername)
@@ -502,6 +526,10 @@ public class BundleWiringImpl implements BundleWiring
         m_classLoader = null;
         m_isDisposed = true;
         m_accessorLookupCache = null;
+        if (m_lookupCache != null)
+        {
+            m_lookupCache.clear();
+        }
     }
 
     // TODO: OSGi R4.3 - This really shouldn't be public, but it is needed by the
@@ -683,6 +711,34 @@ public class BundleWiringImpl implements BundleWiring
         // both values updates at the same time, but it seems unlikely
         // to cause any issues.
         m_wires = Util.newImmutableList(wires);
+
+        // Lookups in the newly imported package must not be answered
+        // from the cache anymore.
+        if (m_lookupCache != null)
+        {
+            m_lookupCache.clear();
+        }
+    }
+
+    /**
+     * Returns the number of lookups by delegation answered from the lookup
+     * cache of this wiring, which is enabled by the
+     * <tt>felix.wiring.lookupcache.size</tt> property.
+     * @return the number of cache hits or <tt>-1</tt> if the cache is disabled.
+    **/
+    public long getLookupCacheHits()
+    {
+        return (m_lookupCache != null) ? m_lookupCache.getHits() : -1;
+    }
+
+    /**
+     * Returns the number of lookups by delegation which could not be
+     * answered from the lookup cache of this wiring.
+     * @return the number of cache misses or <tt>-1</tt> if the cache is disabled.
+    **/
+    public long getLookupCacheMisses()
+    {
+        return (m_lookupCache != null) ? m_lookupCache.getMisses() : -1;
     }
 
     @Override
@@ -1464,10 +1520,38 @@ public class BundleWiringImpl implements BundleWiring
                     }
                 }
 
+                // Repeated lookups of classes or resources which could not be
+                // found before are answered by the lookup cache, except for
+                // implicit boot delegation which depends on the caller.
+                WiringLookupCache cache = (accessor) ? null : m_lookupCache;
+                if ((cache != null) && cache.isMissing(name, isClass))
+                {
+                    result = tryImplicitBootDelegation(name, isClass);
+                    if (result != null)
+                    {
+                        return result;
+                    }
+                    if (isClass)
+                    {
+                        throw new ClassNotFoundException(
+                                name + " not found by " + this.getBundle());
+                    }
+                    throw new ResourceNotFoundException(
+                            name + " not found by " + this.getBundle());
+                }
+                int source = (cache != null)
+                    ? cache.getPackageSource(pkgName) : WiringLookupCache.SOURCE_UNKNOWN;
+
                 // Delegate any packages listed in the boot delegation
                 // property to the parent class loader.
-                if (shouldBootDelegate(pkgName))
+                if ((source == WiringLookupCache.SOURCE_BOOT)
+                    || ((source == WiringLookupCache.SOURCE_UNKNOWN) && shouldBootDelegate(pkgName)))
                 {
+                    if ((cache != null) && (source == WiringLookupCache.SOURCE_UNKNOWN))
+                    {
+                        cache.setPackageSource(pkgName, WiringLookupCache.SOURCE_BOOT);
+                    }
+
                     try
                     {
                         // Get the appropriate class loader for delegation.
@@ -1544,8 +1628,24 @@ public class BundleWiringImpl implements BundleWiring
 
                 // Look in the revision's imports. Note that the search may
                 // be aborted if this method throws an exception, otherwise
-                // it continues if a null is returned.
-                result = searchImports(pkgName, name, isClass);
+                // it continues if a null is returned. A package known to be
+                // imported goes straight to its exporter and a package known
+                // to be local skips the imports.
+                BundleRevision provider = (source == WiringLookupCache.SOURCE_IMPORT)
+                    ? m_importedPkgs.get(pkgName) : null;
+                if (provider != null)
+                {
+                    result = searchImportedPackage(provider, name, isClass);
+                }
+                else if (source != WiringLookupCache.SOURCE_LOCAL)
+                {
+                    result = searchImports(pkgName, name, isClass);
+                    if ((result != null) && (source == WiringLookupCache.SOURCE_UNKNOWN)
+                        && (cache != null) && m_importedPkgs.containsKey(pkgName))
+                    {
+                        cache.setPackageSource(pkgName, WiringLookupCache.SOURCE_IMPORT);
+                    }
+                }
 
                 // If not found, try the revision's own class path.
                 if (result == null)
@@ -1573,6 +1673,23 @@ public class BundleWiringImpl implements BundleWiring
                     if (result == null)
                     {
                         result = searchDynamicImports(pkgName, name, isClass);
+
+                        // Only remember the failure if neither a later dynamic
+                        // import nor a required bundle, which may import it
+                        // dynamically itself, can make it available.
+                        if ((result == null) && (cache != null)
+                            && !m_requiredPkgs.containsKey(pkgName) && !m_hasDynamicImports)
+                        {
+                            cache.setMissing(name, isClass);
+                        }
+                    }
+                    // Required packages may be split between the required
+                    // bundles and the local content, so only packages which
+                    // are neither imported nor required are known to be local.
+                    else if ((source == WiringLookupCache.SOURCE_UNKNOWN) && (cache != null)
+                        && !m_requiredPkgs.containsKey(pkgName))
+                    {
+                        cache.setPackageSource(pkgName, WiringLookupCache.SOURCE_LOCAL);
                     }
                 }
             }
@@ -1613,23 +1730,7 @@ public class BundleWiringImpl implements BundleWiring
         BundleRevision provider = m_importedPkgs.get(pkgName);
         if (provider != null)
         {
-            // If we find the class or resource, then return it.
-            Object result = (isClass)
-                ? (Object) ((BundleWiringImpl) provider.getWiring()).getClassByDelegation(name)
-                        : (Object) ((BundleWiringImpl) provider.getWiring()).getResourceByDelegation(name);
-                if (result != null)
-                {
-                    return result;
-                }
-
-                // If no class or resource was found, then we must throw an exception
-                // since the provider of this package did not contain the
-                // requested class and imported packages are atomic.
-                if (isClass)
-                {
-                    throw new ClassNotFoundException(name);
-                }
-                throw new ResourceNotFoundException(name);
+            return searchImportedPackage(provider, name, isClass);
         }
 
         // Check if the package is required.
@@ -1662,6 +1763,28 @@ public class BundleWiringImpl implements BundleWiring
         return null;
     }
 
+    private Object searchImportedPackage(BundleRevision provider, String name, boolean isClass)
+            throws ClassNotFoundException, ResourceNotFoundException
+    {
+        // If we find the class or resource, then return it.
+        Object result = (isClass)
+            ? (Object) ((BundleWiringImpl) provider.getWiring()).getClassByDelegation(name)
+            : (Object) ((BundleWiringImpl) provider.getWiring()).getResourceByDelegation(name);
+        if (result != null)
+        {
+            return result;
+        }
+
+        // If no class or resource was found, then we must throw an exception
+        // since the provider of this package did not contain the
+        // requested class and imported packages are atomic.
+        if (isClass)
+        {
+            throw new ClassNotFoundException(name);
+        }
+        throw new ResourceNotFoundException(name);
+    }
+
     private Object searchDynamicImports(
             final String pkgName, final String name, final boolean isClass)
                     throws ClassNotFoundException, ResourceNotFoundException
@@ -2272,6 +2395,11 @@ public class BundleWiringImpl implements BundleWiring
                             allWovenReqs.addAll(0, m_wiring.m_wovenReqs);
                         }
                         m_wiring.m_wovenReqs = allWovenReqs;
+                        m_wiring.m_hasDynamicImports = true;
+                        if (m_wiring.m_lookupCache != null)
+                        {
+                            m_wiring.m_lookupCache.clear();
+                        }
                     }
                 }
             }
@@ -28,10 +28,20 @@ import java.util.EventListener;
 import java.util.EventObject;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.felix.framework.util.*;
 import org.osgi.framework.AllServiceListener;
@@ -78,14 +88,55 @@ public class EventDispatcher
 
     private static final SecureAction m_secureAction = new SecureAction();
 
+    // Number of threads delivering the asynchronous events of this
+    // dispatcher from per listener queues, or zero if the shared
+    // dispatch thread is used.
+    private final int m_threads;
+    // Time in milliseconds after which listeners still handling an
+    // asynchronous event are reported, or zero to not report them.
+    private final long m_timeout;
+    // Queues of asynchronous events which are not yet delivered.
+    private final ConcurrentMap<ListenerInfo, ListenerQueue> m_queues =
+        new ConcurrentHashMap<ListenerInfo, ListenerQueue>();
+    private volatile ThreadPoolExecutor m_executor = null;
+    private volatile Thread m_watchdog = null;
+
     public EventDispatcher(Logger logger, ServiceRegistry registry)
+    {
+        this(logger, registry, 0, 0);
+    }
+
+    /**
+     * Creates an event dispatcher. If a number of threads is given, the
+     * asynchronous events of this dispatcher are not delivered by the
+     * dispatch thread shared by all dispatchers, but by a pool of threads
+     * of its own. Every listener then has its own queue of events, so that
+     * a slow listener only delays its own events, and the events of each
+     * listener are delivered one at a time in the order they were fired.
+     * @param logger the logger to use.
+     * @param registry the service registry of the framework.
+     * @param threads the number of threads delivering asynchronous events,
+     *        or zero to use the shared dispatch thread.
+     * @param timeout the time in milliseconds after which a listener which
+     *        is still handling an asynchronous event is reported, or zero
+     *        to not report listeners.
+    **/
+    public EventDispatcher(Logger logger, ServiceRegistry registry, int threads, long timeout)
     {
         m_logger = logger;
         m_registry = registry;
+        m_threads = threads;
+        m_timeout = timeout;
     }
 
     public void startDispatching()
     {
+        if (m_threads > 0)
+        {
+            startQueues();
+            return;
+        }
+
         synchronized (m_threadLock)
         {
             // Start event dispatching thread if necessary.
@@ -125,6 +176,12 @@ public class EventDispatcher
 
     public void stopDispatching()
     {
+        if (m_threads > 0)
+        {
+            stopQueues();
+            return;
+        }
+
         synchronized (m_threadLock)
         {
             // Return if already dead or stopping.
@@ -165,6 +222,108 @@ public class EventDispatcher
         }
     }
 
+    private void startQueues()
+    {
+        synchronized (m_queues)
+        {
+            if (m_executor != null)
+            {
+                return;
+            }
+
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                m_threads, m_threads,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory()
+                {
+                    final AtomicInteger counter = new AtomicInteger();
+                    @Override
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread thread = new Thread(r, "FelixDispatchQueue-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            executor.allowCoreThreadTimeOut(true);
+            m_executor = executor;
+
+            if (m_timeout > 0)
+            {
+                m_watchdog = new Thread(new Runnable() {
+                    @Override
+                    public void run()
+                    {
+                        watch();
+                    }
+                }, "FelixDispatchWatchdog");
+                m_watchdog.setDaemon(true);
+                m_watchdog.start();
+            }
+        }
+    }
+
+    private void stopQueues()
+    {
+        ThreadPoolExecutor executor;
+        Thread watchdog;
+        synchronized (m_queues)
+        {
+            executor = m_executor;
+            watchdog = m_watchdog;
+            m_executor = null;
+            m_watchdog = null;
+        }
+
+        if (executor != null)
+        {
+            // Wait for the queued events to be delivered; no new events
+            // are queued anymore.
+            executor.shutdown();
+            while (!executor.isTerminated())
+            {
+                try
+                {
+                    executor.awaitTermination(1, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException ex)
+                {
+                    // Keep waiting like the shared dispatch thread does.
+                }
+            }
+        }
+        if (watchdog != null)
+        {
+            watchdog.interrupt();
+        }
+    }
+
+    /**
+     * This is the watchdog thread's main loop, which reports listeners
+     * taking longer than the configured time to handle an event.
+    **/
+    private void watch()
+    {
+        Thread current = Thread.currentThread();
+        while (m_watchdog == current)
+        {
+            try
+            {
+                Thread.sleep(Math.max(m_timeout / 2, 10));
+            }
+            catch (InterruptedException ex)
+            {
+                continue;
+            }
+            long now = System.currentTimeMillis();
+            for (ListenerQueue queue : m_queues.values())
+            {
+                queue.check(now);
+            }
+        }
+    }
+
     public Filter addListener(BundleContext bc, Class clazz, EventListener l, Filter filter)
     {
         // Verify the listener.
@@ -769,6 +928,12 @@ public class EventDispatcher
         Map<BundleContext, List<ListenerInfo>> listeners,
         EventObject event)
     {
+        if (dispatcher.m_threads > 0)
+        {
+            dispatcher.queueEvent(listeners, event);
+            return;
+        }
+
         //TODO: should possibly check this within thread lock, seems to be ok though without
         // If dispatch thread is stopped, then ignore dispatch request.
         if (m_stopping || m_thread == null)
@@ -806,6 +971,41 @@ public class EventDispatcher
         }
     }
 
+    private void queueEvent(
+        Map<BundleContext, List<ListenerInfo>> listeners, EventObject event)
+    {
+        // If the dispatcher is stopped, then ignore dispatch request.
+        Executor executor = m_executor;
+        if (executor == null)
+        {
+            return;
+        }
+
+        for (Entry<BundleContext, List<ListenerInfo>> entry : listeners.entrySet())
+        {
+            for (ListenerInfo info : entry.getValue())
+            {
+                // Drained queues are closed, in which case a new one is
+                // created for the listener.
+                boolean queued = false;
+                while (!queued)
+                {
+                    ListenerQueue queue = m_queues.get(info);
+                    if (queue == null)
+                    {
+                        queue = new ListenerQueue(this, info);
+                        ListenerQueue prev = m_queues.putIfAbsent(info, queue);
+                        if (prev != null)
+                        {
+                            queue = prev;
+                        }
+                    }
+                    queued = queue.add(executor, event);
+                }
+            }
+        }
+    }
+
     private static void fireEventImmediately(
         EventDispatcher dispatcher, int type,
         Map<BundleContext, List<ListenerInfo>> listeners,
@@ -818,44 +1018,51 @@ public class EventDispatcher
             {
                 for (ListenerInfo info : entry.getValue())
                 {
-                    Bundle bundle = info.getBundle();
-                    EventListener l = info.getListener();
-                    Filter filter = info.getParsedFilter();
-                    Object acc = info.getSecurityContext();
-
-                    try
-                    {
-                        if (type == Request.FRAMEWORK_EVENT)
-                        {
-                            invokeFrameworkListenerCallback(bundle, l, event);
-                        }
-                        else if (type == Request.BUNDLE_EVENT)
-                        {
-                            invokeBundleListenerCallback(bundle, l, event);
-                        }
-                        else if (type == Request.SERVICE_EVENT)
-                        {
-                            invokeServiceListenerCallback(
-                                bundle, l, filter, acc, event, oldProps);
-                        }
-                    }
-                    catch (Throwable th)
-                    {
-                        if ((type != Request.FRAMEWORK_EVENT)
-                            || (((FrameworkEvent) event).getType() != FrameworkEvent.ERROR))
-                        {
-                            dispatcher.m_logger.log(bundle,
-                                Logger.LOG_ERROR,
-                                "EventDispatcher: Error during dispatch.", th);
-                            dispatcher.fireFrameworkEvent(
-                                new FrameworkEvent(FrameworkEvent.ERROR, bundle, th));
-                        }
-                    }
+                    invokeListener(dispatcher, type, info, event, oldProps);
                 }
             }
         }
     }
 
+    private static void invokeListener(
+        EventDispatcher dispatcher, int type, ListenerInfo info,
+        EventObject event, Dictionary oldProps)
+    {
+        Bundle bundle = info.getBundle();
+        EventListener l = info.getListener();
+        Filter filter = info.getParsedFilter();
+        Object acc = info.getSecurityContext();
+
+        try
+        {
+            if (type == Request.FRAMEWORK_EVENT)
+            {
+                invokeFrameworkListenerCallback(bundle, l, event);
+            }
+            else if (type == Request.BUNDLE_EVENT)
+            {
+                invokeBundleListenerCallback(bundle, l, event);
+            }
+            else if (type == Request.SERVICE_EVENT)
+            {
+                invokeServiceListenerCallback(
+                    bundle, l, filter, acc, event, oldProps);
+            }
+        }
+        catch (Throwable th)
+        {
+            if ((type != Request.FRAMEWORK_EVENT)
+                || (((FrameworkEvent) event).getType() != FrameworkEvent.ERROR))
+            {
+                dispatcher.m_logger.log(bundle,
+                    Logger.LOG_ERROR,
+                    "EventDispatcher: Error during dispatch.", th);
+                dispatcher.fireFrameworkEvent(
+                    new FrameworkEvent(FrameworkEvent.ERROR, bundle, th));
+            }
+        }
+    }
+
     private static void invokeFrameworkListenerCallback(
         Bundle bundle, final EventListener l, final EventObject event)
     {
@@ -1160,6 +1367,153 @@ public class EventDispatcher
         }
     }
 
+    /**
+     * Queue of the asynchronous events of a single listener. At most one
+     * thread of the pool delivers the events of a queue at any time, so
+     * they are delivered in the order they were queued. Once drained, a
+     * queue is closed and removed, so that queues of removed listeners do
+     * not linger.
+    **/
+    private static class ListenerQueue implements Runnable
+    {
+        // Maximum number of events delivered before the queue yields its
+        // thread to the queues of other listeners.
+        private static final int BATCH_SIZE = 16;
+
+        private final EventDispatcher m_dispatcher;
+        private final ListenerInfo m_info;
+        private final int m_type;
+        private final LinkedList<EventObject> m_events = new LinkedList<EventObject>();
+        private boolean m_scheduled = false;
+        private boolean m_closed = false;
+        // The event being delivered and when its delivery started.
+        private volatile EventObject m_current = null;
+        private volatile long m_started = 0;
+        private volatile boolean m_reported = false;
+
+        ListenerQueue(EventDispatcher dispatcher, ListenerInfo info)
+        {
+            m_dispatcher = dispatcher;
+            m_info = info;
+            m_type = (info.getListenerClass() == FrameworkListener.class)
+                ? Request.FRAMEWORK_EVENT
+                : (info.getListenerClass() == BundleListener.class)
+                    ? Request.BUNDLE_EVENT
+                    : Request.SERVICE_EVENT;
+        }
+
+        /**
+         * Adds an event to the queue and schedules its delivery if the
+         * queue is idle.
+         * @return <tt>false</tt> if the queue is closed.
+        **/
+        boolean add(Executor executor, EventObject event)
+        {
+            synchronized (this)
+            {
+                if (m_closed)
+                {
+                    return false;
+                }
+                m_events.add(event);
+                if (m_scheduled)
+                {
+                    return true;
+                }
+                m_scheduled = true;
+            }
+
+            try
+            {
+                executor.execute(this);
+            }
+            catch (RejectedExecutionException ex)
+            {
+                // The dispatcher is stopping, so drop the events like the
+                // shared dispatch thread does.
+                synchronized (this)
+                {
+                    m_events.clear();
+                    close();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void run()
+        {
+            while (true)
+            {
+                for (int i = 0; i < BATCH_SIZE; i++)
+                {
+                    EventObject event;
+                    synchronized (this)
+                    {
+                        event = m_events.poll();
+                        if (event == null)
+                        {
+                            close();
+                            return;
+                        }
+                    }
+
+                    m_current = event;
+                    m_reported = false;
+                    m_started = System.currentTimeMillis();
+                    try
+                    {
+                        invokeListener(m_dispatcher, m_type, m_info, event, null);
+                    }
+                    finally
+                    {
+                        m_started = 0;
+                        m_current = null;
+                    }
+                }
+
+                // Let the queues of other listeners go first; if the
+                // dispatcher is stopping, keep delivering on this thread.
+                Executor executor = m_dispatcher.m_executor;
+                if (executor != null)
+                {
+                    try
+                    {
+                        executor.execute(this);
+                        return;
+                    }
+                    catch (RejectedExecutionException ex)
+                    {
+                        // Continue on this thread.
+                    }
+                }
+            }
+        }
+
+        // Must be called while holding the lock of the queue.
+        private void close()
+        {
+            m_scheduled = false;
+            m_closed = true;
+            m_dispatcher.m_queues.remove(m_info, this);
+        }
+
+        void check(long now)
+        {
+            EventObject event = m_current;
+            long started = m_started;
+            if ((event != null) && (started != 0) && !m_reported
+                && ((now - started) > m_dispatcher.m_timeout))
+            {
+                m_reported = true;
+                m_dispatcher.m_logger.log(m_info.getBundle(), Logger.LOG_WARNING,
+                    "EventDispatcher: Listener " + m_info.getListener()
+                    + " is taking more than " + m_dispatcher.m_timeout
+                    + " ms to handle " + event + ".");
+            }
+        }
+    }
+
     private static class Request
     {
         public static final int FRAMEWORK_EVENT = 0;
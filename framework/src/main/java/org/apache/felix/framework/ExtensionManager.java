@@ -21,6 +21,7 @@ package org.apache.felix.framework;
 import org.apache.felix.framework.cache.Content;
 import org.apache.felix.framework.cache.DirectoryContent;
 import org.apache.felix.framework.cache.JarContent;
+import org.apache.felix.framework.cache.MappedJarContent;
 import org.apache.felix.framework.ext.ClassPathExtenderFactory;
 import org.apache.felix.framework.util.ClassParser;
 import org.apache.felix.framework.util.FelixConstants;
@@ -437,6 +438,10 @@ class ExtensionManager implements Content
         {
             file = ((JarContent) content).getFile();
         }
+        else if (content instanceof MappedJarContent)
+        {
+            file = ((MappedJarContent) content).getFile();
+        }
         else if (content instanceof DirectoryContent)
         {
             file = ((DirectoryContent) content).getFile();
@@ -559,6 +564,10 @@ class ExtensionManager implements Content
             {
                 f = ((JarContent) revisionContent).getFile();
             }
+            else if (revisionContent instanceof MappedJarContent)
+            {
+                f = ((MappedJarContent) revisionContent).getFile();
+            }
             else
             {
                 f = ((DirectoryContent) revisionContent).getFile();
@@ -106,6 +106,15 @@ import java.util.StringTokenizer;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -274,6 +283,18 @@ public class Felix extends BundleImpl implements Framework
      *       string provides control over the size of the internal buffer of the
      *       disk cache for performance reasons.
      *   </li>
+     *   <li><tt>felix.cache.mmap</tt> - Enables or disables memory-mapping of
+     *       bundle JAR files. If set to <tt>true</tt>, JAR files are mapped once
+     *       and looked up through an entry index persisted in the bundle cache,
+     *       which does not hold any file open. JAR files installed by reference
+     *       are never mapped; the default is <tt>false</tt>.
+     *   </li>
+     *   <li><tt>felix.cache.model</tt> - Enables or disables caching of parsed
+     *       manifests. If set to <tt>true</tt>, the capabilities and requirements
+     *       parsed from the manifest of a bundle revision are stored in the bundle
+     *       cache and loaded from there on the next start, as long as the manifest
+     *       did not change; the default is <tt>false</tt>.
+     *   </li>
      *   <li><tt>org.osgi.framework.system.packages</tt> - Specifies a
      *       comma-delimited list of packages that should be exported via the
      *       System Bundle from the parent class loader. The framework will set
@@ -322,11 +343,66 @@ public class Felix extends BundleImpl implements Framework
      *       service will result in the <tt>URL.setURLStreamHandlerFactory()</tt>
      *       and <tt>URLConnection.setContentHandlerFactory()</tt> being called.
      *   </li>
+     *   <li><tt>felix.service.registry.concurrent</tt> - Flag to indicate
+     *       whether service lookups for an object class are served from a
+     *       per object class index of service references kept in ranking
+     *       order, which is read without locking. This speeds up lookups and
+     *       registrations under heavy service churn. The default value is
+     *       "<tt>false</tt>".
+     *   </li>
+     *   <li><tt>felix.eventdispatcher.threads</tt> - The number of threads
+     *       delivering asynchronous framework and bundle events. If set, every
+     *       listener has its own queue of events, which are delivered in the
+     *       order they were fired, so that a slow listener does not delay the
+     *       events of other listeners or framework instances. The default
+     *       value is 0, which delivers the events of all framework instances
+     *       on a single shared thread.
+     *   </li>
+     *   <li><tt>felix.eventdispatcher.timeout</tt> - The time in milliseconds
+     *       after which a listener still handling an asynchronous event is
+     *       logged as a warning, if <tt>felix.eventdispatcher.threads</tt> is
+     *       set. The default value is 0, which does not report listeners.
+     *   </li>
      *   <li><tt>felix.fragment.validation</tt> - Determines if installing
      *       unsupported fragment bundles throws an exception or logs a warning.
      *       Possible values are "<tt>exception</tt>" or "<tt>warning</tt>". The
      *       default value is "<tt>exception</tt>".
      *   </li>
+     *   <li><tt>felix.startlevel.parallelism</tt> - The maximum number of
+     *       bundles of the same start level that are started concurrently when
+     *       the framework start level is raised. Bundles of a start level are
+     *       always started before any bundle of the next start level. The
+     *       default value is 1, which starts bundles one at a time in bundle
+     *       identifier order. With a larger value, the bundle events of a
+     *       bundle are still fired in order, but the events of different
+     *       bundles of the same start level may interleave, e.g. a
+     *       <tt>STARTING</tt> event of one bundle may be followed by the
+     *       <tt>STARTING</tt> event of another bundle before its
+     *       <tt>STARTED</tt> event. They cannot be delivered in start order
+     *       without starting the bundles one at a time, since synchronous
+     *       bundle listeners must see the <tt>STARTING</tt> event before
+     *       the bundle activator is called.
+     *   </li>
+     *   <li><tt>felix.resolver.snapshot</tt> - Flag to indicate whether
+     *       the wiring of all resolved bundles is persisted in the bundle cache
+     *       on shutdown and restored on the next start if the cached bundles
+     *       did not change, which avoids resolving them again. The default
+     *       value is "<tt>false</tt>".
+     *   </li>
+     *   <li><tt>felix.resolver.coalesce</tt> - The time in milliseconds a
+     *       thread resolving a single bundle, for example to start it, waits
+     *       for other threads to do the same, so that the bundles are resolved
+     *       together by one resolve operation. This speeds up concurrent
+     *       installs and starts of many bundles. The default value is 0,
+     *       which resolves every bundle immediately.
+     *   </li>
+     *   <li><tt>felix.wiring.lookupcache.size</tt> - The maximum number of
+     *       class and resource names each bundle wiring remembers as not
+     *       found, so that repeated failing lookups are answered without
+     *       searching the wiring again. Each wiring also remembers where the
+     *       packages it loaded from came from. The default value is 0, which
+     *       disables the lookup cache.
+     *   </li>
      *   <li><tt>felix.security.defaultpolicy</tt> - Flag to indicate whether
      *       to consult the default java securtiy policy if no security extension
      *       is present. The default value is "<tt>false</tt>".
@@ -433,7 +509,7 @@ public class Felix extends BundleImpl implements Framework
             {
                 fireServiceEvent(event, oldProps);
             }
-        });
+        }, "true".equalsIgnoreCase(getProperty(FelixConstants.SERVICE_REGISTRY_CONCURRENT_PROP)));
 
         // Create a resolver and its state.
         m_resolver = new StatefulResolver(this, m_registry);
@@ -454,7 +530,9 @@ public class Felix extends BundleImpl implements Framework
         }
 
         // Create event dispatcher.
-        m_dispatcher = new EventDispatcher(m_logger, m_registry);
+        m_dispatcher = new EventDispatcher(m_logger, m_registry,
+            (int) getLongProperty(FelixConstants.EVENT_DISPATCHER_THREADS_PROP, 0),
+            getLongProperty(FelixConstants.EVENT_DISPATCHER_TIMEOUT_PROP, 0));
 
         // Create framework wiring object.
         m_fwkWiring = new FrameworkWiringImpl(this, m_registry);
@@ -467,6 +545,24 @@ public class Felix extends BundleImpl implements Framework
         return m_logger;
     }
 
+    private long getLongProperty(String key, long defaultValue)
+    {
+        String str = getProperty(key);
+        if (str != null)
+        {
+            try
+            {
+                return Long.parseLong(str.trim());
+            }
+            catch (NumberFormatException ex)
+            {
+                m_logger.log(Logger.LOG_WARNING,
+                    "Invalid value for " + key + ": " + str);
+            }
+        }
+        return defaultValue;
+    }
+
     Map<String, Object> getConfig()
     {
         return m_configMap;
@@ -850,6 +946,15 @@ public class Felix extends BundleImpl implements Framework
                     m_extensionManager.startExtensionBundle(this, (BundleImpl) extension);
                 }
 
+                // If enabled, restore the wiring persisted at the last shutdown
+                // so that the cached bundles do not need to be resolved again.
+                // This is only done without a security manager, since the
+                // persisted wires were not checked against the current policy.
+                if (isResolutionSnapshotEnabled() && (System.getSecurityManager() == null))
+                {
+                    new ResolutionSnapshot(this, m_cache).restore();
+                }
+
                 // Now that we have loaded all cached bundles and have determined the
                 // max bundle ID of cached bundles, we need to try to load the next
                 // bundle ID from persistent storage. In case of failure, we should
@@ -962,6 +1067,11 @@ public class Felix extends BundleImpl implements Framework
         }
     }
 
+    private boolean isResolutionSnapshotEnabled()
+    {
+        return "true".equalsIgnoreCase(_getProperty(FelixConstants.RESOLVER_SNAPSHOT_PROP));
+    }
+
     private boolean handleJavaVersionChange()
     {
         File dataFile = getDataFile(this, "last.java.version");
@@ -1456,126 +1566,60 @@ public class Felix extends BundleImpl implements Framework
             int high = (isLowering) ? m_activeStartLevel : m_targetStartLevel;
             m_activeStartLevel = (isLowering) ? high : low;
 
-            // Process bundles and stop or start them accordingly.
-            while (bundlesRemaining)
-            {
-                StartLevelTuple tuple;
+            // If configured, bundles of the same start level are started
+            // concurrently when raising the start level.
+            ExecutorService executor = isLowering ? null : createStartLevelExecutor();
 
-                // Remove our tuple to be processed while holding the queue lock
-                // and update the active start level accordingly, which allows
-                // us to determine in startBundle() if concurrent requests to
-                // start a bundle should be handled synchronously or just added
-                // to the queue and handled asynchronously.
-                synchronized (m_startLevelBundles)
+            try
+            {
+                // Process bundles and stop or start them accordingly.
+                while (bundlesRemaining)
                 {
-                    if (isLowering)
+                    if (executor != null)
                     {
-                        tuple = m_startLevelBundles.last();
-                    }
-                    else
-                    {
-                        tuple = m_startLevelBundles.first();
+                        bundlesRemaining = startLevelTuplesInParallel(executor, low, high);
+                        continue;
                     }
 
-                    if ((tuple.m_level >= low) && (tuple.m_level <= high))
-                    {
-                        m_activeStartLevel = tuple.m_level;
-                    }
-                }
+                    StartLevelTuple tuple;
 
-                // Ignore the system bundle, since its start() and
-                // stop() methods get called explicitly in Felix.start()
-                // and Felix.stop(), respectively.
-                if (tuple.m_bundle.getBundleId() != 0)
-                {
-                    // Lock the current bundle.
-                    try
+                    // Remove our tuple to be processed while holding the queue lock
+                    // and update the active start level accordingly, which allows
+                    // us to determine in startBundle() if concurrent requests to
+                    // start a bundle should be handled synchronously or just added
+                    // to the queue and handled asynchronously.
+                    synchronized (m_startLevelBundles)
                     {
-                        acquireBundleLock(tuple.m_bundle,
-                            Bundle.INSTALLED | Bundle.RESOLVED | Bundle.ACTIVE
-                            | Bundle.STARTING | Bundle.STOPPING);
-                    }
-                    catch (IllegalStateException ex)
-                    {
-                        // Ignore if the bundle has been uninstalled.
-                        if (tuple.m_bundle.getState() != Bundle.UNINSTALLED)
+                        if (isLowering)
                         {
-                            fireFrameworkEvent(FrameworkEvent.ERROR, tuple.m_bundle, ex);
-                            m_logger.log(tuple.m_bundle,
-                                Logger.LOG_ERROR,
-                                "Error locking " + tuple.m_bundle._getLocation(), ex);
+                            tuple = m_startLevelBundles.last();
                         }
                         else
                         {
-                            synchronized (m_startLevelBundles)
-                            {
-                                m_startLevelBundles.remove(tuple);
-                                bundlesRemaining = !m_startLevelBundles.isEmpty();
-                            }
+                            tuple = m_startLevelBundles.first();
                         }
-                        continue;
-                    }
 
-                    try
-                    {
-                        // Start the bundle if necessary.
-                        // Note that we only attempt to start the bundle if
-                        // its start level is equal to the active start level,
-                        // which means we assume lower bundles are in the state
-                        // they should be in (i.e., we won't attempt to restart
-                        // them if they previously failed to start).
-                        if (!isLowering
-                            && (((tuple.m_bundle.getPersistentState() == Bundle.ACTIVE)
-                                || (tuple.m_bundle.getPersistentState() == Bundle.STARTING))
-                                && (tuple.m_level == m_activeStartLevel)))
+                        if ((tuple.m_level >= low) && (tuple.m_level <= high))
                         {
-                            try
-                            {
-// TODO: LAZY - Not sure if this is the best way...
-                                int options = Bundle.START_TRANSIENT;
-                                options = (tuple.m_bundle.getPersistentState() == Bundle.STARTING)
-                                    ? options | Bundle.START_ACTIVATION_POLICY
-                                    : options;
-                                startBundle(tuple.m_bundle, options);
-                            }
-                            catch (Throwable th)
-                            {
-                                fireFrameworkEvent(FrameworkEvent.ERROR, tuple.m_bundle, th);
-                                m_logger.log(tuple.m_bundle,
-                                    Logger.LOG_ERROR,
-                                    "Error starting " + tuple.m_bundle._getLocation(), th);
-                            }
-                        }
-                        // Stop the bundle if necessary.
-                        else if (isLowering
-                            && (((tuple.m_bundle.getState() == Bundle.ACTIVE)
-                                || (tuple.m_bundle.getState() == Bundle.STARTING))
-                                && (tuple.m_level == m_activeStartLevel)))
-                        {
-                            try
-                            {
-                                stopBundle(tuple.m_bundle, false);
-                            }
-                            catch (Throwable th)
-                            {
-                                fireFrameworkEvent(FrameworkEvent.ERROR, tuple.m_bundle, th);
-                                m_logger.log(tuple.m_bundle,
-                                    Logger.LOG_ERROR,
-                                    "Error stopping " + tuple.m_bundle._getLocation(), th);
-                            }
+                            m_activeStartLevel = tuple.m_level;
                         }
                     }
-                    finally
+
+                    if (processStartLevelTuple(tuple, isLowering))
                     {
-                        // Always release bundle lock.
-                        releaseBundleLock(tuple.m_bundle);
+                        synchronized (m_startLevelBundles)
+                        {
+                            m_startLevelBundles.remove(tuple);
+                            bundlesRemaining = !m_startLevelBundles.isEmpty();
+                        }
                     }
                 }
-
-                synchronized (m_startLevelBundles)
+            }
+            finally
+            {
+                if (executor != null)
                 {
-                    m_startLevelBundles.remove(tuple);
-                    bundlesRemaining = !m_startLevelBundles.isEmpty();
+                    executor.shutdown();
                 }
             }
 
@@ -1606,6 +1650,275 @@ public class Felix extends BundleImpl implements Framework
         }
     }
 
+    /**
+     * Starts or stops the bundle of the specified start level tuple as
+     * required by the active start level.
+     * @param tuple The tuple to process.
+     * @param isLowering Whether the start level is being lowered.
+     * @return <tt>false</tt> if the tuple could not be processed and must be
+     *         processed again, otherwise <tt>true</tt>.
+    **/
+    private boolean processStartLevelTuple(StartLevelTuple tuple, boolean isLowering)
+    {
+        // Ignore the system bundle, since its start() and
+        // stop() methods get called explicitly in Felix.start()
+        // and Felix.stop(), respectively.
+        if (tuple.m_bundle.getBundleId() == 0)
+        {
+            return true;
+        }
+
+        // Lock the current bundle.
+        try
+        {
+            acquireBundleLock(tuple.m_bundle,
+                Bundle.INSTALLED | Bundle.RESOLVED | Bundle.ACTIVE
+                | Bundle.STARTING | Bundle.STOPPING);
+        }
+        catch (IllegalStateException ex)
+        {
+            // Ignore if the bundle has been uninstalled.
+            if (tuple.m_bundle.getState() != Bundle.UNINSTALLED)
+            {
+                fireFrameworkEvent(FrameworkEvent.ERROR, tuple.m_bundle, ex);
+                m_logger.log(tuple.m_bundle,
+                    Logger.LOG_ERROR,
+                    "Error locking " + tuple.m_bundle._getLocation(), ex);
+                return false;
+            }
+            return true;
+        }
+
+        try
+        {
+            // Start the bundle if necessary.
+            // Note that we only attempt to start the bundle if
+            // its start level is equal to the active start level,
+            // which means we assume lower bundles are in the state
+            // they should be in (i.e., we won't attempt to restart
+            // them if they previously failed to start).
+            if (!isLowering && isStartLevelStartPending(tuple))
+            {
+                try
+                {
+// TODO: LAZY - Not sure if this is the best way...
+                    int options = Bundle.START_TRANSIENT;
+                    options = (tuple.m_bundle.getPersistentState() == Bundle.STARTING)
+                        ? options | Bundle.START_ACTIVATION_POLICY
+                        : options;
+                    long time = System.currentTimeMillis();
+                    startBundle(tuple.m_bundle, options);
+                    m_logger.log(tuple.m_bundle,
+                        Logger.LOG_DEBUG,
+                        "Started " + tuple.m_bundle._getLocation() + " in "
+                        + (System.currentTimeMillis() - time) + " ms.");
+                }
+                catch (Throwable th)
+                {
+                    fireFrameworkEvent(FrameworkEvent.ERROR, tuple.m_bundle, th);
+                    m_logger.log(tuple.m_bundle,
+                        Logger.LOG_ERROR,
+                        "Error starting " + tuple.m_bundle._getLocation(), th);
+                }
+            }
+            // Stop the bundle if necessary.
+            else if (isLowering
+                && (((tuple.m_bundle.getState() == Bundle.ACTIVE)
+                    || (tuple.m_bundle.getState() == Bundle.STARTING))
+                    && (tuple.m_level == m_activeStartLevel)))
+            {
+                try
+                {
+                    stopBundle(tuple.m_bundle, false);
+                }
+                catch (Throwable th)
+                {
+                    fireFrameworkEvent(FrameworkEvent.ERROR, tuple.m_bundle, th);
+                    m_logger.log(tuple.m_bundle,
+                        Logger.LOG_ERROR,
+                        "Error stopping " + tuple.m_bundle._getLocation(), th);
+                }
+            }
+        }
+        finally
+        {
+            // Always release bundle lock.
+            releaseBundleLock(tuple.m_bundle);
+        }
+        return true;
+    }
+
+    private boolean isStartLevelStartPending(StartLevelTuple tuple)
+    {
+        return ((tuple.m_bundle.getPersistentState() == Bundle.ACTIVE)
+            || (tuple.m_bundle.getPersistentState() == Bundle.STARTING))
+            && (tuple.m_level == m_activeStartLevel);
+    }
+
+    /**
+     * Processes all tuples of the lowest remaining start level concurrently
+     * and waits until all of them are processed. The bundle events of the
+     * bundles of the start level may interleave, while the events of each
+     * bundle keep their order and precede the events of the bundles of the
+     * next start level. Before the bundles are
+     * started, they are resolved in a single resolve operation from the
+     * calling thread, which does not hold any bundle locks, so the start
+     * operations do not have to compete for the global lock.
+     * @param executor The executor to start the bundles on.
+     * @param low The lowest start level to process.
+     * @param high The highest start level to process.
+     * @return <tt>true</tt> if there are remaining tuples to process.
+    **/
+    private boolean startLevelTuplesInParallel(
+        ExecutorService executor, int low, int high)
+    {
+        final List<StartLevelTuple> tuples = new ArrayList<StartLevelTuple>();
+        synchronized (m_startLevelBundles)
+        {
+            int level = m_startLevelBundles.first().m_level;
+            for (StartLevelTuple tuple : m_startLevelBundles)
+            {
+                if (tuple.m_level != level)
+                {
+                    break;
+                }
+                tuples.add(tuple);
+            }
+            if ((level >= low) && (level <= high))
+            {
+                m_activeStartLevel = level;
+            }
+        }
+
+        long time = System.currentTimeMillis();
+
+        Set<BundleRevision> unresolved = new HashSet<BundleRevision>();
+        for (StartLevelTuple tuple : tuples)
+        {
+            BundleRevision revision = tuple.m_bundle.adapt(BundleRevision.class);
+            if ((tuple.m_bundle.getBundleId() != 0)
+                && isStartLevelStartPending(tuple)
+                && (revision != null) && (revision.getWiring() == null))
+            {
+                unresolved.add(revision);
+            }
+        }
+        if (!unresolved.isEmpty())
+        {
+            try
+            {
+                m_resolver.resolve(Collections.<BundleRevision>emptySet(), unresolved);
+            }
+            catch (Exception ex)
+            {
+                // Ignore, the bundles will be resolved or fail
+                // individually when they are started.
+                m_logger.log(Logger.LOG_DEBUG,
+                    "Unable to resolve bundles of start level " + m_activeStartLevel, ex);
+            }
+        }
+
+        // Submit the tuples in bundle identifier order.
+        List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(tuples.size());
+        for (final StartLevelTuple tuple : tuples)
+        {
+            futures.add(executor.submit(new Callable<Boolean>()
+            {
+                @Override
+                public Boolean call()
+                {
+                    return processStartLevelTuple(tuple, false);
+                }
+            }));
+        }
+
+        // Wait for the whole start level before moving on.
+        List<StartLevelTuple> processed = new ArrayList<StartLevelTuple>(tuples.size());
+        boolean interrupted = false;
+        for (int i = 0; i < futures.size(); i++)
+        {
+            try
+            {
+                if (futures.get(i).get())
+                {
+                    processed.add(tuples.get(i));
+                }
+            }
+            catch (InterruptedException ex)
+            {
+                interrupted = true;
+                i--;
+            }
+            catch (ExecutionException ex)
+            {
+                processed.add(tuples.get(i));
+                m_logger.log(tuples.get(i).m_bundle,
+                    Logger.LOG_ERROR,
+                    "Error processing " + tuples.get(i).m_bundle._getLocation(),
+                    ex.getCause());
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        m_logger.log(Logger.LOG_DEBUG,
+            "Processed " + tuples.size() + " bundles of start level "
+            + tuples.get(0).m_level + " in "
+            + (System.currentTimeMillis() - time) + " ms.");
+
+        synchronized (m_startLevelBundles)
+        {
+            m_startLevelBundles.removeAll(processed);
+            return !m_startLevelBundles.isEmpty();
+        }
+    }
+
+    /**
+     * Creates the executor used to start the bundles of a start level
+     * concurrently, or returns <tt>null</tt> if bundles should be started
+     * sequentially, which is the default.
+    **/
+    private ExecutorService createStartLevelExecutor()
+    {
+        int parallelism = 1;
+        String str = _getProperty(FelixConstants.STARTLEVEL_PARALLELISM);
+        if (str != null)
+        {
+            try
+            {
+                parallelism = Integer.parseInt(str.trim());
+            }
+            catch (NumberFormatException ex)
+            {
+                // Ignore and start bundles sequentially.
+            }
+        }
+        if (parallelism <= 1)
+        {
+            return null;
+        }
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            parallelism, parallelism,
+            60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory()
+            {
+                final AtomicInteger counter = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable r)
+                {
+                    Thread thread = new Thread(r, "FelixStartLevel-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * Returns the start level into which newly installed bundles will
      * be placed by default; this method implements functionality for
@@ -4360,7 +4673,7 @@ public class Felix extends BundleImpl implements Framework
     {
         try
         {
-            m_resolver.resolve(Collections.singleton(revision), Collections.EMPTY_SET);
+            m_resolver.resolve(revision);
         }
         catch (ResolutionException ex)
         {
@@ -5166,6 +5479,13 @@ public class Felix extends BundleImpl implements Framework
             // Shutdown event dispatching queue.
             m_dispatcher.stopDispatching();
 
+            // Persist the current wiring, so it can be restored on the next
+            // start if nothing changed in the meantime.
+            if (isResolutionSnapshotEnabled())
+            {
+                new ResolutionSnapshot(Felix.this, m_cache).save();
+            }
+
             // Since there may be updated and uninstalled bundles that
             // have not been refreshed, we will take care of refreshing
             // them during shutdown.
@@ -5665,6 +5985,22 @@ public class Felix extends BundleImpl implements Framework
         }
     }
 
+    /**
+     * Returns whether the calling thread holds the global lock.
+    **/
+    boolean holdsGlobalLock()
+    {
+        m_bundleLock.lock();
+        try
+        {
+            return m_globalLockThread == Thread.currentThread();
+        }
+        finally
+        {
+            m_bundleLock.unlock();
+        }
+    }
+
     /**
      * Releases the global lock.
      * @throws java.lang.IllegalStateException If the calling thread does not
@@ -0,0 +1,532 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.felix.framework.capabilityset.SimpleFilter;
+import org.apache.felix.framework.util.FelixConstants;
+import org.apache.felix.framework.util.manifestparser.ManifestParser;
+import org.apache.felix.framework.wiring.BundleCapabilityImpl;
+import org.apache.felix.framework.wiring.BundleRequirementImpl;
+import org.osgi.framework.Constants;
+import org.osgi.framework.Version;
+import org.osgi.framework.VersionRange;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleRequirement;
+import org.osgi.framework.wiring.BundleRevision;
+
+/**
+ * The metadata of a bundle revision derived from its manifest headers by
+ * the <tt>ManifestParser</tt>. The model can be stored in a compact binary
+ * form in the bundle cache, so that the headers of a cached revision do not
+ * have to be parsed again on the next start. A stored model is keyed by a
+ * hash of the headers and by the framework version; if either differs, the
+ * model is ignored and the headers are parsed again. Revisions with native
+ * code are never stored, since the selected native libraries depend on the
+ * platform.
+**/
+class ManifestModel
+{
+    private static final int MAGIC = 0x46524d4d;
+    private static final int FORMAT_VERSION = 1;
+
+    // Value type tags.
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int VERSION = 2;
+    private static final int VERSION_RANGE = 3;
+    private static final int LONG = 4;
+    private static final int DOUBLE = 5;
+    private static final int LIST = 6;
+
+    private final String m_manifestVersion;
+    private final boolean m_isExtension;
+    private final Version m_version;
+    private final String m_symbolicName;
+    private final List<BundleCapability> m_capabilities;
+    private final List<BundleRequirement> m_requirements;
+    private final int m_activationPolicy;
+    private final String m_activationInclude;
+    private final String m_activationExclude;
+
+    ManifestModel(ManifestParser mp)
+    {
+        m_manifestVersion = mp.getManifestVersion();
+        m_isExtension = mp.isExtension();
+        m_version = mp.getBundleVersion();
+        m_symbolicName = mp.getSymbolicName();
+        m_capabilities = mp.getCapabilities();
+        m_requirements = mp.getRequirements();
+        m_activationPolicy = mp.getActivationPolicy();
+        m_activationInclude = mp.getActivationIncludeDirective();
+        m_activationExclude = mp.getActivationExcludeDirective();
+    }
+
+    private ManifestModel(BundleRevision owner, DataInputStream in) throws IOException
+    {
+        m_manifestVersion = in.readUTF();
+        m_isExtension = in.readBoolean();
+        m_version = (Version) readValue(in);
+        m_symbolicName = (String) readValue(in);
+        m_activationPolicy = in.readInt();
+        m_activationInclude = (String) readValue(in);
+        m_activationExclude = (String) readValue(in);
+
+        int count = in.readInt();
+        m_capabilities = new ArrayList<BundleCapability>(count);
+        for (int i = 0; i < count; i++)
+        {
+            String namespace = in.readUTF();
+            Map<String, String> dirs = readDirectives(in);
+            Map<String, Object> attrs = readAttributes(in);
+            m_capabilities.add(new BundleCapabilityImpl(owner, namespace, dirs, attrs));
+        }
+        count = in.readInt();
+        m_requirements = new ArrayList<BundleRequirement>(count);
+        for (int i = 0; i < count; i++)
+        {
+            String namespace = in.readUTF();
+            Map<String, String> dirs = readDirectives(in);
+            Map<String, Object> attrs = readAttributes(in);
+            SimpleFilter filter = readFilter(in);
+            m_requirements.add(new BundleRequirementImpl(owner, namespace, dirs, attrs, filter));
+        }
+    }
+
+    String getManifestVersion()
+    {
+        return m_manifestVersion;
+    }
+
+    boolean isExtension()
+    {
+        return m_isExtension;
+    }
+
+    Version getBundleVersion()
+    {
+        return m_version;
+    }
+
+    String getSymbolicName()
+    {
+        return m_symbolicName;
+    }
+
+    List<BundleCapability> getCapabilities()
+    {
+        return m_capabilities;
+    }
+
+    List<BundleRequirement> getRequirements()
+    {
+        return m_requirements;
+    }
+
+    int getActivationPolicy()
+    {
+        return m_activationPolicy;
+    }
+
+    String getActivationIncludeDirective()
+    {
+        return m_activationInclude;
+    }
+
+    String getActivationExcludeDirective()
+    {
+        return m_activationExclude;
+    }
+
+    /**
+     * Reads the model of the given headers from the given file.
+     * @return the model or <tt>null</tt> if there is no stored model for
+     *         the given headers.
+    **/
+    static ManifestModel read(
+        Felix felix, BundleRevision owner, Map<String, Object> headers, File file)
+    {
+        InputStream is = null;
+        try
+        {
+            is = Felix.m_secureAction.getFileInputStream(file);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+            if ((in.readInt() != MAGIC) || (in.readInt() != FORMAT_VERSION)
+                || !in.readUTF().equals(getFrameworkVersion(felix))
+                || (in.readLong() != hash(headers)))
+            {
+                return null;
+            }
+            return new ManifestModel(owner, in);
+        }
+        catch (FileNotFoundException ex)
+        {
+            // Ignore this case because the model simply is not stored yet.
+            return null;
+        }
+        catch (Exception ex)
+        {
+            felix.getLogger().log(Logger.LOG_DEBUG,
+                "Unable to read manifest model from " + file, ex);
+            return null;
+        }
+        finally
+        {
+            close(is);
+        }
+    }
+
+    /**
+     * Writes this model of the given headers to the given file, unless
+     * the model cannot be stored.
+    **/
+    void write(Felix felix, Map<String, Object> headers, File file)
+    {
+        if (headers.get(Constants.BUNDLE_NATIVECODE) != null)
+        {
+            return;
+        }
+
+        // Encode the whole model first, so that no partial model is
+        // written if it contains something which cannot be stored.
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try
+        {
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(getFrameworkVersion(felix));
+            out.writeLong(hash(headers));
+            out.writeUTF(m_manifestVersion);
+            out.writeBoolean(m_isExtension);
+            writeValue(out, m_version);
+            writeValue(out, m_symbolicName);
+            out.writeInt(m_activationPolicy);
+            writeValue(out, m_activationInclude);
+            writeValue(out, m_activationExclude);
+
+            out.writeInt(m_capabilities.size());
+            for (BundleCapability cap : m_capabilities)
+            {
+                if (cap.getClass() != BundleCapabilityImpl.class)
+                {
+                    return;
+                }
+                out.writeUTF(cap.getNamespace());
+                writeDirectives(out, cap.getDirectives());
+                writeAttributes(out, cap.getAttributes());
+            }
+            out.writeInt(m_requirements.size());
+            for (BundleRequirement req : m_requirements)
+            {
+                if (req.getClass() != BundleRequirementImpl.class)
+                {
+                    return;
+                }
+                out.writeUTF(req.getNamespace());
+                writeDirectives(out, req.getDirectives());
+                writeAttributes(out, req.getAttributes());
+                writeFilter(out, ((BundleRequirementImpl) req).getFilter());
+            }
+            out.flush();
+        }
+        catch (IllegalArgumentException ex)
+        {
+            felix.getLogger().log(Logger.LOG_DEBUG,
+                "Not storing manifest model: " + ex.getMessage());
+            return;
+        }
+        catch (IOException ex)
+        {
+            // Cannot happen when writing to memory.
+            return;
+        }
+
+        OutputStream os = null;
+        try
+        {
+            os = Felix.m_secureAction.getFileOutputStream(file);
+            bytes.writeTo(os);
+            os.close();
+            os = null;
+        }
+        catch (Exception ex)
+        {
+            felix.getLogger().log(Logger.LOG_DEBUG,
+                "Unable to write manifest model to " + file, ex);
+            close(os);
+            os = null;
+            Felix.m_secureAction.deleteFile(file);
+        }
+        finally
+        {
+            close(os);
+        }
+    }
+
+    private static String getFrameworkVersion(Felix felix)
+    {
+        String version = felix._getProperty(FelixConstants.FELIX_VERSION_PROPERTY);
+        return (version == null) ? "" : version;
+    }
+
+    // 64 bit FNV-1a hash of the header names and values.
+    private static long hash(Map<String, Object> headers)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for (Entry<String, Object> entry : headers.entrySet())
+        {
+            hash = hash(hash, entry.getKey());
+            hash = hash(hash, String.valueOf(entry.getValue()));
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, String s)
+    {
+        for (int i = 0; i < s.length(); i++)
+        {
+            hash = (hash ^ s.charAt(i)) * 0x100000001b3L;
+        }
+        // Separate the strings.
+        return (hash ^ 0xffff) * 0x100000001b3L;
+    }
+
+    private static void writeDirectives(DataOutputStream out, Map<String, String> dirs)
+        throws IOException
+    {
+        out.writeInt(dirs.size());
+        for (Entry<String, String> entry : dirs.entrySet())
+        {
+            out.writeUTF(entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private static Map<String, String> readDirectives(DataInputStream in)
+        throws IOException
+    {
+        int count = in.readInt();
+        Map<String, String> dirs = new LinkedHashMap<String, String>(count);
+        for (int i = 0; i < count; i++)
+        {
+            dirs.put(in.readUTF(), (String) readValue(in));
+        }
+        return dirs;
+    }
+
+    private static void writeAttributes(DataOutputStream out, Map<String, Object> attrs)
+        throws IOException
+    {
+        out.writeInt(attrs.size());
+        for (Entry<String, Object> entry : attrs.entrySet())
+        {
+            out.writeUTF(entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private static Map<String, Object> readAttributes(DataInputStream in)
+        throws IOException
+    {
+        int count = in.readInt();
+        Map<String, Object> attrs = new LinkedHashMap<String, Object>(count);
+        for (int i = 0; i < count; i++)
+        {
+            attrs.put(in.readUTF(), readValue(in));
+        }
+        return attrs;
+    }
+
+    private static void writeFilter(DataOutputStream out, SimpleFilter sf)
+        throws IOException
+    {
+        out.writeBoolean(sf != null);
+        if (sf != null)
+        {
+            out.writeInt(sf.getOperation());
+            writeValue(out, sf.getName());
+            switch (sf.getOperation())
+            {
+                case SimpleFilter.AND:
+                case SimpleFilter.OR:
+                case SimpleFilter.NOT:
+                    List<SimpleFilter> children = (List<SimpleFilter>) sf.getValue();
+                    out.writeInt(children.size());
+                    for (SimpleFilter child : children)
+                    {
+                        writeFilter(out, child);
+                    }
+                    break;
+                default:
+                    writeValue(out, sf.getValue());
+            }
+        }
+    }
+
+    private static SimpleFilter readFilter(DataInputStream in)
+        throws IOException
+    {
+        if (!in.readBoolean())
+        {
+            return null;
+        }
+        int op = in.readInt();
+        String name = (String) readValue(in);
+        Object value;
+        switch (op)
+        {
+            case SimpleFilter.AND:
+            case SimpleFilter.OR:
+            case SimpleFilter.NOT:
+                int count = in.readInt();
+                List<SimpleFilter> children = new ArrayList<SimpleFilter>(count);
+                for (int i = 0; i < count; i++)
+                {
+                    children.add(readFilter(in));
+                }
+                value = children;
+                break;
+            default:
+                value = readValue(in);
+        }
+        return new SimpleFilter(name, value, op);
+    }
+
+    private static void writeValue(DataOutputStream out, Object value)
+        throws IOException
+    {
+        if (value == null)
+        {
+            out.writeByte(NULL);
+        }
+        else if (value instanceof String)
+        {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        }
+        else if (value.getClass() == Version.class)
+        {
+            out.writeByte(VERSION);
+            writeString(out, value.toString());
+        }
+        else if (value.getClass() == VersionRange.class)
+        {
+            out.writeByte(VERSION_RANGE);
+            writeString(out, value.toString());
+        }
+        else if (value instanceof Long)
+        {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        }
+        else if (value instanceof Double)
+        {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        }
+        else if (value.getClass() == ArrayList.class)
+        {
+            List<?> list = (List<?>) value;
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (Object o : list)
+            {
+                writeValue(out, o);
+            }
+        }
+        else
+        {
+            throw new IllegalArgumentException(
+                "Unsupported value type " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException
+    {
+        int type = in.readByte();
+        switch (type)
+        {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case VERSION:
+                return Version.parseVersion(readString(in));
+            case VERSION_RANGE:
+                return new VersionRange(readString(in));
+            case LONG:
+                return Long.valueOf(in.readLong());
+            case DOUBLE:
+                return Double.valueOf(in.readDouble());
+            case LIST:
+                int count = in.readInt();
+                List<Object> list = new ArrayList<Object>(count);
+                for (int i = 0; i < count; i++)
+                {
+                    list.add(readValue(in));
+                }
+                return list;
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    // Unlike writeUTF(), this supports strings of any length.
+    private static void writeString(DataOutputStream out, String s) throws IOException
+    {
+        byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void close(Closeable c)
+    {
+        try
+        {
+            if (c != null) c.close();
+        }
+        catch (IOException ex)
+        {
+            // Ignore.
+        }
+    }
+}
@@ -0,0 +1,426 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.apache.felix.framework.cache.BundleCache;
+import org.apache.felix.framework.capabilityset.CapabilitySet;
+import org.apache.felix.framework.util.FelixConstants;
+import org.apache.felix.framework.wiring.BundleRequirementImpl;
+import org.apache.felix.framework.wiring.BundleWireImpl;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleRequirement;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.resource.Resource;
+import org.osgi.resource.Wire;
+
+/**
+ * Persists the wiring of all resolved bundles into the bundle cache when
+ * the framework shuts down and restores it on the next start, which allows
+ * a warm restart to skip the resolver entirely. The snapshot is keyed by a
+ * fingerprint of every cached bundle revision and of the system packages;
+ * if anything differs, the snapshot is ignored and bundles are resolved
+ * as usual.
+**/
+class ResolutionSnapshot
+{
+    static final String SNAPSHOT_FILE = "resolution.snapshot";
+
+    private static final int MAGIC = 0x46525353;
+    private static final int FORMAT_VERSION = 1;
+
+    private final Felix m_felix;
+    private final Logger m_logger;
+    private final BundleCache m_cache;
+
+    ResolutionSnapshot(Felix felix, BundleCache cache)
+    {
+        m_felix = felix;
+        m_logger = felix.getLogger();
+        m_cache = cache;
+    }
+
+    /**
+     * Writes the current wiring to the snapshot file. Any previous snapshot
+     * is removed first, so a stale snapshot is never left behind if the
+     * current wiring cannot be captured (e.g., when there are removal
+     * pending revisions).
+    **/
+    void save()
+    {
+        File file;
+        try
+        {
+            file = m_cache.getSystemBundleDataFile(SNAPSHOT_FILE);
+        }
+        catch (Exception ex)
+        {
+            m_logger.log(Logger.LOG_WARNING, "Unable to save resolution snapshot.", ex);
+            return;
+        }
+        Felix.m_secureAction.deleteFile(file);
+
+        Bundle[] bundles = m_felix.getBundles();
+        List<BundleRevision> revisions = new ArrayList<BundleRevision>();
+        for (Bundle bundle : bundles)
+        {
+            BundleImpl impl = (BundleImpl) bundle;
+            if (impl.isRemovalPending() || (impl.getState() == Bundle.UNINSTALLED))
+            {
+                m_logger.log(Logger.LOG_DEBUG,
+                    "Not saving resolution snapshot due to pending removals.");
+                return;
+            }
+            BundleRevision revision = impl.adapt(BundleRevision.class);
+            if ((impl.getBundleId() != 0) && !impl.isExtension()
+                && (revision.getWiring() != null))
+            {
+                revisions.add(revision);
+            }
+        }
+
+        DataOutputStream out = null;
+        try
+        {
+            String fingerprint = fingerprint(bundles);
+
+            // Encode all wires before writing anything so that we do not
+            // write a partial snapshot if a wire cannot be captured.
+            List<long[]> encoded = new ArrayList<long[]>();
+            for (BundleRevision revision : revisions)
+            {
+                for (BundleWire wire : revision.getWiring().getRequiredWires(null))
+                {
+                    // Dynamic wires are not the result of a resolve operation
+                    // and will be recreated on demand.
+                    if (FelixConstants.RESOLUTION_DYNAMIC.equals(wire.getRequirement()
+                        .getDirectives().get(Constants.RESOLUTION_DIRECTIVE)))
+                    {
+                        continue;
+                    }
+                    long[] w = encode(revision, wire);
+                    if (w == null)
+                    {
+                        m_logger.log(Logger.LOG_DEBUG,
+                            "Not saving resolution snapshot due to unsupported wire: " + wire);
+                        return;
+                    }
+                    encoded.add(w);
+                }
+            }
+
+            out = new DataOutputStream(new BufferedOutputStream(
+                Felix.m_secureAction.getFileOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(fingerprint);
+            out.writeInt(revisions.size());
+            out.writeInt(encoded.size());
+            for (BundleRevision revision : revisions)
+            {
+                out.writeLong(revision.getBundle().getBundleId());
+            }
+            for (long[] w : encoded)
+            {
+                for (long l : w)
+                {
+                    out.writeLong(l);
+                }
+            }
+            out.close();
+            out = null;
+        }
+        catch (Exception ex)
+        {
+            m_logger.log(Logger.LOG_WARNING, "Unable to save resolution snapshot.", ex);
+            Felix.m_secureAction.deleteFile(file);
+        }
+        finally
+        {
+            close(out);
+        }
+    }
+
+    /**
+     * Restores the wiring stored in the snapshot file, if the file exists
+     * and its fingerprint matches the currently installed bundles. If the
+     * snapshot cannot be applied, nothing is resolved and the bundles will
+     * be resolved by the resolver as usual.
+     *
+     * @return <tt>true</tt> if the snapshot was applied, otherwise
+     *         <tt>false</tt>.
+    **/
+    boolean restore()
+    {
+        Map<Resource, List<Wire>> wireMap = null;
+        DataInputStream in = null;
+        try
+        {
+            File file = m_cache.getSystemBundleDataFile(SNAPSHOT_FILE);
+            in = new DataInputStream(new BufferedInputStream(
+                Felix.m_secureAction.getFileInputStream(file)));
+            if ((in.readInt() != MAGIC) || (in.readInt() != FORMAT_VERSION))
+            {
+                m_logger.log(Logger.LOG_DEBUG, "Ignoring unknown resolution snapshot format.");
+                return false;
+            }
+            if (!in.readUTF().equals(fingerprint(m_felix.getBundles())))
+            {
+                m_logger.log(Logger.LOG_DEBUG,
+                    "Ignoring resolution snapshot since the bundle cache changed.");
+                return false;
+            }
+
+            int revisionCount = in.readInt();
+            int wireCount = in.readInt();
+            wireMap = new LinkedHashMap<Resource, List<Wire>>(revisionCount);
+            for (int i = 0; i < revisionCount; i++)
+            {
+                BundleRevision revision = getRevision(in.readLong());
+                if ((revision == null) || (revision.getWiring() != null))
+                {
+                    return false;
+                }
+                wireMap.put(revision, new ArrayList<Wire>());
+            }
+            for (int i = 0; i < wireCount; i++)
+            {
+                BundleWire wire = decode(
+                    in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+                    in.readLong(), in.readLong());
+                List<Wire> wires = (wire == null) ? null : wireMap.get(wire.getRequirer());
+                if (wires == null)
+                {
+                    m_logger.log(Logger.LOG_DEBUG,
+                        "Ignoring resolution snapshot due to an invalid wire.");
+                    return false;
+                }
+                wires.add(wire);
+            }
+        }
+        catch (FileNotFoundException ex)
+        {
+            // Ignore this case because there simply is no snapshot.
+            return false;
+        }
+        catch (Exception ex)
+        {
+            m_logger.log(Logger.LOG_WARNING, "Unable to read resolution snapshot.", ex);
+            return false;
+        }
+        finally
+        {
+            close(in);
+        }
+
+        // Every wire must be to a revision that is resolved already or
+        // that will be resolved by this snapshot.
+        for (List<Wire> wires : wireMap.values())
+        {
+            for (Wire wire : wires)
+            {
+                BundleRevision provider = (BundleRevision) wire.getProvider();
+                if ((provider.getWiring() == null) && !wireMap.containsKey(provider))
+                {
+                    m_logger.log(Logger.LOG_DEBUG,
+                        "Ignoring resolution snapshot due to an unresolved provider.");
+                    return false;
+                }
+            }
+        }
+
+        try
+        {
+            m_felix.getResolver().resolve(wireMap);
+        }
+        catch (Exception ex)
+        {
+            m_logger.log(Logger.LOG_WARNING, "Unable to apply resolution snapshot.", ex);
+            return false;
+        }
+
+        m_logger.log(Logger.LOG_DEBUG,
+            "Restored wiring of " + wireMap.size() + " revisions from resolution snapshot.");
+        return true;
+    }
+
+    private static long[] encode(BundleRevision revision, BundleWire wire)
+    {
+        BundleRequirement req = wire.getRequirement();
+        BundleCapability cap = wire.getCapability();
+        if ((wire.getRequirer() != revision)
+            || !isCurrent(req.getRevision())
+            || !isCurrent(wire.getProvider())
+            || !isCurrent(cap.getRevision()))
+        {
+            return null;
+        }
+        int reqIdx = indexOf(req.getRevision().getDeclaredRequirements(null), req);
+        int capIdx = indexOf(cap.getRevision().getDeclaredCapabilities(null), cap);
+        if ((reqIdx < 0) || (capIdx < 0))
+        {
+            return null;
+        }
+        return new long[] {
+            revision.getBundle().getBundleId(),
+            req.getRevision().getBundle().getBundleId(),
+            reqIdx,
+            wire.getProvider().getBundle().getBundleId(),
+            cap.getRevision().getBundle().getBundleId(),
+            capIdx
+        };
+    }
+
+    private BundleWire decode(
+        long requirerId, long reqOwnerId, long reqIdx,
+        long providerId, long capOwnerId, long capIdx)
+    {
+        BundleRevision requirer = getRevision(requirerId);
+        BundleRevision reqOwner = getRevision(reqOwnerId);
+        BundleRevision provider = getRevision(providerId);
+        BundleRevision capOwner = getRevision(capOwnerId);
+        if ((requirer == null) || (reqOwner == null)
+            || (provider == null) || (capOwner == null))
+        {
+            return null;
+        }
+        List<BundleRequirement> reqs = reqOwner.getDeclaredRequirements(null);
+        List<BundleCapability> caps = capOwner.getDeclaredCapabilities(null);
+        if ((reqIdx >= reqs.size()) || (capIdx >= caps.size()))
+        {
+            return null;
+        }
+        BundleRequirement req = reqs.get((int) reqIdx);
+        BundleCapability cap = caps.get((int) capIdx);
+
+        // Double check that the wire is still sensible; the fingerprint
+        // should guarantee it, but we do not want to create bogus wirings.
+        if (!req.getNamespace().equals(cap.getNamespace())
+            || ((req instanceof BundleRequirementImpl)
+                && !CapabilitySet.matches(cap, ((BundleRequirementImpl) req).getFilter())))
+        {
+            return null;
+        }
+        return new BundleWireImpl(requirer, req, provider, cap);
+    }
+
+    private BundleRevision getRevision(long id)
+    {
+        Bundle bundle = m_felix.getBundle(id);
+        return (bundle == null) ? null : bundle.adapt(BundleRevision.class);
+    }
+
+    private static boolean isCurrent(BundleRevision revision)
+    {
+        return (revision != null)
+            && (revision.getBundle().adapt(BundleRevision.class) == revision);
+    }
+
+    private static int indexOf(List<?> list, Object o)
+    {
+        for (int i = 0; i < list.size(); i++)
+        {
+            if (list.get(i) == o)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Calculates a fingerprint of everything that influences the wiring of
+     * the installed bundles, which is the revision and headers of every
+     * bundle (including the system bundle, whose headers reflect the system
+     * packages and capabilities) plus the system package configuration.
+    **/
+    private String fingerprint(Bundle[] bundles) throws Exception
+    {
+        MessageDigest md = MessageDigest.getInstance("SHA-1");
+        StringBuilder sb = new StringBuilder();
+        sb.append(m_felix._getProperty("java.specification.version")).append('\n');
+        sb.append(m_felix._getProperty(Constants.FRAMEWORK_SYSTEMPACKAGES)).append('\n');
+        sb.append(m_felix._getProperty(Constants.FRAMEWORK_SYSTEMPACKAGES_EXTRA)).append('\n');
+        sb.append(m_felix._getProperty(Constants.FRAMEWORK_SYSTEMCAPABILITIES)).append('\n');
+        sb.append(m_felix._getProperty(Constants.FRAMEWORK_SYSTEMCAPABILITIES_EXTRA)).append('\n');
+        update(md, sb);
+
+        for (Bundle bundle : bundles)
+        {
+            BundleRevisionImpl revision = bundle.adapt(BundleRevisionImpl.class);
+            sb.append(bundle.getBundleId()).append('\n');
+            sb.append(revision.getId()).append('\n');
+            sb.append(((BundleImpl) bundle)._getLocation()).append('\n');
+            sb.append(bundle.getLastModified()).append('\n');
+            Map<String, String> headers = new TreeMap<String, String>();
+            for (Entry<String, Object> entry : revision.getHeaders().entrySet())
+            {
+                headers.put(entry.getKey(), String.valueOf(entry.getValue()));
+            }
+            for (Entry<String, String> entry : headers.entrySet())
+            {
+                sb.append(entry.getKey()).append(':').append(entry.getValue()).append('\n');
+            }
+            update(md, sb);
+        }
+
+        byte[] digest = md.digest();
+        for (byte b : digest)
+        {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void update(MessageDigest md, StringBuilder sb) throws Exception
+    {
+        md.update(sb.toString().getBytes("UTF-8"));
+        sb.setLength(0);
+    }
+
+    private static void close(Closeable c)
+    {
+        try
+        {
+            if (c != null) c.close();
+        }
+        catch (Exception ex)
+        {
+            // Ignore.
+        }
+    }
+}
@@ -55,6 +55,9 @@ public class ServiceRegistry
     // Capability set for all service registrations.
     private final CapabilitySet m_regCapSet = new CapabilitySet(Collections.singletonList(Constants.OBJECTCLASS), false);
 
+    // Index of service registrations by object class, null if disabled.
+    private final ServiceRegistryIndex m_classIndex;
+
     // Maps bundle to an array of usage counts.
     private final ConcurrentMap<Bundle, UsageCount[]> m_inUseMap = new ConcurrentHashMap<Bundle, UsageCount[]>();
 
@@ -63,9 +66,24 @@ public class ServiceRegistry
     private final HookRegistry hookRegistry = new HookRegistry();
 
     public ServiceRegistry(final Logger logger, final ServiceRegistryCallbacks callbacks)
+    {
+        this(logger, callbacks, false);
+    }
+
+    /**
+     * Create a new service registry
+     * @param logger The logger
+     * @param callbacks The callbacks to notify about service changes
+     * @param concurrent Whether lookups by object class are served from a
+     *        per object class index of ranking sorted references instead of
+     *        the capability set of all registrations
+     */
+    public ServiceRegistry(final Logger logger, final ServiceRegistryCallbacks callbacks,
+        final boolean concurrent)
     {
         m_logger = logger;
         m_callbacks = callbacks;
+        m_classIndex = concurrent ? new ServiceRegistryIndex() : null;
     }
 
     /**
@@ -136,6 +154,10 @@ public class ServiceRegistry
             regs.add(reg);
         }
         m_regCapSet.addCapability((BundleCapabilityImpl) reg.getReference());
+        if (m_classIndex != null)
+        {
+            m_classIndex.add(reg.getReference());
+        }
 
         return reg;
     }
@@ -163,6 +185,10 @@ public class ServiceRegistry
             }
         }
         m_regCapSet.removeCapability((BundleCapabilityImpl) reg.getReference());
+        if (m_classIndex != null)
+        {
+            m_classIndex.remove(reg.getReference());
+        }
 
         // Notify callback objects about unregistering service.
         if (m_callbacks != null)
@@ -251,6 +277,25 @@ public class ServiceRegistry
 
     public Collection<Capability> getServiceReferences(final String className, SimpleFilter filter)
     {
+        // Lookups limited to a single object class are served from the
+        // index, which already has the references in ranking order.
+        final String indexClassName = (m_classIndex == null) ? null
+            : (className != null) ? className : ServiceRegistryIndex.getClassName(filter);
+        if (indexClassName != null)
+        {
+            final ServiceReference<?>[] refs = m_classIndex.get(indexClassName);
+            final List<Capability> result = new ArrayList<Capability>(refs.length);
+            for (final ServiceReference<?> ref : refs)
+            {
+                final Capability cap = (Capability) ref;
+                if ((filter == null) || CapabilitySet.matches(cap, filter))
+                {
+                    result.add(cap);
+                }
+            }
+            return result;
+        }
+
         if ((className == null) && (filter == null))
         {
             // Return all services.
@@ -607,6 +652,10 @@ public class ServiceRegistry
     void servicePropertiesModified(ServiceRegistration<?> reg, Dictionary<?,?> oldProps)
     {
         this.hookRegistry.updateHooks(reg.getReference());
+        if (m_classIndex != null)
+        {
+            m_classIndex.update(reg.getReference());
+        }
         if (m_callbacks != null)
         {
             m_callbacks.serviceChanged(
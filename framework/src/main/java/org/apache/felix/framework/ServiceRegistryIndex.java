@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.felix.framework.capabilityset.SimpleFilter;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * Index of service references by object class. For every object class
+ * the index keeps an array of the references registered under it, sorted
+ * by service ranking in descending order and by service id in ascending
+ * order for equal rankings. The arrays are never modified once published,
+ * so they can be read without locking; modifications of the arrays of an
+ * object class are serialized by one of a fixed number of lock stripes.
+**/
+class ServiceRegistryIndex
+{
+    private static final int STRIPES = 32;
+
+    private static final ServiceReference<?>[] EMPTY = new ServiceReference<?>[0];
+
+    // Sorts references from the highest to the lowest ranking.
+    private static final Comparator<ServiceReference<?>> RANKING_ORDER =
+        new Comparator<ServiceReference<?>>()
+        {
+            public int compare(ServiceReference<?> o1, ServiceReference<?> o2)
+            {
+                return o2.compareTo(o1);
+            }
+        };
+
+    private final ConcurrentMap<String, ServiceReference<?>[]> m_refs =
+        new ConcurrentHashMap<String, ServiceReference<?>[]>();
+    private final Object[] m_locks = new Object[STRIPES];
+
+    ServiceRegistryIndex()
+    {
+        for (int i = 0; i < m_locks.length; i++)
+        {
+            m_locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns the references registered under the given object class in
+     * ranking order. The returned array must not be modified.
+    **/
+    ServiceReference<?>[] get(String className)
+    {
+        ServiceReference<?>[] refs = m_refs.get(className);
+        return (refs == null) ? EMPTY : refs;
+    }
+
+    void add(ServiceReference<?> ref)
+    {
+        for (String className : getClassNames(ref))
+        {
+            synchronized (getLock(className))
+            {
+                ServiceReference<?>[] refs = get(className);
+                int idx = Arrays.binarySearch(refs, ref, RANKING_ORDER);
+                idx = (idx < 0) ? -(idx + 1) : idx;
+                ServiceReference<?>[] newRefs = new ServiceReference<?>[refs.length + 1];
+                System.arraycopy(refs, 0, newRefs, 0, idx);
+                newRefs[idx] = ref;
+                System.arraycopy(refs, idx, newRefs, idx + 1, refs.length - idx);
+                m_refs.put(className, newRefs);
+            }
+        }
+    }
+
+    void remove(ServiceReference<?> ref)
+    {
+        for (String className : getClassNames(ref))
+        {
+            synchronized (getLock(className))
+            {
+                ServiceReference<?>[] refs = get(className);
+                // The ranking may have changed since the reference was
+                // added, so look for the reference itself.
+                int idx = indexOf(refs, ref);
+                if (idx < 0)
+                {
+                    continue;
+                }
+                if (refs.length == 1)
+                {
+                    m_refs.remove(className);
+                }
+                else
+                {
+                    ServiceReference<?>[] newRefs = new ServiceReference<?>[refs.length - 1];
+                    System.arraycopy(refs, 0, newRefs, 0, idx);
+                    System.arraycopy(refs, idx + 1, newRefs, idx, newRefs.length - idx);
+                    m_refs.put(className, newRefs);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restores the ranking order after the properties of the given
+     * reference were modified.
+    **/
+    void update(ServiceReference<?> ref)
+    {
+        for (String className : getClassNames(ref))
+        {
+            synchronized (getLock(className))
+            {
+                ServiceReference<?>[] refs = get(className);
+                if (indexOf(refs, ref) >= 0)
+                {
+                    ServiceReference<?>[] newRefs = refs.clone();
+                    Arrays.sort(newRefs, RANKING_ORDER);
+                    m_refs.put(className, newRefs);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the object class a lookup with the given filter is limited
+     * to, if the filter is an object class equality check or a conjunction
+     * containing one.
+     * @param filter the filter of the lookup.
+     * @return the object class or <tt>null</tt> if the lookup is not limited
+     *         to a single object class.
+    **/
+    static String getClassName(SimpleFilter filter)
+    {
+        if (filter == null)
+        {
+            return null;
+        }
+        if (filter.getOperation() == SimpleFilter.AND)
+        {
+            for (SimpleFilter sf : (List<SimpleFilter>) filter.getValue())
+            {
+                String className = getClassName(sf);
+                if (className != null)
+                {
+                    return className;
+                }
+            }
+        }
+        else if ((filter.getOperation() == SimpleFilter.EQ)
+            && Constants.OBJECTCLASS.equalsIgnoreCase(filter.getName())
+            && (filter.getValue() instanceof String))
+        {
+            return (String) filter.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the object classes of the given reference. A service may list
+     * an object class more than once, which must not add the reference to
+     * the array of that object class more than once.
+    **/
+    private static Set<String> getClassNames(ServiceReference<?> ref)
+    {
+        Set<String> classNames = new LinkedHashSet<String>();
+        Collections.addAll(classNames, (String[]) ref.getProperty(Constants.OBJECTCLASS));
+        return classNames;
+    }
+
+    private Object getLock(String className)
+    {
+        return m_locks[(className.hashCode() & 0x7fffffff) % m_locks.length];
+    }
+
+    private static int indexOf(ServiceReference<?>[] refs, ServiceReference<?> ref)
+    {
+        for (int i = 0; i < refs.length; i++)
+        {
+            if (refs[i] == ref)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
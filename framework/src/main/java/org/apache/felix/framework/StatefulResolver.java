@@ -59,6 +59,7 @@ import org.osgi.framework.PackagePermission;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.hooks.resolver.ResolverHook;
 import org.osgi.framework.hooks.resolver.ResolverHookFactory;
+import org.osgi.framework.namespace.IdentityNamespace;
 import org.osgi.framework.wiring.BundleCapability;
 import org.osgi.framework.wiring.BundleRequirement;
 import org.osgi.framework.wiring.BundleRevision;
@@ -91,6 +92,13 @@ class StatefulResolver
     private final Map<String, List<BundleRevision>> m_singletons;
     // Selected singleton bundle revisions.
     private final Set<BundleRevision> m_selectedSingletons;
+    // Time in milliseconds to wait for other revisions to resolve.
+    private final long m_coalesceWindow;
+    // Revisions queued to be resolved by the next resolve operation,
+    // mapped to the threads which queued them.
+    private final Map<BundleRevision, Thread> m_queued = new HashMap<BundleRevision, Thread>();
+    // End of the coalescing window of the queued revisions.
+    private long m_windowEnd;
 
     StatefulResolver(Felix felix, ServiceRegistry registry)
     {
@@ -105,18 +113,30 @@ class StatefulResolver
         m_capSets = new HashMap<String, CapabilitySet>();
         m_singletons = new HashMap<String, List<BundleRevision>>();
         m_selectedSingletons = new HashSet<BundleRevision>();
+        m_coalesceWindow = getCoalesceWindow();
 
+        // The capabilities of the well known namespaces are indexed by
+        // name and, for each name, by version, so that requirements with
+        // a version range only have to look at the capabilities within it.
         List<String> indices = new ArrayList<String>();
         indices.add(BundleRevision.BUNDLE_NAMESPACE);
-        m_capSets.put(BundleRevision.BUNDLE_NAMESPACE, new CapabilitySet(indices, true));
+        m_capSets.put(BundleRevision.BUNDLE_NAMESPACE, new CapabilitySet(
+            indices, Constants.BUNDLE_VERSION_ATTRIBUTE, true));
 
         indices = new ArrayList<String>();
         indices.add(BundleRevision.PACKAGE_NAMESPACE);
-        m_capSets.put(BundleRevision.PACKAGE_NAMESPACE, new CapabilitySet(indices, true));
+        m_capSets.put(BundleRevision.PACKAGE_NAMESPACE, new CapabilitySet(
+            indices, Constants.VERSION_ATTRIBUTE, true));
 
         indices = new ArrayList<String>();
         indices.add(BundleRevision.HOST_NAMESPACE);
-        m_capSets.put(BundleRevision.HOST_NAMESPACE,  new CapabilitySet(indices, true));
+        m_capSets.put(BundleRevision.HOST_NAMESPACE,  new CapabilitySet(
+            indices, Constants.BUNDLE_VERSION_ATTRIBUTE, true));
+
+        indices = new ArrayList<String>();
+        indices.add(IdentityNamespace.IDENTITY_NAMESPACE);
+        m_capSets.put(IdentityNamespace.IDENTITY_NAMESPACE, new CapabilitySet(
+            indices, IdentityNamespace.CAPABILITY_VERSION_ATTRIBUTE, true));
     }
 
     private Executor getExecutor()
@@ -166,6 +186,24 @@ class StatefulResolver
         }
     }
 
+    private long getCoalesceWindow()
+    {
+        String str = m_felix.getProperty(FelixConstants.RESOLVER_COALESCE_PROP);
+        long window = 0;
+        if (str != null)
+        {
+            try
+            {
+                window = Long.parseLong(str);
+            }
+            catch (NumberFormatException e)
+            {
+                // Ignore
+            }
+        }
+        return window;
+    }
+
     void start()
     {
         m_registry.registerService(m_felix,
@@ -207,6 +245,7 @@ class StatefulResolver
 
     synchronized void removeRevision(BundleRevision br)
     {
+        m_queued.remove(br);
         if (m_revisions.remove(br))
         {
             m_fragments.remove(br);
@@ -413,6 +452,13 @@ class StatefulResolver
         boolean locked = m_felix.acquireGlobalLock();
         if (!locked)
         {
+            // The revisions may have been resolved along with the
+            // revisions of another thread meanwhile.
+            if ((m_coalesceWindow > 0) && optional.isEmpty()
+                && dequeueRevisions(mandatory))
+            {
+                return;
+            }
             throw new ResolveException(
                 "Unable to acquire global lock for resolve.", null, null);
         }
@@ -427,13 +473,30 @@ class StatefulResolver
         m_isResolving = true;
 
         Map<Resource, List<Wire>> wireMap = null;
+        Map<BundleRevision, Thread> queued = Collections.emptyMap();
         try
         {
+            // Revisions queued by other threads are resolved along with
+            // the given ones. Given revisions which were resolved this way
+            // are done already.
+            if (m_coalesceWindow > 0)
+            {
+                if (dequeueRevisions(mandatory) && optional.isEmpty())
+                {
+                    return;
+                }
+                queued = takeQueuedRevisions(mandatory);
+            }
+
             // Make our own copy of revisions.
             mandatory = (mandatory.isEmpty())
                 ? mandatory : new HashSet<BundleRevision>(mandatory);
-            optional = (optional.isEmpty())
+            optional = (optional.isEmpty() && queued.isEmpty())
                 ? optional : new HashSet<BundleRevision>(optional);
+            if (!queued.isEmpty())
+            {
+                optional.addAll(queued.keySet());
+            }
 
             // Prepare resolver hooks, if any.
             ResolverHookRecord record = prepareResolverHooks(mandatory, optional);
@@ -498,7 +561,146 @@ class StatefulResolver
                 throw rethrow;
             }
 
-            // Otherwise, mark all revisions as resolved.
+            // Otherwise, mark all revisions as resolved, including
+            // the queued ones.
+            markResolvedRevisions(wireMap, queued);
+        }
+        finally
+        {
+            // If the resolve failed, the queued revisions were not resolved,
+            // so queue them again to have them resolved along with the next
+            // resolve instead of as its dependencies.
+            if (wireMap == null)
+            {
+                requeueRevisions(queued);
+            }
+            // Clear resolving flag.
+            m_isResolving = false;
+            // Always release the global lock.
+            m_felix.releaseGlobalLock();
+        }
+
+        fireResolvedEvents(wireMap);
+    }
+
+    /**
+     * Resolves a single revision. If resolve operations are coalesced, the
+     * revision is queued first and the queueing threads wait until the
+     * coalescing window opened by the first of them has passed, so that the
+     * queued revisions are resolved by one resolve operation instead of one
+     * after the other.
+    **/
+    void resolve(BundleRevision revision) throws ResolutionException, BundleException
+    {
+        // Waiting is pointless if no other thread can resolve meanwhile.
+        if ((m_coalesceWindow > 0) && !m_felix.holdsGlobalLock())
+        {
+            long wait = queueRevision(revision);
+            if (wait > 0)
+            {
+                try
+                {
+                    Thread.sleep(wait);
+                }
+                catch (InterruptedException ex)
+                {
+                    // Keep the interrupt, which makes acquiring the global
+                    // lock fail like it would have without waiting.
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        resolve(Collections.singleton(revision), Collections.<BundleRevision>emptySet());
+    }
+
+    private synchronized long queueRevision(BundleRevision revision)
+    {
+        long now = System.currentTimeMillis();
+        if (m_queued.isEmpty())
+        {
+            m_windowEnd = now + m_coalesceWindow;
+        }
+        m_queued.put(revision, Thread.currentThread());
+        return m_windowEnd - now;
+    }
+
+    /**
+     * Removes the given revisions from the queue, since they are handled by
+     * the calling thread from now on.
+     * @return <tt>true</tt> if all given revisions were resolved along with
+     *         the revisions of another thread already.
+    **/
+    private synchronized boolean dequeueRevisions(Set<BundleRevision> mandatory)
+    {
+        boolean resolved = !mandatory.isEmpty();
+        for (BundleRevision br : mandatory)
+        {
+            m_queued.remove(br);
+            resolved = resolved && (br.getWiring() != null)
+                && (br.getBundle().getState() != Bundle.INSTALLED);
+        }
+        return resolved;
+    }
+
+    private synchronized Map<BundleRevision, Thread> takeQueuedRevisions(Set<BundleRevision> mandatory)
+    {
+        Map<BundleRevision, Thread> queued = Collections.emptyMap();
+        for (Entry<BundleRevision, Thread> entry : m_queued.entrySet())
+        {
+            // Ignore revisions which were resolved or removed in the meantime.
+            BundleRevision br = entry.getKey();
+            if (!mandatory.contains(br) && (br.getWiring() == null)
+                && m_revisions.contains(br))
+            {
+                if (queued.isEmpty())
+                {
+                    queued = new HashMap<BundleRevision, Thread>();
+                }
+                queued.put(br, entry.getValue());
+            }
+        }
+        m_queued.keySet().removeAll(queued.keySet());
+        return queued;
+    }
+
+    private synchronized void requeueRevisions(Map<BundleRevision, Thread> queued)
+    {
+        for (Entry<BundleRevision, Thread> entry : queued.entrySet())
+        {
+            if (entry.getKey().getWiring() == null)
+            {
+                m_queued.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Marks the revisions of an already calculated wire map as resolved,
+     * without invoking the resolver. This is used to restore a previously
+     * persisted wiring, so it is the caller's responsibility to ensure that
+     * the wire map is complete and consistent.
+    **/
+    void resolve(Map<Resource, List<Wire>> wireMap)
+        throws ResolutionException
+    {
+        // Acquire global lock.
+        boolean locked = m_felix.acquireGlobalLock();
+        if (!locked)
+        {
+            throw new ResolveException(
+                "Unable to acquire global lock for resolve.", null, null);
+        }
+
+        // Make sure we are not already resolving.
+        if (m_isResolving)
+        {
+            m_felix.releaseGlobalLock();
+            throw new IllegalStateException("Nested resolve operations not allowed.");
+        }
+        m_isResolving = true;
+
+        try
+        {
             markResolvedRevisions(wireMap);
         }
         finally
@@ -1008,6 +1210,18 @@ class StatefulResolver
 
     private void markResolvedRevisions(Map<Resource, List<Wire>> wireMap)
         throws ResolveException
+    {
+        markResolvedRevisions(wireMap, Collections.<BundleRevision, Thread>emptyMap());
+    }
+
+    /**
+     * Marks the revisions of the given wire map as resolved, along with
+     * their bundles. The bundles of the given queued revisions may be
+     * locked by the threads which queued them, which wait for this resolve.
+    **/
+    private void markResolvedRevisions(
+        Map<Resource, List<Wire>> wireMap, Map<BundleRevision, Thread> queued)
+        throws ResolveException
     {
         boolean debugLog = m_felix.getLogger().getLogLevel() >= Logger.LOG_DEBUG;
 
@@ -1226,12 +1440,12 @@ class StatefulResolver
                 addRevision(revision);
 
                 // Update the state of the revision's bundle to resolved as well.
-                markBundleResolved(revision);
+                markBundleResolved(revision, queued.get(revision));
             }
         }
     }
 
-    private void markBundleResolved(BundleRevision revision)
+    private void markBundleResolved(BundleRevision revision, Thread queueingThread)
     {
         // Update the bundle's state to resolved when the
         // current revision is resolved; just ignore resolve
@@ -1240,6 +1454,19 @@ class StatefulResolver
         // and there was no refresh performed.
         BundleImpl bundle = (BundleImpl) revision.getBundle();
 
+        // A thread which queued the revision while holding the bundle
+        // lock waits for this resolve, so update the state on its behalf
+        // instead of interrupting it to get the bundle lock.
+        if ((queueingThread != null) && (bundle.getLockingThread() == queueingThread))
+        {
+            if ((bundle.adapt(BundleRevision.class) == revision)
+                && (bundle.getState() == Bundle.INSTALLED))
+            {
+                m_felix.setBundleStateAndNotify(bundle, Bundle.RESOLVED);
+            }
+            return;
+        }
+
         // Lock the bundle first.
         try
         {
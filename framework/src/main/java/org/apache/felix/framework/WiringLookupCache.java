@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the outcome of class and resource lookups by delegation for a
+ * single bundle wiring. For every package it remembers which source
+ * served it, so that later lookups skip the boot delegation configuration
+ * and go straight to the parent class loader, the exporter of an imported
+ * package or the bundle class path. Packages of required bundles are not
+ * remembered, since they may be split between several bundles. It also
+ * remembers class and resource names which could not be found anywhere,
+ * so that repeated failing lookups do not have to search the imports, the
+ * bundle class path and the dynamic imports again. The number of
+ * remembered names is bounded; when the bound is reached they are all
+ * forgotten.
+**/
+class WiringLookupCache
+{
+    static final int SOURCE_UNKNOWN = 0;
+    static final int SOURCE_BOOT = 1;
+    static final int SOURCE_IMPORT = 2;
+    static final int SOURCE_LOCAL = 3;
+
+    private static final Integer BOOT = Integer.valueOf(SOURCE_BOOT);
+    private static final Integer IMPORT = Integer.valueOf(SOURCE_IMPORT);
+    private static final Integer LOCAL = Integer.valueOf(SOURCE_LOCAL);
+
+    private final int m_maxSize;
+    private final Map<String, Integer> m_pkgSources =
+        new ConcurrentHashMap<String, Integer>();
+    private final Map<String, Boolean> m_missingClasses =
+        new ConcurrentHashMap<String, Boolean>();
+    private final Map<String, Boolean> m_missingResources =
+        new ConcurrentHashMap<String, Boolean>();
+    private final AtomicLong m_hits = new AtomicLong();
+    private final AtomicLong m_misses = new AtomicLong();
+
+    WiringLookupCache(int maxSize)
+    {
+        m_maxSize = maxSize;
+    }
+
+    /**
+     * Checks whether the given class or resource is known to be missing,
+     * counting a hit if it is.
+    **/
+    boolean isMissing(String name, boolean isClass)
+    {
+        if ((isClass ? m_missingClasses : m_missingResources).containsKey(name))
+        {
+            m_hits.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    void setMissing(String name, boolean isClass)
+    {
+        Map<String, Boolean> missing = isClass ? m_missingClasses : m_missingResources;
+        if (missing.size() >= m_maxSize)
+        {
+            missing.clear();
+        }
+        missing.put(name, Boolean.TRUE);
+    }
+
+    /**
+     * Returns the source which served the given package before, counting
+     * a hit if the source is known and a miss otherwise.
+    **/
+    int getPackageSource(String pkgName)
+    {
+        Integer source = m_pkgSources.get(pkgName);
+        if (source == null)
+        {
+            m_misses.incrementAndGet();
+            return SOURCE_UNKNOWN;
+        }
+        m_hits.incrementAndGet();
+        return source.intValue();
+    }
+
+    void setPackageSource(String pkgName, int source)
+    {
+        if (m_pkgSources.size() >= m_maxSize)
+        {
+            m_pkgSources.clear();
+        }
+        m_pkgSources.put(pkgName,
+            (source == SOURCE_BOOT) ? BOOT : (source == SOURCE_IMPORT) ? IMPORT : LOCAL);
+    }
+
+    void clear()
+    {
+        m_pkgSources.clear();
+        m_missingClasses.clear();
+        m_missingResources.clear();
+    }
+
+    long getHits()
+    {
+        return m_hits.get();
+    }
+
+    long getMisses()
+    {
+        return m_misses.get();
+    }
+}
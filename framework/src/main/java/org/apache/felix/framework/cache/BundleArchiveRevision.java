@@ -41,6 +41,8 @@ import org.apache.felix.framework.Logger;
 **/
 public abstract class BundleArchiveRevision
 {
+    private static final String MANIFEST_MODEL_FILE = "manifest.model";
+
     private final Logger m_logger;
     private final Map m_configMap;
     private final File m_revisionRootDir;
@@ -105,6 +107,22 @@ public abstract class BundleArchiveRevision
         return m_revisionRootDir;
     }
 
+    /**
+     * <p>
+     * Returns the file in which the parsed manifest of this revision is
+     * cached, if caching parsed manifests is enabled.
+     * </p>
+     * @return the file for the parsed manifest or <tt>null</tt> if parsed
+     *         manifests are not cached.
+    **/
+    public File getManifestModelFile()
+    {
+        return ((m_configMap != null)
+            && Boolean.parseBoolean((String) m_configMap.get(BundleCache.CACHE_MODEL_PROP)))
+            ? new File(m_revisionRootDir, MANIFEST_MODEL_FILE)
+            : null;
+    }
+
     /**
      * <p>
      * Returns the location string this revision.
@@ -75,6 +75,18 @@ import java.util.Map;
  *       string provides control over the size of the internal buffer of the
  *       disk cache for performance reasons.
  *   </li>
+ *   <li><tt>felix.cache.mmap</tt> - Enables or disables memory-mapping of
+ *       bundle JAR files. If set to <tt>true</tt>, JAR files are mapped once
+ *       and looked up through an entry index persisted in the bundle cache,
+ *       which does not hold any file open. JAR files installed by reference
+ *       are never mapped; the default is <tt>false</tt>.
+ *   </li>
+ *   <li><tt>felix.cache.model</tt> - Enables or disables caching of parsed
+ *       manifests. If set to <tt>true</tt>, the capabilities and requirements
+ *       parsed from the manifest of a bundle revision are stored in the bundle
+ *       cache and loaded from there on the next start, as long as the manifest
+ *       did not change; the default is <tt>false</tt>.
+ *   </li>
  * <p>
  * For specific information on how to configure the Felix framework, refer
  * to the Felix framework usage documentation.
@@ -87,6 +99,8 @@ public class BundleCache
     public static final String CACHE_ROOTDIR_PROP = "felix.cache.rootdir";
     public static final String CACHE_LOCKING_PROP = "felix.cache.locking";
     public static final String CACHE_FILELIMIT_PROP = "felix.cache.filelimit";
+    public static final String CACHE_MMAP_PROP = "felix.cache.mmap";
+    public static final String CACHE_MODEL_PROP = "felix.cache.model";
     private static final ThreadLocal m_defaultBuffer = new ThreadLocal();
     private static volatile int DEFAULT_BUFFER = 1024 * 64;
 
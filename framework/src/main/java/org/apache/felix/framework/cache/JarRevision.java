@@ -51,6 +51,7 @@ class JarRevision extends BundleArchiveRevision
     private final WeakZipFileFactory m_zipFactory;
     private final File m_bundleFile;
     private final WeakZipFile m_zipFile;
+    private final MappedJarFile m_mappedFile;
 
     public JarRevision(
         Logger logger, Map configMap, WeakZipFileFactory zipFactory,
@@ -75,6 +76,31 @@ class JarRevision extends BundleArchiveRevision
         // Save and process the bundle JAR.
         initialize(byReference, is);
 
+        // Map the JAR file if configured to do so, otherwise or if that is
+        // not possible open it as a ZIP file. JAR files installed by
+        // reference are never mapped, since they are not owned by the cache.
+        MappedJarFile mappedFile = null;
+        if (!byReference
+            && Boolean.parseBoolean((String) configMap.get(BundleCache.CACHE_MMAP_PROP)))
+        {
+            try
+            {
+                mappedFile = MappedJarFile.open(logger, m_bundleFile, new File(
+                    getRevisionRootDir(), m_bundleFile.getName() + MappedJarFile.INDEX_SUFFIX));
+            }
+            catch (IOException ex)
+            {
+                logger.log(Logger.LOG_DEBUG,
+                    "Unable to map JAR file " + m_bundleFile + ", using ZIP file instead.", ex);
+            }
+        }
+        m_mappedFile = mappedFile;
+        if (m_mappedFile != null)
+        {
+            m_zipFile = null;
+            return;
+        }
+
         // Open shared copy of the JAR file.
         WeakZipFile zipFile = null;
         try
@@ -97,6 +123,13 @@ class JarRevision extends BundleArchiveRevision
 
     public Map<String, Object> getManifestHeader() throws Exception
     {
+        if (m_mappedFile != null)
+        {
+            int entry = m_mappedFile.find("META-INF/MANIFEST.MF");
+            return (entry >= 0) ? BundleCache.getMainAttributes(new StringMap(),
+                m_mappedFile.getInputStream(entry), m_mappedFile.getSize(entry)) : null;
+        }
+
         // Read and parse headers into a case insensitive map of manifest attributes and return it.
         ZipEntry manifestEntry = m_zipFile.getEntry("META-INF/MANIFEST.MF");
 
@@ -107,13 +140,25 @@ class JarRevision extends BundleArchiveRevision
 
     public Content getContent() throws Exception
     {
+        if (m_mappedFile != null)
+        {
+            return new MappedJarContent(getLogger(), getConfig(), m_zipFactory,
+                this, getRevisionRootDir(), m_mappedFile, false);
+        }
         return new JarContent(getLogger(), getConfig(), m_zipFactory,
             this, getRevisionRootDir(), m_bundleFile, m_zipFile);
     }
 
     protected void close() throws Exception
     {
-        m_zipFile.close();
+        if (m_mappedFile != null)
+        {
+            m_mappedFile.close();
+        }
+        if (m_zipFile != null)
+        {
+            m_zipFile.close();
+        }
     }
 
     //
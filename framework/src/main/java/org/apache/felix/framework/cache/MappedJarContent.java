@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.cache;
+
+import org.apache.felix.framework.Logger;
+import org.apache.felix.framework.util.FelixConstants;
+import org.apache.felix.framework.util.WeakZipFileFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Map;
+
+/**
+ * <p>
+ * A <tt>Content</tt> implementation for JAR files which serves entries from
+ * a memory-mapped <tt>MappedJarFile</tt> instead of a <tt>ZipFile</tt>.
+ * It is used instead of <tt>JarContent</tt> if the <tt>felix.cache.mmap</tt>
+ * property is set to <tt>true</tt>.
+ * </p>
+**/
+public class MappedJarContent implements Content
+{
+    private static final String EMBEDDED_DIRECTORY = "-embedded";
+
+    private final Logger m_logger;
+    private final Map<?, ?> m_configMap;
+    private final WeakZipFileFactory m_zipFactory;
+    private final Object m_revisionLock;
+    private final File m_rootDir;
+    private final MappedJarFile m_jar;
+    private final boolean m_isJarFileOwner;
+    private JarContent m_libContent;
+
+    MappedJarContent(Logger logger, Map<?, ?> configMap, WeakZipFileFactory zipFactory,
+        Object revisionLock, File rootDir, MappedJarFile jar, boolean isJarFileOwner)
+    {
+        m_logger = logger;
+        m_configMap = configMap;
+        m_zipFactory = zipFactory;
+        m_revisionLock = revisionLock;
+        m_rootDir = rootDir;
+        m_jar = jar;
+        m_isJarFileOwner = isJarFileOwner;
+    }
+
+    public void close()
+    {
+        // Release the mapping if this content mapped the file, otherwise
+        // the revision does when it is closed.
+        if (m_isJarFileOwner)
+        {
+            m_jar.close();
+        }
+        JarContent libContent;
+        synchronized (this)
+        {
+            libContent = m_libContent;
+            m_libContent = null;
+        }
+        if (libContent != null)
+        {
+            libContent.close();
+        }
+    }
+
+    public boolean hasEntry(String name) throws IllegalStateException
+    {
+        return m_jar.find(name) >= 0;
+    }
+
+    public Enumeration<String> getEntries()
+    {
+        // Spec says to return null if there are no entries.
+        return (m_jar.size() > 0) ? m_jar.names() : null;
+    }
+
+    public byte[] getEntryAsBytes(String name) throws IllegalStateException
+    {
+        int entry = m_jar.find(name);
+        if (entry < 0)
+        {
+            return null;
+        }
+        try
+        {
+            return m_jar.getBytes(entry);
+        }
+        catch (Exception ex)
+        {
+            m_logger.log(
+                Logger.LOG_ERROR,
+                "MappedJarContent: Unable to read bytes for file " + name + " in ZIP file "
+                    + m_jar.getFile().getAbsolutePath(), ex);
+            return null;
+        }
+    }
+
+    public InputStream getEntryAsStream(String name)
+        throws IllegalStateException, IOException
+    {
+        int entry = m_jar.find(name);
+        if (entry < 0)
+        {
+            return null;
+        }
+        try
+        {
+            return m_jar.getInputStream(entry);
+        }
+        catch (Exception ex)
+        {
+            return null;
+        }
+    }
+
+    public URL getEntryAsURL(String name)
+    {
+        if (hasEntry(name))
+        {
+            try
+            {
+                return new URL("jar:" + m_jar.getFile().toURI().toURL().toExternalForm() + "!/" + name);
+            }
+            catch (MalformedURLException e)
+            {
+                return null;
+            }
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+    public Content getEntryAsContent(String entryName)
+    {
+        // If the entry name refers to the content itself, then
+        // just return it immediately.
+        if (entryName.equals(FelixConstants.CLASS_PATH_DOT))
+        {
+            return new MappedJarContent(m_logger, m_configMap, m_zipFactory,
+                m_revisionLock, m_rootDir, m_jar, false);
+        }
+
+        // Remove any leading slash.
+        entryName = (entryName.startsWith("/")) ? entryName.substring(1) : entryName;
+
+        if (entryName.trim().startsWith(".." + File.separatorChar) ||
+            entryName.contains(File.separator + ".." + File.separatorChar) ||
+            entryName.trim().endsWith(File.separator + "..") ||
+            entryName.trim().equals(".."))
+        {
+            return null;
+        }
+        // Any embedded JAR files will be extracted to the embedded directory,
+        // the same one JarContent uses.
+        File embedDir = new File(m_rootDir, m_jar.getFile().getName() + EMBEDDED_DIRECTORY);
+
+        // Determine if the entry is an emdedded JAR file or
+        // directory in the bundle JAR file. Ignore any entries
+        // that do not exist per the spec.
+        int entry = m_jar.find(entryName);
+
+        if ((entry >= 0) && m_jar.isDirectory(entry))
+        {
+            return new ContentDirectoryContent(this, entryName);
+        }
+        else if ((entry >= 0) && m_jar.getName(entry).endsWith(".jar"))
+        {
+            File extractJar = new File(embedDir, entryName);
+
+            try
+            {
+                if (!BundleCache.getSecureAction().fileExists(extractJar))
+                {
+                    // Extracting the embedded JAR file impacts all other existing
+                    // contents for this revision, so we have to grab the revision
+                    // lock first before trying to extract the embedded JAR file
+                    // to avoid a race condition.
+                    synchronized (m_revisionLock)
+                    {
+                        if (!BundleCache.getSecureAction().fileExists(extractJar))
+                        {
+                            // Make sure that the embedded JAR's parent directory exists;
+                            // it may be in a sub-directory.
+                            File jarDir = extractJar.getParentFile();
+                            if (!BundleCache.getSecureAction().fileExists(jarDir) && !BundleCache.getSecureAction().mkdirs(jarDir))
+                            {
+                                throw new IOException("Unable to create embedded JAR directory.");
+                            }
+
+                            // Extract embedded JAR into its directory.
+                            BundleCache.copyStreamToFile(m_jar.getInputStream(entry), extractJar);
+                        }
+                    }
+                }
+                return create(m_logger, m_configMap, m_zipFactory, m_revisionLock,
+                    extractJar.getParentFile(), extractJar);
+            }
+            catch (Exception ex)
+            {
+                m_logger.log(
+                    Logger.LOG_ERROR,
+                    "Unable to extract embedded JAR file.", ex);
+            }
+        }
+
+        // The entry could not be found, so return null.
+        return null;
+    }
+
+    public String getEntryAsNativeLibrary(String entryName)
+    {
+        // Native libraries are rare and have to be extracted anyway, so
+        // leave the book keeping of extracted copies to JarContent.
+        JarContent libContent;
+        synchronized (this)
+        {
+            if (m_libContent == null)
+            {
+                m_libContent = new JarContent(m_logger, m_configMap, m_zipFactory,
+                    m_revisionLock, m_rootDir, m_jar.getFile(), null);
+            }
+            libContent = m_libContent;
+        }
+        return libContent.getEntryAsNativeLibrary(entryName);
+    }
+
+    public String toString()
+    {
+        return "JAR " + m_jar.getFile().getPath();
+    }
+
+    public File getFile()
+    {
+        return m_jar.getFile();
+    }
+
+    /**
+     * Creates a mapped content for the given JAR file, persisting its index
+     * in the given directory, or a <tt>JarContent</tt> if the file cannot be
+     * mapped.
+    **/
+    static Content create(Logger logger, Map<?, ?> configMap, WeakZipFileFactory zipFactory,
+        Object revisionLock, File rootDir, File file)
+    {
+        try
+        {
+            return new MappedJarContent(logger, configMap, zipFactory, revisionLock,
+                rootDir, MappedJarFile.open(logger, file,
+                    new File(rootDir, file.getName() + MappedJarFile.INDEX_SUFFIX)), true);
+        }
+        catch (IOException ex)
+        {
+            logger.log(Logger.LOG_DEBUG,
+                "Unable to map JAR file " + file + ", using ZIP file instead.", ex);
+            return new JarContent(logger, configMap, zipFactory, revisionLock,
+                rootDir, file, null);
+        }
+    }
+}
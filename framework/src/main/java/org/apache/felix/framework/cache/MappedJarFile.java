@@ -0,0 +1,859 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import org.apache.felix.framework.Logger;
+
+/**
+ * <p>
+ * A read-only view of a JAR file that is memory-mapped once and looked up
+ * through a sorted entry index. The index is derived from the central
+ * directory of the JAR file and persisted next to it, so that it only has
+ * to be built the first time a JAR file is opened. Both the JAR file and
+ * the index live outside of the heap and no file descriptors are held
+ * once the mappings are established.
+ * </p>
+ * <p>
+ * The mappings are released by <tt>close()</tt> rather than when they are
+ * garbage collected, since some platforms do not allow mapped files to be
+ * deleted. Accessing a closed instance throws an
+ * <tt>IllegalStateException</tt> and reading from a stream of a closed
+ * instance throws an <tt>IOException</tt>.
+ * </p>
+ * <p>
+ * Only plain ZIP files of less than 2GB with stored or deflated entries are
+ * supported; <tt>open()</tt> throws an <tt>IOException</tt> for anything
+ * else, in which case callers should fall back to <tt>JarContent</tt>.
+ * </p>
+**/
+class MappedJarFile
+{
+    static final String INDEX_SUFFIX = ".idx";
+
+    private static final int INDEX_MAGIC = 0x464a4958;
+    private static final int INDEX_VERSION = 1;
+    private static final int INDEX_HEADER_SIZE = 32;
+    private static final int INDEX_RECORD_SIZE = 24;
+
+    private static final int EOCD_SIG = 0x06054b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int CEN_SIG = 0x02014b50;
+    private static final int CEN_SIZE = 46;
+    private static final int LOC_SIG = 0x04034b50;
+    private static final int LOC_SIZE = 30;
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final String UTF_8 = "UTF-8";
+
+    private final File m_file;
+    private final ByteBuffer m_data;
+    private final ByteBuffer m_index;
+    private final int m_count;
+    private final int m_namesStart;
+
+    // Guards the mappings, which must not be accessed once released.
+    private final ReadWriteLock m_lock = new ReentrantReadWriteLock();
+    private boolean m_closed = false;
+
+    private MappedJarFile(File file, ByteBuffer data, ByteBuffer index)
+    {
+        m_file = file;
+        m_data = data;
+        m_index = index;
+        m_count = index.getInt(24);
+        m_namesStart = INDEX_HEADER_SIZE + m_count * INDEX_RECORD_SIZE;
+    }
+
+    /**
+     * Maps the given JAR file and its index, which is rebuilt if it is
+     * missing or does not match the JAR file anymore.
+     * @param logger the logger to report index problems to.
+     * @param file the JAR file to map.
+     * @param indexFile the file to persist the entry index in.
+     * @return the mapped JAR file.
+     * @throws IOException if the file cannot be mapped or is not supported.
+    **/
+    static MappedJarFile open(Logger logger, File file, File indexFile)
+        throws IOException
+    {
+        ByteBuffer data = map(file);
+        long length = file.length();
+        long lastModified = file.lastModified();
+
+        ByteBuffer index = null;
+        if (BundleCache.getSecureAction().fileExists(indexFile))
+        {
+            try
+            {
+                index = map(indexFile);
+                if (!isValidIndex(index, length, lastModified))
+                {
+                    unmap(index);
+                    index = null;
+                }
+            }
+            catch (IOException ex)
+            {
+                index = null;
+            }
+        }
+
+        if (index == null)
+        {
+            byte[] bytes;
+            try
+            {
+                bytes = createIndex(data, length, lastModified);
+            }
+            catch (IOException ex)
+            {
+                unmap(data);
+                throw ex;
+            }
+            try
+            {
+                writeIndex(indexFile, bytes);
+                index = map(indexFile);
+            }
+            catch (IOException ex)
+            {
+                // The cache may be read-only, which only costs us the
+                // persisted index, so keep the index on the heap.
+                logger.log(Logger.LOG_DEBUG,
+                    "Unable to persist JAR index " + indexFile + ".", ex);
+                index = ByteBuffer.wrap(bytes);
+            }
+        }
+
+        return new MappedJarFile(file, data, index);
+    }
+
+    /**
+     * Releases the mappings of the JAR file and its index. Waits for
+     * pending lookups and reads to complete.
+    **/
+    void close()
+    {
+        m_lock.writeLock().lock();
+        try
+        {
+            if (!m_closed)
+            {
+                m_closed = true;
+                unmap(m_data);
+                unmap(m_index);
+            }
+        }
+        finally
+        {
+            m_lock.writeLock().unlock();
+        }
+    }
+
+    File getFile()
+    {
+        return m_file;
+    }
+
+    int size()
+    {
+        return m_count;
+    }
+
+    /**
+     * Finds the entry with the given name. Like <tt>ZipFile.getEntry()</tt>,
+     * a name without a trailing slash also finds the directory entry of that
+     * name.
+     * @param name the name of the entry.
+     * @return the index of the entry or <tt>-1</tt> if there is none.
+    **/
+    int find(String name)
+    {
+        byte[] key;
+        try
+        {
+            key = name.getBytes(UTF_8);
+        }
+        catch (IOException ex)
+        {
+            return -1;
+        }
+        acquire();
+        try
+        {
+            int idx = find(key, key.length);
+            if ((idx < 0) && (key.length > 0) && (key[key.length - 1] != '/'))
+            {
+                byte[] dir = new byte[key.length + 1];
+                System.arraycopy(key, 0, dir, 0, key.length);
+                dir[key.length] = '/';
+                idx = find(dir, dir.length);
+            }
+            return idx;
+        }
+        finally
+        {
+            release();
+        }
+    }
+
+    boolean isDirectory(int entry)
+    {
+        acquire();
+        try
+        {
+            int off = record(entry);
+            int nameLen = m_index.getInt(off + 4);
+            return (nameLen > 0)
+                && (m_index.get(m_namesStart + m_index.getInt(off) + nameLen - 1) == '/');
+        }
+        finally
+        {
+            release();
+        }
+    }
+
+    String getName(int entry)
+    {
+        byte[] name;
+        acquire();
+        try
+        {
+            int off = record(entry);
+            name = new byte[m_index.getInt(off + 4)];
+            ByteBuffer names = m_index.duplicate();
+            names.position(m_namesStart + m_index.getInt(off));
+            names.get(name);
+        }
+        finally
+        {
+            release();
+        }
+        try
+        {
+            return new String(name, UTF_8);
+        }
+        catch (IOException ex)
+        {
+            // UTF-8 is always supported.
+            throw new IllegalStateException(ex.getMessage());
+        }
+    }
+
+    long getSize(int entry)
+    {
+        acquire();
+        try
+        {
+            return m_index.getInt(record(entry) + 20) & 0xffffffffL;
+        }
+        finally
+        {
+            release();
+        }
+    }
+
+    byte[] getBytes(int entry) throws IOException
+    {
+        int method;
+        int size;
+        // Inflater only accepts arrays on older JREs. The extra zero byte
+        // is required by Inflater when using the "nowrap" option.
+        byte[] compressed;
+        acquire();
+        try
+        {
+            int off = record(entry);
+            method = m_index.getInt(off + 8);
+            int compressedSize = m_index.getInt(off + 16);
+            size = m_index.getInt(off + 20);
+
+            ByteBuffer data = slice(off, compressedSize);
+            if (method == STORED)
+            {
+                byte[] bytes = new byte[compressedSize];
+                data.get(bytes);
+                return bytes;
+            }
+            compressed = new byte[compressedSize + 1];
+            data.get(compressed, 0, compressedSize);
+        }
+        finally
+        {
+            release();
+        }
+
+        byte[] bytes = new byte[size];
+        Inflater inflater = new Inflater(true);
+        try
+        {
+            inflater.setInput(compressed);
+            int n = 0;
+            while ((n < size) && !inflater.finished())
+            {
+                int count = inflater.inflate(bytes, n, size - n);
+                if ((count == 0) && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    break;
+                }
+                n += count;
+            }
+            if (n != size)
+            {
+                throw new ZipException("Invalid entry size for entry "
+                    + getName(entry) + " in " + m_file);
+            }
+        }
+        catch (DataFormatException ex)
+        {
+            throw new ZipException(ex.getMessage());
+        }
+        finally
+        {
+            inflater.end();
+        }
+        return bytes;
+    }
+
+    InputStream getInputStream(int entry) throws IOException
+    {
+        int method;
+        int compressedSize;
+        InputStream is;
+        acquire();
+        try
+        {
+            int off = record(entry);
+            method = m_index.getInt(off + 8);
+            compressedSize = m_index.getInt(off + 16);
+            is = new ByteBufferInputStream(slice(off, compressedSize), method == DEFLATED);
+        }
+        finally
+        {
+            release();
+        }
+        if (method == DEFLATED)
+        {
+            final Inflater inflater = new Inflater(true);
+            is = new InflaterInputStream(is, inflater,
+                Math.max(512, Math.min(8192, compressedSize)))
+            {
+                private boolean m_closed = false;
+
+                public void close() throws IOException
+                {
+                    if (!m_closed)
+                    {
+                        m_closed = true;
+                        inflater.end();
+                        super.close();
+                    }
+                }
+            };
+        }
+        return is;
+    }
+
+    Enumeration<String> names()
+    {
+        return new Enumeration<String>()
+        {
+            private int m_next = 0;
+
+            public boolean hasMoreElements()
+            {
+                return m_next < m_count;
+            }
+
+            public String nextElement()
+            {
+                if (m_next >= m_count)
+                {
+                    throw new NoSuchElementException();
+                }
+                return getName(m_next++);
+            }
+        };
+    }
+
+    //
+    // Private methods.
+    //
+
+    /**
+     * Acquires the right to access the mappings.
+     * @throws IllegalStateException if the mappings have been released.
+    **/
+    private void acquire()
+    {
+        m_lock.readLock().lock();
+        if (m_closed)
+        {
+            m_lock.readLock().unlock();
+            throw new IllegalStateException("JAR file has been closed: " + m_file);
+        }
+    }
+
+    private void release()
+    {
+        m_lock.readLock().unlock();
+    }
+
+    private int record(int entry)
+    {
+        return INDEX_HEADER_SIZE + entry * INDEX_RECORD_SIZE;
+    }
+
+    private int find(byte[] key, int keyLen)
+    {
+        int low = 0;
+        int high = m_count - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int off = record(mid);
+            int cmp = compare(m_index, m_namesStart + m_index.getInt(off),
+                m_index.getInt(off + 4), key, keyLen);
+            if (cmp < 0)
+            {
+                low = mid + 1;
+            }
+            else if (cmp > 0)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static int compare(ByteBuffer buf, int off, int len, byte[] key, int keyLen)
+    {
+        int n = Math.min(len, keyLen);
+        for (int i = 0; i < n; i++)
+        {
+            int a = buf.get(off + i) & 0xff;
+            int b = key[i] & 0xff;
+            if (a != b)
+            {
+                return a - b;
+            }
+        }
+        return len - keyLen;
+    }
+
+    /**
+     * Returns the (compressed) data of the entry at the given index record,
+     * which starts after the local file header of the entry.
+    **/
+    private ByteBuffer slice(int off, int compressedSize) throws IOException
+    {
+        int loc = m_index.getInt(off + 12);
+        if ((loc < 0) || (loc + LOC_SIZE > m_data.limit())
+            || (m_data.getInt(loc) != LOC_SIG))
+        {
+            throw new ZipException("Invalid local header in " + m_file);
+        }
+        int start = loc + LOC_SIZE
+            + (m_data.getShort(loc + 26) & 0xffff)
+            + (m_data.getShort(loc + 28) & 0xffff);
+        if ((compressedSize < 0) || (start + compressedSize > m_data.limit()))
+        {
+            throw new ZipException("Invalid entry size in " + m_file);
+        }
+        ByteBuffer data = m_data.duplicate();
+        data.limit(start + compressedSize);
+        data.position(start);
+        return data;
+    }
+
+    private static ByteBuffer map(File file) throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+            {
+                throw new IOException("File too large to be mapped: " + file);
+            }
+            // The mapping stays valid after the channel is closed.
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    /**
+     * Releases the given mapping right away if the JRE allows it, otherwise
+     * it is released once garbage collected.
+    **/
+    private static void unmap(ByteBuffer buffer)
+    {
+        if (!buffer.isDirect())
+        {
+            return;
+        }
+        try
+        {
+            // Java 9 and later.
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = BundleCache.getSecureAction().getMethod(
+                unsafeClass, "invokeCleaner", new Class<?>[] { ByteBuffer.class });
+            Object unsafe = BundleCache.getSecureAction().getDeclaredField(
+                unsafeClass, "theUnsafe", null);
+            BundleCache.getSecureAction().invokeDirect(invokeCleaner, unsafe, new Object[] { buffer });
+            return;
+        }
+        catch (Throwable ex)
+        {
+            // Try the Java 8 way.
+        }
+        try
+        {
+            Method cleanerMethod = BundleCache.getSecureAction().getMethod(
+                buffer.getClass(), "cleaner", null);
+            Object cleaner = BundleCache.getSecureAction().invoke(cleanerMethod, buffer, null);
+            if (cleaner != null)
+            {
+                Method clean = BundleCache.getSecureAction().getMethod(
+                    cleaner.getClass(), "clean", null);
+                BundleCache.getSecureAction().invoke(clean, cleaner, null);
+            }
+        }
+        catch (Throwable ex)
+        {
+            // Leave it to the garbage collector.
+        }
+    }
+
+    private static boolean isValidIndex(ByteBuffer index, long length, long lastModified)
+    {
+        if ((index.limit() < INDEX_HEADER_SIZE)
+            || (index.getInt(0) != INDEX_MAGIC)
+            || (index.getInt(4) != INDEX_VERSION)
+            || (index.getLong(8) != length)
+            || (index.getLong(16) != lastModified))
+        {
+            return false;
+        }
+        int count = index.getInt(24);
+        int namesLen = index.getInt(28);
+        return (count >= 0) && (namesLen >= 0)
+            && ((long) INDEX_HEADER_SIZE + (long) count * INDEX_RECORD_SIZE + namesLen
+                == index.limit());
+    }
+
+    /**
+     * Parses the central directory of the mapped JAR file into the index
+     * format: a fixed size header, one fixed size record per entry sorted
+     * by entry name, followed by the UTF-8 encoded entry names. All values
+     * are little endian.
+    **/
+    private static byte[] createIndex(ByteBuffer data, long length, long lastModified)
+        throws IOException
+    {
+        int eocd = -1;
+        int stop = Math.max(0, data.limit() - EOCD_SIZE - 0xffff);
+        for (int i = data.limit() - EOCD_SIZE; i >= stop; i--)
+        {
+            if ((data.getInt(i) == EOCD_SIG)
+                && (i + EOCD_SIZE + (data.getShort(i + 20) & 0xffff) == data.limit()))
+            {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0)
+        {
+            throw new ZipException("No central directory found.");
+        }
+
+        int count = data.getShort(eocd + 10) & 0xffff;
+        long cenSize = data.getInt(eocd + 12) & 0xffffffffL;
+        long cenOffset = data.getInt(eocd + 16) & 0xffffffffL;
+        if ((count == 0xffff) || (cenSize == 0xffffffffL) || (cenOffset == 0xffffffffL))
+        {
+            throw new ZipException("ZIP64 is not supported.");
+        }
+        // Allow for data in front of the ZIP file, like self-extracting
+        // archives have, by computing the offset of the central directory
+        // relative to the end of central directory record.
+        long cenStart = eocd - cenSize;
+        long delta = cenStart - cenOffset;
+        if ((cenStart < 0) || (delta < 0))
+        {
+            throw new ZipException("Invalid central directory.");
+        }
+
+        final byte[][] names = new byte[count][];
+        final int[][] records = new int[count][];
+        int pos = (int) cenStart;
+        int namesLen = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if ((pos + CEN_SIZE > eocd) || (data.getInt(pos) != CEN_SIG))
+            {
+                throw new ZipException("Invalid central directory header.");
+            }
+            int flags = data.getShort(pos + 8) & 0xffff;
+            int method = data.getShort(pos + 10) & 0xffff;
+            long compressedSize = data.getInt(pos + 20) & 0xffffffffL;
+            long size = data.getInt(pos + 24) & 0xffffffffL;
+            int nameLen = data.getShort(pos + 28) & 0xffff;
+            int extraLen = data.getShort(pos + 30) & 0xffff;
+            int commentLen = data.getShort(pos + 32) & 0xffff;
+            long loc = (data.getInt(pos + 42) & 0xffffffffL) + delta;
+
+            if (((flags & 1) != 0) || ((method != STORED) && (method != DEFLATED)))
+            {
+                throw new ZipException("Encrypted or unsupported entry.");
+            }
+            if ((compressedSize > Integer.MAX_VALUE) || (size > Integer.MAX_VALUE)
+                || (loc > Integer.MAX_VALUE))
+            {
+                throw new ZipException("ZIP64 is not supported.");
+            }
+
+            byte[] name = new byte[nameLen];
+            ByteBuffer buf = data.duplicate();
+            buf.position(pos + CEN_SIZE);
+            buf.get(name);
+
+            names[i] = name;
+            records[i] = new int[] { method, (int) loc, (int) compressedSize, (int) size };
+            namesLen += nameLen;
+            pos += CEN_SIZE + nameLen + extraLen + commentLen;
+        }
+
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++)
+        {
+            order[i] = Integer.valueOf(i);
+        }
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            public int compare(Integer o1, Integer o2)
+            {
+                byte[] a = names[o1.intValue()];
+                byte[] b = names[o2.intValue()];
+                return MappedJarFile.compare(ByteBuffer.wrap(a), 0, a.length, b, b.length);
+            }
+        });
+
+        ByteBuffer index = ByteBuffer.allocate(
+            INDEX_HEADER_SIZE + count * INDEX_RECORD_SIZE + namesLen);
+        index.order(ByteOrder.LITTLE_ENDIAN);
+        index.putInt(INDEX_MAGIC);
+        index.putInt(INDEX_VERSION);
+        index.putLong(length);
+        index.putLong(lastModified);
+        int unique = 0;
+        int nameOff = 0;
+        byte[] last = null;
+        for (int i = 0; i < count; i++)
+        {
+            int idx = order[i].intValue();
+            byte[] name = names[idx];
+            // Duplicate names are legal in a ZIP file, keep the first one
+            // like ZipFile does.
+            if ((last != null) && Arrays.equals(last, name))
+            {
+                continue;
+            }
+            last = name;
+            int[] record = records[idx];
+            index.position(INDEX_HEADER_SIZE + unique * INDEX_RECORD_SIZE);
+            index.putInt(nameOff);
+            index.putInt(name.length);
+            index.putInt(record[0]);
+            index.putInt(record[1]);
+            index.putInt(record[2]);
+            index.putInt(record[3]);
+            unique++;
+            nameOff += name.length;
+        }
+        // Names follow the records of the unique entries.
+        int namesStart = INDEX_HEADER_SIZE + unique * INDEX_RECORD_SIZE;
+        last = null;
+        index.position(namesStart);
+        for (int i = 0; i < count; i++)
+        {
+            byte[] name = names[order[i].intValue()];
+            if ((last == null) || !Arrays.equals(last, name))
+            {
+                index.put(name);
+            }
+            last = name;
+        }
+        index.putInt(24, unique);
+        index.putInt(28, nameOff);
+
+        byte[] result = new byte[namesStart + nameOff];
+        System.arraycopy(index.array(), 0, result, 0, result.length);
+        return result;
+    }
+
+    private static void writeIndex(File indexFile, byte[] bytes) throws IOException
+    {
+        // Write to a temporary file first so that readers never see a
+        // partially written index.
+        File tmp = new File(indexFile.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            BundleCache.getSecureAction().getFileOutputStream(tmp)));
+        try
+        {
+            out.write(bytes);
+        }
+        finally
+        {
+            out.close();
+        }
+        BundleCache.getSecureAction().deleteFile(indexFile);
+        if (!BundleCache.getSecureAction().renameFile(tmp, indexFile))
+        {
+            BundleCache.getSecureAction().deleteFile(tmp);
+            throw new IOException("Unable to rename " + tmp + " to " + indexFile);
+        }
+    }
+
+    /**
+     * An input stream over a mapped buffer. When it feeds an
+     * <tt>Inflater</tt> using the "nowrap" option, it appends the extra
+     * dummy byte the inflater requires at the end of the input.
+    **/
+    private class ByteBufferInputStream extends InputStream
+    {
+        private final ByteBuffer m_buffer;
+        private boolean m_dummy;
+
+        ByteBufferInputStream(ByteBuffer buffer, boolean dummy)
+        {
+            m_buffer = buffer;
+            m_dummy = dummy;
+        }
+
+        public int read() throws IOException
+        {
+            if (m_buffer.hasRemaining())
+            {
+                acquireForRead();
+                try
+                {
+                    return m_buffer.get() & 0xff;
+                }
+                finally
+                {
+                    release();
+                }
+            }
+            if (m_dummy)
+            {
+                m_dummy = false;
+                return 0;
+            }
+            return -1;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (len == 0)
+            {
+                return 0;
+            }
+            int n = Math.min(len, m_buffer.remaining());
+            if (n > 0)
+            {
+                acquireForRead();
+                try
+                {
+                    m_buffer.get(b, off, n);
+                }
+                finally
+                {
+                    release();
+                }
+                return n;
+            }
+            if (m_dummy)
+            {
+                m_dummy = false;
+                b[off] = 0;
+                return 1;
+            }
+            return -1;
+        }
+
+        public long skip(long n)
+        {
+            int count = (int) Math.max(0, Math.min(n, m_buffer.remaining()));
+            m_buffer.position(m_buffer.position() + count);
+            return count;
+        }
+
+        public int available()
+        {
+            return m_buffer.remaining();
+        }
+
+        private void acquireForRead() throws IOException
+        {
+            try
+            {
+                acquire();
+            }
+            catch (IllegalStateException ex)
+            {
+                throw new IOException(ex.getMessage());
+            }
+        }
+    }
+}
@@ -47,6 +47,11 @@ public class CapabilitySet
 {
     private final SortedMap<String, Map<Object, Set<BundleCapability>>> m_indices; // Should also be concurrent!
     private final Set<Capability> m_capSet = Collections.newSetFromMap(new ConcurrentHashMap<Capability, Boolean>());
+    // Secondary indices bucketing the capabilities of each index entry by
+    // the value of the range attribute, if there is one.
+    private final SortedMap<String, ConcurrentMap<Object, RangeIndex>> m_rangeIndices;
+    private final String m_rangeProp;
+    private final boolean m_caseSensitive;
     private final static SecureAction m_secureAction = new SecureAction();
 
     public void dump()
@@ -79,15 +84,46 @@ public class CapabilitySet
     }
 
     public CapabilitySet(final List<String> indexProps, final boolean caseSensitive)
+    {
+        this(indexProps, null, caseSensitive);
+    }
+
+    /**
+     * Creates a capability set with indices for the given attributes. If a
+     * range attribute is given, the capabilities of every index entry are
+     * additionally indexed by the <tt>Version</tt> value of that attribute,
+     * so that conjunctions of an equality check of an indexed attribute and
+     * version comparisons, like package imports with a version range, only
+     * have to look at the capabilities within the range.
+     * @param indexProps the attributes to index or <tt>null</tt>.
+     * @param rangeProp the version attribute to index the capabilities of
+     *        every index entry by or <tt>null</tt>.
+     * @param caseSensitive whether attribute names are case sensitive.
+    **/
+    public CapabilitySet(
+        final List<String> indexProps, final String rangeProp, final boolean caseSensitive)
     {
         m_indices = (caseSensitive)
             ? new ConcurrentSkipListMap<String, Map<Object, Set<BundleCapability>>>()
             : new ConcurrentSkipListMap<String, Map<Object, Set<BundleCapability>>>(
                 StringComparator.COMPARATOR);
+        m_rangeIndices = (rangeProp == null)
+            ? null
+            : (caseSensitive)
+                ? new ConcurrentSkipListMap<String, ConcurrentMap<Object, RangeIndex>>()
+                : new ConcurrentSkipListMap<String, ConcurrentMap<Object, RangeIndex>>(
+                    StringComparator.COMPARATOR);
+        m_rangeProp = rangeProp;
+        m_caseSensitive = caseSensitive;
         for (int i = 0; (indexProps != null) && (i < indexProps.size()); i++)
         {
             m_indices.put(
                 indexProps.get(i), new ConcurrentHashMap<Object, Set<BundleCapability>>());
+            if (m_rangeIndices != null)
+            {
+                m_rangeIndices.put(
+                    indexProps.get(i), new ConcurrentHashMap<Object, RangeIndex>());
+            }
         }
     }
 
@@ -108,31 +144,43 @@ public class CapabilitySet
 
                 ConcurrentMap<Object, Set<BundleCapability>> index =
                         (ConcurrentMap<Object, Set<BundleCapability>>) entry.getValue();
+                ConcurrentMap<Object, RangeIndex> rangeIndex = (m_rangeIndices == null)
+                    ? null : m_rangeIndices.get(entry.getKey());
 
                 if (value instanceof Collection)
                 {
                     Collection c = (Collection) value;
                     for (Object o : c)
                     {
-                        indexCapability(index, cap, o);
+                        indexCapability(index, rangeIndex, cap, o);
                     }
                 }
                 else
                 {
-                    indexCapability(index, cap, value);
+                    indexCapability(index, rangeIndex, cap, value);
                 }
             }
         }
     }
 
     private void indexCapability(
-        ConcurrentMap<Object, Set<BundleCapability>> index, BundleCapability cap, Object capValue)
+        ConcurrentMap<Object, Set<BundleCapability>> index,
+        ConcurrentMap<Object, RangeIndex> rangeIndex, BundleCapability cap, Object capValue)
     {
         Set<BundleCapability> caps = Collections.newSetFromMap(new ConcurrentHashMap<BundleCapability, Boolean>());
         Set<BundleCapability> prevval = index.putIfAbsent(capValue, caps);
         if (prevval != null)
             caps = prevval;
         caps.add(cap);
+
+        if (rangeIndex != null)
+        {
+            RangeIndex ranges = new RangeIndex();
+            RangeIndex prevranges = rangeIndex.putIfAbsent(capValue, ranges);
+            if (prevranges != null)
+                ranges = prevranges;
+            ranges.add(cap, cap.getAttributes().get(m_rangeProp));
+        }
     }
 
     public void removeCapability(final BundleCapability cap)
@@ -150,18 +198,20 @@ public class CapabilitySet
                     }
 
                     Map<Object, Set<BundleCapability>> index = entry.getValue();
+                    Map<Object, RangeIndex> rangeIndex = (m_rangeIndices == null)
+                        ? null : m_rangeIndices.get(entry.getKey());
 
                     if (value instanceof Collection)
                     {
                         Collection c = (Collection) value;
                         for (Object o : c)
                         {
-                            deindexCapability(index, cap, o);
+                            deindexCapability(index, rangeIndex, cap, o);
                         }
                     }
                     else
                     {
-                        deindexCapability(index, cap, value);
+                        deindexCapability(index, rangeIndex, cap, value);
                     }
                 }
             }
@@ -169,7 +219,8 @@ public class CapabilitySet
     }
 
     private void deindexCapability(
-        Map<Object, Set<BundleCapability>> index, BundleCapability cap, Object value)
+        Map<Object, Set<BundleCapability>> index, Map<Object, RangeIndex> rangeIndex,
+        BundleCapability cap, Object value)
     {
         Set<BundleCapability> caps = index.get(value);
         if (caps != null)
@@ -180,64 +231,65 @@ public class CapabilitySet
                 index.remove(value);
             }
         }
+
+        RangeIndex ranges = (rangeIndex == null) ? null : rangeIndex.get(value);
+        if (ranges != null)
+        {
+            ranges.remove(cap, cap.getAttributes().get(m_rangeProp));
+            if (ranges.isEmpty())
+            {
+                rangeIndex.remove(value);
+            }
+        }
     }
 
     public Set<Capability> match(final SimpleFilter sf, final boolean obeyMandatory)
     {
-        final Set<Capability> matches = match(m_capSet, sf);
+        final Set<Capability> matches = match(m_capSet, sf.getCompiled());
         return (obeyMandatory)
             ? matchMandatory(matches, sf)
             : matches;
     }
 
-    private Set<Capability> match(Set<Capability> caps, final SimpleFilter sf)
+    private Set<Capability> match(Set<Capability> caps, final CompiledFilter cf)
     {
         Set<Capability> matches = Collections.newSetFromMap(new ConcurrentHashMap<Capability, Boolean>());
 
-        if (sf.getOperation() == SimpleFilter.MATCH_ALL)
+        if (cf.getOperation() == SimpleFilter.MATCH_ALL)
         {
             matches.addAll(caps);
         }
-        else if (sf.getOperation() == SimpleFilter.AND)
+        else if (cf.getOperation() == SimpleFilter.AND)
         {
-            // Evaluate each subfilter against the remaining capabilities.
-            // For AND we calculate the intersection of each subfilter.
-            // We can short-circuit the AND operation if there are no
-            // remaining capabilities.
-            final List<SimpleFilter> sfs = (List<SimpleFilter>) sf.getValue();
-            for (int i = 0; (caps.size() > 0) && (i < sfs.size()); i++)
-            {
-                matches = match(caps, sfs.get(i));
-                caps = matches;
-            }
+            matches = matchAnd(caps, cf.getChildren());
         }
-        else if (sf.getOperation() == SimpleFilter.OR)
+        else if (cf.getOperation() == SimpleFilter.OR)
         {
             // Evaluate each subfilter against the remaining capabilities.
             // For OR we calculate the union of each subfilter.
-            List<SimpleFilter> sfs = (List<SimpleFilter>) sf.getValue();
-            for (int i = 0; i < sfs.size(); i++)
+            CompiledFilter[] cfs = cf.getChildren();
+            for (int i = 0; i < cfs.length; i++)
             {
-                matches.addAll(match(caps, sfs.get(i)));
+                matches.addAll(match(caps, cfs[i]));
             }
         }
-        else if (sf.getOperation() == SimpleFilter.NOT)
+        else if (cf.getOperation() == SimpleFilter.NOT)
         {
             // Evaluate each subfilter against the remaining capabilities.
             // For OR we calculate the union of each subfilter.
             matches.addAll(caps);
-            List<SimpleFilter> sfs = (List<SimpleFilter>) sf.getValue();
-            for (int i = 0; i < sfs.size(); i++)
+            CompiledFilter[] cfs = cf.getChildren();
+            for (int i = 0; i < cfs.length; i++)
             {
-                matches.removeAll(match(caps, sfs.get(i)));
+                matches.removeAll(match(caps, cfs[i]));
             }
         }
         else
         {
-            Map<Object, Set<BundleCapability>> index = m_indices.get(sf.getName());
-            if ((sf.getOperation() == SimpleFilter.EQ) && (index != null))
+            Map<Object, Set<BundleCapability>> index = m_indices.get(cf.getName());
+            if ((cf.getOperation() == SimpleFilter.EQ) && (index != null))
             {
-                Set<BundleCapability> existingCaps = index.get(sf.getValue());
+                Set<BundleCapability> existingCaps = index.get(cf.getValue());
                 if (existingCaps != null)
                 {
                     matches.addAll(existingCaps);
@@ -252,13 +304,9 @@ public class CapabilitySet
                 for (Iterator<Capability> it = caps.iterator(); it.hasNext(); )
                 {
                     Capability cap = it.next();
-                    Object lhs = cap.getAttributes().get(sf.getName());
-                    if (lhs != null)
+                    if (cf.compare(cap.getAttributes().get(cf.getName())))
                     {
-                        if (compare(lhs, sf.getValue(), sf.getOperation()))
-                        {
-                            matches.add(cap);
-                        }
+                        matches.add(cap);
                     }
                 }
             }
@@ -267,63 +315,152 @@ public class CapabilitySet
         return matches;
     }
 
-    public static boolean matches(Capability cap, SimpleFilter sf)
-    {
-        return matchesInternal(cap, sf) && matchMandatory(cap, sf);
-    }
-
-    private static boolean matchesInternal(Capability cap, SimpleFilter sf)
+    private Set<Capability> matchAnd(Set<Capability> caps, final CompiledFilter[] cfs)
     {
-        boolean matched = true;
-
-        if (sf.getOperation() == SimpleFilter.MATCH_ALL)
+        Set<Capability> matches = Collections.newSetFromMap(new ConcurrentHashMap<Capability, Boolean>());
+        if (cfs.length == 0)
         {
-            matched = true;
+            return matches;
         }
-        else if (sf.getOperation() == SimpleFilter.AND)
+
+        // For AND we calculate the intersection of each subfilter. Equality
+        // checks of indexed attributes are evaluated first, starting with
+        // the cheapest index lookup, so that the remaining subfilters only
+        // have to be evaluated against the capabilities found by the index.
+        Set<BundleCapability> smallest = null;
+        List<Set<BundleCapability>> indexed = null;
+        List<CompiledFilter> indexedFilters = null;
+        List<CompiledFilter> predicates = null;
+        List<CompiledFilter> others = null;
+        for (int i = 0; i < cfs.length; i++)
         {
-            // Evaluate each subfilter against the remaining capabilities.
-            // For AND we calculate the intersection of each subfilter.
-            // We can short-circuit the AND operation if there are no
-            // remaining capabilities.
-            List<SimpleFilter> sfs = (List<SimpleFilter>) sf.getValue();
-            for (int i = 0; matched && (i < sfs.size()); i++)
+            Map<Object, Set<BundleCapability>> index = (cfs[i].getOperation() == SimpleFilter.EQ)
+                ? m_indices.get(cfs[i].getName()) : null;
+            if (index != null)
             {
-                matched = matchesInternal(cap, sfs.get(i));
+                Set<BundleCapability> existingCaps = index.get(cfs[i].getValue());
+                if (existingCaps == null)
+                {
+                    return matches;
+                }
+                if (indexed == null)
+                {
+                    indexed = new ArrayList<Set<BundleCapability>>(cfs.length);
+                    indexedFilters = new ArrayList<CompiledFilter>(cfs.length);
+                }
+                indexed.add(existingCaps);
+                indexedFilters.add(cfs[i]);
+                if ((smallest == null) || (existingCaps.size() < smallest.size()))
+                {
+                    smallest = existingCaps;
+                }
             }
-        }
-        else if (sf.getOperation() == SimpleFilter.OR)
-        {
-            // Evaluate each subfilter against the remaining capabilities.
-            // For OR we calculate the union of each subfilter.
-            matched = false;
-            List<SimpleFilter> sfs = (List<SimpleFilter>) sf.getValue();
-            for (int i = 0; !matched && (i < sfs.size()); i++)
+            else if (cfs[i].isPredicate(m_indices))
             {
-                matched = matchesInternal(cap, sfs.get(i));
+                if (predicates == null)
+                {
+                    predicates = new ArrayList<CompiledFilter>(cfs.length);
+                }
+                predicates.add(cfs[i]);
+            }
+            else
+            {
+                if (others == null)
+                {
+                    others = new ArrayList<CompiledFilter>(cfs.length);
+                }
+                others.add(cfs[i]);
             }
         }
-        else if (sf.getOperation() == SimpleFilter.NOT)
+
+        if (smallest != null)
         {
-            // Evaluate each subfilter against the remaining capabilities.
-            // For OR we calculate the union of each subfilter.
-            List<SimpleFilter> sfs = (List<SimpleFilter>) sf.getValue();
-            for (int i = 0; i < sfs.size(); i++)
+            Collection<BundleCapability> candidates = smallest;
+            if (m_rangeIndices != null)
+            {
+                candidates = getRangeCandidates(cfs, indexedFilters, smallest);
+            }
+            for (BundleCapability cap : candidates)
             {
-                matched = !(matchesInternal(cap, sfs.get(i)));
+                boolean matched = (caps == m_capSet) || caps.contains(cap);
+                for (int i = 0; matched && (i < indexed.size()); i++)
+                {
+                    matched = (indexed.get(i) == candidates) || indexed.get(i).contains(cap);
+                }
+                if (matched)
+                {
+                    matches.add(cap);
+                }
             }
+            caps = matches;
         }
-        else
+
+        // Evaluate all remaining subfilters which do not depend on the
+        // indices in one pass over the remaining capabilities.
+        if ((predicates != null) && !caps.isEmpty())
         {
-            matched = false;
-            Object lhs = cap.getAttributes().get(sf.getName());
-            if (lhs != null)
+            matches = Collections.newSetFromMap(new ConcurrentHashMap<Capability, Boolean>());
+            CompiledFilter.matchAll(caps, predicates, matches);
+            caps = matches;
+        }
+
+        // We can short-circuit the AND operation if there are no
+        // remaining capabilities.
+        for (int i = 0; (others != null) && !caps.isEmpty() && (i < others.size()); i++)
+        {
+            matches = match(caps, others.get(i));
+            caps = matches;
+        }
+
+        // All subfilters may have been evaluated against the capabilities
+        // of this set without copying them.
+        if (caps == m_capSet)
+        {
+            matches.addAll(caps);
+        }
+
+        return matches;
+    }
+
+    /**
+     * Returns the capabilities of the entries of the range indices of the
+     * indexed equality checks which are within the version bounds implied
+     * by the given subfilters of a conjunction, if that is fewer
+     * capabilities than the given smallest index entry.
+    **/
+    private Collection<BundleCapability> getRangeCandidates(CompiledFilter[] cfs,
+        List<CompiledFilter> indexedFilters, Set<BundleCapability> smallest)
+    {
+        RangeIndex.Bounds bounds = new RangeIndex.Bounds();
+        for (int i = 0; i < cfs.length; i++)
+        {
+            bounds.restrict(cfs[i], m_rangeProp, m_caseSensitive);
+        }
+        if (!bounds.isBounded())
+        {
+            return smallest;
+        }
+
+        Collection<BundleCapability> candidates = smallest;
+        for (CompiledFilter cf : indexedFilters)
+        {
+            Map<Object, RangeIndex> rangeIndex = m_rangeIndices.get(cf.getName());
+            RangeIndex ranges = (rangeIndex == null) ? null : rangeIndex.get(cf.getValue());
+            if (ranges != null)
             {
-                matched = compare(lhs, sf.getValue(), sf.getOperation());
+                List<BundleCapability> caps = ranges.get(bounds, candidates.size() - 1);
+                if (caps != null)
+                {
+                    candidates = caps;
+                }
             }
         }
+        return candidates;
+    }
 
-        return matched;
+    public static boolean matches(Capability cap, SimpleFilter sf)
+    {
+        return sf.getCompiled().matches(cap) && matchMandatory(cap, sf);
     }
 
     private static Set<Capability> matchMandatory(
@@ -379,7 +516,7 @@ public class CapabilitySet
     private static final Class<?>[] STRING_CLASS = new Class[] { String.class };
     private static final String VALUE_OF_METHOD_NAME = "valueOf";
 
-    private static boolean compare(Object lhs, Object rhsUnknown, int op)
+    static boolean compare(Object lhs, Object rhsUnknown, int op, CompiledFilter cf)
     {
         if (lhs == null)
         {
@@ -397,15 +534,7 @@ public class CapabilitySet
         //Version is comparable so we need to check this first
         if(lhs instanceof Version && op == SimpleFilter.EQ)
         {
-            Object rhs = null;
-            try
-            {
-                rhs = coerceType(lhs, (String) rhsUnknown);
-            }
-            catch (Exception ex)
-            {
-                //Do nothing will check later if rhs is null
-            }
+            Object rhs = coerce(lhs, rhsUnknown, cf);
 
             if(rhs != null && rhs instanceof VersionRange)
             {
@@ -430,11 +559,8 @@ public class CapabilitySet
             }
             else
             {
-                try
-                {
-                    rhs = coerceType(lhs, (String) rhsUnknown);
-                }
-                catch (Exception ex)
+                rhs = coerce(lhs, rhsUnknown, cf);
+                if (rhs == null)
                 {
                     return false;
                 }
@@ -481,12 +607,8 @@ public class CapabilitySet
         // Booleans do not implement comparable, so special case them.
         else if (lhs instanceof Boolean)
         {
-            Object rhs;
-            try
-            {
-                rhs = coerceType(lhs, (String) rhsUnknown);
-            }
-            catch (Exception ex)
+            Object rhs = coerce(lhs, rhsUnknown, cf);
+            if (rhs == null)
             {
                 return false;
             }
@@ -518,7 +640,7 @@ public class CapabilitySet
         {
             for (Iterator iter = ((Collection) lhs).iterator(); iter.hasNext(); )
             {
-                if (compare(iter.next(), rhsUnknown, op))
+                if (compare(iter.next(), rhsUnknown, op, cf))
                 {
                     return true;
                 }
@@ -535,14 +657,8 @@ public class CapabilitySet
 
         // Since we cannot identify the LHS type, then we can only perform
         // equality comparison.
-        try
-        {
-            return lhs.equals(coerceType(lhs, (String) rhsUnknown));
-        }
-        catch (Exception ex)
-        {
-            return false;
-        }
+        Object rhs = coerce(lhs, rhsUnknown, cf);
+        return (rhs != null) && lhs.equals(rhs);
     }
 
     private static boolean compareApproximate(Object lhs, Object rhs)
@@ -573,6 +689,28 @@ public class CapabilitySet
         return sb.toString();
     }
 
+    /**
+     * Converts the right hand operand to the type of the left hand operand,
+     * using the conversions cached by the given compiled filter if there
+     * is one.
+     * @return the converted operand or <tt>null</tt> if it cannot be converted.
+    **/
+    static Object coerce(Object lhs, Object rhsUnknown, CompiledFilter cf)
+    {
+        if (cf != null)
+        {
+            return cf.coerce(lhs);
+        }
+        try
+        {
+            return coerceType(lhs, (String) rhsUnknown);
+        }
+        catch (Exception ex)
+        {
+            return null;
+        }
+    }
+
     private static Object coerceType(Object lhs, String rhsString) throws Exception
     {
         // If the LHS expects a string, then we can just return
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.capabilityset;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.osgi.framework.Version;
+import org.osgi.resource.Capability;
+
+/**
+ * Evaluation form of a <tt>SimpleFilter</tt>. Compiled filters are created
+ * once per filter and cached by it; the child filters of an operation are
+ * the compiled forms of the child filters, so they are shared with every
+ * other filter containing the same child instances. Comparison nodes cache
+ * the right hand operand coerced to the types of the attribute values they
+ * were compared with, so that the string operand does not have to be
+ * converted by reflection for every candidate capability. Only types whose
+ * conversion is known to be side effect free and whose instances are
+ * immutable are cached; all other types are converted on every comparison.
+**/
+class CompiledFilter
+{
+    // Maximum number of attribute types cached per comparison node.
+    private static final int MAX_COERCED_TYPES = 4;
+
+    private static final CompiledFilter[] NO_CHILDREN = new CompiledFilter[0];
+
+    private final SimpleFilter m_filter;
+    private final int m_op;
+    private final String m_name;
+    private final Object m_value;
+    private final CompiledFilter[] m_children;
+    // Names of all attributes compared for equality in this subtree.
+    private final String[] m_eqNames;
+    // Whether this subtree contains operations whose set evaluation
+    // differs from the evaluation against a single capability.
+    private final boolean m_setOnly;
+    // Alternating attribute value classes and coerced operands; a null
+    // operand means that the operand cannot be converted to the class.
+    private volatile Object[] m_coerced = new Object[0];
+
+    private CompiledFilter(SimpleFilter sf)
+    {
+        m_filter = sf;
+        m_op = sf.getOperation();
+        m_name = sf.getName();
+        m_value = sf.getValue();
+
+        if ((m_op == SimpleFilter.AND) || (m_op == SimpleFilter.OR)
+            || (m_op == SimpleFilter.NOT))
+        {
+            List<SimpleFilter> sfs = (List<SimpleFilter>) m_value;
+            m_children = new CompiledFilter[sfs.size()];
+            List<String> eqNames = new ArrayList<String>();
+            boolean setOnly = ((m_op == SimpleFilter.AND) && sfs.isEmpty())
+                || ((m_op == SimpleFilter.NOT) && (sfs.size() > 1));
+            for (int i = 0; i < m_children.length; i++)
+            {
+                m_children[i] = sfs.get(i).getCompiled();
+                Collections.addAll(eqNames, m_children[i].m_eqNames);
+                setOnly |= m_children[i].m_setOnly;
+            }
+            m_eqNames = eqNames.toArray(new String[eqNames.size()]);
+            m_setOnly = setOnly;
+        }
+        else
+        {
+            m_children = NO_CHILDREN;
+            m_eqNames = (m_op == SimpleFilter.EQ) ? new String[] { m_name } : new String[0];
+            m_setOnly = false;
+        }
+    }
+
+    static CompiledFilter compile(SimpleFilter sf)
+    {
+        return new CompiledFilter(sf);
+    }
+
+    SimpleFilter getFilter()
+    {
+        return m_filter;
+    }
+
+    int getOperation()
+    {
+        return m_op;
+    }
+
+    String getName()
+    {
+        return m_name;
+    }
+
+    Object getValue()
+    {
+        return m_value;
+    }
+
+    CompiledFilter[] getChildren()
+    {
+        return m_children;
+    }
+
+    /**
+     * Checks whether this filter can be evaluated against single
+     * capabilities while giving the same result as the set evaluation of
+     * a capability set with the given indices. This is not the case if
+     * the filter contains equality checks of indexed attributes, since
+     * the index only finds values equal to the string operand.
+    **/
+    boolean isPredicate(Map<String, ?> indices)
+    {
+        if (m_setOnly)
+        {
+            return false;
+        }
+        for (String name : m_eqNames)
+        {
+            if (indices.containsKey(name))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean matches(Capability cap)
+    {
+        boolean matched = true;
+
+        switch (m_op)
+        {
+            case SimpleFilter.MATCH_ALL:
+                break;
+            case SimpleFilter.AND:
+                for (int i = 0; matched && (i < m_children.length); i++)
+                {
+                    matched = m_children[i].matches(cap);
+                }
+                break;
+            case SimpleFilter.OR:
+                matched = false;
+                for (int i = 0; !matched && (i < m_children.length); i++)
+                {
+                    matched = m_children[i].matches(cap);
+                }
+                break;
+            case SimpleFilter.NOT:
+                for (int i = 0; i < m_children.length; i++)
+                {
+                    matched = !m_children[i].matches(cap);
+                }
+                break;
+            default:
+                matched = compare(cap.getAttributes().get(m_name));
+        }
+
+        return matched;
+    }
+
+    boolean compare(Object lhs)
+    {
+        return (lhs != null) && CapabilitySet.compare(lhs, m_value, m_op, this);
+    }
+
+    /**
+     * Returns the operand of this comparison converted to the class of the
+     * given attribute value or <tt>null</tt> if it cannot be converted.
+    **/
+    Object coerce(Object lhs)
+    {
+        Class<?> clazz = lhs.getClass();
+        Object[] coerced = m_coerced;
+        for (int i = 0; i < coerced.length; i += 2)
+        {
+            if (coerced[i] == clazz)
+            {
+                return coerced[i + 1];
+            }
+        }
+
+        Object rhs = CapabilitySet.coerce(lhs, m_value, null);
+        if (isCacheable(clazz) && (coerced.length < (MAX_COERCED_TYPES * 2)))
+        {
+            // Races only lose cache entries, which are recreated later.
+            Object[] newCoerced = new Object[coerced.length + 2];
+            System.arraycopy(coerced, 0, newCoerced, 0, coerced.length);
+            newCoerced[coerced.length] = clazz;
+            newCoerced[coerced.length + 1] = rhs;
+            m_coerced = newCoerced;
+        }
+        return rhs;
+    }
+
+    private static boolean isCacheable(Class<?> clazz)
+    {
+        return (clazz == String.class) || (clazz == Version.class)
+            || (clazz == Long.class) || (clazz == Integer.class)
+            || (clazz == Short.class) || (clazz == Byte.class)
+            || (clazz == Double.class) || (clazz == Float.class)
+            || (clazz == Boolean.class) || (clazz == Character.class)
+            || (clazz == BigInteger.class) || (clazz == BigDecimal.class);
+    }
+
+    /**
+     * Evaluates the given filters against the given capabilities in one
+     * pass and adds the capabilities matching all of them to the result.
+    **/
+    static void matchAll(
+        Iterable<? extends Capability> caps, List<CompiledFilter> cfs, Set<Capability> result)
+    {
+        for (Capability cap : caps)
+        {
+            boolean matched = true;
+            for (int i = 0; matched && (i < cfs.size()); i++)
+            {
+                matched = cfs.get(i).matches(cap);
+            }
+            if (matched)
+            {
+                result.add(cap);
+            }
+        }
+    }
+}
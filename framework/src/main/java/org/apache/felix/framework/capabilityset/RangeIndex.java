@@ -0,0 +1,241 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.capabilityset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.osgi.framework.Version;
+import org.osgi.framework.VersionRange;
+import org.osgi.framework.wiring.BundleCapability;
+
+/**
+ * Secondary index of the capabilities found for a single value of an
+ * indexed attribute, which buckets them by the value of a version
+ * attribute. Capabilities whose version attribute is missing or is not a
+ * single <tt>Version</tt> are kept separately and are always returned as
+ * candidates, so that looking up a version range never misses a
+ * capability the filter might match.
+**/
+class RangeIndex
+{
+    private final NavigableMap<Version, Set<BundleCapability>> m_versions =
+        new ConcurrentSkipListMap<Version, Set<BundleCapability>>();
+    private final Set<BundleCapability> m_others =
+        Collections.newSetFromMap(new ConcurrentHashMap<BundleCapability, Boolean>());
+
+    void add(BundleCapability cap, Object version)
+    {
+        if (version instanceof Version)
+        {
+            Set<BundleCapability> caps = m_versions.get(version);
+            if (caps == null)
+            {
+                caps = Collections.newSetFromMap(new ConcurrentHashMap<BundleCapability, Boolean>());
+                Set<BundleCapability> prevval =
+                    ((ConcurrentSkipListMap<Version, Set<BundleCapability>>) m_versions)
+                        .putIfAbsent((Version) version, caps);
+                if (prevval != null)
+                {
+                    caps = prevval;
+                }
+            }
+            caps.add(cap);
+        }
+        else
+        {
+            m_others.add(cap);
+        }
+    }
+
+    void remove(BundleCapability cap, Object version)
+    {
+        if (version instanceof Version)
+        {
+            Set<BundleCapability> caps = m_versions.get(version);
+            if (caps != null)
+            {
+                caps.remove(cap);
+                if (caps.isEmpty())
+                {
+                    m_versions.remove(version);
+                }
+            }
+        }
+        else
+        {
+            m_others.remove(cap);
+        }
+    }
+
+    boolean isEmpty()
+    {
+        return m_versions.isEmpty() && m_others.isEmpty();
+    }
+
+    /**
+     * Returns the capabilities which may have a version within the given
+     * bounds, stopping once more than the given number of capabilities
+     * has been found.
+     * @return the candidate capabilities or <tt>null</tt> if there are more
+     *         than <tt>max</tt> of them.
+    **/
+    List<BundleCapability> get(Bounds bounds, int max)
+    {
+        NavigableMap<Version, Set<BundleCapability>> versions = m_versions;
+        if ((bounds.m_lower != null) && (bounds.m_upper != null))
+        {
+            int cmp = bounds.m_lower.compareTo(bounds.m_upper);
+            if ((cmp > 0) || ((cmp == 0) && !(bounds.m_lowerInclusive && bounds.m_upperInclusive)))
+            {
+                // No version can be within the bounds.
+                return (m_others.size() > max)
+                    ? null : new ArrayList<BundleCapability>(m_others);
+            }
+            else
+            {
+                versions = versions.subMap(
+                    bounds.m_lower, bounds.m_lowerInclusive, bounds.m_upper, bounds.m_upperInclusive);
+            }
+        }
+        else if (bounds.m_lower != null)
+        {
+            versions = versions.tailMap(bounds.m_lower, bounds.m_lowerInclusive);
+        }
+        else if (bounds.m_upper != null)
+        {
+            versions = versions.headMap(bounds.m_upper, bounds.m_upperInclusive);
+        }
+
+        List<BundleCapability> result = new ArrayList<BundleCapability>(m_others);
+        for (Set<BundleCapability> caps : versions.values())
+        {
+            if (result.size() > max)
+            {
+                return null;
+            }
+            result.addAll(caps);
+        }
+        return (result.size() > max) ? null : result;
+    }
+
+    /**
+     * Version bounds implied by the subfilters of a conjunction.
+    **/
+    static class Bounds
+    {
+        private Version m_lower;
+        private boolean m_lowerInclusive;
+        private Version m_upper;
+        private boolean m_upperInclusive;
+
+        boolean isBounded()
+        {
+            return (m_lower != null) || (m_upper != null);
+        }
+
+        /**
+         * Narrows the bounds by the given subfilter of a conjunction if it
+         * is a comparison of the given version attribute or the negation
+         * of one. The operand is converted exactly like it is when the
+         * subfilter is evaluated against a <tt>Version</tt> value.
+        **/
+        void restrict(CompiledFilter cf, String attr, boolean caseSensitive)
+        {
+            boolean negated = false;
+            if ((cf.getOperation() == SimpleFilter.NOT) && (cf.getChildren().length == 1))
+            {
+                cf = cf.getChildren()[0];
+                negated = true;
+            }
+            int op = cf.getOperation();
+            if (((op != SimpleFilter.EQ) && (op != SimpleFilter.GTE) && (op != SimpleFilter.LTE))
+                || !(caseSensitive ? attr.equals(cf.getName()) : attr.equalsIgnoreCase(cf.getName())))
+            {
+                return;
+            }
+
+            Object rhs = cf.coerce(Version.emptyVersion);
+            if ((op == SimpleFilter.EQ) && !negated)
+            {
+                if (rhs instanceof VersionRange)
+                {
+                    VersionRange range = (VersionRange) rhs;
+                    lower(range.getLeft(), range.getLeftType() == VersionRange.LEFT_CLOSED);
+                    if (range.getRight() != null)
+                    {
+                        upper(range.getRight(), range.getRightType() == VersionRange.RIGHT_CLOSED);
+                    }
+                }
+                else if (rhs instanceof Version)
+                {
+                    lower((Version) rhs, true);
+                    upper((Version) rhs, true);
+                }
+            }
+            else if ((op == SimpleFilter.GTE) && (rhs instanceof Version))
+            {
+                if (negated)
+                {
+                    upper((Version) rhs, false);
+                }
+                else
+                {
+                    lower((Version) rhs, true);
+                }
+            }
+            else if ((op == SimpleFilter.LTE) && (rhs instanceof Version))
+            {
+                if (negated)
+                {
+                    lower((Version) rhs, false);
+                }
+                else
+                {
+                    upper((Version) rhs, true);
+                }
+            }
+        }
+
+        private void lower(Version v, boolean inclusive)
+        {
+            int cmp = (m_lower == null) ? 1 : v.compareTo(m_lower);
+            if ((cmp > 0) || ((cmp == 0) && !inclusive))
+            {
+                m_lower = v;
+                m_lowerInclusive = inclusive;
+            }
+        }
+
+        private void upper(Version v, boolean inclusive)
+        {
+            int cmp = (m_upper == null) ? -1 : v.compareTo(m_upper);
+            if ((cmp < 0) || ((cmp == 0) && !inclusive))
+            {
+                m_upper = v;
+                m_upperInclusive = inclusive;
+            }
+        }
+    }
+}
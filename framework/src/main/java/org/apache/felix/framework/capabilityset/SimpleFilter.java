@@ -22,9 +22,12 @@ import org.osgi.framework.Version;
 import org.osgi.framework.VersionRange;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SimpleFilter
 {
@@ -39,9 +42,17 @@ public class SimpleFilter
     public static final int PRESENT = 8;
     public static final int APPROX = 9;
 
+    // Maximum number of parsed filters cached by their filter string. The
+    // cached filters are immutable, so they can be shared by all frameworks.
+    private static final int PARSE_CACHE_SIZE = 1024;
+
+    private static final Map<String, SimpleFilter> m_parseCache =
+        new ConcurrentHashMap<String, SimpleFilter>();
+
     private final String m_name;
     private final Object m_value;
     private final int m_op;
+    private volatile CompiledFilter m_compiled;
 
     public SimpleFilter(String attr, Object value, int op)
     {
@@ -65,6 +76,21 @@ public class SimpleFilter
         return m_op;
     }
 
+    /**
+     * Returns the evaluation form of this filter, compiling it on first use.
+     * Filters must not be modified after they have been evaluated.
+    **/
+    CompiledFilter getCompiled()
+    {
+        CompiledFilter cf = m_compiled;
+        if (cf == null)
+        {
+            cf = CompiledFilter.compile(this);
+            m_compiled = cf;
+        }
+        return cf;
+    }
+
     public String toString()
     {
         String s = null;
@@ -157,7 +183,60 @@ public class SimpleFilter
         return o.toString();
     }
 
+    /**
+     * Parses the given filter string. Parsed filters are immutable, their
+     * value lists cannot be modified, so the same instance is returned for
+     * the same filter string as long as it is cached, which allows its
+     * compiled form to be reused as well.
+     * @param filter the filter string to parse.
+     * @return the parsed filter.
+     * @throws IllegalArgumentException if the filter string is invalid.
+    **/
     public static SimpleFilter parse(String filter)
+    {
+        if (filter == null)
+        {
+            throw new IllegalArgumentException("Null or empty filter.");
+        }
+        SimpleFilter sf = m_parseCache.get(filter);
+        if (sf == null)
+        {
+            sf = freeze(parseFilter(filter));
+            if (m_parseCache.size() >= PARSE_CACHE_SIZE)
+            {
+                // Evict a single entry rather than the whole cache.
+                Iterator<String> it = m_parseCache.keySet().iterator();
+                if (it.hasNext())
+                {
+                    it.next();
+                    it.remove();
+                }
+            }
+            m_parseCache.put(filter, sf);
+        }
+        return sf;
+    }
+
+    /**
+     * Returns a copy of the given filter whose value lists, including the
+     * ones of its subfilters, cannot be modified.
+    **/
+    private static SimpleFilter freeze(SimpleFilter sf)
+    {
+        if (!(sf.m_value instanceof List))
+        {
+            return sf;
+        }
+        List<?> values = (List<?>) sf.m_value;
+        List<Object> frozen = new ArrayList<Object>(values.size());
+        for (Object value : values)
+        {
+            frozen.add((value instanceof SimpleFilter) ? freeze((SimpleFilter) value) : value);
+        }
+        return new SimpleFilter(sf.m_name, Collections.unmodifiableList(frozen), sf.m_op);
+    }
+
+    private static SimpleFilter parseFilter(String filter)
     {
         int idx = skipWhitespace(filter, 0);
 
@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.util;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.osgi.framework.Version;
+import org.osgi.framework.VersionRange;
+
+/**
+ * Immutable map with string keys for the attributes and directives of
+ * capabilities and requirements. The keys and values are kept in a single
+ * array in the iteration order of the map they were copied from, which
+ * takes a fraction of the memory of a hash map for the few entries these
+ * maps usually have. Keys and string values are interned and versions and
+ * version ranges are shared, since the same names, packages and versions
+ * occur in the metadata of many bundles.
+**/
+public final class CompactMap<V> extends AbstractMap<String, V>
+{
+    // Number of independently locked segments of the shared values, so
+    // frameworks creating capabilities concurrently rarely contend.
+    private static final int SHARED_SEGMENTS = 16;
+
+    private static final List<Map<Object, WeakReference<Object>>> m_shared =
+        createSegments(SHARED_SEGMENTS);
+
+    // Alternating keys and values.
+    private final Object[] m_table;
+
+    private CompactMap(Map<String, V> map)
+    {
+        m_table = new Object[map.size() * 2];
+        int i = 0;
+        for (Entry<String, V> entry : map.entrySet())
+        {
+            m_table[i++] = entry.getKey().intern();
+            m_table[i++] = shareValue(entry.getValue());
+        }
+    }
+
+    private static List<Map<Object, WeakReference<Object>>> createSegments(int count)
+    {
+        List<Map<Object, WeakReference<Object>>> segments =
+            new ArrayList<Map<Object, WeakReference<Object>>>(count);
+        for (int i = 0; i < count; i++)
+        {
+            segments.add(new WeakHashMap<Object, WeakReference<Object>>());
+        }
+        return segments;
+    }
+
+    /**
+     * Returns an immutable copy of the given map, which is compact if the
+     * map is a plain hash map. Other maps, for example case insensitive
+     * ones, are only wrapped, since copying them would change their lookup
+     * semantics.
+    **/
+    public static <V> Map<String, V> create(Map<String, V> map)
+    {
+        if (map instanceof CompactMap)
+        {
+            return map;
+        }
+        else if ((map == null) || map.isEmpty())
+        {
+            return Util.newImmutableMap(map);
+        }
+        else if ((map.getClass() == HashMap.class) || (map.getClass() == LinkedHashMap.class))
+        {
+            for (String key : map.keySet())
+            {
+                if (key == null)
+                {
+                    return Util.newImmutableMap(map);
+                }
+            }
+            return new CompactMap<V>(map);
+        }
+        return Util.newImmutableMap(map);
+    }
+
+    /**
+     * Returns the interned instance of the given string.
+    **/
+    public static String share(String value)
+    {
+        return (value == null) ? null : value.intern();
+    }
+
+    /**
+     * Returns the shared instance of the given value, if it is a string, a
+     * version or a version range, otherwise the value itself.
+    **/
+    private static Object shareValue(Object value)
+    {
+        if (value instanceof String)
+        {
+            return ((String) value).intern();
+        }
+        else if ((value instanceof Version) || (value instanceof VersionRange))
+        {
+            Map<Object, WeakReference<Object>> segment =
+                m_shared.get((value.hashCode() & 0x7fffffff) % SHARED_SEGMENTS);
+            synchronized (segment)
+            {
+                WeakReference<Object> ref = segment.get(value);
+                Object shared = (ref == null) ? null : ref.get();
+                if (shared == null)
+                {
+                    segment.put(value, new WeakReference<Object>(value));
+                    shared = value;
+                }
+                return shared;
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public int size()
+    {
+        return m_table.length / 2;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return m_table.length == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public V get(Object key)
+    {
+        int idx = indexOf(key);
+        return (idx < 0) ? null : valueAt(idx + 1);
+    }
+
+    // Only values of type V are copied into the table.
+    @SuppressWarnings("unchecked")
+    private V valueAt(int idx)
+    {
+        return (V) m_table[idx];
+    }
+
+    private int indexOf(Object key)
+    {
+        // Most lookups are done with constants, which are interned.
+        for (int i = 0; i < m_table.length; i += 2)
+        {
+            if (m_table[i] == key)
+            {
+                return i;
+            }
+        }
+        if (key != null)
+        {
+            for (int i = 0; i < m_table.length; i += 2)
+            {
+                if (m_table[i].equals(key))
+                {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet()
+    {
+        return new AbstractSet<Entry<String, V>>()
+        {
+            @Override
+            public Iterator<Entry<String, V>> iterator()
+            {
+                return new Iterator<Entry<String, V>>()
+                {
+                    private int m_idx = 0;
+
+                    public boolean hasNext()
+                    {
+                        return m_idx < m_table.length;
+                    }
+
+                    public Entry<String, V> next()
+                    {
+                        if (m_idx >= m_table.length)
+                        {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<String, V> entry = new SimpleImmutableEntry<String, V>(
+                            (String) m_table[m_idx], valueAt(m_idx + 1));
+                        m_idx += 2;
+                        return entry;
+                    }
+
+                    public void remove()
+                    {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size()
+            {
+                return m_table.length / 2;
+            }
+        };
+    }
+}
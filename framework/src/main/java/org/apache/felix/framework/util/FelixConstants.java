@@ -47,14 +47,21 @@ public interface FelixConstants extends org.osgi.framework.Constants
     String LOG_LOGGER_PROP = "felix.log.logger";
     String SYSTEMBUNDLE_ACTIVATORS_PROP = "felix.systembundle.activators";
     String BUNDLE_STARTLEVEL_PROP = "felix.startlevel.bundle";
+    String STARTLEVEL_PARALLELISM = "felix.startlevel.parallelism";
     String SERVICE_URLHANDLERS_PROP = "felix.service.urlhandlers";
+    String SERVICE_REGISTRY_CONCURRENT_PROP = "felix.service.registry.concurrent";
+    String EVENT_DISPATCHER_THREADS_PROP = "felix.eventdispatcher.threads";
+    String EVENT_DISPATCHER_TIMEOUT_PROP = "felix.eventdispatcher.timeout";
     String IMPLICIT_BOOT_DELEGATION_PROP = "felix.bootdelegation.implicit";
     String BOOT_CLASSLOADERS_PROP = "felix.bootdelegation.classloaders";
     String USE_LOCALURLS_PROP = "felix.jarurls";
     String NATIVE_OS_NAME_ALIAS_PREFIX = "felix.native.osname.alias";
     String NATIVE_PROC_NAME_ALIAS_PREFIX = "felix.native.processor.alias";
     String USE_CACHEDURLS_PROPS = "felix.bundlecodesource.usecachedurls";
+    String WIRING_LOOKUPCACHE_SIZE_PROP = "felix.wiring.lookupcache.size";
     String RESOLVER_PARALLELISM = "felix.resolver.parallelism";
+    String RESOLVER_SNAPSHOT_PROP = "felix.resolver.snapshot";
+    String RESOLVER_COALESCE_PROP = "felix.resolver.coalesce";
     String USE_PROPERTY_SUBSTITUTION_IN_SYSTEMPACKAGES = "felix.systempackages.substitution";
 
     // Missing OSGi constant for resolution directive.
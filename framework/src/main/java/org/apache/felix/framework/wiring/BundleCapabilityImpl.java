@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import org.apache.felix.framework.capabilityset.SimpleFilter;
+import org.apache.felix.framework.util.CompactMap;
 import org.apache.felix.framework.util.Util;
 import org.apache.felix.framework.util.manifestparser.ManifestParser;
 import org.osgi.framework.Constants;
@@ -48,10 +49,10 @@ public class BundleCapabilityImpl implements BundleCapability
     public BundleCapabilityImpl(BundleRevision revision, String namespace,
         Map<String, String> dirs, Map<String, Object> attrs)
     {
-        m_namespace = namespace;
+        m_namespace = CompactMap.share(namespace);
         m_revision = revision;
-        m_dirs = Util.newImmutableMap(dirs);
-        m_attrs = Util.newImmutableMap(attrs);
+        m_dirs = CompactMap.create(dirs);
+        m_attrs = CompactMap.create(attrs);
 
         // Find all export directives: uses, mandatory, include, and exclude.
 
@@ -64,7 +65,7 @@ public class BundleCapabilityImpl implements BundleCapability
             uses = new ArrayList(tok.countTokens());
             while (tok.hasMoreTokens())
             {
-                uses.add(tok.nextToken().trim());
+                uses.add(tok.nextToken().trim().intern());
             }
         }
         m_uses = uses;
@@ -22,7 +22,7 @@ import java.util.Collections;
 import java.util.Map;
 import org.apache.felix.framework.capabilityset.CapabilitySet;
 import org.apache.felix.framework.capabilityset.SimpleFilter;
-import org.apache.felix.framework.util.Util;
+import org.apache.felix.framework.util.CompactMap;
 import org.osgi.framework.Constants;
 import org.osgi.framework.wiring.BundleCapability;
 import org.osgi.framework.wiring.BundleRequirement;
@@ -42,9 +42,9 @@ public class BundleRequirementImpl implements BundleRequirement
         Map<String, String> dirs, Map<String, Object> attrs, SimpleFilter filter)
     {
         m_revision = revision;
-        m_namespace = namespace;
-        m_dirs =  Util.newImmutableMap(dirs);
-        m_attrs =  Util.newImmutableMap(attrs);
+        m_namespace = CompactMap.share(namespace);
+        m_dirs = CompactMap.create(dirs);
+        m_attrs = CompactMap.create(attrs);
         m_filter = filter;
 
         // Find resolution import directives.
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.framework.util.FelixConstants;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleListener;
+import org.osgi.framework.Constants;
+import org.osgi.framework.launch.Framework;
+
+public class EventDispatcherQueueTest extends TestCase
+{
+    private static final int BUNDLES = 5;
+
+    private File m_cacheDir;
+    private Framework m_framework;
+    private final TestLogger m_logger = new TestLogger();
+
+    protected void setUp() throws Exception
+    {
+        m_cacheDir = File.createTempFile("felix-cache", ".dir");
+        m_cacheDir.delete();
+        m_cacheDir.mkdirs();
+
+        Map params = new HashMap();
+        params.put(Constants.FRAMEWORK_STORAGE, m_cacheDir.getPath());
+        params.put(FelixConstants.EVENT_DISPATCHER_THREADS_PROP, "2");
+        params.put(FelixConstants.EVENT_DISPATCHER_TIMEOUT_PROP, "50");
+        params.put(FelixConstants.LOG_LOGGER_PROP, m_logger);
+        params.put(FelixConstants.LOG_LEVEL_PROP, "2");
+        m_framework = new Felix(params);
+        m_framework.start();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        m_framework.stop();
+        m_framework.waitForStop(10000);
+        deleteDir(m_cacheDir);
+    }
+
+    public void testSlowListenerDoesNotBlockOthers() throws Exception
+    {
+        BundleContext context = m_framework.getBundleContext();
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch slowDone = new CountDownLatch(BUNDLES);
+        final CountDownLatch fastDone = new CountDownLatch(BUNDLES);
+        final List<Bundle> slowEvents = Collections.synchronizedList(new ArrayList<Bundle>());
+        final List<Bundle> fastEvents = Collections.synchronizedList(new ArrayList<Bundle>());
+
+        context.addBundleListener(new BundleListener()
+        {
+            public void bundleChanged(BundleEvent event)
+            {
+                try
+                {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException ex)
+                {
+                    // Deliver the event anyway.
+                }
+                slowEvents.add(event.getBundle());
+                slowDone.countDown();
+            }
+        });
+        context.addBundleListener(new BundleListener()
+        {
+            public void bundleChanged(BundleEvent event)
+            {
+                fastEvents.add(event.getBundle());
+                fastDone.countDown();
+            }
+        });
+
+        List<Bundle> installed = new ArrayList<Bundle>();
+        for (int i = 0; i < BUNDLES; i++)
+        {
+            installed.add(context.installBundle(createBundle("b" + i).toURI().toString()));
+        }
+
+        // The fast listener gets all events while the slow one is blocked,
+        // and the slow listener is reported.
+        assertTrue(fastDone.await(10, TimeUnit.SECONDS));
+        assertTrue(slowEvents.isEmpty());
+        assertEquals(installed, fastEvents);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!m_logger.contains("is taking more than 50 ms")
+            && (System.currentTimeMillis() < deadline))
+        {
+            Thread.sleep(10);
+        }
+        assertTrue(m_logger.contains("is taking more than 50 ms"));
+
+        // The slow listener gets its events in order once released.
+        release.countDown();
+        assertTrue(slowDone.await(10, TimeUnit.SECONDS));
+        assertEquals(installed, slowEvents);
+    }
+
+    private File createBundle(String name) throws IOException
+    {
+        File f = File.createTempFile("felix-bundle", ".jar", m_cacheDir);
+
+        Manifest mf = new Manifest(new ByteArrayInputStream(
+            ("Bundle-SymbolicName: " + name + "\nBundle-ManifestVersion: 2\n").getBytes("utf-8")));
+        mf.getMainAttributes().putValue("Manifest-Version", "1.0");
+        JarOutputStream os = new JarOutputStream(new FileOutputStream(f), mf);
+        os.close();
+        return f;
+    }
+
+    private static void deleteDir(File root) throws IOException
+    {
+        if (root.isDirectory())
+        {
+            for (File file : root.listFiles())
+            {
+                deleteDir(file);
+            }
+        }
+        assertTrue(root.delete());
+    }
+
+    private static class TestLogger extends Logger
+    {
+        private final List<String> m_messages =
+            Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        protected void doLog(int level, String msg, Throwable throwable)
+        {
+            m_messages.add(msg);
+        }
+
+        boolean contains(String msg)
+        {
+            synchronized (m_messages)
+            {
+                for (String m : m_messages)
+                {
+                    if (m.indexOf(msg) >= 0)
+                    {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
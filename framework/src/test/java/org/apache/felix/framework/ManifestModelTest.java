@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.framework.util.StringMap;
+import org.apache.felix.framework.util.manifestparser.ManifestParser;
+import org.apache.felix.framework.wiring.BundleRequirementImpl;
+import org.osgi.framework.Constants;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleRequirement;
+
+public class ManifestModelTest extends TestCase
+{
+    private File m_file;
+    private Felix m_felix;
+
+    protected void setUp() throws Exception
+    {
+        m_file = File.createTempFile("manifest", ".model");
+        m_file.delete();
+        m_felix = new Felix(new HashMap());
+    }
+
+    protected void tearDown() throws Exception
+    {
+        m_file.delete();
+    }
+
+    public void testStoredModelSameAsParsed() throws Exception
+    {
+        Map<String, Object> headers = createHeaders();
+        ManifestModel parsed = new ManifestModel(
+            new ManifestParser(m_felix.getLogger(), new HashMap(), null, headers));
+        parsed.write(m_felix, headers, m_file);
+        assertTrue(m_file.exists());
+
+        ManifestModel stored = ManifestModel.read(m_felix, null, headers, m_file);
+        assertNotNull(stored);
+        assertEquals(parsed.getManifestVersion(), stored.getManifestVersion());
+        assertEquals(parsed.isExtension(), stored.isExtension());
+        assertEquals(parsed.getBundleVersion(), stored.getBundleVersion());
+        assertEquals(parsed.getSymbolicName(), stored.getSymbolicName());
+        assertEquals(parsed.getActivationPolicy(), stored.getActivationPolicy());
+        assertEquals(parsed.getActivationIncludeDirective(), stored.getActivationIncludeDirective());
+        assertEquals(parsed.getActivationExcludeDirective(), stored.getActivationExcludeDirective());
+
+        List<BundleCapability> caps = parsed.getCapabilities();
+        assertEquals(caps.size(), stored.getCapabilities().size());
+        for (int i = 0; i < caps.size(); i++)
+        {
+            BundleCapability cap = stored.getCapabilities().get(i);
+            assertEquals(caps.get(i).getNamespace(), cap.getNamespace());
+            assertEquals(caps.get(i).getDirectives(), cap.getDirectives());
+            assertEquals(caps.get(i).getAttributes(), cap.getAttributes());
+        }
+        List<BundleRequirement> reqs = parsed.getRequirements();
+        assertEquals(reqs.size(), stored.getRequirements().size());
+        for (int i = 0; i < reqs.size(); i++)
+        {
+            BundleRequirement req = stored.getRequirements().get(i);
+            assertEquals(reqs.get(i).getNamespace(), req.getNamespace());
+            assertEquals(reqs.get(i).getDirectives(), req.getDirectives());
+            assertEquals(reqs.get(i).getAttributes(), req.getAttributes());
+            assertEquals(((BundleRequirementImpl) reqs.get(i)).getFilter().toString(),
+                ((BundleRequirementImpl) req).getFilter().toString());
+        }
+    }
+
+    public void testChangedHeadersAreParsedAgain() throws Exception
+    {
+        Map<String, Object> headers = createHeaders();
+        new ManifestModel(new ManifestParser(m_felix.getLogger(), new HashMap(), null, headers))
+            .write(m_felix, headers, m_file);
+
+        headers.put(Constants.IMPORT_PACKAGE, "org.example.other");
+        assertNull(ManifestModel.read(m_felix, null, headers, m_file));
+    }
+
+    public void testNativeCodeIsNotStored() throws Exception
+    {
+        Map<String, Object> headers = createHeaders();
+        headers.put(Constants.BUNDLE_NATIVECODE, "lib/native.so;osname=Linux,*");
+        new ManifestModel(new ManifestParser(m_felix.getLogger(), new HashMap(), null, headers))
+            .write(m_felix, headers, m_file);
+        assertFalse(m_file.exists());
+    }
+
+    private static Map<String, Object> createHeaders()
+    {
+        Map<String, Object> headers = new StringMap();
+        headers.put(Constants.BUNDLE_MANIFESTVERSION, "2");
+        headers.put(Constants.BUNDLE_SYMBOLICNAME, "org.example;singleton:=true");
+        headers.put(Constants.BUNDLE_VERSION, "1.2.3.qualifier");
+        headers.put(Constants.EXPORT_PACKAGE,
+            "org.example.api;version=1.1;uses:=\"org.example.spi\";mandatory:=vendor;vendor=acme,"
+            + "org.example.spi;version=\"1.0\"");
+        headers.put(Constants.IMPORT_PACKAGE,
+            "org.example.spi;version=\"[1.0,2)\",org.example.opt;resolution:=optional");
+        headers.put(Constants.DYNAMICIMPORT_PACKAGE, "org.example.dyn.*");
+        headers.put(Constants.REQUIRE_BUNDLE, "org.example.lib;bundle-version=\"(1.0,2.0]\"");
+        headers.put(Constants.REQUIRE_CAPABILITY,
+            "osgi.ee;filter:=\"(&(osgi.ee=JavaSE)(version>=1.8))\"");
+        headers.put(Constants.PROVIDE_CAPABILITY,
+            "org.example.cap;org.example.cap=x;ranks:List<Long>=\"1,2\";weight:Double=0.5;"
+            + "version:Version=2.0");
+        headers.put(Constants.BUNDLE_ACTIVATIONPOLICY, "lazy;include:=\"org.example.api\"");
+        return headers;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.framework.util.FelixConstants;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.wiring.BundleWire;
+import org.osgi.framework.wiring.BundleWiring;
+import org.osgi.framework.wiring.FrameworkWiring;
+
+public class ResolutionSnapshotTest extends TestCase
+{
+    private File m_cacheDir;
+
+    protected void setUp() throws Exception
+    {
+        m_cacheDir = File.createTempFile("felix-cache", ".dir");
+        m_cacheDir.delete();
+        m_cacheDir.mkdirs();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        deleteDir(m_cacheDir);
+    }
+
+    public void testWiringRestoredOnRestart() throws Exception
+    {
+        File exporter = createBundle("Bundle-SymbolicName: exporter\n"
+            + "Bundle-ManifestVersion: 2\n"
+            + "Export-Package: org.foo.exporter\n");
+        File importer = createBundle("Bundle-SymbolicName: importer\n"
+            + "Bundle-ManifestVersion: 2\n"
+            + "Import-Package: org.foo.exporter, org.osgi.framework\n");
+
+        Framework f = createFramework(true);
+        f.start();
+        Bundle e = f.getBundleContext().installBundle(exporter.toURI().toString());
+        Bundle i = f.getBundleContext().installBundle(importer.toURI().toString());
+        assertTrue(f.adapt(FrameworkWiring.class).resolveBundles(null));
+        stop(f);
+
+        f = createFramework(true);
+        f.init();
+        try
+        {
+            // Bundles are resolved by the snapshot before anybody asked.
+            e = f.getBundleContext().getBundle(e.getBundleId());
+            i = f.getBundleContext().getBundle(i.getBundleId());
+            assertEquals(Bundle.RESOLVED, e.getState());
+            assertEquals(Bundle.RESOLVED, i.getState());
+
+            List<BundleWire> wires = i.adapt(BundleWiring.class).getRequiredWires(null);
+            assertEquals(2, wires.size());
+            assertEquals(e, wires.get(0).getProvider().getBundle());
+            assertEquals(0, wires.get(1).getProvider().getBundle().getBundleId());
+            assertEquals(1, e.adapt(BundleWiring.class).getProvidedWires(null).size());
+        }
+        finally
+        {
+            stop(f);
+        }
+    }
+
+    public void testSnapshotIgnoredWhenBundleChanged() throws Exception
+    {
+        File exporter = createBundle("Bundle-SymbolicName: exporter\n"
+            + "Bundle-ManifestVersion: 2\n"
+            + "Export-Package: org.foo.exporter\n");
+        File importer = createBundle("Bundle-SymbolicName: importer\n"
+            + "Bundle-ManifestVersion: 2\n"
+            + "Import-Package: org.foo.exporter\n");
+
+        Framework f = createFramework(true);
+        f.start();
+        Bundle e = f.getBundleContext().installBundle(exporter.toURI().toString());
+        Bundle i = f.getBundleContext().installBundle(importer.toURI().toString());
+        assertTrue(f.adapt(FrameworkWiring.class).resolveBundles(null));
+        stop(f);
+
+        // Change the exporter while the snapshot is not maintained, which
+        // leaves a stale snapshot behind.
+        f = createFramework(false);
+        f.start();
+        e = f.getBundleContext().getBundle(e.getBundleId());
+        e.update(new FileInputStream(createBundle("Bundle-SymbolicName: exporter\n"
+            + "Bundle-ManifestVersion: 2\n"
+            + "Export-Package: org.foo.other\n")));
+        stop(f);
+
+        f = createFramework(true);
+        f.init();
+        try
+        {
+            i = f.getBundleContext().getBundle(i.getBundleId());
+            assertEquals(Bundle.INSTALLED, i.getState());
+            assertFalse(f.adapt(FrameworkWiring.class).resolveBundles(null));
+        }
+        finally
+        {
+            stop(f);
+        }
+    }
+
+    public void testSnapshotDisabledByDefault() throws Exception
+    {
+        File exporter = createBundle("Bundle-SymbolicName: exporter\n"
+            + "Bundle-ManifestVersion: 2\n"
+            + "Export-Package: org.foo.exporter\n");
+
+        Framework f = createFramework(false);
+        f.start();
+        Bundle e = f.getBundleContext().installBundle(exporter.toURI().toString());
+        assertTrue(f.adapt(FrameworkWiring.class).resolveBundles(null));
+        stop(f);
+
+        f = createFramework(false);
+        f.init();
+        try
+        {
+            e = f.getBundleContext().getBundle(e.getBundleId());
+            assertEquals(Bundle.INSTALLED, e.getState());
+        }
+        finally
+        {
+            stop(f);
+        }
+    }
+
+    private Framework createFramework(boolean snapshot)
+    {
+        Map params = new HashMap();
+        params.put(Constants.FRAMEWORK_SYSTEMPACKAGES,
+            "org.osgi.framework; version=1.4.0");
+        params.put(Constants.FRAMEWORK_STORAGE, m_cacheDir.getPath());
+        if (snapshot)
+        {
+            params.put(FelixConstants.RESOLVER_SNAPSHOT_PROP, "true");
+        }
+        return new Felix(params);
+    }
+
+    private static void stop(Framework f) throws Exception
+    {
+        f.stop();
+        f.waitForStop(10000);
+    }
+
+    private File createBundle(String manifest) throws IOException
+    {
+        File f = File.createTempFile("felix-bundle", ".jar", m_cacheDir);
+
+        Manifest mf = new Manifest(new ByteArrayInputStream(manifest.getBytes("utf-8")));
+        mf.getMainAttributes().putValue("Manifest-Version", "1.0");
+        JarOutputStream os = new JarOutputStream(new FileOutputStream(f), mf);
+        os.close();
+        return f;
+    }
+
+    private static void deleteDir(File root) throws IOException
+    {
+        if (root.isDirectory())
+        {
+            for (File file : root.listFiles())
+            {
+                deleteDir(file);
+            }
+        }
+        assertTrue(root.delete());
+    }
+}
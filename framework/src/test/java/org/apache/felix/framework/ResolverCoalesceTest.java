@@ -0,0 +1,379 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.framework.util.FelixConstants;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.BundleException;
+import org.osgi.framework.Constants;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.framework.hooks.resolver.ResolverHook;
+import org.osgi.framework.hooks.resolver.ResolverHookFactory;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleRequirement;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.framework.wiring.FrameworkWiring;
+
+public class ResolverCoalesceTest extends TestCase
+{
+    private static final int BUNDLES = 6;
+
+    private File m_cacheDir;
+    private Framework m_framework;
+
+    protected void setUp() throws Exception
+    {
+        m_cacheDir = File.createTempFile("felix-cache", ".dir");
+        m_cacheDir.delete();
+        m_cacheDir.mkdirs();
+
+        Map params = new HashMap();
+        params.put(Constants.FRAMEWORK_STORAGE, m_cacheDir.getPath());
+        params.put(FelixConstants.RESOLVER_COALESCE_PROP, "200");
+        m_framework = new Felix(params);
+        m_framework.start();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        m_framework.stop();
+        m_framework.waitForStop(10000);
+        deleteDir(m_cacheDir);
+    }
+
+    public void testConcurrentStartsAreResolvedTogether() throws Exception
+    {
+        BundleContext context = m_framework.getBundleContext();
+        final AtomicInteger resolves = new AtomicInteger();
+        context.registerService(ResolverHookFactory.class, new ResolverHookFactory()
+        {
+            public ResolverHook begin(Collection<BundleRevision> triggers)
+            {
+                resolves.incrementAndGet();
+                return new ResolverHook()
+                {
+                    public void filterResolvable(Collection<BundleRevision> candidates)
+                    {
+                    }
+
+                    public void filterSingletonCollisions(
+                        BundleCapability singleton, Collection<BundleCapability> collisions)
+                    {
+                    }
+
+                    public void filterMatches(
+                        BundleRequirement requirement, Collection<BundleCapability> candidates)
+                    {
+                    }
+
+                    public void end()
+                    {
+                    }
+                };
+            }
+        }, null);
+        final List<Bundle> resolved = Collections.synchronizedList(new ArrayList<Bundle>());
+        context.addBundleListener(new SynchronousBundleListener()
+        {
+            public void bundleChanged(BundleEvent event)
+            {
+                if (event.getType() == BundleEvent.RESOLVED)
+                {
+                    resolved.add(event.getBundle());
+                }
+            }
+        });
+
+        final List<Bundle> bundles = new ArrayList<Bundle>();
+        for (int i = 0; i < BUNDLES; i++)
+        {
+            // Every bundle imports the package of the next one.
+            String imports = (i + 1 < BUNDLES) ? ("p" + (i + 1)) : null;
+            bundles.add(context.installBundle(
+                createBundle("b" + i, "p" + i, imports).toURI().toString()));
+        }
+        Bundle broken = context.installBundle(
+            createBundle("broken", null, "missing").toURI().toString());
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<Thread>();
+        List<Bundle> all = new ArrayList<Bundle>(bundles);
+        all.add(broken);
+        for (final Bundle bundle : all)
+        {
+            Thread t = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        bundle.start();
+                    }
+                    catch (Throwable ex)
+                    {
+                        errors.add(ex);
+                    }
+                }
+            };
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+        for (Thread t : threads)
+        {
+            t.join(10000);
+        }
+
+        // Only the broken bundle fails, with the reason why.
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0) instanceof BundleException);
+        assertTrue(errors.get(0).getMessage().indexOf("missing") >= 0);
+        assertEquals(Bundle.INSTALLED, broken.getState());
+
+        // Every bundle is resolved exactly once, by fewer resolve operations.
+        for (Bundle bundle : bundles)
+        {
+            assertEquals(Bundle.ACTIVE, bundle.getState());
+            assertEquals(1, Collections.frequency(resolved, bundle));
+        }
+        assertEquals(BUNDLES, resolved.size());
+        assertTrue(resolves.get() < all.size());
+    }
+
+    public void testQueuedBundleIsResolvedIfGlobalLockFails() throws Exception
+    {
+        // A window long enough for the queueing thread to be interrupted.
+        Map params = new HashMap();
+        params.put(Constants.FRAMEWORK_STORAGE, new File(m_cacheDir, "cache").getPath());
+        params.put(FelixConstants.RESOLVER_COALESCE_PROP, "60000");
+        Felix felix = new Felix(params);
+        felix.start();
+        try
+        {
+            BundleContext context = felix.getBundleContext();
+            final Bundle queued = context.installBundle(
+                createBundle("queued", null, null).toURI().toString());
+            Bundle other = context.installBundle(
+                createBundle("other", null, null).toURI().toString());
+
+            final CountDownLatch resolved = new CountDownLatch(1);
+            context.addBundleListener(new SynchronousBundleListener()
+            {
+                public void bundleChanged(BundleEvent event)
+                {
+                    if ((event.getType() == BundleEvent.RESOLVED)
+                        && (event.getBundle() == queued))
+                    {
+                        resolved.countDown();
+                    }
+                }
+            });
+
+            final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+            Thread t = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        queued.start();
+                    }
+                    catch (Throwable ex)
+                    {
+                        errors.add(ex);
+                    }
+                }
+            };
+            t.start();
+            while (t.getState() != Thread.State.TIMED_WAITING)
+            {
+                Thread.sleep(10);
+            }
+
+            // Resolve the queued revision along with another bundle, then
+            // make the queueing thread fail to acquire the global lock.
+            felix.adapt(FrameworkWiring.class).resolveBundles(Collections.singleton(other));
+            assertNotNull(queued.adapt(BundleRevision.class).getWiring());
+            assertTrue(felix.acquireGlobalLock());
+            try
+            {
+                t.interrupt();
+                assertTrue(resolved.await(10, TimeUnit.SECONDS));
+            }
+            finally
+            {
+                felix.releaseGlobalLock();
+            }
+            t.join(10000);
+
+            assertTrue(errors.isEmpty());
+            assertEquals(Bundle.ACTIVE, queued.getState());
+        }
+        finally
+        {
+            felix.stop();
+            felix.waitForStop(10000);
+        }
+    }
+
+    public void testCoalescedBundleStateAgreesWithWiring() throws Exception
+    {
+        // A window long enough to observe the queued bundle while its
+        // thread is still waiting.
+        Map params = new HashMap();
+        params.put(Constants.FRAMEWORK_STORAGE, new File(m_cacheDir, "cache").getPath());
+        params.put(FelixConstants.RESOLVER_COALESCE_PROP, "60000");
+        final Felix felix = new Felix(params);
+        felix.start();
+        try
+        {
+            BundleContext context = felix.getBundleContext();
+            final Bundle queued = context.installBundle(
+                createBundle("queued", null, null).toURI().toString());
+            Bundle other = context.installBundle(
+                createBundle("other", null, null).toURI().toString());
+            final BundleRevision revision = queued.adapt(BundleRevision.class);
+
+            final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+            Thread t = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        queued.start();
+                    }
+                    catch (Throwable ex)
+                    {
+                        errors.add(ex);
+                    }
+                }
+            };
+            t.start();
+            while (t.getState() != Thread.State.TIMED_WAITING)
+            {
+                Thread.sleep(10);
+            }
+
+            // Check the queued bundle under the global lock while it is
+            // resolved along with another bundle.
+            final AtomicInteger mismatches = new AtomicInteger();
+            final CountDownLatch stop = new CountDownLatch(1);
+            Thread observer = new Thread()
+            {
+                public void run()
+                {
+                    while (stop.getCount() > 0)
+                    {
+                        if (felix.acquireGlobalLock())
+                        {
+                            try
+                            {
+                                if ((revision.getWiring() != null)
+                                    == (queued.getState() == Bundle.INSTALLED))
+                                {
+                                    mismatches.incrementAndGet();
+                                }
+                            }
+                            finally
+                            {
+                                felix.releaseGlobalLock();
+                            }
+                        }
+                    }
+                }
+            };
+            observer.start();
+            felix.adapt(FrameworkWiring.class).resolveBundles(Collections.singleton(other));
+            stop.countDown();
+            observer.join(10000);
+
+            // The queueing thread is still waiting, but its bundle is resolved.
+            assertEquals(Thread.State.TIMED_WAITING, t.getState());
+            assertNotNull(revision.getWiring());
+            assertEquals(Bundle.RESOLVED, queued.getState());
+            assertEquals(0, mismatches.get());
+
+            t.interrupt();
+            t.join(10000);
+            assertTrue(errors.isEmpty());
+            assertEquals(Bundle.ACTIVE, queued.getState());
+        }
+        finally
+        {
+            felix.stop();
+            felix.waitForStop(10000);
+        }
+    }
+
+    private File createBundle(String name, String exports, String imports) throws IOException
+    {
+        File f = File.createTempFile("felix-bundle", ".jar", m_cacheDir);
+
+        String mfs = "Bundle-SymbolicName: " + name + "\nBundle-ManifestVersion: 2\n";
+        if (exports != null)
+        {
+            mfs += "Export-Package: " + exports + "\n";
+        }
+        if (imports != null)
+        {
+            mfs += "Import-Package: " + imports + "\n";
+        }
+        Manifest mf = new Manifest(new ByteArrayInputStream(mfs.getBytes("utf-8")));
+        mf.getMainAttributes().putValue("Manifest-Version", "1.0");
+        JarOutputStream os = new JarOutputStream(new FileOutputStream(f), mf);
+        os.close();
+        return f;
+    }
+
+    private static void deleteDir(File root) throws IOException
+    {
+        if (root.isDirectory())
+        {
+            for (File file : root.listFiles())
+            {
+                deleteDir(file);
+            }
+        }
+        assertTrue(root.delete());
+    }
+}
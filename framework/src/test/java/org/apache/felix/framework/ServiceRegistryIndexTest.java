@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.framework.util.FelixConstants;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.launch.Framework;
+
+public class ServiceRegistryIndexTest extends TestCase
+{
+    private static final String A = ServiceA.class.getName();
+    private static final String B = ServiceB.class.getName();
+    private static final String CHURN = ServiceChurn.class.getName();
+    private static final String C = ServiceRegistryIndexTest.class.getName() + "$ServiceC";
+
+    private File m_cacheDir;
+    private Framework m_framework;
+    private BundleContext m_context;
+
+    protected void setUp() throws Exception
+    {
+        m_cacheDir = File.createTempFile("felix-cache", ".dir");
+        m_cacheDir.delete();
+        m_cacheDir.mkdirs();
+
+        Map params = new HashMap();
+        params.put(Constants.FRAMEWORK_STORAGE, m_cacheDir.getPath());
+        params.put(FelixConstants.SERVICE_REGISTRY_CONCURRENT_PROP, "true");
+        m_framework = new Felix(params);
+        m_framework.start();
+        m_context = m_framework.getBundleContext();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        m_framework.stop();
+        m_framework.waitForStop(10000);
+        deleteDir(m_cacheDir);
+    }
+
+    public void testReferencesInRankingOrder() throws Exception
+    {
+        ServiceRegistration r1 = register(new String[] { A, B }, 0);
+        ServiceRegistration r2 = register(new String[] { A }, 10);
+        ServiceRegistration r3 = register(new String[] { A }, 0);
+        ServiceRegistration r4 = register(new String[] { B }, -5);
+
+        assertOrder(m_context.getServiceReferences(A, null), r2, r1, r3);
+        assertOrder(m_context.getServiceReferences(B, null), r1, r4);
+        assertOrder(m_context.getServiceReferences((String) null, "(objectClass=" + A + ")"), r2, r1, r3);
+        assertOrder(m_context.getServiceReferences(A, "(" + Constants.SERVICE_RANKING + "=0)"), r1, r3);
+        assertOrder(m_context.getServiceReferences((String) null, "(&(objectclass=" + B + ")(test=true))"), r1, r4);
+        assertEquals(r2.getReference(), m_context.getServiceReference(A));
+        assertNull(m_context.getServiceReferences(Runnable.class.getName(), null));
+
+        // Modified rankings are reflected.
+        Hashtable props = new Hashtable();
+        props.put("test", "true");
+        props.put(Constants.SERVICE_RANKING, Integer.valueOf(20));
+        r3.setProperties(props);
+        assertOrder(m_context.getServiceReferences(A, null), r3, r2, r1);
+
+        // Unregistered services are removed.
+        r2.unregister();
+        r1.unregister();
+        assertOrder(m_context.getServiceReferences(A, null), r3);
+        assertOrder(m_context.getServiceReferences(B, null), r4);
+        r3.unregister();
+        r4.unregister();
+        assertNull(m_context.getServiceReferences(A, null));
+    }
+
+    public void testRepeatedObjectClass() throws Exception
+    {
+        ServiceRegistration r1 = register(new String[] { A, A }, 0);
+        ServiceRegistration r2 = register(new String[] { B, A, B }, 10);
+
+        assertOrder(m_context.getServiceReferences(A, null), r2, r1);
+        assertOrder(m_context.getServiceReferences(B, null), r2);
+        assertOrder(m_context.getServiceReferences((String) null, "(objectClass=" + A + ")"), r2, r1);
+
+        r2.unregister();
+        assertOrder(m_context.getServiceReferences(A, null), r1);
+        assertNull(m_context.getServiceReferences(B, null));
+        r1.unregister();
+        assertNull(m_context.getServiceReferences(A, null));
+    }
+
+    public void testConcurrentRegistrations() throws Exception
+    {
+        final int threads = 4;
+        final int count = 250;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        List<Thread> list = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++)
+        {
+            final int rank = t;
+            Thread thread = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for (int i = 0; i < count; i++)
+                        {
+                            ServiceRegistration reg = register(new String[] { CHURN, C + rank }, rank);
+                            m_context.getServiceReferences(CHURN, null);
+                            if ((i % 2) == 0)
+                            {
+                                reg.unregister();
+                            }
+                        }
+                    }
+                    catch (Throwable ex)
+                    {
+                        synchronized (errors)
+                        {
+                            errors.add(ex);
+                        }
+                    }
+                }
+            };
+            thread.start();
+            list.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : list)
+        {
+            thread.join();
+        }
+        assertTrue(errors.toString(), errors.isEmpty());
+
+        ServiceReference[] refs = m_context.getServiceReferences(CHURN, null);
+        assertEquals(threads * count / 2, refs.length);
+        for (int i = 1; i < refs.length; i++)
+        {
+            assertTrue(refs[i - 1].compareTo(refs[i]) > 0);
+        }
+        for (int t = 0; t < threads; t++)
+        {
+            assertEquals(count / 2, m_context.getServiceReferences(C + t, null).length);
+        }
+    }
+
+    private ServiceRegistration register(String[] classes, int ranking)
+    {
+        Hashtable props = new Hashtable();
+        props.put("test", "true");
+        props.put(Constants.SERVICE_RANKING, Integer.valueOf(ranking));
+        return m_context.registerService(classes, new Service(), props);
+    }
+
+    private static void assertOrder(ServiceReference[] refs, ServiceRegistration... regs)
+    {
+        assertNotNull(refs);
+        assertEquals(regs.length, refs.length);
+        for (int i = 0; i < regs.length; i++)
+        {
+            assertEquals(regs[i].getReference(), refs[i]);
+        }
+    }
+
+    private static void deleteDir(File root) throws IOException
+    {
+        if (root.isDirectory())
+        {
+            for (File file : root.listFiles())
+            {
+                deleteDir(file);
+            }
+        }
+        assertTrue(root.delete());
+    }
+
+    public interface ServiceChurn {}
+    public interface ServiceA {}
+    public interface ServiceB {}
+    public interface ServiceC0 {}
+    public interface ServiceC1 {}
+    public interface ServiceC2 {}
+    public interface ServiceC3 {}
+
+    public static class Service
+        implements ServiceChurn, ServiceA, ServiceB, ServiceC0, ServiceC1, ServiceC2, ServiceC3
+    {
+    }
+}
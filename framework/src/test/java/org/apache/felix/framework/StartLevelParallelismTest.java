@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.framework.util.FelixConstants;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.SynchronousBundleListener;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.startlevel.BundleStartLevel;
+import org.osgi.framework.startlevel.FrameworkStartLevel;
+
+public class StartLevelParallelismTest extends TestCase
+{
+    public static final int TIMEOUT = 30;
+
+    public void testParallelStartLevel() throws Exception
+    {
+        File cacheDir = File.createTempFile("felix-cache", ".dir");
+        cacheDir.delete();
+        cacheDir.mkdirs();
+
+        Map params = new HashMap();
+        params.put(Constants.FRAMEWORK_SYSTEMPACKAGES,
+            "org.osgi.framework; version=1.4.0");
+        params.put(Constants.FRAMEWORK_STORAGE, cacheDir.getPath());
+        params.put(FelixConstants.STARTLEVEL_PARALLELISM, "4");
+
+        Framework f = new Felix(params);
+        f.start();
+        try
+        {
+            final List<BundleEvent> events = new ArrayList<BundleEvent>();
+            f.getBundleContext().addBundleListener(new SynchronousBundleListener()
+            {
+                public void bundleChanged(BundleEvent event)
+                {
+                    if ((event.getType() == BundleEvent.STARTING)
+                        || (event.getType() == BundleEvent.STARTED))
+                    {
+                        synchronized (events)
+                        {
+                            events.add(event);
+                        }
+                    }
+                }
+            });
+
+            // The activators of a start level wait for each other, so they
+            // only all start if they are called concurrently.
+            for (int level = 2; level <= 3; level++)
+            {
+                Hashtable<String, Object> props = new Hashtable<String, Object>();
+                props.put("level", level);
+                f.getBundleContext().registerService(
+                    CyclicBarrier.class.getName(), new CyclicBarrier(4), props);
+            }
+
+            List<Bundle> bundles = new ArrayList<Bundle>();
+            for (int i = 0; i < 8; i++)
+            {
+                int level = (i < 4) ? 2 : 3;
+                Bundle b = f.getBundleContext().installBundle(
+                    createBundle("Bundle-SymbolicName: concurrent" + i + "\n"
+                        + "Bundle-ManifestVersion: 2\n"
+                        + "Test-Level: " + level + "\n"
+                        + "Import-Package: org.osgi.framework\n", cacheDir).toURI().toString());
+                b.adapt(BundleStartLevel.class).setStartLevel(level);
+                b.start();
+                bundles.add(b);
+            }
+            FrameworkStartLevel fsl = f.adapt(FrameworkStartLevel.class);
+            ((FrameworkStartLevelImpl) fsl).setStartLevelAndWait(3);
+
+            for (Bundle b : bundles)
+            {
+                assertEquals(Bundle.ACTIVE, b.getState());
+            }
+
+            // The events of a bundle keep their order, the events of the
+            // bundles of a start level precede the ones of the next level.
+            assertEquals(16, events.size());
+            for (int i = 0; i < 8; i++)
+            {
+                int starting = indexOf(events, bundles.get(i), BundleEvent.STARTING);
+                int started = indexOf(events, bundles.get(i), BundleEvent.STARTED);
+                assertTrue(starting < started);
+                if (i < 4)
+                {
+                    assertTrue(started < 8);
+                }
+                else
+                {
+                    assertTrue(starting >= 8);
+                }
+            }
+        }
+        finally
+        {
+            f.stop();
+            f.waitForStop(10000);
+            deleteDir(cacheDir);
+        }
+    }
+
+    private static int indexOf(List<BundleEvent> events, Bundle bundle, int type)
+    {
+        for (int i = 0; i < events.size(); i++)
+        {
+            if ((events.get(i).getBundle() == bundle) && (events.get(i).getType() == type))
+            {
+                return i;
+            }
+        }
+        fail("No event " + type + " for " + bundle);
+        return -1;
+    }
+
+    private static File createBundle(String manifest, File tempDir) throws IOException
+    {
+        File f = File.createTempFile("felix-bundle", ".jar", tempDir);
+
+        Manifest mf = new Manifest(new ByteArrayInputStream(manifest.getBytes("utf-8")));
+        mf.getMainAttributes().putValue("Manifest-Version", "1.0");
+        mf.getMainAttributes().putValue(Constants.BUNDLE_ACTIVATOR, TestBundleActivator.class.getName());
+        JarOutputStream os = new JarOutputStream(new FileOutputStream(f), mf);
+
+        String path = TestBundleActivator.class.getName().replace('.', '/') + ".class";
+        os.putNextEntry(new ZipEntry(path));
+
+        InputStream is = TestBundleActivator.class.getClassLoader().getResourceAsStream(path);
+        byte[] b = new byte[is.available()];
+        is.read(b);
+        is.close();
+        os.write(b);
+
+        os.close();
+        return f;
+    }
+
+    private static void deleteDir(File root) throws IOException
+    {
+        if (root.isDirectory())
+        {
+            for (File file : root.listFiles())
+            {
+                deleteDir(file);
+            }
+        }
+        assertTrue(root.delete());
+    }
+
+    public static class TestBundleActivator implements BundleActivator
+    {
+        public void start(BundleContext context) throws Exception
+        {
+            ServiceReference<?>[] refs = context.getServiceReferences(
+                CyclicBarrier.class.getName(),
+                "(level=" + context.getBundle().getHeaders().get("Test-Level") + ")");
+            ((CyclicBarrier) context.getService(refs[0])).await(TIMEOUT, TimeUnit.SECONDS);
+        }
+
+        public void stop(BundleContext context) throws Exception
+        {
+        }
+    }
+}
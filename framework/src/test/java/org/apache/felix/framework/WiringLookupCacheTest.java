@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.framework.util.FelixConstants;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.launch.Framework;
+import org.osgi.framework.wiring.BundleWiring;
+
+public class WiringLookupCacheTest extends TestCase
+{
+    private File m_cacheDir;
+    private Framework m_framework;
+
+    protected void setUp() throws Exception
+    {
+        m_cacheDir = File.createTempFile("felix-cache", ".dir");
+        m_cacheDir.delete();
+        m_cacheDir.mkdirs();
+
+        Map params = new HashMap();
+        params.put(Constants.FRAMEWORK_SYSTEMPACKAGES,
+            "org.osgi.framework; version=1.4.0");
+        params.put(Constants.FRAMEWORK_STORAGE, m_cacheDir.getPath());
+        params.put(FelixConstants.WIRING_LOOKUPCACHE_SIZE_PROP, "100");
+        m_framework = new Felix(params);
+        m_framework.start();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        m_framework.stop();
+        m_framework.waitForStop(10000);
+        deleteDir(m_cacheDir);
+    }
+
+    public void testMissingLookupsAreCached() throws Exception
+    {
+        Bundle b = m_framework.getBundleContext().installBundle(
+            createBundle("Bundle-SymbolicName: cached\n"
+                + "Bundle-ManifestVersion: 2\n"
+                + "Import-Package: org.osgi.framework\n").toURI().toString());
+        b.start();
+        BundleWiringImpl wiring = (BundleWiringImpl) b.adapt(BundleWiring.class);
+
+        assertNotNull(b.getResource("org/foo/resource.txt"));
+        long hits = wiring.getLookupCacheHits();
+        assertNotNull(b.getResource("org/foo/other.txt"));
+        assertEquals(hits + 1, wiring.getLookupCacheHits());
+
+        assertMissing(b, "org.foo.Missing");
+        hits = wiring.getLookupCacheHits();
+        assertMissing(b, "org.foo.Missing");
+        assertEquals(hits + 1, wiring.getLookupCacheHits());
+        assertNull(b.getResource("org/foo/missing.txt"));
+        assertNull(b.getResource("org/foo/missing.txt"));
+        // The first lookup knows the package, the second one the resource.
+        assertEquals(hits + 3, wiring.getLookupCacheHits());
+
+        // Classes from imported packages are still found.
+        assertEquals(Bundle.class, b.loadClass(Bundle.class.getName()));
+        assertTrue(wiring.getLookupCacheMisses() > 0);
+        hits = wiring.getLookupCacheHits();
+        assertEquals(Constants.class, b.loadClass(Constants.class.getName()));
+        assertEquals(hits + 1, wiring.getLookupCacheHits());
+    }
+
+    public void testRequiredPackagesAreNotCached() throws Exception
+    {
+        Bundle provider = m_framework.getBundleContext().installBundle(
+            createBundle("Bundle-SymbolicName: provider\n"
+                + "Bundle-ManifestVersion: 2\n"
+                + "Export-Package: org.foo\n", "org/foo/provided.txt").toURI().toString());
+        Bundle b = m_framework.getBundleContext().installBundle(
+            createBundle("Bundle-SymbolicName: requirer\n"
+                + "Bundle-ManifestVersion: 2\n"
+                + "Require-Bundle: provider\n", "org/foo/local.txt").toURI().toString());
+        b.start();
+        BundleWiringImpl wiring = (BundleWiringImpl) b.adapt(BundleWiring.class);
+
+        // The package is split, so finding a local resource must not
+        // hide the resources of the required bundle.
+        long hits = wiring.getLookupCacheHits();
+        assertNotNull(b.getResource("org/foo/local.txt"));
+        assertNotNull(b.getResource("org/foo/provided.txt"));
+        assertNotNull(b.getResource("org/foo/local.txt"));
+        assertEquals(hits, wiring.getLookupCacheHits());
+        assertNotNull(provider.getResource("org/foo/provided.txt"));
+    }
+
+    public void testMissingLookupsNotCachedWithDynamicImports() throws Exception
+    {
+        Bundle b = m_framework.getBundleContext().installBundle(
+            createBundle("Bundle-SymbolicName: dynamic\n"
+                + "Bundle-ManifestVersion: 2\n"
+                + "DynamicImport-Package: org.bar\n").toURI().toString());
+        b.start();
+        BundleWiringImpl wiring = (BundleWiringImpl) b.adapt(BundleWiring.class);
+
+        assertMissing(b, "org.bar.Bar");
+        long hits = wiring.getLookupCacheHits();
+        assertMissing(b, "org.bar.Bar");
+        assertEquals(hits, wiring.getLookupCacheHits());
+    }
+
+    public void testCacheDisabledByDefault() throws Exception
+    {
+        Bundle b = m_framework.getBundleContext().installBundle(
+            createBundle("Bundle-SymbolicName: cached\n"
+                + "Bundle-ManifestVersion: 2\n").toURI().toString());
+        b.start();
+        BundleWiringImpl wiring = (BundleWiringImpl) b.adapt(BundleWiring.class);
+        assertTrue(wiring.getLookupCacheHits() >= 0);
+
+        Map params = new HashMap();
+        params.put(Constants.FRAMEWORK_SYSTEMPACKAGES,
+            "org.osgi.framework; version=1.4.0");
+        params.put(Constants.FRAMEWORK_STORAGE, m_cacheDir.getPath() + "2");
+        Framework f = new Felix(params);
+        f.start();
+        try
+        {
+            b = f.getBundleContext().installBundle(
+                createBundle("Bundle-SymbolicName: cached\n"
+                    + "Bundle-ManifestVersion: 2\n").toURI().toString());
+            b.start();
+            wiring = (BundleWiringImpl) b.adapt(BundleWiring.class);
+            assertMissing(b, "org.foo.Missing");
+            assertEquals(-1, wiring.getLookupCacheHits());
+            assertEquals(-1, wiring.getLookupCacheMisses());
+        }
+        finally
+        {
+            f.stop();
+            f.waitForStop(10000);
+            deleteDir(new File(m_cacheDir.getPath() + "2"));
+        }
+    }
+
+    private static void assertMissing(Bundle b, String className)
+    {
+        try
+        {
+            b.loadClass(className);
+            fail("Class should not be found: " + className);
+        }
+        catch (ClassNotFoundException ex)
+        {
+            // Expected.
+        }
+    }
+
+    private File createBundle(String manifest) throws IOException
+    {
+        return createBundle(manifest, "org/foo/resource.txt", "org/foo/other.txt");
+    }
+
+    private File createBundle(String manifest, String... entries) throws IOException
+    {
+        File f = File.createTempFile("felix-bundle", ".jar", m_cacheDir);
+
+        Manifest mf = new Manifest(new ByteArrayInputStream(manifest.getBytes("utf-8")));
+        mf.getMainAttributes().putValue("Manifest-Version", "1.0");
+        JarOutputStream os = new JarOutputStream(new FileOutputStream(f), mf);
+        for (String entry : entries)
+        {
+            os.putNextEntry(new ZipEntry(entry));
+            os.write(entry.getBytes("utf-8"));
+        }
+        os.close();
+        return f;
+    }
+
+    private static void deleteDir(File root) throws IOException
+    {
+        if (root.isDirectory())
+        {
+            for (File file : root.listFiles())
+            {
+                deleteDir(file);
+            }
+        }
+        assertTrue(root.delete());
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.cache;
+
+import junit.framework.TestCase;
+import org.apache.felix.framework.Logger;
+import org.apache.felix.framework.util.WeakZipFileFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class MappedJarContentTest extends TestCase
+{
+    private File tempDir;
+    private File jarFile;
+    private Logger logger;
+    private WeakZipFileFactory zipFactory;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        tempDir = File.createTempFile("felix-temp", ".dir");
+        assertTrue("precondition", tempDir.delete());
+        assertTrue("precondition", tempDir.mkdirs());
+
+        logger = new Logger() {
+            @Override
+            protected void doLog(int level, String msg, Throwable throwable) {
+            }
+        };
+        zipFactory = new WeakZipFileFactory(1);
+
+        ByteArrayOutputStream inner = new ByteArrayOutputStream();
+        ZipOutputStream zos = new ZipOutputStream(inner);
+        zos.putNextEntry(new ZipEntry("inner/Inner.class"));
+        zos.write("inner".getBytes("UTF-8"));
+        zos.close();
+
+        jarFile = new File(tempDir, "bundle.jar");
+        zos = new ZipOutputStream(new FileOutputStream(jarFile));
+        zos.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+        zos.write("Manifest-Version: 1.0\r\n\r\n".getBytes("UTF-8"));
+        zos.putNextEntry(new ZipEntry("org/"));
+        zos.putNextEntry(new ZipEntry("org/foo/"));
+        zos.putNextEntry(new ZipEntry("org/foo/Deflated.class"));
+        zos.write(data(100000));
+        byte[] stored = data(1000);
+        ZipEntry ze = new ZipEntry("org/foo/Stored.class");
+        ze.setMethod(ZipEntry.STORED);
+        ze.setSize(stored.length);
+        CRC32 crc = new CRC32();
+        crc.update(stored);
+        ze.setCrc(crc.getValue());
+        zos.putNextEntry(ze);
+        zos.write(stored);
+        zos.putNextEntry(new ZipEntry("org/foo/äöü.txt"));
+        zos.write("umlauts".getBytes("UTF-8"));
+        zos.putNextEntry(new ZipEntry("lib/inner.jar"));
+        zos.write(inner.toByteArray());
+        zos.putNextEntry(new ZipEntry("empty.txt"));
+        zos.close();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        super.tearDown();
+        BundleCache.deleteDirectoryTree(tempDir);
+    }
+
+    public void testSameAsJarContent() throws Exception
+    {
+        JarContent expected = new JarContent(logger, new HashMap(), zipFactory,
+            this, tempDir, jarFile, null);
+        Content actual = MappedJarContent.create(logger, new HashMap(), zipFactory,
+            this, tempDir, jarFile);
+        assertTrue(actual instanceof MappedJarContent);
+        try
+        {
+            List<String> names = list(expected.getEntries());
+            assertEquals(names, list(actual.getEntries()));
+
+            for (String name : names)
+            {
+                assertTrue(name, actual.hasEntry(name));
+                assertEquals(name, toString(expected.getEntryAsBytes(name)),
+                    toString(actual.getEntryAsBytes(name)));
+                assertEquals(name, toString(read(expected.getEntryAsStream(name))),
+                    toString(read(actual.getEntryAsStream(name))));
+                assertEquals(name, expected.getEntryAsURL(name), actual.getEntryAsURL(name));
+            }
+
+            assertTrue(actual.hasEntry("org/foo"));
+            assertFalse(actual.hasEntry("org/fo"));
+            assertFalse(actual.hasEntry("org/foo/Missing.class"));
+            assertNull(actual.getEntryAsBytes("org/foo/Missing.class"));
+            assertNull(actual.getEntryAsStream("org/foo/Missing.class"));
+            assertEquals(0, actual.getEntryAsBytes("empty.txt").length);
+
+            Content dir = actual.getEntryAsContent("org/foo");
+            assertTrue(dir instanceof ContentDirectoryContent);
+            assertTrue(dir.hasEntry("Stored.class"));
+
+            Content embedded = actual.getEntryAsContent("lib/inner.jar");
+            assertTrue(embedded instanceof MappedJarContent);
+            assertEquals("inner", new String(
+                embedded.getEntryAsBytes("inner/Inner.class"), "UTF-8"));
+            embedded.close();
+        }
+        finally
+        {
+            expected.close();
+            actual.close();
+        }
+    }
+
+    public void testIndexIsPersistedAndRebuilt() throws Exception
+    {
+        File indexFile = new File(tempDir, jarFile.getName() + MappedJarFile.INDEX_SUFFIX);
+        assertFalse(indexFile.exists());
+
+        MappedJarFile jar = MappedJarFile.open(logger, jarFile, indexFile);
+        assertTrue(indexFile.exists());
+        long lastModified = indexFile.lastModified();
+        int count = jar.size();
+
+        jar.close();
+
+        // A valid index is reused.
+        Thread.sleep(1100);
+        jar = MappedJarFile.open(logger, jarFile, indexFile);
+        assertEquals(lastModified, indexFile.lastModified());
+        assertEquals(count, jar.size());
+        jar.close();
+
+        // A stale index is rebuilt.
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jarFile));
+        zos.putNextEntry(new ZipEntry("a.txt"));
+        zos.close();
+        jar = MappedJarFile.open(logger, jarFile, indexFile);
+        assertEquals(1, jar.size());
+        assertTrue(jar.find("a.txt") >= 0);
+        jar.close();
+    }
+
+    public void testCloseReleasesMapping() throws Exception
+    {
+        File indexFile = new File(tempDir, jarFile.getName() + MappedJarFile.INDEX_SUFFIX);
+        MappedJarFile jar = MappedJarFile.open(logger, jarFile, indexFile);
+        InputStream is = jar.getInputStream(jar.find("org/foo/Stored.class"));
+        assertEquals(1000, is.available());
+
+        jar.close();
+        jar.close();
+
+        try
+        {
+            jar.find("org/foo/Stored.class");
+            fail("Expected an IllegalStateException");
+        }
+        catch (IllegalStateException ex)
+        {
+            // Expected.
+        }
+        try
+        {
+            is.read();
+            fail("Expected an IOException");
+        }
+        catch (java.io.IOException ex)
+        {
+            // Expected.
+        }
+        assertTrue(indexFile.delete());
+        assertTrue(jarFile.delete());
+    }
+
+    public void testFallbackForInvalidFile() throws Exception
+    {
+        File invalid = new File(tempDir, "invalid.jar");
+        FileOutputStream fos = new FileOutputStream(invalid);
+        fos.write(data(100));
+        fos.close();
+        try
+        {
+            MappedJarFile.open(logger, invalid, new File(tempDir, "invalid.jar.idx"));
+            fail("Expected an IOException");
+        }
+        catch (java.io.IOException ex)
+        {
+            // Expected.
+        }
+    }
+
+    private static byte[] data(int size)
+    {
+        byte[] data = new byte[size];
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++)
+        {
+            data[i] = (byte) ('a' + random.nextInt(4));
+        }
+        return data;
+    }
+
+    private static List<String> list(Enumeration<String> e)
+    {
+        List<String> result = new ArrayList<String>(Collections.list(e));
+        Collections.sort(result);
+        return result;
+    }
+
+    private static byte[] read(InputStream is) throws Exception
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int n = is.read(buffer); n != -1; n = is.read(buffer))
+        {
+            bos.write(buffer, 0, n);
+        }
+        is.close();
+        return bos.toByteArray();
+    }
+
+    private static String toString(byte[] bytes) throws Exception
+    {
+        return (bytes == null) ? null : new String(bytes, "ISO-8859-1");
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.capabilityset;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.felix.framework.wiring.BundleCapabilityImpl;
+import org.osgi.framework.Version;
+import org.osgi.framework.VersionRange;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.framework.wiring.BundleRevision;
+import org.osgi.resource.Capability;
+
+public class CapabilitySetTest extends TestCase
+{
+    private static final String PKG = BundleRevision.PACKAGE_NAMESPACE;
+
+    private static final String[] FILTERS = new String[] {
+        "(osgi.wiring.package=p1)",
+        "(&(osgi.wiring.package=p1)(version>=1.2.0))",
+        "(&(osgi.wiring.package=p1)(version>=1.2.0)(!(version>=2.0.0)))",
+        "(&(osgi.wiring.package=p1)(!(version<=1.2.0))(version<=3.0.0))",
+        "(&(osgi.wiring.package=p1)(version=1.2.0))",
+        "(&(osgi.wiring.package=p1)(version=[1.0,1.5\\)))",
+        "(&(osgi.wiring.package=p1)(version=\\(1.0,1.5]))",
+        "(&(osgi.wiring.package=p1)(version>=3.0.0)(version<=2.0.0))",
+        "(&(osgi.wiring.package=p1)(version>= 1.2 ))",
+        "(&(osgi.wiring.package=p1)(version>=abc))",
+        "(&(osgi.wiring.package=p2)(version>=0.0.0)(bundle-symbolic-name=b3))",
+        "(&(version>=1.0.0)(osgi.wiring.package=p3))",
+        "(&(osgi.wiring.package=p1)(|(version>=2.0.0)(version<=1.0.0)))",
+    };
+
+    private CapabilitySet m_capSet;
+    private List<BundleCapability> m_caps;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        m_capSet = new CapabilitySet(Collections.singletonList(PKG), "version", true);
+        m_caps = new ArrayList<BundleCapability>();
+        for (int i = 0; i < 50; i++)
+        {
+            add("p" + (i % 3), new Version(i % 4, i % 7, 0), "b" + i);
+        }
+        // Versions which are not indexed by version.
+        add("p1", "1.3.0", "s1");
+        add("p1", null, "n1");
+        add("p1", new Version[] { new Version(1, 0, 0), new Version(2, 0, 0) }, "a1");
+    }
+
+    public void testRangeLookupsSameAsScan()
+    {
+        assertMatches();
+
+        // Removed capabilities are removed from the version buckets.
+        List<BundleCapability> remaining = new ArrayList<BundleCapability>();
+        for (int i = 0; i < m_caps.size(); i++)
+        {
+            if ((i % 2) == 0)
+            {
+                m_capSet.removeCapability(m_caps.get(i));
+            }
+            else
+            {
+                remaining.add(m_caps.get(i));
+            }
+        }
+        m_caps = remaining;
+        assertMatches();
+    }
+
+    public void testConvertedRangeFilter()
+    {
+        Map<String, Object> attrs = new HashMap<String, Object>();
+        attrs.put(PKG, "p1");
+        attrs.put("version", new VersionRange("(1.0.0,2.0.0]"));
+        SimpleFilter sf = SimpleFilter.convert(attrs);
+        assertEquals(scan(sf), new HashSet<Capability>(m_capSet.match(sf, false)));
+        assertFalse(m_capSet.match(sf, false).isEmpty());
+    }
+
+    private void assertMatches()
+    {
+        for (String filter : FILTERS)
+        {
+            SimpleFilter sf = SimpleFilter.parse(filter);
+            assertEquals(filter, scan(sf), new HashSet<Capability>(m_capSet.match(sf, false)));
+        }
+    }
+
+    private Set<Capability> scan(SimpleFilter sf)
+    {
+        Set<Capability> result = new HashSet<Capability>();
+        for (BundleCapability cap : m_caps)
+        {
+            if (CapabilitySet.matches(cap, sf))
+            {
+                result.add(cap);
+            }
+        }
+        return result;
+    }
+
+    private void add(String pkg, Object version, String bsn)
+    {
+        Map<String, Object> attrs = new HashMap<String, Object>();
+        attrs.put(PKG, pkg);
+        if (version != null)
+        {
+            attrs.put("version", version);
+        }
+        attrs.put("bundle-symbolic-name", bsn);
+        BundleCapability cap = new BundleCapabilityImpl(
+            null, PKG, Collections.<String, String>emptyMap(), attrs);
+        m_capSet.addCapability(cap);
+        m_caps.add(cap);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.capabilityset;
+
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.felix.framework.wiring.BundleCapabilityImpl;
+import org.osgi.framework.Version;
+import org.osgi.framework.wiring.BundleCapability;
+import org.osgi.resource.Capability;
+
+public class CompiledFilterTest extends TestCase
+{
+    private static final String[] FILTERS = new String[] {
+        "(name=a)",
+        "(name=1)",
+        "(&(name=a)(version>=1.0))",
+        "(&(name=a)(version=[1.0,2.0\\)))",
+        "(&(name=a)(name=b))",
+        "(&(version>=1.5)(name=b))",
+        "(&(name=a)(|(count<=5)(flag=true)))",
+        "(&(name=a)(!(count=3)))",
+        "(&(tags=x)(count>=2))",
+        "(&(tags=*y*)(!(name=1)))",
+        "(|(name=b)(count~= 4 ))",
+        "(&(label~=Hello World)(name=*))",
+        "(&(name=a)(version=1.0.0))",
+        "(&(count=abc)(name=a))",
+        "(&(flag=*)(char=c))",
+        "(!(name=a))",
+        "(&(!(name=a))(version<=1.5))",
+    };
+
+    private CapabilitySet m_capSet;
+    private Set<Capability> m_caps;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        m_capSet = new CapabilitySet(Collections.singletonList("name"), true);
+        m_caps = new HashSet<Capability>();
+        add("a", new Version(1, 0, 0), Long.valueOf(3), Boolean.TRUE, "Hello World", new String[] { "x", "y" });
+        add("a", new Version(1, 5, 0), Long.valueOf(4), Boolean.FALSE, "helloworld", new String[] { "x" });
+        add("a", new Version(2, 0, 0), Long.valueOf(8), null, null, null);
+        add("b", new Version(1, 7, 0), Integer.valueOf(4), Boolean.TRUE, "Hello", new String[] { "y", "z" });
+        // Indexed attribute which is not a string.
+        add(Long.valueOf(1), new Version(0, 1, 0), Long.valueOf(1), null, null, new String[] { "xy" });
+    }
+
+    public void testSetMatchSameAsSingleMatch()
+    {
+        // Evaluate twice to use the cached operands the second time.
+        for (int run = 0; run < 2; run++)
+        {
+            for (String filter : FILTERS)
+            {
+                SimpleFilter sf = SimpleFilter.parse(filter);
+                Set<Capability> expected = new HashSet<Capability>();
+                for (Capability cap : m_caps)
+                {
+                    if (matchesUncompiled(cap, sf, true))
+                    {
+                        expected.add(cap);
+                    }
+                    assertEquals(filter, matchesUncompiled(cap, sf, false),
+                        CapabilitySet.matches(cap, sf));
+                }
+                assertEquals(filter, expected, new HashSet<Capability>(m_capSet.match(sf, false)));
+            }
+        }
+    }
+
+    public void testIndexSemanticsArePreserved()
+    {
+        // The index only finds string values, a single capability check
+        // also finds values converted from the operand.
+        SimpleFilter sf = SimpleFilter.parse("(&(name=1)(count=1))");
+        assertTrue(m_capSet.match(sf, false).isEmpty());
+        int matches = 0;
+        for (Capability cap : m_caps)
+        {
+            matches += CapabilitySet.matches(cap, sf) ? 1 : 0;
+        }
+        assertEquals(1, matches);
+    }
+
+    public void testParsedFiltersAreCached()
+    {
+        SimpleFilter sf = SimpleFilter.parse("(&(name=a)(version>=1.0))");
+        assertSame(sf, SimpleFilter.parse("(&(name=a)(version>=1.0))"));
+        assertSame(sf.getCompiled(), SimpleFilter.parse("(&(name=a)(version>=1.0))").getCompiled());
+        assertNotSame(sf, SimpleFilter.parse("(&(name=a)(version>=2.0))"));
+    }
+
+    private void add(Object name, Version version, Number count, Boolean flag,
+        String label, String[] tags)
+    {
+        Map<String, Object> attrs = new HashMap<String, Object>();
+        attrs.put("name", name);
+        attrs.put("version", version);
+        attrs.put("count", count);
+        attrs.put("char", Character.valueOf('c'));
+        if (flag != null)
+        {
+            attrs.put("flag", flag);
+        }
+        if (label != null)
+        {
+            attrs.put("label", label);
+        }
+        if (tags != null)
+        {
+            attrs.put("tags", tags);
+        }
+        BundleCapability cap = new BundleCapabilityImpl(
+            null, "test", Collections.<String, String>emptyMap(), attrs);
+        m_capSet.addCapability(cap);
+        m_caps.add(cap);
+    }
+
+    // Straightforward evaluation, optionally using index semantics for the
+    // indexed name attribute like the set evaluation does.
+    private static boolean matchesUncompiled(Capability cap, SimpleFilter sf, boolean indexed)
+    {
+        switch (sf.getOperation())
+        {
+            case SimpleFilter.MATCH_ALL:
+                return true;
+            case SimpleFilter.AND:
+                for (Object o : (List) sf.getValue())
+                {
+                    if (!matchesUncompiled(cap, (SimpleFilter) o, indexed))
+                    {
+                        return false;
+                    }
+                }
+                return true;
+            case SimpleFilter.OR:
+                for (Object o : (List) sf.getValue())
+                {
+                    if (matchesUncompiled(cap, (SimpleFilter) o, indexed))
+                    {
+                        return true;
+                    }
+                }
+                return false;
+            case SimpleFilter.NOT:
+                return !matchesUncompiled(cap, (SimpleFilter) ((List) sf.getValue()).get(0), indexed);
+            default:
+                Object lhs = cap.getAttributes().get(sf.getName());
+                if (indexed && "name".equals(sf.getName()) && (sf.getOperation() == SimpleFilter.EQ))
+                {
+                    return sf.getValue().equals(lhs);
+                }
+                return (lhs != null)
+                    && CapabilitySet.compare(lhs, sf.getValue(), sf.getOperation(), null);
+        }
+    }
+}
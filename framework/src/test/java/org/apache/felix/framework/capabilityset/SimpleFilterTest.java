@@ -83,4 +83,46 @@ public class SimpleFilterTest extends TestCase
         pieces = SimpleFilter.parseSubstring("aaa**aaa");
         assertTrue("Should match!", SimpleFilter.compareSubstring(pieces, "aaaaaa"));
     }
+
+    public void testParseNull()
+    {
+        try
+        {
+            SimpleFilter.parse(null);
+            fail("Null filter should be rejected");
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // Expected.
+        }
+    }
+
+    public void testParsedFiltersAreImmutable()
+    {
+        SimpleFilter sf = SimpleFilter.parse("(&(a=b)(c=d*e))");
+        assertSame(sf, SimpleFilter.parse("(&(a=b)(c=d*e))"));
+
+        List<SimpleFilter> children = (List<SimpleFilter>) sf.getValue();
+        try
+        {
+            children.clear();
+            fail("Cached filter should not be modifiable");
+        }
+        catch (UnsupportedOperationException ex)
+        {
+            // Expected.
+        }
+
+        List<String> pieces = (List<String>) children.get(1).getValue();
+        try
+        {
+            pieces.add("f");
+            fail("Cached substring should not be modifiable");
+        }
+        catch (UnsupportedOperationException ex)
+        {
+            // Expected.
+        }
+        assertEquals(2, children.size());
+    }
 }
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.framework.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.osgi.framework.Version;
+
+public class CompactMapTest extends TestCase
+{
+    public void testLookupAndOrder()
+    {
+        Map<String, Object> source = new LinkedHashMap<String, Object>();
+        source.put("osgi.wiring.package", "org.example");
+        source.put("version", new Version(1, 2, 3));
+        source.put(new String("bundle-symbolic-name"), "b1");
+        Map<String, Object> map = CompactMap.create(source);
+
+        assertTrue(map instanceof CompactMap);
+        assertEquals(source, map);
+        assertEquals(source.hashCode(), map.hashCode());
+        assertEquals(new ArrayList<String>(source.keySet()), new ArrayList<String>(map.keySet()));
+        assertEquals(new Version(1, 2, 3), map.get(new String("version")));
+        assertTrue(map.containsKey("bundle-symbolic-name"));
+        assertNull(map.get("missing"));
+        assertNull(map.get(null));
+        assertSame(map, CompactMap.create(map));
+
+        try
+        {
+            map.put("x", "y");
+            fail("Compact maps are immutable");
+        }
+        catch (UnsupportedOperationException ex)
+        {
+            // Expected.
+        }
+    }
+
+    public void testValuesAreShared()
+    {
+        Map<String, Object> m1 = new LinkedHashMap<String, Object>();
+        m1.put(new String("name"), new String("b1"));
+        m1.put("version", new Version(1, 0, 0));
+        Map<String, Object> m2 = new LinkedHashMap<String, Object>();
+        m2.put(new String("name"), new String("b1"));
+        m2.put("version", new Version(1, 0, 0));
+
+        m1 = CompactMap.create(m1);
+        m2 = CompactMap.create(m2);
+        assertSame(m1.get("version"), m2.get("version"));
+        assertSame(m1.get("name"), m2.get("name"));
+        assertSame(m1.keySet().iterator().next(), m2.keySet().iterator().next());
+    }
+
+    public void testValuesAreSharedAcrossThreads() throws Exception
+    {
+        final Object[] shared = new Object[8];
+        Thread[] threads = new Thread[shared.length];
+        for (int i = 0; i < threads.length; i++)
+        {
+            final int idx = i;
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    Map<String, Object> map = new LinkedHashMap<String, Object>();
+                    map.put("version", new Version(7, 0, 1));
+                    shared[idx] = CompactMap.create(map).get("version");
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i].join();
+            assertSame(shared[0], shared[i]);
+        }
+    }
+
+    public void testOtherMapsKeepTheirSemantics()
+    {
+        StringMap source = new StringMap();
+        source.put("Version", "1.0");
+        Map<String, Object> map = CompactMap.create(source);
+        assertFalse(map instanceof CompactMap);
+        assertEquals("1.0", map.get("version"));
+    }
+}
@@ -17,10 +17,14 @@
 package org.apache.felix.http.base.internal.registry;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.NotNull;
@@ -43,6 +47,9 @@ public final class FilterRegistry
     /** List of all filter registrations. These are sorted by the status objects. */
     private volatile List<FilterRegistrationStatus> filters = Collections.emptyList();
 
+    /** Index of the active filters, recreated whenever the filters change. */
+    private volatile FilterIndex index = new FilterIndex(this.filters);
+
     /**
      * The status object keeps track of the registration status of a filter and holds
      * the resolvers to match against a uri.
@@ -90,6 +97,97 @@ public final class FilterRegistry
         }
     }
 
+    /**
+     * The filter index compiles the resolvers of all active filters into a
+     * {@link PathResolverIndex}.
+     * The filters are identified by their position in the list of active
+     * filters, so a set of filters keeps the order of the filters. The
+     * filters matching a uri are kept in a {@link ResolutionCache}.
+     */
+    private static final class FilterIndex
+    {
+        private final FilterRegistrationStatus[] activeFilters;
+
+        private final PathResolverIndex resolvers;
+
+        private final Map<PathResolver, Integer> positions = new IdentityHashMap<PathResolver, Integer>();
+
+        private final Map<String, BitSet> servletNames = new HashMap<String, BitSet>();
+
+        /** The positions of the filters matching a uri, these sets are never changed. */
+        private final ResolutionCache<BitSet> uriMatches = new ResolutionCache<BitSet>(ResolutionCache.DEFAULT_SIZE);
+
+        public FilterIndex(@NotNull final List<FilterRegistrationStatus> filters)
+        {
+            final List<FilterRegistrationStatus> active = new ArrayList<FilterRegistrationStatus>();
+            final List<PathResolver> allResolvers = new ArrayList<PathResolver>();
+            for(final FilterRegistrationStatus status : filters)
+            {
+                // as soon as we encounter a failing filter, we can stop
+                if ( status.getResult() != -1 )
+                {
+                    break;
+                }
+                final int position = active.size();
+                active.add(status);
+                for(final PathResolver resolver : status.getResolvers())
+                {
+                    allResolvers.add(resolver);
+                    this.positions.put(resolver, position);
+                }
+                if ( status.getHandler().getFilterInfo().getServletNames() != null )
+                {
+                    for(final String name : status.getHandler().getFilterInfo().getServletNames())
+                    {
+                        BitSet set = this.servletNames.get(name);
+                        if ( set == null )
+                        {
+                            set = new BitSet();
+                            this.servletNames.put(name, set);
+                        }
+                        set.set(position);
+                    }
+                }
+            }
+            Collections.sort(allResolvers);
+            this.activeFilters = active.toArray(new FilterRegistrationStatus[active.size()]);
+            this.resolvers = new PathResolverIndex(allResolvers);
+        }
+
+        /**
+         * Get the positions of the filters matching the uri or the servlet name
+         * @param requestURI The request uri
+         * @param servletName Optional servlet name
+         * @return The positions of the filters, this set must not be changed
+         */
+        public @NotNull BitSet getMatches(@NotNull final String requestURI, @Nullable final String servletName)
+        {
+            BitSet byUri = this.uriMatches.get(requestURI);
+            if ( byUri == null )
+            {
+                byUri = new BitSet(this.activeFilters.length);
+                for(final PathResolver resolver : this.resolvers.resolveAll(requestURI))
+                {
+                    byUri.set(this.positions.get(resolver));
+                }
+                this.uriMatches.put(requestURI, byUri);
+            }
+            final BitSet byName = servletName == null ? null : this.servletNames.get(servletName);
+            if ( byName == null )
+            {
+                return byUri;
+            }
+            final BitSet result = (BitSet) byUri.clone();
+            result.or(byName);
+            return result;
+        }
+
+        public @NotNull FilterRegistrationStatus getFilter(final int position)
+        {
+            return this.activeFilters[position];
+        }
+    }
+
     /**
      * Add a filter.
      * @param handler The handler for the filter
@@ -126,6 +224,7 @@ public final class FilterRegistry
         Collections.sort(newList);
 
         this.filters = newList;
+        this.index = new FilterIndex(newList);
     }
 
     /**
@@ -151,6 +250,7 @@ public final class FilterRegistry
         if ( found != null )
         {
             this.filters = newList;
+            this.index = new FilterIndex(newList);
 
             if ( found.getResult() == -1 && destroy )
             {
@@ -162,6 +262,7 @@ public final class FilterRegistry
     public synchronized void cleanup()
     {
         this.filters = Collections.emptyList();
+        this.index = new FilterIndex(this.filters);
     }
 
     /**
@@ -177,42 +278,17 @@ public final class FilterRegistry
             @NotNull final String requestURI)
     {
         final List<FilterHandler> result = new ArrayList<FilterHandler>();
-        final List<FilterRegistrationStatus> allFilters = this.filters;
+        final FilterIndex filterIndex = this.index;
 
-        for(final FilterRegistrationStatus status : allFilters)
+        // check for servlet name if it's not a resource
+        final String servletName = (handler != null && !handler.getServletInfo().isResource()) ? handler.getName() : null;
+        final BitSet matches = filterIndex.getMatches(requestURI, servletName);
+        for(int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1))
         {
-            // as soon as we encounter a failing filter, we can stop
-            if ( status.getResult() != -1 )
-            {
-                break;
-            }
+            final FilterRegistrationStatus status = filterIndex.getFilter(i);
             if (referencesDispatcherType(status.getHandler(), dispatcherType) )
             {
-                boolean added = false;
-                for(final PathResolver resolver : status.getResolvers())
-                {
-                    if ( resolver.resolve(requestURI) != null )
-                    {
-                        result.add(status.getHandler());
-                        added = true;
-                        break;
-                    }
-                }
-                // check for servlet name if it's not a resource
-                final String servletName = (handler != null && !handler.getServletInfo().isResource()) ? handler.getName() : null;
-                if ( !added && servletName != null && status.getHandler().getFilterInfo().getServletNames() != null )
-                {
-                    for(final String name : status.getHandler().getFilterInfo().getServletNames())
-                    {
-                        if ( servletName.equals(name) )
-                        {
-                            result.add(status.getHandler());
-                            added = true;
-                            break;
-                        }
-                    }
-                }
-
+                result.add(status.getHandler());
             }
         }
 
@@ -0,0 +1,355 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.registry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.DefaultMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.ExactAndPathMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.ExactMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.ExtensionMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.PathMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.RegexMatcher;
+import org.apache.felix.http.base.internal.registry.PathResolverFactory.RootMatcher;
+
+/**
+ * The path resolver index compiles a set of path resolvers into lookup
+ * structures, so a request uri can be resolved without asking every
+ * resolver:
+ * - exact patterns are kept in a map
+ * - path patterns are kept in a trie of path segments
+ * - extension patterns are kept in a map by extension
+ * - regular expressions are tried one after the other
+ *
+ * The index is immutable, it is recreated whenever the resolvers change.
+ * The resolver found for a uri is kept in a {@link ResolutionCache}, so
+ * repeated requests for the same path skip the lookups.
+ */
+final class PathResolverIndex
+{
+    /** All resolvers, sorted. */
+    private final List<PathResolver> resolvers;
+
+    private final Map<String, List<PathResolver>> exactPatterns = new HashMap<String, List<PathResolver>>();
+
+    private final Node pathPatterns = new Node();
+
+    private final Map<String, List<PathResolver>> extensionPatterns = new HashMap<String, List<PathResolver>>();
+
+    private final List<PathResolver> rootPatterns = new ArrayList<PathResolver>();
+
+    private final List<PathResolver> defaultPatterns = new ArrayList<PathResolver>();
+
+    private final List<PathResolver> regexPatterns = new ArrayList<PathResolver>();
+
+    /** Resolvers not known to the index, these are always tried. */
+    private final List<PathResolver> otherPatterns = new ArrayList<PathResolver>();
+
+    /** Marker for a cached uri without a resolver. */
+    private static final PathResolver NO_MATCH = PathResolverFactory.createPatternMatcher(null, "");
+
+    /** The resolver found for a uri, or {@link #NO_MATCH}. */
+    private final ResolutionCache<PathResolver> cache;
+
+    /**
+     * A node of the trie, one for each path segment
+     */
+    private static final class Node
+    {
+        public final Map<String, Node> children = new HashMap<String, Node>();
+
+        /** Path patterns ending at this node, like /foo/* for /foo */
+        public final List<PathResolver> pathResolvers = new ArrayList<PathResolver>();
+
+        /** Exact and path patterns ending at this node, matching sub paths */
+        public final List<PathResolver> subPathResolvers = new ArrayList<PathResolver>();
+    }
+
+    /**
+     * Create a new index
+     * @param resolvers The sorted resolvers
+     */
+    public PathResolverIndex(@NotNull final List<PathResolver> resolvers)
+    {
+        this(resolvers, ResolutionCache.DEFAULT_SIZE);
+    }
+
+    /**
+     * Create a new index
+     * @param resolvers The sorted resolvers
+     * @param cacheSize The maximum number of uris to cache the resolver for
+     */
+    public PathResolverIndex(@NotNull final List<PathResolver> resolvers, final int cacheSize)
+    {
+        this.resolvers = resolvers;
+        this.cache = new ResolutionCache<PathResolver>(cacheSize);
+        for(final PathResolver resolver : resolvers)
+        {
+            final String pattern = resolver.getPattern();
+            if ( resolver instanceof ExactMatcher )
+            {
+                add(this.exactPatterns, pattern, resolver);
+            }
+            else if ( resolver instanceof ExactAndPathMatcher )
+            {
+                add(this.exactPatterns, pattern, resolver);
+                getNode(pattern).subPathResolvers.add(resolver);
+            }
+            else if ( resolver instanceof PathMatcher )
+            {
+                getNode(pattern.substring(0, pattern.length() - 2)).pathResolvers.add(resolver);
+            }
+            else if ( resolver instanceof ExtensionMatcher )
+            {
+                add(this.extensionPatterns, pattern.substring(1), resolver);
+            }
+            else if ( resolver instanceof RootMatcher )
+            {
+                this.rootPatterns.add(resolver);
+            }
+            else if ( resolver instanceof DefaultMatcher )
+            {
+                this.defaultPatterns.add(resolver);
+            }
+            else if ( resolver instanceof RegexMatcher )
+            {
+                this.regexPatterns.add(resolver);
+            }
+            else
+            {
+                this.otherPatterns.add(resolver);
+            }
+        }
+    }
+
+    private static void add(final Map<String, List<PathResolver>> map, final String key, final PathResolver resolver)
+    {
+        List<PathResolver> list = map.get(key);
+        if ( list == null )
+        {
+            list = new ArrayList<PathResolver>(1);
+            map.put(key, list);
+        }
+        list.add(resolver);
+    }
+
+    private Node getNode(final String path)
+    {
+        Node node = this.pathPatterns;
+        int start = 0;
+        while ( true )
+        {
+            final int end = path.indexOf('/', start);
+            final String segment = end == -1 ? path.substring(start) : path.substring(start, end);
+            Node child = node.children.get(segment);
+            if ( child == null )
+            {
+                child = new Node();
+                node.children.put(segment, child);
+            }
+            node = child;
+            if ( end == -1 )
+            {
+                return node;
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Find the resolver for a request uri. This is the first resolver of the
+     * sorted resolvers that resolves the uri.
+     * @param uri The request uri
+     * @return The resolver or {@code null}
+     */
+    public @Nullable PathResolver resolve(@NotNull final String uri)
+    {
+        PathResolver resolver = this.cache.get(uri);
+        if ( resolver == null )
+        {
+            resolver = this.otherPatterns.isEmpty() ? this.find(uri) : this.scan(uri);
+            this.cache.put(uri, resolver == null ? NO_MATCH : resolver);
+        }
+        return resolver == NO_MATCH ? null : resolver;
+    }
+
+    /**
+     * The number of uris the resolver is cached for
+     */
+    int getCacheSize()
+    {
+        return this.cache.size();
+    }
+
+    /**
+     * Get all resolvers resolving the request uri.
+     * @param uri The request uri
+     * @return The resolvers, might be empty
+     */
+    public @NotNull Collection<PathResolver> resolveAll(@NotNull final String uri)
+    {
+        final List<PathResolver> result = new ArrayList<PathResolver>();
+        addAll(result, this.exactPatterns.get(uri));
+        Node node = this.pathPatterns;
+        int start = 0;
+        while ( node != null )
+        {
+            final int end = uri.indexOf('/', start);
+            node = node.children.get(end == -1 ? uri.substring(start) : uri.substring(start, end));
+            if ( node != null )
+            {
+                result.addAll(node.pathResolvers);
+                if ( end == -1 )
+                {
+                    break;
+                }
+                result.addAll(node.subPathResolvers);
+                start = end + 1;
+            }
+        }
+        for(int i = uri.indexOf('.'); i != -1; i = uri.indexOf('.', i + 1))
+        {
+            addAll(result, this.extensionPatterns.get(uri.substring(i)));
+        }
+        if ( uri.length() == 0 || uri.equals("/") )
+        {
+            result.addAll(this.rootPatterns);
+        }
+        result.addAll(this.defaultPatterns);
+        for(final PathResolver resolver : this.regexPatterns)
+        {
+            if ( resolver.resolve(uri) != null )
+            {
+                result.add(resolver);
+            }
+        }
+        for(final PathResolver resolver : this.otherPatterns)
+        {
+            if ( resolver.resolve(uri) != null )
+            {
+                result.add(resolver);
+            }
+        }
+        return result;
+    }
+
+    private static void addAll(final List<PathResolver> result, final List<PathResolver> resolvers)
+    {
+        if ( resolvers != null )
+        {
+            result.addAll(resolvers);
+        }
+    }
+
+    /**
+     * Find the resolver using the index, following the order of the rankings:
+     * exact, longest path, extension, root, default and regular expressions.
+     */
+    private PathResolver find(final String uri)
+    {
+        // an exact pattern is longer than any path pattern with the same ranking
+        final List<PathResolver> exact = this.exactPatterns.get(uri);
+        if ( exact != null )
+        {
+            return exact.get(0);
+        }
+
+        // find the longest exact and path pattern and the longest path pattern
+        PathResolver subPathResolver = null;
+        PathResolver pathResolver = null;
+        Node node = this.pathPatterns;
+        int start = 0;
+        while ( node != null )
+        {
+            final int end = uri.indexOf('/', start);
+            node = node.children.get(end == -1 ? uri.substring(start) : uri.substring(start, end));
+            if ( node != null )
+            {
+                if ( !node.pathResolvers.isEmpty() )
+                {
+                    pathResolver = node.pathResolvers.get(0);
+                }
+                if ( end == -1 )
+                {
+                    break;
+                }
+                if ( !node.subPathResolvers.isEmpty() )
+                {
+                    subPathResolver = node.subPathResolvers.get(0);
+                }
+                start = end + 1;
+            }
+        }
+        if ( subPathResolver != null )
+        {
+            return subPathResolver;
+        }
+        if ( pathResolver != null )
+        {
+            return pathResolver;
+        }
+
+        // the first match is the longest extension
+        for(int i = uri.indexOf('.'); i != -1; i = uri.indexOf('.', i + 1))
+        {
+            final List<PathResolver> extension = this.extensionPatterns.get(uri.substring(i));
+            if ( extension != null )
+            {
+                return extension.get(0);
+            }
+        }
+
+        if ( !this.rootPatterns.isEmpty() && (uri.length() == 0 || uri.equals("/")) )
+        {
+            return this.rootPatterns.get(0);
+        }
+        if ( !this.defaultPatterns.isEmpty() )
+        {
+            return this.defaultPatterns.get(0);
+        }
+        for(final PathResolver resolver : this.regexPatterns)
+        {
+            if ( resolver.resolve(uri) != null )
+            {
+                return resolver;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the resolver by asking all resolvers
+     */
+    private PathResolver scan(final String uri)
+    {
+        for(final PathResolver resolver : this.resolvers)
+        {
+            if ( resolver.resolve(uri) != null )
+            {
+                return resolver;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.registry;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A size capped cache of resolution results, keyed by the request path.
+ *
+ * The keys are the paths the dispatcher resolves, the servlet path and path
+ * info of the request. The servlet container has already decoded these and
+ * removed dot segments, so equivalent request uris share an entry.
+ *
+ * Once the cache holds its maximum number of entries, adding an entry evicts
+ * the oldest entry. A client requesting many different paths can only
+ * displace the cached paths one by one and not clear the whole cache. Threads
+ * adding entries at the same time may exceed the maximum by one entry each.
+ *
+ * The cache belongs to an immutable index and is dropped together with it
+ * whenever the registrations change.
+ */
+final class ResolutionCache<V>
+{
+    /** Default number of cached paths. */
+    public static final int DEFAULT_SIZE = 1024;
+
+    private final ConcurrentHashMap<String, V> entries = new ConcurrentHashMap<String, V>();
+
+    /** The cached paths in the order they were added. */
+    private final Queue<String> paths = new ConcurrentLinkedQueue<String>();
+
+    private final int maxSize;
+
+    /**
+     * Create a new cache
+     * @param maxSize The maximum number of cached paths, {@code 0} disables the cache
+     */
+    public ResolutionCache(final int maxSize)
+    {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the cached result for a path
+     * @param path The request path
+     * @return The result or {@code null}
+     */
+    public @Nullable V get(@NotNull final String path)
+    {
+        return this.entries.get(path);
+    }
+
+    /**
+     * Cache the result for a path, evicting another entry if the cache is full.
+     * @param path The request path
+     * @param value The result
+     */
+    public void put(@NotNull final String path, @NotNull final V value)
+    {
+        if ( this.maxSize <= 0 )
+        {
+            return;
+        }
+        if ( this.entries.putIfAbsent(path, value) == null )
+        {
+            this.paths.add(path);
+            if ( this.entries.size() > this.maxSize )
+            {
+                final String oldest = this.paths.poll();
+                if ( oldest != null )
+                {
+                    this.entries.remove(oldest);
+                }
+            }
+        }
+    }
+
+    /**
+     * The number of cached paths
+     */
+    public int size()
+    {
+        return this.entries.size();
+    }
+}
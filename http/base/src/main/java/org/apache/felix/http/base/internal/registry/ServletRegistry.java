@@ -53,6 +53,9 @@ public final class ServletRegistry
 
     private volatile List<PathResolver> activeResolvers = Collections.emptyList();
 
+    /** Index of the active resolvers, recreated whenever these change. */
+    private volatile PathResolverIndex resolverIndex = new PathResolverIndex(Collections.<PathResolver>emptyList());
+
     private final Map<String, List<ServletHandler>> inactiveServletMappings = new HashMap<String, List<ServletHandler>>();
 
     private final Map<String, List<ServletHandler>> servletsByName = new ConcurrentHashMap<String, List<ServletHandler>>();
@@ -73,8 +76,8 @@ public final class ServletRegistry
      */
     public PathResolution resolve(@NotNull final String relativeRequestURI)
     {
-        final List<PathResolver> resolvers = this.activeResolvers;
-        for(final PathResolver entry : resolvers)
+        final PathResolver entry = this.resolverIndex.resolve(relativeRequestURI);
+        if ( entry != null )
         {
             final PathResolution pr = entry.resolve(relativeRequestURI);
             if ( pr != null )
@@ -87,6 +90,13 @@ public final class ServletRegistry
         return null;
     }
 
+    private void setActiveResolvers(final List<PathResolver> resolvers)
+    {
+        Collections.sort(resolvers);
+        this.activeResolvers = resolvers;
+        this.resolverIndex = new PathResolverIndex(resolvers);
+    }
+
     private PathResolver findResolver(final List<PathResolver> resolvers, final String pattern)
     {
         for(final PathResolver pr : resolvers)
@@ -172,8 +182,7 @@ public final class ServletRegistry
             {
                 addToNameMapping(handler);
             }
-            Collections.sort(resolvers);
-            this.activeResolvers = resolvers;
+            setActiveResolvers(resolvers);
             this.mapping = newMap;
         }
         else if ( !handler.getServletInfo().isResource() && handler.getServletInfo().getName() != null )
@@ -338,8 +347,7 @@ public final class ServletRegistry
                 }
             }
 
-            Collections.sort(resolvers);
-            this.activeResolvers = resolvers;
+            setActiveResolvers(resolvers);
             this.mapping = newMap;
 
             if ( cleanupHandler != null )
@@ -366,7 +374,7 @@ public final class ServletRegistry
 
     public synchronized void cleanup()
     {
-        this.activeResolvers = Collections.emptyList();
+        setActiveResolvers(new ArrayList<PathResolver>());
         this.inactiveServletMappings.clear();
         this.servletsByName.clear();
         this.mapping = Collections.emptyMap();
@@ -123,6 +123,48 @@ public class EventListenerRegistryTest {
         reg.removeFilter(h5.getFilterInfo(), true);
     }
 
+    @Test public void testFilterPatterns() throws InvalidSyntaxException
+    {
+        final FilterHandler h1 = createFilterHandler(1L, 40, "/*");
+        reg.addFilter(h1);
+        final FilterHandler h2 = createFilterHandler(2L, 30, "/foo/*");
+        reg.addFilter(h2);
+        final FilterHandler h3 = createFilterHandler(3L, 20, "*.html");
+        reg.addFilter(h3);
+        final FilterHandler h4 = createFilterHandler(4L, 10, "/bar", "/foo/bar/*");
+        reg.addFilter(h4);
+
+        FilterHandler[] handlers = reg.getFilterHandlers(null, DispatcherType.REQUEST, "/foo/bar/index.html");
+        assertEquals(4, handlers.length);
+        assertEquals(h1.getFilterInfo(), handlers[0].getFilterInfo());
+        assertEquals(h2.getFilterInfo(), handlers[1].getFilterInfo());
+        assertEquals(h3.getFilterInfo(), handlers[2].getFilterInfo());
+        assertEquals(h4.getFilterInfo(), handlers[3].getFilterInfo());
+
+        handlers = reg.getFilterHandlers(null, DispatcherType.REQUEST, "/bar");
+        assertEquals(2, handlers.length);
+        assertEquals(h1.getFilterInfo(), handlers[0].getFilterInfo());
+        assertEquals(h4.getFilterInfo(), handlers[1].getFilterInfo());
+
+        handlers = reg.getFilterHandlers(null, DispatcherType.REQUEST, "/foobar");
+        assertEquals(1, handlers.length);
+        assertEquals(h1.getFilterInfo(), handlers[0].getFilterInfo());
+
+        // cached
+        handlers = reg.getFilterHandlers(null, DispatcherType.REQUEST, "/foo/bar/index.html");
+        assertEquals(4, handlers.length);
+        assertEquals(h4.getFilterInfo(), handlers[3].getFilterInfo());
+
+        assertEquals(0, reg.getFilterHandlers(null, DispatcherType.FORWARD, "/foo").length);
+
+        // cleanup
+        reg.removeFilter(h1.getFilterInfo(), true);
+        reg.removeFilter(h2.getFilterInfo(), true);
+        reg.removeFilter(h3.getFilterInfo(), true);
+        reg.removeFilter(h4.getFilterInfo(), true);
+        assertEquals(0, reg.getFilterHandlers(null, DispatcherType.REQUEST, "/foo").length);
+    }
+
     private static FilterInfo createFilterInfo(final long id, final int ranking, final String... paths) throws InvalidSyntaxException
     {
         final BundleContext bCtx = mock(BundleContext.class);
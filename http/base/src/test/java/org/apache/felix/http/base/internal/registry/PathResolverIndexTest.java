@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class PathResolverIndexTest {
+
+    private static final String[] SEGMENTS = new String[] {"", "a", "b", "foo", "bar", "foo.bar", "x.tar.gz"};
+
+    private static final String[] EXTENSIONS = new String[] {"*.gz", "*.tar.gz", "*.bar", "*.", "*.html"};
+
+    private static String randomPath(final Random random)
+    {
+        final StringBuilder sb = new StringBuilder();
+        final int length = random.nextInt(4);
+        for(int i = 0; i < length; i++)
+        {
+            sb.append('/').append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+        }
+        return sb.toString();
+    }
+
+    private static List<PathResolver> createResolvers(final Random random, final int count)
+    {
+        final Set<String> patterns = new HashSet<String>();
+        final List<PathResolver> resolvers = new ArrayList<PathResolver>();
+        while ( resolvers.size() < count )
+        {
+            final String path = randomPath(random);
+            final PathResolver resolver;
+            switch ( random.nextInt(6) )
+            {
+                case 0 : resolver = PathResolverFactory.createPatternMatcher(null, path.length() == 0 ? "/foo" : path);
+                         break;
+                case 1 : resolver = new PathResolverFactory.ExactAndPathMatcher(null, path.length() == 0 ? "/bar" : path);
+                         break;
+                case 2 : resolver = PathResolverFactory.createPatternMatcher(null, EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+                         break;
+                case 3 : resolver = PathResolverFactory.createPatternMatcher(null, random.nextBoolean() ? "" : "/");
+                         break;
+                default : resolver = PathResolverFactory.createPatternMatcher(null, path + "/*");
+            }
+            // like the servlet registry, only one resolver per pattern
+            if ( patterns.add(resolver.getPattern()) )
+            {
+                resolvers.add(resolver);
+            }
+        }
+        Collections.sort(resolvers);
+        return resolvers;
+    }
+
+    private static PathResolver scan(final List<PathResolver> resolvers, final String uri)
+    {
+        for(final PathResolver resolver : resolvers)
+        {
+            if ( resolver.resolve(uri) != null )
+            {
+                return resolver;
+            }
+        }
+        return null;
+    }
+
+    @Test public void testEmptyIndex()
+    {
+        final PathResolverIndex index = new PathResolverIndex(Collections.<PathResolver>emptyList());
+        assertNull(index.resolve("/foo"));
+        assertEquals(0, index.resolveAll("/foo").size());
+    }
+
+    @Test public void testResolveLikeScan()
+    {
+        final Random random = new Random(42);
+        for(int run = 0; run < 200; run++)
+        {
+            final List<PathResolver> resolvers = createResolvers(random, 1 + random.nextInt(20));
+            final PathResolverIndex index = new PathResolverIndex(resolvers);
+            for(int i = 0; i < 50; i++)
+            {
+                final String uri = randomPath(random);
+                assertSame(uri, scan(resolvers, uri), index.resolve(uri));
+                // cached
+                assertSame(uri, scan(resolvers, uri), index.resolve(uri));
+            }
+        }
+    }
+
+    @Test public void testResolveAllLikeScan()
+    {
+        final Random random = new Random(7);
+        for(int run = 0; run < 200; run++)
+        {
+            final List<PathResolver> resolvers = createResolvers(random, 1 + random.nextInt(20));
+            resolvers.add(PathResolverFactory.createRegexMatcher(".*/foo"));
+            Collections.sort(resolvers);
+            final PathResolverIndex index = new PathResolverIndex(resolvers);
+            for(int i = 0; i < 50; i++)
+            {
+                final String uri = randomPath(random);
+                final Set<PathResolver> expected = Collections.newSetFromMap(new java.util.IdentityHashMap<PathResolver, Boolean>());
+                for(final PathResolver resolver : resolvers)
+                {
+                    if ( resolver.resolve(uri) != null )
+                    {
+                        expected.add(resolver);
+                    }
+                }
+                final Set<PathResolver> actual = Collections.newSetFromMap(new java.util.IdentityHashMap<PathResolver, Boolean>());
+                actual.addAll(index.resolveAll(uri));
+                assertEquals(uri, expected, actual);
+                assertEquals(uri, expected.size(), index.resolveAll(uri).size());
+            }
+        }
+    }
+
+    @Test public void testRegexIsTriedLast()
+    {
+        final List<PathResolver> resolvers = new ArrayList<PathResolver>();
+        resolvers.add(PathResolverFactory.createRegexMatcher("/foo/.*"));
+        resolvers.add(PathResolverFactory.createPatternMatcher(null, "*.html"));
+        Collections.sort(resolvers);
+        final PathResolverIndex index = new PathResolverIndex(resolvers);
+
+        assertEquals("*.html", index.resolve("/foo/index.html").getPattern());
+        assertEquals("/foo/.*", index.resolve("/foo/index.txt").getPattern());
+        assertNull(index.resolve("/bar/index.txt"));
+    }
+
+    @Test public void testCacheIsBounded()
+    {
+        final List<PathResolver> resolvers = new ArrayList<PathResolver>();
+        resolvers.add(PathResolverFactory.createPatternMatcher(null, "/app/*"));
+        resolvers.add(PathResolverFactory.createPatternMatcher(null, "*.html"));
+        Collections.sort(resolvers);
+        final PathResolverIndex index = new PathResolverIndex(resolvers, 8);
+
+        for(int i = 0; i < 100; i++)
+        {
+            final String[] uris = new String[] {"/app/page" + i, "/static/page" + i + ".html", "/other/page" + i};
+            for(final String uri : uris)
+            {
+                assertSame(uri, scan(resolvers, uri), index.resolve(uri));
+                assertSame(uri, scan(resolvers, uri), index.resolve(uri));
+            }
+            assertTrue(index.getCacheSize() <= 8);
+        }
+        assertNull(index.resolve("/other/page0"));
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.registry;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.apache.felix.http.base.internal.handler.FilterHandler;
+import org.apache.felix.http.base.internal.handler.HttpServiceFilterHandler;
+import org.apache.felix.http.base.internal.runtime.FilterInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of finding the filters for a request uri.
+ *
+ * The filters are registered like filters of the http service, with a
+ * regular expression each. The cached benchmark requests the same paths
+ * over and over, the uncached benchmark requests a new path each time, so
+ * every request misses the cache and evicts an entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class FilterRegistryBenchmark
+{
+    @Param({ "10", "100" })
+    public int filters;
+
+    private FilterRegistry registry;
+
+    private String[] uris;
+
+    private int next;
+
+    private long counter;
+
+    private static final class NoopFilter implements Filter
+    {
+        @Override
+        public void init(final FilterConfig config)
+        {
+            // nothing to do
+        }
+
+        @Override
+        public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain)
+        throws IOException, ServletException
+        {
+            chain.doFilter(request, response);
+        }
+
+        @Override
+        public void destroy()
+        {
+            // nothing to do
+        }
+    }
+
+    @Setup
+    public void setUp()
+    {
+        this.registry = new FilterRegistry();
+        this.uris = new String[this.filters];
+        for(int i = 0; i < this.filters; i++)
+        {
+            final FilterInfo info = new FilterInfo("filter" + i, "/app" + i + "/.*", i, Collections.<String, String>emptyMap());
+            this.registry.addFilter(new HttpServiceFilterHandler(null, info, new NoopFilter()));
+            this.uris[i] = "/app" + i + "/some/page";
+        }
+    }
+
+    @Benchmark
+    public FilterHandler[] cached()
+    {
+        final String uri = this.uris[this.next];
+        this.next = (this.next + 1) % this.uris.length;
+        return this.registry.getFilterHandlers(null, DispatcherType.REQUEST, uri);
+    }
+
+    @Benchmark
+    public FilterHandler[] uncached()
+    {
+        final String uri = this.uris[this.next] + this.counter++;
+        this.next = (this.next + 1) % this.uris.length;
+        return this.registry.getFilterHandlers(null, DispatcherType.REQUEST, uri);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.felix.http.base.internal.registry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of resolving the servlet for a request uri.
+ *
+ * The servlets have a third each of path, exact and extension patterns. The
+ * benchmark lives in the package of the registry, as the index is internal.
+ * A cache size of {@code 0} measures the index without its cache, the scan
+ * measures asking every resolver, like the registry did before the index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PathResolverIndexBenchmark
+{
+    @Param({ "30", "600" })
+    public int patterns;
+
+    @Param({ "0", "1024" })
+    public int cacheSize;
+
+    private List<PathResolver> resolvers;
+
+    private PathResolverIndex index;
+
+    private String[] uris;
+
+    private int next;
+
+    @Setup
+    public void setUp()
+    {
+        this.resolvers = new ArrayList<PathResolver>();
+        final List<String> uris = new ArrayList<String>();
+        for(int i = 0; i < this.patterns / 3; i++)
+        {
+            this.resolvers.add(PathResolverFactory.createPatternMatcher(null, "/app" + i + "/*"));
+            this.resolvers.add(PathResolverFactory.createPatternMatcher(null, "/api/v1/resource" + i));
+            this.resolvers.add(PathResolverFactory.createPatternMatcher(null, "*.ext" + i));
+            uris.add("/app" + i + "/some/page");
+            uris.add("/api/v1/resource" + i);
+            uris.add("/static/file.ext" + i);
+        }
+        uris.add("/not/registered");
+        Collections.sort(this.resolvers);
+        this.index = new PathResolverIndex(this.resolvers, this.cacheSize);
+        this.uris = uris.toArray(new String[uris.size()]);
+    }
+
+    private String nextUri()
+    {
+        final String uri = this.uris[this.next];
+        this.next = (this.next + 1) % this.uris.length;
+        return uri;
+    }
+
+    @Benchmark
+    public PathResolver resolve()
+    {
+        return this.index.resolve(nextUri());
+    }
+
+    @Benchmark
+    public PathResolver scan()
+    {
+        final String uri = nextUri();
+        for(final PathResolver resolver : this.resolvers)
+        {
+            if ( resolver.resolve(uri) != null )
+            {
+                return resolver;
+            }
+        }
+        return null;
+    }
+}
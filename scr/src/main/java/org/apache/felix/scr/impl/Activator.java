@@ -68,8 +68,8 @@ public class Activator extends AbstractExtender
     // registry of managed component
     private ComponentRegistry m_componentRegistry;
 
-    //  thread acting upon configurations
-    private ComponentActorThread m_componentActor;
+    //  threads acting upon configurations
+    private ComponentActor m_componentActor;
 
     private ServiceRegistration<ServiceComponentRuntime> m_runtime_reg;
 
@@ -153,7 +153,10 @@ public class Activator extends AbstractExtender
         m_componentBundles = new HashMap<>();
         m_componentRegistry = new ComponentRegistry( this.m_configuration, this.logger );
 
-        final ServiceComponentRuntimeImpl runtime = new ServiceComponentRuntimeImpl( m_globalContext, m_componentRegistry );
+        // create the component actor
+        m_componentActor = new ComponentActor( this.logger, m_configuration.actorThreads() );
+
+        final ServiceComponentRuntimeImpl runtime = new ServiceComponentRuntimeImpl( m_globalContext, m_componentRegistry, m_componentActor );
         m_runtime_reg = m_context.registerService( ServiceComponentRuntime.class,
                 runtime,
                 m_componentRegistry.getServiceRegistrationProperties() );
@@ -163,12 +166,6 @@ public class Activator extends AbstractExtender
         logger.log( LogService.LOG_INFO, " Version = {0}",
             null, m_bundle.getVersion().toString() );
 
-        // create and start the component actor
-        m_componentActor = new ComponentActorThread( this.logger );
-        Thread t = new Thread( m_componentActor, "SCR Component Actor" );
-        t.setDaemon( true );
-        t.start();
-
         super.doStart();
 
         m_componentCommands = new ComponentCommands(m_context, runtime, m_configuration);
@@ -210,7 +207,7 @@ public class Activator extends AbstractExtender
             m_componentRegistry = null;
         }
 
-        // terminate the actor thread
+        // terminate the actor threads
         if ( m_componentActor != null )
         {
             m_componentActor.terminate();
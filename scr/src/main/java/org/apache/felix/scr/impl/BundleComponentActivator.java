@@ -19,6 +19,8 @@
 package org.apache.felix.scr.impl;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -47,6 +49,7 @@ import org.apache.felix.scr.impl.manager.ExtendedServiceListener;
 import org.apache.felix.scr.impl.manager.RegionConfigurationSupport;
 import org.apache.felix.scr.impl.manager.ScrConfiguration;
 import org.apache.felix.scr.impl.metadata.ComponentMetadata;
+import org.apache.felix.scr.impl.metadata.MetadataStoreHelper;
 import org.apache.felix.scr.impl.parser.KXml2SAXParser;
 import org.apache.felix.scr.impl.xml.XmlHandler;
 import org.osgi.framework.Bundle;
@@ -81,7 +84,7 @@ public class BundleComponentActivator implements ComponentActivator
     private final List<ComponentHolder<?>> m_holders = new ArrayList<>();
 
     // thread acting upon configurations
-    private final ComponentActorThread m_componentActor;
+    private final ComponentActor m_componentActor;
 
     // true as long as the dispose method is not called
     private final AtomicBoolean m_active = new AtomicBoolean( true );
@@ -242,7 +245,7 @@ public class BundleComponentActivator implements ComponentActivator
      */
     public BundleComponentActivator(final ScrLogger scrLogger,
             final ComponentRegistry componentRegistry,
-            final ComponentActorThread componentActor,
+            final ComponentActor componentActor,
             final BundleContext context,
             final ScrConfiguration configuration)
     throws ComponentException
@@ -308,10 +311,14 @@ public class BundleComponentActivator implements ComponentActivator
                 continue;
             }
 
-            // load from the descriptors
+            // load from the descriptors, compiled descriptors are loaded in
+            // place of the descriptor they have been compiled from
             for ( URL descriptorURL : descriptorURLs )
             {
-                loadDescriptor( descriptorURL );
+                if ( !descriptorURL.getPath().endsWith( MetadataStoreHelper.COMPILED_DESCRIPTOR_SUFFIX ) )
+                {
+                    loadDescriptor( descriptorURL );
+                }
             }
         }
     }
@@ -322,8 +329,10 @@ public class BundleComponentActivator implements ComponentActivator
      */
     void initialEnable()
     {
-        //enable all the enabled components
-        for ( ComponentHolder<?> componentHolder : m_holders )
+        //enable all the enabled components, dependencies first
+        final List<ComponentHolder<?>> holders = new ArrayList<>( m_holders );
+        m_componentRegistry.sortForActivation( m_bundle, holders );
+        for ( ComponentHolder<?> componentHolder : holders )
         {
             logger.log( LogService.LOG_DEBUG, "BundleComponentActivator : May enable component holder {0}", null,
                 componentHolder.getComponentMetadata().getName() );
@@ -419,17 +428,25 @@ public class BundleComponentActivator implements ComponentActivator
         try
         {
             stream = descriptorURL.openStream();
+            final byte[] descriptor = readFully( stream );
 
-            BufferedReader in = new BufferedReader( new InputStreamReader( stream, "UTF-8" ) );
-            XmlHandler handler = new XmlHandler( m_bundle, this.logger, getConfiguration().isFactoryEnabled(),
-                getConfiguration().keepInstances() );
-            final KXml2SAXParser parser = new KXml2SAXParser( in );
-
-            parser.parseXML( handler );
+            // use the descriptor compiled at build time if there is one
+            List<ComponentMetadata> components = loadCompiledDescriptor( descriptorURL, descriptor );
+            if ( components == null )
+            {
+                BufferedReader in = new BufferedReader(
+                    new InputStreamReader( new ByteArrayInputStream( descriptor ), "UTF-8" ) );
+                XmlHandler handler = new XmlHandler( m_bundle, this.logger, getConfiguration().isFactoryEnabled(),
+                    getConfiguration().keepInstances() );
+                final KXml2SAXParser parser = new KXml2SAXParser( in );
+
+                parser.parseXML( handler );
+                components = handler.getComponentMetadataList();
+            }
 
             // 112.4.2 Component descriptors may contain a single, root component element
             // or one or more component elements embedded in a larger document
-            for ( ComponentMetadata metadata : handler.getComponentMetadataList() )
+            for ( ComponentMetadata metadata : components )
             {
                 final ComponentLogger componentLogger = new ComponentLogger(metadata, logger);
                 ComponentRegistryKey key = null;
@@ -492,6 +509,69 @@ public class BundleComponentActivator implements ComponentActivator
         }
     }
 
+    /**
+     * Loads the components from the descriptor compiled from the given XML
+     * descriptor at build time.
+     *
+     * @return the components, not yet validated, or <code>null</code> if
+     *      there is no compiled descriptor matching the XML descriptor
+     */
+    private List<ComponentMetadata> loadCompiledDescriptor(final URL descriptorURL, final byte[] descriptor)
+    {
+        InputStream stream;
+        try
+        {
+            stream = new URL( descriptorURL,
+                descriptorURL.getPath() + MetadataStoreHelper.COMPILED_DESCRIPTOR_SUFFIX ).openStream();
+        }
+        catch ( IOException notCompiled )
+        {
+            return null;
+        }
+
+        try
+        {
+            final List<ComponentMetadata> components = MetadataStoreHelper.load( stream, descriptor,
+                getConfiguration().isFactoryEnabled(), getConfiguration().keepInstances() );
+            if ( components == null )
+            {
+                logger.log( LogService.LOG_WARNING,
+                    "Compiled descriptor for ''{0}'' does not match the descriptor, parsing the descriptor instead",
+                    null, descriptorURL.getPath() );
+            }
+            return components;
+        }
+        catch ( Exception ex )
+        {
+            logger.log( LogService.LOG_WARNING,
+                "Problem reading compiled descriptor for ''{0}'', parsing the descriptor instead", ex,
+                descriptorURL.getPath() );
+            return null;
+        }
+        finally
+        {
+            try
+            {
+                stream.close();
+            }
+            catch ( IOException ignore )
+            {
+            }
+        }
+    }
+
+    private static byte[] readFully(final InputStream stream) throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+        int len;
+        while ( ( len = stream.read( buffer ) ) > 0 )
+        {
+            out.write( buffer, 0, len );
+        }
+        return out.toByteArray();
+    }
+
     /**
     * Dispose of this component activator instance and all the component
     * managers.
@@ -692,17 +772,32 @@ public class BundleComponentActivator implements ComponentActivator
      */
     @Override
     public void schedule(Runnable task)
+    {
+        schedule( task, 0 );
+    }
+
+    /**
+     * Schedules the given <code>task</code> for asynchronous execution once
+     * the <code>delay</code> in milliseconds has elapsed, in order with the
+     * other tasks of this bundle. If the component actor is not running the
+     * task is run synchronously right away.
+     *
+     * @param task The component task to execute
+     * @param delay The delay in milliseconds
+     */
+    @Override
+    public void schedule(Runnable task, long delay)
     {
         if ( isActive() )
         {
-            ComponentActorThread cat = m_componentActor;
+            ComponentActor cat = m_componentActor;
             if ( cat != null )
             {
-                cat.schedule( task );
+                cat.schedule( m_bundle, task, delay );
             }
             else
             {
-                logger.log( LogService.LOG_DEBUG, "Component Actor Thread not running, calling synchronously", null );
+                logger.log( LogService.LOG_DEBUG, "Component Actor not running, calling synchronously", null );
                 try
                 {
                     synchronized ( this )
@@ -0,0 +1,365 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl;
+
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.felix.scr.impl.logger.ScrLogger;
+import org.osgi.service.log.LogService;
+
+
+/**
+ * The <code>ComponentActor</code> runs the asynchronous tasks acting upon
+ * registered components of the service component runtime.
+ * <p>
+ * Tasks are scheduled with a key, usually the bundle declaring the
+ * components. Tasks with the same key are run one after the other in the
+ * order they have been scheduled, while tasks with different keys are run
+ * in parallel by a work-stealing pool of threads. With a single thread all
+ * tasks are run in the order they have been scheduled.
+ */
+public class ComponentActor
+{
+
+    // counter for the names of the pool threads
+    private final AtomicInteger threadCounter = new AtomicInteger();
+
+    // the queues of tasks not yet run per key, only contains keys with
+    // pending tasks. This map is also the lock for all the queues.
+    private final Map<Object, TaskQueue> queues = new HashMap<>();
+
+    private final ScrLogger logger;
+
+    private final int threads;
+
+    private final ForkJoinPool pool;
+
+    // number of tasks scheduled and not finished yet, guarded by queues
+    private int pending;
+
+    // set once terminate has been called, guarded by queues
+    private boolean terminated;
+
+    // schedules the delayed tasks, created on demand, guarded by queues
+    private Timer timer;
+
+    // statistics
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private final AtomicLong totalRunNanos = new AtomicLong();
+
+
+    ComponentActor( final ScrLogger log, final int threads )
+    {
+        this.logger = log;
+        this.threads = Math.max( 1, threads );
+        this.pool = new ForkJoinPool( this.threads, new ForkJoinPool.ForkJoinWorkerThreadFactory()
+        {
+            @Override
+            public ForkJoinWorkerThread newThread( final ForkJoinPool pool )
+            {
+                final ForkJoinWorkerThread thread = new ForkJoinWorkerThread( pool )
+                {
+                };
+                thread.setName( "SCR Component Actor-" + threadCounter.incrementAndGet() );
+                return thread;
+            }
+        }, null, true );
+
+        logger.log( LogService.LOG_DEBUG, "Starting ComponentActor with {0} threads", null, this.threads );
+    }
+
+
+    // waits until all scheduled tasks have been run and stops the threads.
+    // Tasks scheduled afterwards are not run any more.
+    void terminate()
+    {
+        synchronized ( queues )
+        {
+            terminated = true;
+            while ( pending > 0 )
+            {
+                boolean interrupted = Thread.interrupted();
+                try
+                {
+                    queues.wait();
+                }
+                catch ( InterruptedException e )
+                {
+                    interrupted = true;
+                    logger.log(LogService.LOG_ERROR,
+                        "Interrupted exception waiting for queue to empty", e);
+                }
+                finally
+                {
+                    if (interrupted)
+                    { // restore interrupt status
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+
+        logger.log( LogService.LOG_DEBUG, "Shutting down ComponentActor", null );
+        synchronized ( queues )
+        {
+            if ( timer != null )
+            {
+                timer.cancel();
+            }
+        }
+        pool.shutdown();
+    }
+
+
+    // queue the given runnable to be run as soon as possible after all the
+    // tasks already scheduled with the same key
+    void schedule( final Object key, final Runnable task )
+    {
+        synchronized ( queues )
+        {
+            if ( terminated )
+            {
+                logger.log( LogService.LOG_DEBUG, "ComponentActor terminated, ignoring task [{0}]", null, task );
+                return;
+            }
+
+            TaskQueue queue = queues.get( key );
+            if ( queue == null )
+            {
+                queue = new TaskQueue( key );
+                queues.put( key, queue );
+            }
+
+            // append to the task queue
+            queue.tasks.add( new Task( task ) );
+            pending++;
+            queued.incrementAndGet();
+
+            logger.log( LogService.LOG_DEBUG, "Adding task [{0}] as #{1} in the queue", null,
+                    task, queue.tasks.size());
+
+            if ( !queue.running )
+            {
+                queue.running = true;
+                pool.execute( queue );
+            }
+        }
+    }
+
+
+    // queue the given runnable once the delay in milliseconds has elapsed.
+    // Delayed tasks not queued yet are dropped on terminate.
+    void schedule( final Object key, final Runnable task, final long delay )
+    {
+        if ( delay <= 0 )
+        {
+            schedule( key, task );
+            return;
+        }
+
+        synchronized ( queues )
+        {
+            if ( terminated )
+            {
+                logger.log( LogService.LOG_DEBUG, "ComponentActor terminated, ignoring task [{0}]", null, task );
+                return;
+            }
+            if ( timer == null )
+            {
+                timer = new Timer( "SCR Component Actor Timer", true );
+            }
+            timer.schedule( new TimerTask()
+            {
+                @Override
+                public void run()
+                {
+                    schedule( key, task );
+                }
+            }, delay );
+        }
+    }
+
+
+    /**
+     * Returns the number of threads running the tasks.
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+
+    /**
+     * Returns the number of tasks scheduled and not started yet.
+     */
+    public int getQueueDepth()
+    {
+        return queued.get();
+    }
+
+
+    /**
+     * Returns the number of tasks run.
+     */
+    public long getCompletedTasks()
+    {
+        return completed.get();
+    }
+
+
+    /**
+     * Returns the average time in microseconds the tasks run have waited
+     * in the queue.
+     */
+    public long getAverageWaitMicros()
+    {
+        final long count = completed.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros( totalWaitNanos.get() / count );
+    }
+
+
+    /**
+     * Returns the longest time in microseconds a task has waited in the
+     * queue.
+     */
+    public long getMaxWaitMicros()
+    {
+        return TimeUnit.NANOSECONDS.toMicros( maxWaitNanos.get() );
+    }
+
+
+    /**
+     * Returns the average time in microseconds the tasks have run.
+     */
+    public long getAverageRunMicros()
+    {
+        final long count = completed.get();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros( totalRunNanos.get() / count );
+    }
+
+
+    // runs the given task, logs any exception happening and updates
+    // the statistics
+    private void run( final Task task )
+    {
+        final long start = System.nanoTime();
+        final long wait = start - task.scheduled;
+        queued.decrementAndGet();
+        totalWaitNanos.addAndGet( wait );
+        long max = maxWaitNanos.get();
+        while ( wait > max && !maxWaitNanos.compareAndSet( max, wait ) )
+        {
+            max = maxWaitNanos.get();
+        }
+
+        try
+        {
+            logger.log( LogService.LOG_DEBUG, "Running task: " + task.runnable, null );
+            task.runnable.run();
+        }
+        catch ( Throwable t )
+        {
+            logger.log( LogService.LOG_ERROR, "Unexpected problem executing task " + task.runnable, t );
+        }
+        finally
+        {
+            totalRunNanos.addAndGet( System.nanoTime() - start );
+            completed.incrementAndGet();
+        }
+    }
+
+
+    private static class Task
+    {
+        private final Runnable runnable;
+
+        private final long scheduled = System.nanoTime();
+
+        Task( final Runnable runnable )
+        {
+            this.runnable = runnable;
+        }
+    }
+
+
+    // the tasks of a key. The queue runs one task at a time and then
+    // resubmits itself to the pool while it has tasks, so the threads
+    // alternate between the keys instead of draining one key first.
+    private class TaskQueue implements Runnable
+    {
+        private final Object key;
+
+        private final ArrayDeque<Task> tasks = new ArrayDeque<>();
+
+        // whether the queue is submitted to the pool or running
+        private boolean running;
+
+        TaskQueue( final Object key )
+        {
+            this.key = key;
+        }
+
+        @Override
+        public void run()
+        {
+            final Task task;
+            synchronized ( queues )
+            {
+                task = tasks.poll();
+            }
+
+            ComponentActor.this.run( task );
+
+            synchronized ( queues )
+            {
+                pending--;
+                if ( tasks.isEmpty() )
+                {
+                    running = false;
+                    queues.remove( key );
+                }
+                else
+                {
+                    pool.execute( this );
+                }
+                if ( pending == 0 )
+                {
+                    queues.notifyAll();
+                }
+            }
+        }
+    }
+}
@@ -39,6 +39,7 @@ import java.util.SortedMap;
 import java.util.TreeMap;
 
 import org.apache.felix.scr.impl.manager.ScrConfiguration;
+import org.apache.felix.scr.impl.runtime.ServiceComponentRuntimeImpl;
 import org.apache.felix.scr.info.ScrInfo;
 import org.apache.felix.service.command.Converter;
 import org.apache.felix.service.command.Descriptor;
@@ -100,9 +101,11 @@ public class ComponentCommands implements ServiceTrackerCustomizer<Object, Servi
         svcProps = new Hashtable<>();
         svcProps.put("osgi.command.scope", "scr");
         svcProps.put("osgi.command.function", new String[] {
+                "actor",
                 "config",
                 "disable",
                 "enable",
+                "graph",
                 "info",
                 "list"
         });
@@ -234,12 +237,73 @@ public class ComponentCommands implements ServiceTrackerCustomizer<Object, Servi
         out.put("Stop timeout ms", Long.toString(scrConfig.stopTimeout()));
         out.put("Global extender", Boolean.toString(scrConfig.globalExtender()));
         out.put("Info Service registered", scrConfig.infoAsService() ? "Supported" : "Unsupported");
+        out.put("Component actor threads", Integer.toString(scrConfig.actorThreads()));
+        out.put("Reference coalesce ms", Long.toString(scrConfig.referenceCoalesceTimeout()));
 
         StringBuilder builder = new StringBuilder();
         printColumnsAligned("SCR Configuration", out, '=', builder);
         return builder.toString();
     }
 
+    @Descriptor("Show the statistics of the component actor running the asynchronous component tasks")
+    public String actor() {
+        final ComponentActor actor = scr instanceof ServiceComponentRuntimeImpl
+                ? ((ServiceComponentRuntimeImpl) scr).getComponentActor() : null;
+        if (actor == null) {
+            return "Component actor not running";
+        }
+        Map<String,String> out = new LinkedHashMap<>();
+        out.put("Threads", Integer.toString(actor.getThreads()));
+        out.put("Queued tasks", Integer.toString(actor.getQueueDepth()));
+        out.put("Completed tasks", Long.toString(actor.getCompletedTasks()));
+        out.put("Average queue time us", Long.toString(actor.getAverageWaitMicros()));
+        out.put("Maximum queue time us", Long.toString(actor.getMaxWaitMicros()));
+        out.put("Average run time us", Long.toString(actor.getAverageRunMicros()));
+        final long[] referenceEvents = ((ServiceComponentRuntimeImpl) scr).getReferenceEventCounts();
+        out.put("Delayed reference events", Long.toString(referenceEvents[0]));
+        out.put("Coalesced reference events", Long.toString(referenceEvents[1]));
+
+        StringBuilder builder = new StringBuilder();
+        printColumnsAligned("SCR Component Actor", out, '=', builder);
+        return builder.toString();
+    }
+
+    @Descriptor("Show the dependency graph of the components, in activation order, and its cycles")
+    public String graph() {
+        final ComponentDependencyGraph graph = scr instanceof ServiceComponentRuntimeImpl
+                ? ((ServiceComponentRuntimeImpl) scr).getDependencyGraph() : null;
+        if (graph == null) {
+            return "Component dependency graph not available";
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append("Component Dependency Graph\n");
+        builder.append("==========================\n");
+        for (ComponentRegistryKey key : graph.getActivationOrder()) {
+            builder.append(formatKey(key));
+            List<ComponentRegistryKey> dependencies = graph.getDependencies(key);
+            for (int i = 0; i < dependencies.size(); i++) {
+                builder.append(i == 0 ? " -> " : ", ").append(formatKey(dependencies.get(i)));
+            }
+            builder.append('\n');
+        }
+        List<List<ComponentRegistryKey>> cycles = graph.getCycles();
+        if (!cycles.isEmpty()) {
+            builder.append("\nCycles\n");
+            builder.append("======\n");
+            for (List<ComponentRegistryKey> cycle : cycles) {
+                for (int i = 0; i < cycle.size(); i++) {
+                    builder.append(i == 0 ? "" : ", ").append(formatKey(cycle.get(i)));
+                }
+                builder.append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String formatKey(ComponentRegistryKey key) {
+        return key.getComponentName() + " [" + key.getBundleId() + "]";
+    }
+
     public Object convert(Class<?> desiredType, Object in) throws Exception {
         return null;
     }
@@ -0,0 +1,447 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl;
+
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.felix.scr.impl.metadata.ComponentMetadata;
+import org.apache.felix.scr.impl.metadata.ReferenceMetadata;
+import org.apache.felix.scr.impl.metadata.ServiceMetadata;
+
+
+/**
+ * The <code>ComponentDependencyGraph</code> is the static dependency graph
+ * of the components registered in the {@link ComponentRegistry}. A
+ * component depends on all components providing a service of the
+ * interface of one of its references, regardless of target filters, so
+ * the graph may contain more dependencies than the actual ones.
+ * <p>
+ * The graph is analyzed when it is used. The analysis yields an activation
+ * order where components come after the components they depend on and
+ * otherwise keep the order in which they have been added, that is their
+ * declaration order, and the cycles of components depending on each other.
+ * Adding a component nobody depends on yet and removing a component which
+ * is not part of a cycle update the analysis in place, other changes cause
+ * the graph to be analyzed again when it is next used.
+ */
+public class ComponentDependencyGraph
+{
+
+    private final Map<ComponentRegistryKey, ComponentMetadata> m_components = new HashMap<>();
+
+    // the order in which the components have been added
+    private final Map<ComponentRegistryKey, Long> m_declarationIndexes = new HashMap<>();
+
+    private long m_nextDeclarationIndex;
+
+    // the components by provided service interface
+    private final Map<String, Set<ComponentRegistryKey>> m_providers = new HashMap<>();
+
+    // the components by referenced service interface
+    private final Map<String, Set<ComponentRegistryKey>> m_consumers = new HashMap<>();
+
+    // the components a component depends on
+    private final Map<ComponentRegistryKey, Set<ComponentRegistryKey>> m_dependencies = new HashMap<>();
+
+    // the components depending on a component
+    private final Map<ComponentRegistryKey, Set<ComponentRegistryKey>> m_dependents = new HashMap<>();
+
+    // orders the components by declaration index for a stable analysis
+    private final Comparator<ComponentRegistryKey> m_declarationOrder = new Comparator<ComponentRegistryKey>()
+    {
+        @Override
+        public int compare( final ComponentRegistryKey k1, final ComponentRegistryKey k2 )
+        {
+            return m_declarationIndexes.get( k1 ).compareTo( m_declarationIndexes.get( k2 ) );
+        }
+    };
+
+    // the result of the analysis, only valid while m_analyzed is true
+    private boolean m_analyzed = true;
+
+    private final List<ComponentRegistryKey> m_order = new ArrayList<>();
+
+    // ranks only increase along the order, they may have gaps after removals
+    private final Map<ComponentRegistryKey, Integer> m_ranks = new HashMap<>();
+
+    private int m_nextRank;
+
+    private final List<List<ComponentRegistryKey>> m_cycles = new ArrayList<>();
+
+    private final Map<ComponentRegistryKey, List<ComponentRegistryKey>> m_cycleOf = new HashMap<>();
+
+    // the cycles reported at runtime since the graph last changed
+    private final Set<List<ComponentRegistryKey>> m_reported = new HashSet<>();
+
+
+    synchronized void add( final ComponentRegistryKey key, final ComponentMetadata metadata )
+    {
+        remove( key );
+        m_components.put( key, metadata );
+        m_declarationIndexes.put( key, m_nextDeclarationIndex++ );
+        m_dependencies.put( key, new HashSet<ComponentRegistryKey>() );
+        m_dependents.put( key, new HashSet<ComponentRegistryKey>() );
+
+        for ( final String service : getProvides( metadata ) )
+        {
+            addTo( m_providers, service, key );
+            final Set<ComponentRegistryKey> consumers = m_consumers.get( service );
+            if ( consumers != null )
+            {
+                for ( final ComponentRegistryKey consumer : consumers )
+                {
+                    link( consumer, key );
+                }
+            }
+        }
+        for ( final ReferenceMetadata reference : metadata.getDependencies() )
+        {
+            addTo( m_consumers, reference.getInterface(), key );
+            final Set<ComponentRegistryKey> providers = m_providers.get( reference.getInterface() );
+            if ( providers != null )
+            {
+                for ( final ComponentRegistryKey provider : providers )
+                {
+                    link( key, provider );
+                }
+            }
+        }
+
+        final Set<ComponentRegistryKey> dependents = m_dependents.get( key );
+        if ( m_analyzed && ( dependents.isEmpty() || dependents.equals( Collections.singleton( key ) ) ) )
+        {
+            // all the components the new one depends on come before it
+            // and it cannot be part of a cycle other than with itself
+            m_ranks.put( key, m_nextRank++ );
+            m_order.add( key );
+            if ( !dependents.isEmpty() )
+            {
+                addCycle( Collections.singletonList( key ) );
+            }
+        }
+        else
+        {
+            m_analyzed = false;
+        }
+        m_reported.clear();
+    }
+
+
+    synchronized void remove( final ComponentRegistryKey key )
+    {
+        final ComponentMetadata metadata = m_components.remove( key );
+        if ( metadata != null )
+        {
+            m_declarationIndexes.remove( key );
+            for ( final ComponentRegistryKey dependency : m_dependencies.remove( key ) )
+            {
+                if ( !dependency.equals( key ) )
+                {
+                    m_dependents.get( dependency ).remove( key );
+                }
+            }
+            for ( final ComponentRegistryKey dependent : m_dependents.remove( key ) )
+            {
+                if ( !dependent.equals( key ) )
+                {
+                    m_dependencies.get( dependent ).remove( key );
+                }
+            }
+            for ( final String service : getProvides( metadata ) )
+            {
+                removeFrom( m_providers, service, key );
+            }
+            for ( final ReferenceMetadata reference : metadata.getDependencies() )
+            {
+                removeFrom( m_consumers, reference.getInterface(), key );
+            }
+
+            if ( m_analyzed && !m_cycleOf.containsKey( key ) )
+            {
+                // the order of the other components remains valid
+                m_ranks.remove( key );
+                m_order.remove( key );
+            }
+            else
+            {
+                m_analyzed = false;
+            }
+            m_reported.clear();
+        }
+    }
+
+
+    /**
+     * Returns the components the given component depends on.
+     */
+    synchronized List<ComponentRegistryKey> getDependencies( final ComponentRegistryKey key )
+    {
+        final Set<ComponentRegistryKey> dependencies = m_dependencies.get( key );
+        if ( dependencies == null || dependencies.isEmpty() )
+        {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList( sorted( dependencies ) );
+    }
+
+
+    /**
+     * Returns all components, each one after the components it depends on
+     * unless they depend on each other.
+     */
+    synchronized List<ComponentRegistryKey> getActivationOrder()
+    {
+        analyze();
+        return Collections.unmodifiableList( new ArrayList<>( m_order ) );
+    }
+
+
+    /**
+     * Returns the position of the component in the
+     * {@link #getActivationOrder() activation order} or
+     * <code>Integer.MAX_VALUE</code> for an unknown component. Ranks are
+     * only meant to be compared with each other.
+     */
+    synchronized int getActivationRank( final ComponentRegistryKey key )
+    {
+        analyze();
+        final Integer rank = m_ranks.get( key );
+        return rank == null ? Integer.MAX_VALUE : rank;
+    }
+
+
+    /**
+     * Returns the cycles of components depending on each other.
+     */
+    synchronized List<List<ComponentRegistryKey>> getCycles()
+    {
+        analyze();
+        return Collections.unmodifiableList( new ArrayList<>( m_cycles ) );
+    }
+
+
+    /**
+     * Returns whether a circular reference found at runtime involving the
+     * given component must be reported. This is the case the first time a
+     * known cycle is found after the graph changed, or if the component
+     * is not part of a known cycle.
+     */
+    synchronized boolean reportCycle( final ComponentRegistryKey key )
+    {
+        analyze();
+        final List<ComponentRegistryKey> cycle = m_cycleOf.get( key );
+        return cycle == null || m_reported.add( cycle );
+    }
+
+
+    private void link( final ComponentRegistryKey consumer, final ComponentRegistryKey provider )
+    {
+        m_dependencies.get( consumer ).add( provider );
+        m_dependents.get( provider ).add( consumer );
+    }
+
+
+    private void addCycle( final List<ComponentRegistryKey> cycle )
+    {
+        m_cycles.add( cycle );
+        for ( final ComponentRegistryKey c : cycle )
+        {
+            m_cycleOf.put( c, cycle );
+        }
+    }
+
+
+    private List<ComponentRegistryKey> sorted( final Set<ComponentRegistryKey> keys )
+    {
+        final List<ComponentRegistryKey> sorted = new ArrayList<>( keys );
+        Collections.sort( sorted, m_declarationOrder );
+        return sorted;
+    }
+
+
+    /**
+     * Analyzes the whole graph if needed, finding its strongly connected
+     * components with Tarjan's algorithm. The algorithm completes a strongly
+     * connected component only after all components it depends on, which
+     * gives the activation order. The components and their dependencies
+     * are visited in declaration order, so unrelated components keep it.
+     */
+    private void analyze()
+    {
+        if ( m_analyzed )
+        {
+            return;
+        }
+
+        m_order.clear();
+        m_ranks.clear();
+        m_nextRank = 0;
+        m_cycles.clear();
+        m_cycleOf.clear();
+
+        final Map<ComponentRegistryKey, Integer> index = new HashMap<>();
+        final List<ComponentRegistryKey> stack = new ArrayList<>();
+        final Set<ComponentRegistryKey> onStack = new HashSet<>();
+
+        // the path of the depth first search, replacing recursion so that
+        // long dependency chains cannot overflow the thread stack
+        final Deque<Visit> path = new ArrayDeque<>();
+
+        for ( final ComponentRegistryKey root : sorted( m_components.keySet() ) )
+        {
+            if ( index.containsKey( root ) )
+            {
+                continue;
+            }
+
+            path.push( visit( root, index, stack, onStack ) );
+            while ( !path.isEmpty() )
+            {
+                final Visit visit = path.peek();
+                if ( visit.dependencies.hasNext() )
+                {
+                    final ComponentRegistryKey dependency = visit.dependencies.next();
+                    if ( !index.containsKey( dependency ) )
+                    {
+                        path.push( visit( dependency, index, stack, onStack ) );
+                    }
+                    else if ( onStack.contains( dependency ) )
+                    {
+                        visit.lowLink = Math.min( visit.lowLink, index.get( dependency ) );
+                    }
+                    continue;
+                }
+
+                path.pop();
+                if ( !path.isEmpty() )
+                {
+                    path.peek().lowLink = Math.min( path.peek().lowLink, visit.lowLink );
+                }
+                if ( visit.lowLink == index.get( visit.key ) )
+                {
+                    // key is the root of a strongly connected component
+                    final Set<ComponentRegistryKey> members = new HashSet<>();
+                    ComponentRegistryKey member;
+                    do
+                    {
+                        member = stack.remove( stack.size() - 1 );
+                        onStack.remove( member );
+                        members.add( member );
+                    }
+                    while ( !member.equals( visit.key ) );
+
+                    final List<ComponentRegistryKey> component = sorted( members );
+                    for ( final ComponentRegistryKey c : component )
+                    {
+                        m_ranks.put( c, m_nextRank++ );
+                        m_order.add( c );
+                    }
+                    if ( component.size() > 1 || m_dependencies.get( visit.key ).contains( visit.key ) )
+                    {
+                        addCycle( Collections.unmodifiableList( component ) );
+                    }
+                }
+            }
+        }
+
+        m_analyzed = true;
+    }
+
+
+    private Visit visit( final ComponentRegistryKey key, final Map<ComponentRegistryKey, Integer> index,
+        final List<ComponentRegistryKey> stack, final Set<ComponentRegistryKey> onStack )
+    {
+        final int i = index.size();
+        index.put( key, i );
+        stack.add( key );
+        onStack.add( key );
+        return new Visit( key, i, sorted( m_dependencies.get( key ) ).iterator() );
+    }
+
+
+    private static void addTo( final Map<String, Set<ComponentRegistryKey>> map, final String service,
+        final ComponentRegistryKey key )
+    {
+        Set<ComponentRegistryKey> keys = map.get( service );
+        if ( keys == null )
+        {
+            keys = new HashSet<>();
+            map.put( service, keys );
+        }
+        keys.add( key );
+    }
+
+
+    private static void removeFrom( final Map<String, Set<ComponentRegistryKey>> map, final String service,
+        final ComponentRegistryKey key )
+    {
+        final Set<ComponentRegistryKey> keys = map.get( service );
+        if ( keys != null )
+        {
+            keys.remove( key );
+            if ( keys.isEmpty() )
+            {
+                map.remove( service );
+            }
+        }
+    }
+
+
+    private static List<String> getProvides( final ComponentMetadata metadata )
+    {
+        // factory components only provide services through their instances
+        final ServiceMetadata service = metadata.getServiceMetadata();
+        if ( service == null || metadata.isFactory() || service.getProvides() == null )
+        {
+            return Collections.emptyList();
+        }
+        final List<String> provides = new ArrayList<>();
+        Collections.addAll( provides, service.getProvides() );
+        return provides;
+    }
+
+
+    // a component being visited by the depth first search of the analysis
+    private static class Visit
+    {
+        private final ComponentRegistryKey key;
+
+        private final Iterator<ComponentRegistryKey> dependencies;
+
+        private int lowLink;
+
+        Visit( final ComponentRegistryKey key, final int index, final Iterator<ComponentRegistryKey> dependencies )
+        {
+            this.key = key;
+            this.lowLink = index;
+            this.dependencies = dependencies;
+        }
+    }
+}
@@ -21,10 +21,13 @@ package org.apache.felix.scr.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -125,6 +128,12 @@ public class ComponentRegistry
 
     private final Map<ServiceReference<?>, List<Entry<?, ?>>> m_missingDependencies = new HashMap<>( );
 
+    /**
+     * The dependencies between the registered components, used to order
+     * their activation and to know their circular references.
+     */
+    private final ComponentDependencyGraph m_dependencyGraph = new ComponentDependencyGraph();
+
     private final ScrLogger m_logger;
 
     private final ScrConfiguration m_configuration;
@@ -272,6 +281,8 @@ public class ComponentRegistry
             m_componentHoldersByName.put( key, componentHolder );
         }
 
+        m_dependencyGraph.add( key, componentHolder.getComponentMetadata() );
+
         synchronized (m_componentHoldersByPid)
         {
             // See if the component declares a specific configuration pid (112.4.4 configuration-pid)
@@ -406,6 +417,7 @@ public class ComponentRegistry
         {
             component = m_componentHoldersByName.remove( key );
         }
+        m_dependencyGraph.remove( key );
 
         if (component != null) {
             m_logger.log(LogService.LOG_DEBUG,
@@ -431,6 +443,40 @@ public class ComponentRegistry
         }
     }
 
+    /**
+     * Returns the dependency graph of the registered components.
+     */
+    public ComponentDependencyGraph getDependencyGraph()
+    {
+        return m_dependencyGraph;
+    }
+
+
+    /**
+     * Sorts the component holders of a bundle such that every component
+     * comes after the components it depends on, so that their services
+     * are usually available when the component is activated instead of
+     * activating it again once they appear.
+     */
+    final void sortForActivation( final Bundle bundle, final List<ComponentHolder<?>> holders )
+    {
+        final Map<ComponentHolder<?>, Integer> ranks = new HashMap<>();
+        for ( final ComponentHolder<?> holder : holders )
+        {
+            ranks.put( holder, m_dependencyGraph.getActivationRank(
+                new ComponentRegistryKey( bundle, holder.getComponentMetadata().getName() ) ) );
+        }
+        // stable sort, keeping the declaration order of unrelated components
+        Collections.sort( holders, new Comparator<ComponentHolder<?>>()
+        {
+            @Override
+            public int compare( final ComponentHolder<?> h1, final ComponentHolder<?> h2 )
+            {
+                return ranks.get( h1 ).compareTo( ranks.get( h2 ) );
+            }
+        } );
+    }
+
     //---------- base configuration support
 
     /**
@@ -482,9 +528,18 @@ public class ComponentRegistry
         List<ServiceReference<?>> info = circularInfos.get();
         if (info.contains(serviceReference))
         {
-            m_logger.log(LogService.LOG_ERROR,
-                "Circular reference detected trying to get service {0}\n stack of references: {1}", new Exception("stack trace"),
-                serviceReference, new Info(info));
+            if ( reportCycle( serviceReference ) )
+            {
+                m_logger.log(LogService.LOG_ERROR,
+                    "Circular reference detected trying to get service {0}\n stack of references: {1}", new Exception("stack trace"),
+                    serviceReference, new Info(info));
+            }
+            else
+            {
+                m_logger.log(LogService.LOG_DEBUG,
+                    "Known circular reference detected trying to get service {0}\n stack of references: {1}", null,
+                    serviceReference, new Info(info));
+            }
             return true;
         }
         m_logger.log(LogService.LOG_DEBUG,
@@ -495,6 +550,20 @@ public class ComponentRegistry
     }
 
 
+    // whether the circular reference must be reported, known cycles of the
+    // dependency graph are only reported once
+    private boolean reportCycle( final ServiceReference<?> serviceReference )
+    {
+        final Object name = serviceReference.getProperty( ComponentConstants.COMPONENT_NAME );
+        final Bundle bundle = serviceReference.getBundle();
+        if ( name instanceof String && bundle != null )
+        {
+            return m_dependencyGraph.reportCycle( new ComponentRegistryKey( bundle, ( String ) name ) );
+        }
+        return true;
+    }
+
+
     private class Info
     {
 
@@ -552,12 +621,37 @@ public class ComponentRegistry
      * @param serviceReference
      * @param actor
      */
-    public synchronized <T> void missingServicePresent( final ServiceReference<T> serviceReference, ComponentActorThread actor )
+    public synchronized <T> void missingServicePresent( final ServiceReference<T> serviceReference, ComponentActor actor )
     {
-        final List<Entry<?, ?>> dependencyManagers = m_missingDependencies.remove( serviceReference );
-        if ( dependencyManagers != null )
+        final List<Entry<?, ?>> missing = m_missingDependencies.remove( serviceReference );
+        if ( missing == null )
         {
+            return;
+        }
+
+        // keep the order of the tasks of the bundles declaring the
+        // components waiting for the service, the bundle providing the
+        // service may be gone already
+        final Map<Object, List<Entry<?, ?>>> byBundle = new LinkedHashMap<>();
+        for ( Entry<?, ?> entry : missing )
+        {
+            Object key = entry.getDm().getBundle();
+            if ( key == null )
+            {
+                key = this;
+            }
+            List<Entry<?, ?>> entries = byBundle.get( key );
+            if ( entries == null )
+            {
+                entries = new ArrayList<>();
+                byBundle.put( key, entries );
+            }
+            entries.add( entry );
+        }
 
+        for ( Map.Entry<Object, List<Entry<?, ?>>> bundleEntries : byBundle.entrySet() )
+        {
+            final List<Entry<?, ?>> dependencyManagers = bundleEntries.getValue();
             Runnable runnable = new Runnable()
             {
 
@@ -582,7 +676,7 @@ public class ComponentRegistry
             } ;
             m_logger.log(LogService.LOG_DEBUG,
                 "Scheduling runnable {0} asynchronously", null, runnable);
-            actor.schedule( runnable );
+            actor.schedule( bundleEntries.getKey(), runnable );
         }
     }
 
@@ -87,6 +87,10 @@ public class ScrConfigurationImpl implements ScrConfiguration
 
     private long serviceChangecountTimeout = DEFAULT_SERVICE_CHANGECOUNT_TIMEOUT_MILLISECONDS;
 
+    private int actorThreads = DEFAULT_ACTOR_THREADS;
+
+    private long referenceCoalesceTimeout = DEFAULT_REFERENCE_COALESCE_MILLISECONDS;
+
     private Boolean globalExtender;
 
     private volatile BundleContext bundleContext;
@@ -174,6 +178,8 @@ public class ScrConfigurationImpl implements ScrConfiguration
                         lockTimeout = DEFAULT_LOCK_TIMEOUT_MILLISECONDS;
                         stopTimeout = DEFAULT_STOP_TIMEOUT_MILLISECONDS;
                         serviceChangecountTimeout = DEFAULT_SERVICE_CHANGECOUNT_TIMEOUT_MILLISECONDS;
+                        actorThreads = DEFAULT_ACTOR_THREADS;
+                        referenceCoalesceTimeout = DEFAULT_REFERENCE_COALESCE_MILLISECONDS;
                         newGlobalExtender = false;
                     }
                     else
@@ -185,6 +191,8 @@ public class ScrConfigurationImpl implements ScrConfiguration
                         lockTimeout = getDefaultLockTimeout();
                         stopTimeout = getDefaultStopTimeout();
                         serviceChangecountTimeout = getServiceChangecountTimeout();
+                        actorThreads = getDefaultActorThreads();
+                        referenceCoalesceTimeout = getDefaultReferenceCoalesceTimeout();
                         newGlobalExtender = getDefaultGlobalExtender();
                     }
                 }
@@ -273,6 +281,18 @@ public class ScrConfigurationImpl implements ScrConfiguration
         return serviceChangecountTimeout;
     }
 
+    @Override
+    public int actorThreads()
+    {
+        return actorThreads;
+    }
+
+    @Override
+    public long referenceCoalesceTimeout()
+    {
+        return referenceCoalesceTimeout;
+    }
+
     private boolean getDefaultFactoryEnabled()
     {
         return VALUE_TRUE.equals( bundleContext.getProperty( PROP_FACTORY_ENABLED ) );
@@ -325,6 +345,26 @@ public class ScrConfigurationImpl implements ScrConfiguration
         return Long.parseLong( val );
     }
 
+    private int getDefaultActorThreads()
+    {
+        String val = bundleContext.getProperty( PROP_ACTOR_THREADS );
+        if ( val == null)
+        {
+            return DEFAULT_ACTOR_THREADS;
+        }
+        return Integer.parseInt( val );
+    }
+
+    private long getDefaultReferenceCoalesceTimeout()
+    {
+        String val = bundleContext.getProperty( PROP_REFERENCE_COALESCE );
+        if ( val == null)
+        {
+            return DEFAULT_REFERENCE_COALESCE_MILLISECONDS;
+        }
+        return Long.parseLong( val );
+    }
+
     private boolean getDefaultGlobalExtender()
     {
         return VALUE_TRUE.equalsIgnoreCase( bundleContext.getProperty( PROP_GLOBAL_EXTENDER) );
@@ -135,48 +135,38 @@ public class Annotations
         return null;
     }
 
+    /** The property type information, computed once per type */
+    private static final ClassValue<TypeInfo> TYPES = new ClassValue<TypeInfo>()
+    {
+        @Override
+        protected TypeInfo computeValue(final Class<?> type)
+        {
+            return new TypeInfo(type);
+        }
+    };
+
     @SuppressWarnings("unchecked")
 	static public <T> T toObject(Class<T> clazz, Map<String, Object> props, Bundle b, boolean supportsInterfaces )
     {
-        final boolean isSingleElementAnn = isSingleElementAnnotation(clazz);
-        final String prefix = getPrefix(clazz);
+        final TypeInfo info = TYPES.get(clazz);
         final Map<String, Object> m = new HashMap<>();
 
-        final Map<String, Method> complexFields = new HashMap<>();
-        for ( final Method method: clazz.getMethods() )
+        for ( int i = 0; i < info.methods.length; i++ )
         {
-            final String name = method.getName();
-            final String mapped;
-            if ( isSingleElementAnn && name.equals(VALUE_METHOD) )
-            {
-                mapped = mapTypeNameToKey(clazz.getSimpleName());
-            }
-            else
+            final Method method = info.methods[i];
+            if ( info.complex[i] )
             {
-                mapped = mapIdentifierToKey(name);
+                continue;
             }
-            final String key = (prefix == null ? mapped : prefix.concat(mapped));
 
-            Object raw = props.get(key);
+            Object raw = props.get(info.keys[i]);
             Class<?> returnType = method.getReturnType();
             Object cooked;
-            if ( returnType.isInterface() || returnType.isAnnotation())
-            {
-                complexFields.put(key, method);
-                continue;
-            }
-
             try
             {
                 if (returnType.isArray())
                 {
-                    Class<?> componentType = returnType.getComponentType();
-                    if (componentType.isInterface() || componentType.isAnnotation())
-                    {
-                        complexFields.put(key, method);
-                        continue;
-                    }
-                    cooked = coerceToArray(componentType, raw, b);
+                    cooked = coerceToArray(returnType.getComponentType(), raw, b);
                 }
                 else
                 {
@@ -187,14 +177,14 @@ public class Annotations
             {
                 cooked = new Invalid(e);
             }
-            m.put( name, cooked );
+            m.put( method.getName(), cooked );
         }
-        if (!complexFields.isEmpty())
+        if (!info.complexFields.isEmpty())
         {
             if (supportsInterfaces )
             {
-                Map<String, List<Map<String, Object>>> nested = extractSubMaps(complexFields.keySet(), props);
-                for (Map.Entry<String, Method> entry: complexFields.entrySet())
+                Map<String, List<Map<String, Object>>> nested = extractSubMaps(info.subMapPattern, props);
+                for (Map.Entry<String, Method> entry: info.complexFields.entrySet())
                 {
                     List<Map<String, Object>> proplist = nested.get(entry.getKey());
                     if (proplist == null)
@@ -227,7 +217,7 @@ public class Annotations
             }
             else
             {
-                for (Method method: complexFields.values())
+                for (Method method: info.complexFields.values())
                 {
                     m.put(method.getName(), new Invalid("Invalid annotation member type" + method.getReturnType().getName() + " for member: " + method.getName()));
                 }
@@ -238,9 +228,8 @@ public class Annotations
         return (T) Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[] { clazz }, h);
     }
 
-    private static Map<String, List<Map<String, Object>>> extractSubMaps(Collection<String> keys, Map<String, Object> map)
+    private static Pattern compileSubMapPattern(Collection<String> keys)
     {
-        Map<String, List<Map<String, Object>>> result = new HashMap<>();
         //Form a regexp to recognize all the keys as prefixes in the map keys.
         StringBuilder b = new StringBuilder("(");
         for (String key: keys)
@@ -249,7 +238,12 @@ public class Annotations
         }
         b.deleteCharAt(b.length() -1);
         b.append(")\\.([0-9]*)\\.(.*)");
-        Pattern p = Pattern.compile(b.toString());
+        return Pattern.compile(b.toString());
+    }
+
+    private static Map<String, List<Map<String, Object>>> extractSubMaps(Pattern p, Map<String, Object> map)
+    {
+        Map<String, List<Map<String, Object>>> result = new HashMap<>();
         for (Map.Entry<String, Object> entry: map.entrySet())
         {
             String longKey = entry.getKey();
@@ -428,6 +422,65 @@ public class Annotations
         }
     }
 
+    /**
+     * The methods of a property type with their property keys. Computing
+     * these involves reflection and regular expressions, which is done
+     * once per type instead of for every instance of the type.
+     */
+    private final static class TypeInfo
+    {
+        private final Method[] methods;
+
+        private final String[] keys;
+
+        /** Whether the method returns a nested property type */
+        private final boolean[] complex;
+
+        /** The keys and methods of the nested property types */
+        private final Map<String, Method> complexFields;
+
+        /** Matches the properties of the nested property types */
+        private final Pattern subMapPattern;
+
+        TypeInfo(final Class<?> clazz)
+        {
+            final boolean isSingleElementAnn = isSingleElementAnnotation(clazz);
+            final String prefix = getPrefix(clazz);
+
+            methods = clazz.getMethods();
+            keys = new String[methods.length];
+            complex = new boolean[methods.length];
+            final Map<String, Method> complexFields = new HashMap<>();
+            for ( int i = 0; i < methods.length; i++ )
+            {
+                final String name = methods[i].getName();
+                final String mapped;
+                if ( isSingleElementAnn && name.equals(VALUE_METHOD) )
+                {
+                    mapped = mapTypeNameToKey(clazz.getSimpleName());
+                }
+                else
+                {
+                    mapped = mapIdentifierToKey(name);
+                }
+                keys[i] = (prefix == null ? mapped : prefix.concat(mapped));
+
+                Class<?> type = methods[i].getReturnType();
+                if ( type.isArray() )
+                {
+                    type = type.getComponentType();
+                }
+                if ( type.isInterface() || type.isAnnotation() )
+                {
+                    complex[i] = true;
+                    complexFields.put(keys[i], methods[i]);
+                }
+            }
+            this.complexFields = complexFields;
+            this.subMapPattern = complexFields.isEmpty() ? null : compileSubMapPattern(complexFields.keySet());
+        }
+    }
+
     private final static class Invalid
     {
         private final String message;
@@ -18,8 +18,12 @@
  */
 package org.apache.felix.scr.impl.inject;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -43,9 +47,12 @@ import org.osgi.service.log.LogService;
 public class ComponentConstructor<S>
 {
     private final Field[] activationFields;
+    private final MethodHandle[] activationFieldSetters;
     private final ValueType[] activationFieldTypes;
 
     private final Constructor<S> constructor;
+    private final MethodHandle constructorHandle;
+    private final Class<?>[] constructorParameterTypes;
     private final ValueType[] constructorArgTypes;
     private final ReferenceMetadata[] constructorRefs;
 
@@ -170,6 +177,8 @@ public class ComponentConstructor<S>
         }
 
         this.constructor = found;
+        this.constructorHandle = found == null ? null : createConstructorHandle(found);
+        this.constructorParameterTypes = found == null ? null : found.getParameterTypes();
         this.constructorArgTypes = foundTypes;
         this.constructorRefs = foundRefs;
 
@@ -178,6 +187,7 @@ public class ComponentConstructor<S>
         {
             activationFieldTypes = new ValueType[componentMetadata.getActivationFields().size()];
             activationFields = new Field[activationFieldTypes.length];
+            activationFieldSetters = new MethodHandle[activationFieldTypes.length];
 
             int index = 0;
             for(final String fieldName : componentMetadata.getActivationFields() )
@@ -194,6 +204,7 @@ public class ComponentConstructor<S>
                     {
                         activationFieldTypes[index] = ValueUtils.getValueType(result.field.getType());
                         activationFields[index] = result.field;
+                        activationFieldSetters[index] = FieldUtils.createSetter(result.field);
                     }
                     else
                     {
@@ -209,6 +220,7 @@ public class ComponentConstructor<S>
         {
             activationFieldTypes = ValueUtils.EMPTY_VALUE_TYPES;
             activationFields = null;
+            activationFieldSetters = null;
         }
 
         if ( constructor == null )
@@ -260,7 +272,7 @@ public class ComponentConstructor<S>
                 {
                     args[i] = ValueUtils.getValue(constructor.getDeclaringClass().getName(),
                             constructorArgTypes[i],
-                            constructor.getParameterTypes()[i],
+                            constructorParameterTypes[i],
                             componentContext,
                             null);
                 }
@@ -282,7 +294,7 @@ public class ComponentConstructor<S>
                             }
                             ref = ValueUtils.getValue(constructor.getDeclaringClass().getName(),
                                     constructorArgTypes[i],
-                                    constructor.getParameterTypes()[i],
+                                    constructorParameterTypes[i],
                                     componentContext,
                                     refPair);
                             if ( refMetadata.isMultiple() && ref != null )
@@ -306,7 +318,7 @@ public class ComponentConstructor<S>
                 }
             }
         }
-        final S component = constructor.newInstance(args);
+        final S component = newInstance(args);
 
         // activation fields
         for(int i = 0; i<activationFieldTypes.length; i++)
@@ -318,13 +330,52 @@ public class ComponentConstructor<S>
                         activationFields[i].getType(),
                         componentContext,
                         null); // null is ok as activation fields are not references
-                FieldUtils.setField(activationFields[i], component, value, componentContext.getLogger());
+                FieldUtils.setField(activationFields[i], activationFieldSetters[i],
+                        component, value, componentContext.getLogger());
             }
         }
 
         return component;
     }
 
+    @SuppressWarnings("unchecked")
+    private S newInstance(final Object[] args) throws Exception
+    {
+        if ( constructorHandle == null )
+        {
+            return constructor.newInstance(args);
+        }
+        try
+        {
+            return (S) constructorHandle.invokeExact(args == null ? new Object[0] : args);
+        }
+        catch ( final Throwable t )
+        {
+            // same as Constructor.newInstance, exceptions of the constructor are wrapped
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    /**
+     * Create a handle for the constructor taking the arguments as an array.
+     * The handle is created once per component class and avoids the access
+     * checks of {@link Constructor#newInstance(Object...)} for every instance.
+     * @return The handle or {@code null} if the constructor can't be called by a handle
+     */
+    private static MethodHandle createConstructorHandle(final Constructor<?> c)
+    {
+        try
+        {
+            return MethodHandles.lookup().unreflectConstructor(c)
+                .asSpreader(Object[].class, c.getParameterTypes().length)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        }
+        catch ( final IllegalAccessException iae )
+        {
+            return null;
+        }
+    }
+
     private String getNames(final List<ReferenceMetadata> refs)
     {
         final StringBuilder sb = new StringBuilder();
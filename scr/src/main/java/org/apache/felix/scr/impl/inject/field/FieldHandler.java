@@ -19,6 +19,7 @@
 package org.apache.felix.scr.impl.inject.field;
 
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
@@ -57,6 +58,10 @@ public class FieldHandler
     /** The field used for the injection. */
     private volatile Field field;
 
+    /** Handles setting and getting the field, {@code null} to use the field. */
+    private volatile MethodHandle setter;
+    private volatile MethodHandle getter;
+
     /** Value type. */
     private volatile ValueType valueType;
 
@@ -296,34 +301,39 @@ public class FieldHandler
     private void setFieldValue(final Object componentInstance, final Object value)
     throws InvocationTargetException
     {
+        final MethodHandle handle = setter;
         try
         {
-            field.set(componentInstance, value);
-        }
-        catch ( final IllegalArgumentException iae )
-        {
-            throw new InvocationTargetException(iae);
+            if ( handle != null )
+            {
+                handle.invokeExact(componentInstance, value);
+            }
+            else
+            {
+                field.set(componentInstance, value);
+            }
         }
-        catch ( final IllegalAccessException iae )
+        catch ( final Throwable t )
         {
-            throw new InvocationTargetException(iae);
+            throw new InvocationTargetException(t);
         }
     }
 
     private Object getFieldValue(final Object componentInstance)
     throws InvocationTargetException
     {
+        final MethodHandle handle = getter;
         try
         {
+            if ( handle != null )
+            {
+                return handle.invokeExact(componentInstance);
+            }
             return field.get(componentInstance);
         }
-        catch ( final IllegalArgumentException iae )
-        {
-            throw new InvocationTargetException(iae);
-        }
-        catch ( final IllegalAccessException iae )
+        catch ( final Throwable t )
         {
-            throw new InvocationTargetException(iae);
+            throw new InvocationTargetException(t);
         }
     }
 
@@ -439,6 +449,8 @@ public class FieldHandler
         if (result == null)
         {
             field = null;
+            setter = null;
+            getter = null;
             valueType = null;
             state = NotFound.INSTANCE;
             // TODO - will component really fail?
@@ -448,6 +460,8 @@ public class FieldHandler
         else
         {
             field = result.field;
+            setter = FieldUtils.createSetter(result.field);
+            getter = FieldUtils.createGetter(result.field);
             if (!result.usable)
             {
                 valueType = ValueType.ignore;
@@ -18,6 +18,9 @@
  */
 package org.apache.felix.scr.impl.inject.field;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
@@ -293,18 +296,88 @@ public class FieldUtils {
     		final Object component,
     		final Object value,
     		final ComponentLogger logger )
+    {
+        setField(f, null, component, value, logger);
+    }
+
+    /**
+     * Set the field, using the setter handle if available.
+     * @param f The field
+     * @param setter The setter handle created by {@link #createSetter(Field)} or {@code null}
+     * @param component The component instance
+     * @param value The value to set
+     * @param logger The logger
+     */
+    public static void setField( final Field f,
+            final MethodHandle setter,
+            final Object component,
+            final Object value,
+            final ComponentLogger logger )
     {
         try
         {
-            f.set(component, value);
+            if ( setter != null )
+            {
+                setter.invokeExact(component, value);
+            }
+            else
+            {
+                f.set(component, value);
+            }
         }
-        catch ( final IllegalArgumentException iae )
+        catch ( final Throwable t )
+        {
+            logger.log( LogService.LOG_ERROR, "Field {0} can't be set", t, f.getName() );
+        }
+    }
+
+    /**
+     * Create a handle setting the field of a component instance. The handle
+     * takes the instance and the value as objects and is created once per
+     * field, so setting the field does not need the access checks of
+     * {@link Field#set(Object, Object)}.
+     * @param f The accessible, non static field
+     * @return The handle or {@code null} if the field can't be set by a handle,
+     *         for example because it is final
+     */
+    public static MethodHandle createSetter( final Field f )
+    {
+        if ( Modifier.isStatic( f.getModifiers() ) || Modifier.isFinal( f.getModifiers() ) )
+        {
+            return null;
+        }
+        try
+        {
+            return MethodHandles.lookup().unreflectSetter(f)
+                .asType(MethodType.methodType(void.class, Object.class, Object.class));
+        }
+        catch ( final IllegalAccessException iae )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Create a handle getting the field of a component instance.
+     * @param f The accessible, non static field
+     * @return The handle taking the instance and returning the value as
+     *         objects or {@code null} if the field can't be read by a handle
+     * @see #createSetter(Field)
+     */
+    public static MethodHandle createGetter( final Field f )
+    {
+        if ( Modifier.isStatic( f.getModifiers() ) )
+        {
+            return null;
+        }
+        try
         {
-            logger.log( LogService.LOG_ERROR, "Field {0} can't be set", iae, f.getName() );
+            return MethodHandles.lookup().unreflectGetter(f)
+                .asType(MethodType.methodType(Object.class, Object.class));
         }
         catch ( final IllegalAccessException iae )
         {
-            logger.log( LogService.LOG_ERROR, "Field {0} can't be set", iae, f.getName() );
+            return null;
         }
     }
 }
@@ -19,6 +19,9 @@
 package org.apache.felix.scr.impl.inject.methods;
 
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -49,6 +52,10 @@ public abstract class BaseMethod<P extends BaseParameter, T>
 
     private volatile Method m_method;
 
+    // handle for m_method taking the instance and the parameter array,
+    // null if the method must be invoked reflectively
+    private volatile MethodHandle m_methodHandle;
+
     private final boolean m_methodRequired;
 
     private volatile State m_state;
@@ -110,6 +117,7 @@ public abstract class BaseMethod<P extends BaseParameter, T>
         if (m_method != null)
         {
             setTypes(methodInfo.getTypes());
+            m_methodHandle = createMethodHandle( m_method );
             m_state = Resolved.INSTANCE;
             logger.log( LogService.LOG_DEBUG, "Found {0} method: {1}", null,
                     getMethodNamePrefix(), m_method );
@@ -218,30 +226,52 @@ public abstract class BaseMethod<P extends BaseParameter, T>
     private MethodResult invokeMethod(final Object componentInstance, final P rawParameter )
             throws InvocationTargetException
     {
+        if ( componentInstance == null )
+        {
+            rawParameter.getComponentContext().getLogger().log( LogService.LOG_WARNING, "Method {0}: {1} cannot be called on null object",
+                    null,
+                            getMethodNamePrefix(), getMethodName() );
+            // assume success
+            return MethodResult.VOID;
+        }
+
+        final Object[] params;
         try
         {
-            if ( componentInstance != null )
-            {
-                final Object[] params = getParameters(m_method, rawParameter);
-                rawParameter.getComponentContext().getLogger().log( LogService.LOG_DEBUG, "invoking {0}: {1}: parameters {2}", null,
-                        getMethodNamePrefix(), getMethodName(), Arrays.asList( params ) );
-                Object result = m_method.invoke(componentInstance, params);
-                rawParameter.getComponentContext().getLogger().log( LogService.LOG_DEBUG, "invoked {0}: {1}", null,
-                        getMethodNamePrefix(), getMethodName() );
-                return new MethodResult((m_method.getReturnType() != Void.TYPE), (Map<String, Object>) result);
-            }
-            else
-            {
-                rawParameter.getComponentContext().getLogger().log( LogService.LOG_WARNING, "Method {0}: {1} cannot be called on null object",
-                        null,
-                                getMethodNamePrefix(), getMethodName() );
-            }
+            params = getParameters(m_method, rawParameter);
         }
         catch ( IllegalStateException ise )
         {
             rawParameter.getComponentContext().getLogger().log( LogService.LOG_DEBUG, ise.getMessage(), null );
             return null;
         }
+
+        try
+        {
+            rawParameter.getComponentContext().getLogger().log( LogService.LOG_DEBUG, "invoking {0}: {1}: parameters {2}", null,
+                    getMethodNamePrefix(), getMethodName(), Arrays.asList( params ) );
+            final MethodHandle handle = m_methodHandle;
+            final Object result;
+            if ( handle != null )
+            {
+                try
+                {
+                    result = handle.invokeExact( componentInstance, params );
+                }
+                catch ( Throwable t )
+                {
+                    // same as Method.invoke, exceptions of the method are wrapped
+                    throw new InvocationTargetException( t );
+                }
+            }
+            else
+            {
+                result = m_method.invoke(componentInstance, params);
+            }
+            rawParameter.getComponentContext().getLogger().log( LogService.LOG_DEBUG, "invoked {0}: {1}", null,
+                    getMethodNamePrefix(), getMethodName() );
+            return new MethodResult((m_method.getReturnType() != Void.TYPE), (Map<String, Object>) result);
+        }
         catch ( IllegalAccessException ex )
         {
             // 112.3.1 If the method is not is not declared protected or
@@ -259,10 +289,34 @@ public abstract class BaseMethod<P extends BaseParameter, T>
             throw new InvocationTargetException( t );
         }
 
-        // assume success (also if the method is not available or accessible)
+        // assume success (also if the method is not accessible)
         return MethodResult.VOID;
     }
 
+    /**
+     * Creates the handle invoking the method with the component instance
+     * and an array of parameters. The handle is created once when the
+     * method is resolved and is used for all component instances, which
+     * avoids the access checks and argument copying of
+     * <code>Method.invoke</code> on every call.
+     *
+     * @return The handle or <code>null</code> if the method cannot be
+     *      accessed by a handle, in which case it is invoked reflectively
+     */
+    private static MethodHandle createMethodHandle( final Method method )
+    {
+        try
+        {
+            return MethodHandles.lookup().unreflect( method )
+                .asSpreader( Object[].class, method.getParameterTypes().length )
+                .asType( MethodType.methodType( Object.class, Object.class, Object[].class ) );
+        }
+        catch ( IllegalAccessException iae )
+        {
+            return null;
+        }
+    }
+
     protected boolean returnValue()
     {
         // allow returning Map if declared as DS 1.2-Felix or newer
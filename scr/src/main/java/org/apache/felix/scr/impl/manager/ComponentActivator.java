@@ -36,6 +36,9 @@ public interface ComponentActivator extends ExtendedServiceListenerContext<Exten
 
     void schedule(Runnable runnable);
 
+    /** Schedules the runnable once the delay in milliseconds has elapsed. */
+    void schedule(Runnable runnable, long delay);
+
     long registerComponentId(AbstractComponentManager<?> sAbstractComponentManager);
 
     void unregisterComponentId(AbstractComponentManager<?> sAbstractComponentManager);
@@ -22,12 +22,14 @@ import java.security.Permission;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.felix.scr.impl.helper.Coercions;
@@ -38,6 +40,7 @@ import org.apache.felix.scr.impl.inject.ReferenceMethods;
 import org.apache.felix.scr.impl.metadata.ReferenceMetadata;
 import org.apache.felix.scr.impl.metadata.ReferenceMetadata.ReferenceScope;
 import org.apache.felix.scr.impl.metadata.ServiceMetadata.Scope;
+import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.framework.Filter;
@@ -77,6 +80,12 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
 
     private volatile int m_minCardinality;
 
+    // number of service events whose bind or updated call has been delayed
+    private final AtomicLong m_delayedEvents = new AtomicLong();
+
+    // number of service events not resulting in a call of their own
+    private final AtomicLong m_coalescedEvents = new AtomicLong();
+
     /**
      * Constructor that receives several parameters.
      * @param dependency An object that contains data about the dependency
@@ -297,6 +306,13 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
         private RefPair<S, T> lastRefPair;
         private int lastRefPairTrackingCount;
 
+        // the delayed bind and updated calls in the order of the service
+        // events, guarded by itself
+        private final Map<ServiceReference<T>, DelayedCall<S, T>> delayed = new LinkedHashMap<>();
+
+        // whether the delayed calls are scheduled to be made, guarded by delayed
+        private boolean flushScheduled;
+
         @Override
         public RefPair<S, T> addingService(ServiceReference<T> serviceReference)
         {
@@ -317,7 +333,13 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
             boolean tracked = false;
             if (getPreviousRefMap().remove(serviceReference) == null)
             {
-                if (isActive())
+                if (isActive() && delay(serviceReference, refPair, trackingCount, true))
+                {
+                    m_componentManager.getLogger().log(LogService.LOG_DEBUG,
+                        "dm {0} tracking {1} MultipleDynamic already active, delaying bind {2}",
+                        null, getName(), trackingCount, serviceReference );
+                }
+                else if (isActive())
                 {
                     m_componentManager.getLogger().log(LogService.LOG_DEBUG,
                         "dm {0} tracking {1} MultipleDynamic already active, binding {2}",
@@ -358,7 +380,7 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
         {
             m_componentManager.getLogger().log(LogService.LOG_DEBUG, "dm {0} tracking {1} MultipleDynamic modified {2} (enter)",
                     null, getName(), trackingCount, serviceReference );
-            if (isActive())
+            if (isActive() && !delay(serviceReference, refPair, trackingCount, false))
             {
                 m_componentManager.invokeUpdatedMethod(DependencyManager.this, refPair, trackingCount);
             }
@@ -374,10 +396,12 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
             m_componentManager.getLogger().log(LogService.LOG_DEBUG, "dm {0} tracking {1} MultipleDynamic removed {2} (enter)",
                     null, getName(), trackingCount, serviceReference );
             refPair.markDeleted();
+            // a service whose bind is still delayed has never been bound
+            boolean bound = !cancelDelayed(serviceReference);
             boolean unbind = cardinalitySatisfied(getTracker().getServiceCount());
             if (unbind)
             {
-                if (isActive())
+                if (isActive() && bound)
                 {
                     m_componentManager.invokeUnbindMethod(DependencyManager.this, refPair, trackingCount);
                 }
@@ -432,6 +456,10 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
         @Override
         public void close()
         {
+            synchronized (delayed)
+            {
+                delayed.clear();
+            }
             AtomicInteger trackingCount = new AtomicInteger();
             for (RefPair<S, T> ref : getRefs(trackingCount))
             {
@@ -440,6 +468,124 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
             deactivateTracker();
         }
 
+        /**
+         * Delays the bind or updated call for the service if coalescing is
+         * enabled. The delayed calls are made together once the coalesce
+         * timeout has elapsed, with one call per service: a service modified
+         * several times is updated once and a service added and modified is
+         * just bound.
+         *
+         * @return whether the call has been delayed
+         */
+        private boolean delay(ServiceReference<T> serviceReference, RefPair<S, T> refPair, int trackingCount,
+            boolean bind)
+        {
+            ScrConfiguration configuration = m_componentManager.getActivator().getConfiguration();
+            final long timeout = configuration == null ? 0 : configuration.referenceCoalesceTimeout();
+            if (timeout <= 0)
+            {
+                return false;
+            }
+            m_delayedEvents.incrementAndGet();
+            boolean schedule = false;
+            synchronized (delayed)
+            {
+                DelayedCall<S, T> call = delayed.get(serviceReference);
+                if (call != null)
+                {
+                    call.trackingCount = trackingCount;
+                    m_coalescedEvents.incrementAndGet();
+                }
+                else
+                {
+                    delayed.put(serviceReference, new DelayedCall<>(getTracker(), refPair, trackingCount, bind));
+                }
+                if (!flushScheduled)
+                {
+                    flushScheduled = true;
+                    schedule = true;
+                }
+            }
+            // schedule outside the lock, without a component actor the
+            // flush is run right away on this thread
+            if (schedule)
+            {
+                m_componentManager.getActivator().schedule(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        flushDelayed();
+                    }
+
+                    @Override
+                    public String toString()
+                    {
+                        return "Delayed calls of " + DependencyManager.this;
+                    }
+                }, timeout);
+            }
+            return true;
+        }
+
+        /**
+         * Drops the delayed call for a removed service.
+         *
+         * @return whether the delayed call was the bind of the service
+         */
+        private boolean cancelDelayed(ServiceReference<T> serviceReference)
+        {
+            DelayedCall<S, T> call;
+            synchronized (delayed)
+            {
+                if (delayed.isEmpty())
+                {
+                    return false;
+                }
+                call = delayed.remove(serviceReference);
+            }
+            if (call == null)
+            {
+                return false;
+            }
+            // neither the bind nor the unbind is called, the updated is
+            // replaced by the unbind
+            m_coalescedEvents.addAndGet(call.bind ? 2 : 1);
+            return call.bind;
+        }
+
+        private void flushDelayed()
+        {
+            List<DelayedCall<S, T>> calls;
+            synchronized (delayed)
+            {
+                calls = new ArrayList<>(delayed.values());
+                delayed.clear();
+                flushScheduled = false;
+            }
+            for (DelayedCall<S, T> call : calls)
+            {
+                // the tracking counts are only valid for the tracker of the event
+                if (call.tracker != getTracker() || !call.tracker.isActive() || call.refPair.isDeleted())
+                {
+                    continue;
+                }
+                if (call.bind)
+                {
+                    m_componentManager.invokeBindMethod(DependencyManager.this, call.refPair, call.trackingCount);
+                    if (call.refPair.isFailed())
+                    {
+                        m_componentManager.registerMissingDependency(DependencyManager.this, call.refPair.getRef(),
+                            call.trackingCount);
+                    }
+                }
+                else
+                {
+                    m_componentManager.invokeUpdatedMethod(DependencyManager.this, call.refPair, call.trackingCount);
+                }
+            }
+        }
+
         @Override
         public Collection<RefPair<S, T>> getRefs(AtomicInteger trackingCount)
         {
@@ -461,6 +607,26 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
         }
     }
 
+    /**
+     * A bind or updated call delayed to coalesce the service events.
+     */
+    private static class DelayedCall<S, T>
+    {
+        final ServiceTracker<T, RefPair<S, T>, ExtendedServiceEvent> tracker;
+        final RefPair<S, T> refPair;
+        final boolean bind;
+        int trackingCount;
+
+        DelayedCall(ServiceTracker<T, RefPair<S, T>, ExtendedServiceEvent> tracker, RefPair<S, T> refPair,
+            int trackingCount, boolean bind)
+        {
+            this.tracker = tracker;
+            this.refPair = refPair;
+            this.trackingCount = trackingCount;
+            this.bind = bind;
+        }
+    }
+
     private class MultipleStaticGreedyCustomizer extends AbstractCustomizer
     {
 
@@ -1530,11 +1696,39 @@ public class DependencyManager<S, T> implements ReferenceManager<S, T>
         return m_dependencyMetadata.getName();
     }
 
+    /**
+     * Returns the bundle declaring the component of this dependency, or
+     * <code>null</code> if the bundle has been uninstalled.
+     */
+    public Bundle getBundle()
+    {
+        return m_componentManager.getBundle();
+    }
+
     public ReferenceMetadata getReferenceMetadata()
     {
         return m_dependencyMetadata;
     }
 
+    /**
+     * Returns the number of service events whose bind or updated call has
+     * been delayed to coalesce service events.
+     */
+    public long getDelayedEventCount()
+    {
+        return m_delayedEvents.get();
+    }
+
+    /**
+     * Returns the number of service events which did not result in a call
+     * of their own because they have been coalesced with other events of
+     * the same service.
+     */
+    public long getCoalescedEventCount()
+    {
+        return m_coalescedEvents.get();
+    }
+
     /**
      * Returns <code>true</code> if this dependency manager is satisfied, that
      * is if either the dependency is optional or the number of services
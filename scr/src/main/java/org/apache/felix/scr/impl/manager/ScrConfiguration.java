@@ -68,6 +68,14 @@ public interface ScrConfiguration
 
     String PROP_SERVICE_CHANGECOUNT_TIMEOUT = "ds.service.changecount.timeout";
 
+    String PROP_ACTOR_THREADS = "ds.actor.threads";
+
+    int DEFAULT_ACTOR_THREADS = 1;
+
+    String PROP_REFERENCE_COALESCE = "ds.reference.coalesce.milliseconds";
+
+    long DEFAULT_REFERENCE_COALESCE_MILLISECONDS = 0;
+
     /**
      * Returns the current log level.
      * @return
@@ -97,4 +105,21 @@ public interface ScrConfiguration
      */
     long serviceChangecountTimeout();
 
+    /**
+     * Returns the number of threads running the asynchronous component
+     * tasks. The tasks of a bundle are always run in order. By default a
+     * single thread runs all the tasks in the order they are scheduled.
+     * @since 2.2
+     */
+    int actorThreads();
+
+    /**
+     * Returns the time in milliseconds the bind and updated calls for
+     * dynamic multiple references of active components are delayed, so
+     * service events arriving meanwhile are applied together. A value of
+     * <code>0</code> disables coalescing.
+     * @since 2.2
+     */
+    long referenceCoalesceTimeout();
+
 }
@@ -18,6 +18,9 @@
  */
 package org.apache.felix.scr.impl.metadata;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -792,6 +795,155 @@ public class ComponentMetadata
     }
 
 
+    /**
+     * Applies the global configuration to a component read from a compiled
+     * descriptor, which has been compiled without it. This has the same
+     * effect as the <code>XmlHandler</code> applying it while parsing.
+     */
+    void applyGlobalConfiguration( final boolean globalObsoleteFactoryComponentFactory,
+        final boolean globalDelayedKeepInstances )
+    {
+        if ( m_obsoleteFactoryComponentFactory == null && !m_dsVersion.isDS13() && globalObsoleteFactoryComponentFactory )
+        {
+            m_obsoleteFactoryComponentFactory = Boolean.TRUE;
+        }
+        m_delayedKeepInstances |= globalDelayedKeepInstances;
+    }
+
+
+    /**
+     * Writes the raw, not yet validated, component to a compiled descriptor.
+     */
+    void store( final MetadataStoreHelper.MetaDataWriter writer ) throws IOException
+    {
+        if ( m_validated )
+        {
+            throw new IllegalStateException( "Component " + getName() + " has already been validated" );
+        }
+        final DataOutputStream out = writer.getOutput();
+
+        writer.writeString( m_dsVersion.name() );
+        writer.writeString( m_name );
+        writer.writeBoolean( m_enabled );
+        writer.writeString( m_factory );
+        writer.writeBoolean( m_immediate );
+        writer.writeBoolean( m_implementationClassName == IMPLEMENTATION_CLASS_DUPLICATE );
+        writer.writeString( m_implementationClassName == IMPLEMENTATION_CLASS_DUPLICATE ? null : m_implementationClassName );
+        writer.writeString( m_activate );
+        writer.writeBoolean( m_activateDeclared );
+        writer.writeString( m_deactivate );
+        writer.writeBoolean( m_deactivateDeclared );
+        writer.writeString( m_modified );
+        writer.writeString( m_configurationPolicy );
+        writer.writeStrings( m_configurationPid );
+        writer.writeStrings( m_activationFields );
+        writer.writeString( m_init );
+
+        out.writeInt( m_propertyMetaData.size() );
+        for ( PropertyMetadata prop : m_propertyMetaData )
+        {
+            prop.store( writer );
+        }
+        out.writeInt( m_factoryPropertyMetaData.size() );
+        for ( PropertyMetadata prop : m_factoryPropertyMetaData )
+        {
+            prop.store( writer );
+        }
+
+        // 0: no service, 1: duplicate service element, 2: service
+        if ( m_service == null )
+        {
+            out.writeByte( 0 );
+        }
+        else if ( m_service == SERVICE_DUPLICATE )
+        {
+            out.writeByte( 1 );
+        }
+        else
+        {
+            out.writeByte( 2 );
+            m_service.store( writer );
+        }
+
+        out.writeInt( m_references.size() );
+        for ( ReferenceMetadata ref : m_references )
+        {
+            ref.store( writer );
+        }
+
+        writer.writeBoolean( m_configurableServiceProperties );
+        writer.writeBoolean( m_persistentFactoryComponent );
+        writer.writeBoolean( m_deleteCallsModify );
+        writer.writeBoolean( m_obsoleteFactoryComponentFactory );
+        writer.writeBoolean( m_configureWithInterfaces );
+        writer.writeBoolean( m_delayedKeepInstances );
+    }
+
+
+    /**
+     * Reads a component written by {@link #store(MetadataStoreHelper.MetaDataWriter)}.
+     */
+    static ComponentMetadata load( final MetadataStoreHelper.MetaDataReader reader ) throws IOException
+    {
+        final DataInputStream in = reader.getInput();
+
+        final ComponentMetadata component = new ComponentMetadata( DSVersion.valueOf( reader.readString() ) );
+        component.m_name = reader.readString();
+        component.m_enabled = reader.readBoolean();
+        component.m_factory = reader.readString();
+        component.m_immediate = reader.readBoolean();
+        final boolean duplicateImplementationClass = reader.readBoolean();
+        component.m_implementationClassName = reader.readString();
+        if ( duplicateImplementationClass )
+        {
+            component.m_implementationClassName = IMPLEMENTATION_CLASS_DUPLICATE;
+        }
+        component.m_activate = reader.readString();
+        component.m_activateDeclared = reader.readBoolean();
+        component.m_deactivate = reader.readString();
+        component.m_deactivateDeclared = reader.readBoolean();
+        component.m_modified = reader.readString();
+        component.m_configurationPolicy = reader.readString();
+        component.m_configurationPid = reader.readStrings();
+        component.m_activationFields = reader.readStrings();
+        component.m_init = reader.readString();
+
+        for ( int i = in.readInt(); i > 0; i-- )
+        {
+            component.m_propertyMetaData.add( PropertyMetadata.load( reader ) );
+        }
+        for ( int i = in.readInt(); i > 0; i-- )
+        {
+            component.m_factoryPropertyMetaData.add( PropertyMetadata.load( reader ) );
+        }
+
+        switch ( in.readByte() )
+        {
+            case 1:
+                component.m_service = SERVICE_DUPLICATE;
+                break;
+            case 2:
+                component.m_service = ServiceMetadata.load( reader );
+                break;
+            default:
+                break;
+        }
+
+        for ( int i = in.readInt(); i > 0; i-- )
+        {
+            component.m_references.add( ReferenceMetadata.load( reader ) );
+        }
+
+        component.m_configurableServiceProperties = reader.readBoolean();
+        component.m_persistentFactoryComponent = reader.readBoolean();
+        component.m_deleteCallsModify = reader.readBoolean();
+        component.m_obsoleteFactoryComponentFactory = reader.readBoolean();
+        component.m_configureWithInterfaces = reader.readBoolean();
+        component.m_delayedKeepInstances = reader.readBoolean();
+        return component;
+    }
+
+
     /**
      * Returns <code>true</code> if the configuration policy is configured to
      * {@link #CONFIGURATION_POLICY_OPTIONAL}.
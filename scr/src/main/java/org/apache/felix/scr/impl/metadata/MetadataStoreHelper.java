@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.metadata;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes the compiled form of a component descriptor. A compiled
+ * descriptor is stored next to the XML descriptor it was compiled from,
+ * with the {@link #COMPILED_DESCRIPTOR_SUFFIX} appended to its name. It
+ * holds the component metadata as parsed from the XML, so loading it
+ * replaces parsing the XML but the metadata is still validated as usual.
+ * <p>
+ * The compiled descriptor records the size and checksum of the XML
+ * descriptor, and is ignored if it does not match the XML descriptor
+ * any more or if it has been written in a different format.
+ */
+public class MetadataStoreHelper
+{
+    /** Suffix of a compiled descriptor, appended to the XML descriptor name */
+    public static final String COMPILED_DESCRIPTOR_SUFFIX = ".bin";
+
+    // "SCRD", the first bytes of a compiled descriptor
+    private static final int MAGIC = 0x53435244;
+
+    // version of the compiled descriptor format, increased on any change
+    private static final int FORMAT_VERSION = 1;
+
+    // marker for a null string
+    private static final int NULL_STRING = 0;
+
+    /**
+     * Writes the compiled form of the given components, which must not have
+     * been validated yet.
+     *
+     * @param out The stream to write the compiled descriptor to
+     * @param descriptor The contents of the XML descriptor the components
+     *      have been parsed from
+     * @param components The components parsed from the XML descriptor
+     */
+    public static void store( final OutputStream out, final byte[] descriptor,
+        final List<ComponentMetadata> components ) throws IOException
+    {
+        final DataOutputStream data = new DataOutputStream( new BufferedOutputStream( out ) );
+        data.writeInt( MAGIC );
+        data.writeInt( FORMAT_VERSION );
+        data.writeInt( descriptor.length );
+        data.writeLong( checksum( descriptor ) );
+
+        final MetaDataWriter writer = new MetaDataWriter( data );
+        data.writeInt( components.size() );
+        for ( ComponentMetadata component : components )
+        {
+            component.store( writer );
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads the components from a compiled descriptor, applying the global
+     * configuration like the <code>XmlHandler</code> does.
+     *
+     * @param in The stream to read the compiled descriptor from
+     * @param descriptor The contents of the XML descriptor the compiled
+     *      descriptor must have been compiled from
+     * @param globalObsoleteFactoryComponentFactory Whether factory
+     *      components are configurable by factory configurations by default
+     * @param globalDelayedKeepInstances Whether delayed components are kept
+     *      by default
+     * @return The components, not yet validated, or <code>null</code> if
+     *      the compiled descriptor does not match the XML descriptor or has
+     *      an unknown format
+     */
+    public static List<ComponentMetadata> load( final InputStream in, final byte[] descriptor,
+        final boolean globalObsoleteFactoryComponentFactory, final boolean globalDelayedKeepInstances )
+        throws IOException
+    {
+        final DataInputStream data = new DataInputStream( new BufferedInputStream( in ) );
+        if ( data.readInt() != MAGIC || data.readInt() != FORMAT_VERSION
+            || data.readInt() != descriptor.length || data.readLong() != checksum( descriptor ) )
+        {
+            return null;
+        }
+
+        final MetaDataReader reader = new MetaDataReader( data );
+        final int count = data.readInt();
+        final List<ComponentMetadata> components = new ArrayList<>( count );
+        for ( int i = 0; i < count; i++ )
+        {
+            final ComponentMetadata component = ComponentMetadata.load( reader );
+            component.applyGlobalConfiguration( globalObsoleteFactoryComponentFactory, globalDelayedKeepInstances );
+            components.add( component );
+        }
+        return components;
+    }
+
+    private static long checksum( final byte[] descriptor )
+    {
+        final CRC32 crc = new CRC32();
+        crc.update( descriptor, 0, descriptor.length );
+        return crc.getValue();
+    }
+
+    /**
+     * Writes the metadata, storing every distinct string only once since
+     * class names, interfaces and policies repeat a lot between components.
+     */
+    static class MetaDataWriter
+    {
+        private final DataOutputStream m_out;
+
+        private final Map<String, Integer> m_strings = new HashMap<>();
+
+        MetaDataWriter( final DataOutputStream out )
+        {
+            m_out = out;
+        }
+
+        DataOutputStream getOutput()
+        {
+            return m_out;
+        }
+
+        void writeString( final String value ) throws IOException
+        {
+            if ( value == null )
+            {
+                m_out.writeInt( NULL_STRING );
+                return;
+            }
+            final Integer index = m_strings.get( value );
+            if ( index != null )
+            {
+                m_out.writeInt( index );
+            }
+            else
+            {
+                // a new string is written with its negative index followed by its value
+                final int newIndex = m_strings.size() + 1;
+                m_strings.put( value, newIndex );
+                m_out.writeInt( -newIndex );
+                m_out.writeUTF( value );
+            }
+        }
+
+        void writeStrings( final List<String> values ) throws IOException
+        {
+            if ( values == null )
+            {
+                m_out.writeInt( -1 );
+                return;
+            }
+            m_out.writeInt( values.size() );
+            for ( String value : values )
+            {
+                writeString( value );
+            }
+        }
+
+        void writeBoolean( final Boolean value ) throws IOException
+        {
+            m_out.writeByte( value == null ? -1 : ( value ? 1 : 0 ) );
+        }
+    }
+
+    /**
+     * Reads the metadata written by the {@link MetaDataWriter}.
+     */
+    static class MetaDataReader
+    {
+        private final DataInputStream m_in;
+
+        private final List<String> m_strings = new ArrayList<>();
+
+        MetaDataReader( final DataInputStream in )
+        {
+            m_in = in;
+        }
+
+        DataInputStream getInput()
+        {
+            return m_in;
+        }
+
+        String readString() throws IOException
+        {
+            final int index = m_in.readInt();
+            if ( index == NULL_STRING )
+            {
+                return null;
+            }
+            if ( index > 0 )
+            {
+                return m_strings.get( index - 1 );
+            }
+            final String value = m_in.readUTF();
+            m_strings.add( value );
+            return value;
+        }
+
+        List<String> readStrings() throws IOException
+        {
+            final int size = m_in.readInt();
+            if ( size < 0 )
+            {
+                return null;
+            }
+            final List<String> values = new ArrayList<>( size );
+            for ( int i = 0; i < size; i++ )
+            {
+                values.add( readString() );
+            }
+            return values;
+        }
+
+        Boolean readBoolean() throws IOException
+        {
+            final byte value = m_in.readByte();
+            return value < 0 ? null : Boolean.valueOf( value != 0 );
+        }
+    }
+}
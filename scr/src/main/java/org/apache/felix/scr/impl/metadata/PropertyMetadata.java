@@ -18,6 +18,7 @@
  */
 package org.apache.felix.scr.impl.metadata;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.StringTokenizer;
@@ -130,6 +131,54 @@ public class PropertyMetadata {
         return m_value;
     }
 
+    /**
+     * Writes the raw, not yet validated, property to a compiled descriptor.
+     */
+    void store( final MetadataStoreHelper.MetaDataWriter writer ) throws IOException
+    {
+        writer.writeString( m_name );
+        writer.writeString( m_type );
+        if ( m_value instanceof String[] )
+        {
+            final String[] values = ( String[] ) m_value;
+            writer.getOutput().writeInt( values.length );
+            for ( String value : values )
+            {
+                writer.writeString( value );
+            }
+        }
+        else
+        {
+            writer.getOutput().writeInt( -1 );
+            writer.writeString( ( String ) m_value );
+        }
+    }
+
+    /**
+     * Reads a property written by {@link #store(MetadataStoreHelper.MetaDataWriter)}.
+     */
+    static PropertyMetadata load( final MetadataStoreHelper.MetaDataReader reader ) throws IOException
+    {
+        final PropertyMetadata prop = new PropertyMetadata();
+        prop.m_name = reader.readString();
+        prop.m_type = reader.readString();
+        final int size = reader.getInput().readInt();
+        if ( size < 0 )
+        {
+            prop.m_value = reader.readString();
+        }
+        else
+        {
+            final String[] values = new String[size];
+            for ( int i = 0; i < size; i++ )
+            {
+                values[i] = reader.readString();
+            }
+            prop.m_value = values;
+        }
+        return prop;
+    }
+
     /**
      * Method used to verify if the semantics of this metadata are correct
      */
@@ -18,6 +18,7 @@
  */
 package org.apache.felix.scr.impl.metadata;
 
+import java.io.IOException;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -637,6 +638,63 @@ public class ReferenceMetadata
 		return m_scope;
 	}
 
+    /**
+     * Writes the raw, not yet validated, reference to a compiled descriptor.
+     */
+    void store( final MetadataStoreHelper.MetaDataWriter writer ) throws IOException
+    {
+        writer.writeString( m_name );
+        writer.writeString( m_interface );
+        writer.writeString( m_cardinality );
+        writer.writeString( m_target );
+        writer.writeString( m_bind );
+        writer.writeString( m_updated );
+        writer.writeString( m_unbind );
+        writer.writeString( m_field );
+        writer.writeString( m_field_option );
+        writer.writeString( m_collection_type );
+        writer.writeString( m_policy );
+        writer.writeString( m_policy_option );
+        writer.writeString( m_scopeName );
+        writer.writeString( m_parameter );
+
+        // secondary properties, set by the setters
+        writer.writeBoolean( m_isStatic );
+        writer.writeBoolean( m_isOptional );
+        writer.writeBoolean( m_isMultiple );
+        writer.writeBoolean( m_isReluctant );
+        writer.writeBoolean( m_isReplace );
+    }
+
+    /**
+     * Reads a reference written by {@link #store(MetadataStoreHelper.MetaDataWriter)}.
+     */
+    static ReferenceMetadata load( final MetadataStoreHelper.MetaDataReader reader ) throws IOException
+    {
+        final ReferenceMetadata ref = new ReferenceMetadata();
+        ref.m_name = reader.readString();
+        ref.m_interface = reader.readString();
+        ref.m_cardinality = reader.readString();
+        ref.m_target = reader.readString();
+        ref.m_bind = reader.readString();
+        ref.m_updated = reader.readString();
+        ref.m_unbind = reader.readString();
+        ref.m_field = reader.readString();
+        ref.m_field_option = reader.readString();
+        ref.m_collection_type = reader.readString();
+        ref.m_policy = reader.readString();
+        ref.m_policy_option = reader.readString();
+        ref.m_scopeName = reader.readString();
+        ref.m_parameter = reader.readString();
+
+        ref.m_isStatic = reader.readBoolean();
+        ref.m_isOptional = reader.readBoolean();
+        ref.m_isMultiple = reader.readBoolean();
+        ref.m_isReluctant = reader.readBoolean();
+        ref.m_isReplace = reader.readBoolean();
+        return ref;
+    }
+
     /**
      *  Method used to verify if the semantics of this metadata are correct
      *
@@ -18,6 +18,7 @@
  */
 package org.apache.felix.scr.impl.metadata;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -90,6 +91,28 @@ public class ServiceMetadata {
         return m_provides.toArray( new String[m_provides.size()] );
     }
 
+    /**
+     * Writes the raw, not yet validated, service to a compiled descriptor.
+     */
+    void store( final MetadataStoreHelper.MetaDataWriter writer ) throws IOException
+    {
+        writer.writeBoolean( m_serviceFactory );
+        writer.writeString( m_scopeName );
+        writer.writeStrings( m_provides );
+    }
+
+    /**
+     * Reads a service written by {@link #store(MetadataStoreHelper.MetaDataWriter)}.
+     */
+    static ServiceMetadata load( final MetadataStoreHelper.MetaDataReader reader ) throws IOException
+    {
+        final ServiceMetadata service = new ServiceMetadata();
+        service.m_serviceFactory = reader.readBoolean();
+        service.m_scopeName = reader.readString();
+        service.m_provides = reader.readStrings();
+        return service;
+    }
+
     /**
      * Verify if the semantics of this metadata are correct
      *
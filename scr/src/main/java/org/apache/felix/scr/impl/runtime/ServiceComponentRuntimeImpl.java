@@ -27,9 +27,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.felix.scr.impl.ComponentActor;
+import org.apache.felix.scr.impl.ComponentDependencyGraph;
 import org.apache.felix.scr.impl.ComponentRegistry;
 import org.apache.felix.scr.impl.manager.ComponentHolder;
 import org.apache.felix.scr.impl.manager.ComponentManager;
+import org.apache.felix.scr.impl.manager.DependencyManager;
 import org.apache.felix.scr.impl.manager.ReferenceManager;
 import org.apache.felix.scr.impl.metadata.ComponentMetadata;
 import org.apache.felix.scr.impl.metadata.ReferenceMetadata;
@@ -59,17 +62,75 @@ public class ServiceComponentRuntimeImpl implements ServiceComponentRuntime, Ser
 
     private final BundleContext context;
     private final ComponentRegistry componentRegistry;
+    private final ComponentActor componentActor;
 
     private volatile SoftReference<ConcurrentHashMap<Long, ServiceReferenceDTO[]>> dtoCache = new SoftReference<>(new ConcurrentHashMap<Long, ServiceReferenceDTO[]>());
 
     public ServiceComponentRuntimeImpl(final BundleContext context, final ComponentRegistry componentRegistry)
+    {
+        this(context, componentRegistry, null);
+    }
+
+    public ServiceComponentRuntimeImpl(final BundleContext context, final ComponentRegistry componentRegistry,
+        final ComponentActor componentActor)
     {
         this.context = context;
         this.componentRegistry = componentRegistry;
+        this.componentActor = componentActor;
         this.context.addBundleListener(this);
         this.context.addServiceListener(this);
     }
 
+    /**
+     * Returns the actor running the asynchronous component tasks, for its
+     * statistics.
+     * @return The actor or {@code null} if it is not known
+     */
+    public ComponentActor getComponentActor()
+    {
+        return componentActor;
+    }
+
+    /**
+     * Returns the dependency graph of the registered components.
+     * @return The graph or {@code null} if it is not known
+     */
+    public ComponentDependencyGraph getDependencyGraph()
+    {
+        return componentRegistry == null ? null : componentRegistry.getDependencyGraph();
+    }
+
+    /**
+     * Returns the numbers of service events delayed and coalesced by the
+     * references of the current component configurations, see
+     * {@link org.apache.felix.scr.impl.manager.ScrConfiguration#referenceCoalesceTimeout()}.
+     * @return The number of delayed events followed by the number of
+     *      coalesced events
+     */
+    public long[] getReferenceEventCounts()
+    {
+        final long[] counts = new long[2];
+        if ( componentRegistry == null )
+        {
+            return counts;
+        }
+        for ( ComponentHolder<?> holder : componentRegistry.getComponentHolders() )
+        {
+            for ( ComponentManager<?> manager : holder.getComponents() )
+            {
+                for ( ReferenceManager<?, ?> reference : manager.getReferenceManagers() )
+                {
+                    if ( reference instanceof DependencyManager )
+                    {
+                        counts[0] += ( ( DependencyManager<?, ?> ) reference ).getDelayedEventCount();
+                        counts[1] += ( ( DependencyManager<?, ?> ) reference ).getCoalescedEventCount();
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
     /**
      * @see org.osgi.service.component.runtime.ServiceComponentRuntime#getComponentDescriptionDTOs(org.osgi.framework.Bundle[])
      */
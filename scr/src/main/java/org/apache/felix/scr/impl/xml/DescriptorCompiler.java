@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.xml;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.List;
+
+import org.apache.felix.scr.impl.metadata.ComponentMetadata;
+import org.apache.felix.scr.impl.metadata.MetadataStoreHelper;
+import org.apache.felix.scr.impl.parser.KXml2SAXParser;
+import org.osgi.framework.Bundle;
+
+/**
+ * Compiles component descriptors at build time. The compiled descriptors
+ * are loaded by SCR instead of parsing the XML descriptors, see
+ * {@link MetadataStoreHelper}. All components of a descriptor must be valid
+ * for it to be compiled, so invalid descriptors are found at build time.
+ * <p>
+ * Usage: <code>java -cp org.apache.felix.scr.jar
+ * org.apache.felix.scr.impl.xml.DescriptorCompiler &lt;classes directory&gt;
+ * &lt;descriptor&gt;...</code>, where the descriptors are paths relative
+ * to the classes directory like <code>OSGI-INF/component.xml</code>.
+ */
+public class DescriptorCompiler
+{
+    /**
+     * Resolves the bundle entries a descriptor refers to, like the
+     * <code>entry</code> of a <code>properties</code> element.
+     */
+    public interface EntryResolver
+    {
+        /**
+         * Returns the entry with the given path, as
+         * <code>Bundle.getEntry</code> would for the bundle being built.
+         *
+         * @param path The path of the entry relative to the bundle root
+         * @return The URL of the entry or <code>null</code> if no entry with
+         *      the given path exists
+         */
+        URL getEntry( String path );
+    }
+
+    public static void main( final String[] args ) throws Exception
+    {
+        if ( args.length < 2 )
+        {
+            System.err.println( "Usage: DescriptorCompiler <classes directory> <descriptor>..." );
+            System.exit( 1 );
+        }
+
+        final File root = new File( args[0] );
+        for ( int i = 1; i < args.length; i++ )
+        {
+            final byte[] compiled = compile( root, args[i] );
+            final OutputStream out = new FileOutputStream(
+                new File( root, args[i] + MetadataStoreHelper.COMPILED_DESCRIPTOR_SUFFIX ) );
+            try
+            {
+                out.write( compiled );
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Compiles a component descriptor.
+     *
+     * @param root The directory containing the bundle entries, used to
+     *      resolve the descriptor and the property files it refers to
+     * @param descriptor The path of the descriptor relative to the root
+     * @return The compiled descriptor
+     * @throws Exception If the descriptor cannot be read or parsed, or if one
+     *      of its components is not valid
+     */
+    public static byte[] compile( final File root, final String descriptor ) throws Exception
+    {
+        final EntryResolver entries = new EntryResolver()
+        {
+            @Override
+            public URL getEntry( final String path )
+            {
+                final File entry = new File( root, path );
+                try
+                {
+                    return entry.isFile() ? entry.toURI().toURL() : null;
+                }
+                catch ( final MalformedURLException e )
+                {
+                    throw new IllegalArgumentException( "Invalid entry " + path, e );
+                }
+            }
+        };
+        return compile( readFully( new File( root, descriptor ) ), root.getPath(), entries );
+    }
+
+    /**
+     * Compiles a component descriptor.
+     *
+     * @param xml The contents of the descriptor
+     * @param location The location of the bundle being built, only used in
+     *      error messages
+     * @param entries Resolves the bundle entries the descriptor refers to
+     * @return The compiled descriptor
+     * @throws Exception If the descriptor cannot be parsed, if one of the
+     *      entries it refers to cannot be read, or if one of its components
+     *      is not valid
+     */
+    public static byte[] compile( final byte[] xml, final String location, final EntryResolver entries )
+        throws Exception
+    {
+        // parse without the global configuration, it is applied when loading
+        final XmlHandler handler = new XmlHandler( createBundle( location, entries ), null, false, false );
+        final KXml2SAXParser parser = new KXml2SAXParser(
+            new BufferedReader( new InputStreamReader( new ByteArrayInputStream( xml ), "UTF-8" ) ) );
+        parser.parseXML( handler );
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MetadataStoreHelper.store( out, xml, handler.getComponentMetadataList() );
+        final byte[] compiled = out.toByteArray();
+
+        // validate what SCR is going to load
+        final List<ComponentMetadata> components = MetadataStoreHelper.load(
+            new ByteArrayInputStream( compiled ), xml, false, false );
+        for ( ComponentMetadata component : components )
+        {
+            component.validate();
+        }
+        return compiled;
+    }
+
+    private static byte[] readFully( final File file ) throws IOException
+    {
+        final InputStream in = new FileInputStream( file );
+        try
+        {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int len;
+            while ( ( len = in.read( buffer ) ) > 0 )
+            {
+                out.write( buffer, 0, len );
+            }
+            return out.toByteArray();
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    // the XmlHandler only needs the bundle location for log messages and
+    // the bundle entries for the properties elements
+    private static Bundle createBundle( final String location, final EntryResolver entries )
+    {
+        return ( Bundle ) Proxy.newProxyInstance( Bundle.class.getClassLoader(), new Class<?>[] { Bundle.class },
+            new InvocationHandler()
+            {
+                @Override
+                public Object invoke( final Object proxy, final Method method, final Object[] args ) throws Throwable
+                {
+                    if ( method.getName().equals( "getEntry" ) )
+                    {
+                        return entries.getEntry( ( String ) args[0] );
+                    }
+                    else if ( method.getName().equals( "getLocation" ) )
+                    {
+                        return location;
+                    }
+                    else if ( method.getName().equals( "toString" ) )
+                    {
+                        return location;
+                    }
+                    throw new UnsupportedOperationException( method.getName() );
+                }
+            } );
+    }
+}
@@ -46,7 +46,7 @@ public class XmlHandler implements KXml2SAXHandler
     // the bundle containing the XML resource being parsed
     private final Bundle m_bundle;
 
-    // logger for any messages
+    // logger for any messages, null if descriptors are compiled at build time
     private final BundleLogger m_logger;
 
     private final boolean m_globalObsoleteFactoryComponentFactory;
@@ -214,9 +214,10 @@ public class XmlHandler implements KXml2SAXHandler
                     {
                         m_currentComponent.setObsoleteFactoryComponentFactory("true".equals(attributes.getAttribute(XmlConstants.NAMESPACE_URI_1_0_FELIX_EXTENSIONS, XmlConstants.ATTR_OBSOLETE_FACTORY_COMPONENT_FACTORY)));
                     }
-                    else if ( !namespaceCode.isDS13() )
+                    else if ( !namespaceCode.isDS13() && m_globalObsoleteFactoryComponentFactory )
                     {
-                        m_currentComponent.setObsoleteFactoryComponentFactory(m_globalObsoleteFactoryComponentFactory);
+                        // leave unset otherwise, which is the same as false
+                        m_currentComponent.setObsoleteFactoryComponentFactory(true);
                     }
                     m_currentComponent.setConfigureWithInterfaces("true".equals(attributes.getAttribute(XmlConstants.NAMESPACE_URI_1_0_FELIX_EXTENSIONS, XmlConstants.ATTR_CONFIGURE_WITH_INTERFACES)));
                     m_currentComponent.setDelayedKeepInstances(m_globalDelayedKeepInstances || "true".equals(attributes.getAttribute(XmlConstants.NAMESPACE_URI_1_0_FELIX_EXTENSIONS, XmlConstants.ATTR_DELAYED_KEEP_INSTANCES)));
@@ -243,9 +244,8 @@ public class XmlHandler implements KXml2SAXHandler
                 // not inside a component element, ignore current element
                 else if ( !this.isComponent )
                 {
-                    m_logger.log( LogService.LOG_DEBUG,
-                            "Not currently parsing a component; ignoring element {0} (bundle {1})", null,
-                                    localName, m_bundle.getLocation() );
+                    logDebug( "Not currently parsing a component; ignoring element {0} (bundle {1})",
+                            localName, m_bundle.getLocation() );
                 }
 
                 // 112.4.4 Implementation
@@ -425,7 +425,7 @@ public class XmlHandler implements KXml2SAXHandler
                 // used by the Maven SCR Plugin, which is just silently ignored)
                 else if ( !localName.equals( XmlConstants.EL_COMPONENTS ) )
                 {
-                    m_logger.log( LogService.LOG_DEBUG, "Ignoring unsupported element {0} (bundle {1})", null,
+                    logDebug( "Ignoring unsupported element {0} (bundle {1})",
                             localName, m_bundle.getLocation() );
                 }
             }
@@ -439,7 +439,7 @@ public class XmlHandler implements KXml2SAXHandler
         // used by the Maven SCR Plugin, which is just silently ignored)
         else if ( !localName.equals( XmlConstants.EL_COMPONENTS ) )
         {
-            m_logger.log( LogService.LOG_DEBUG, "Ignoring unsupported element '{'{0}'}'{1} (bundle {2})", null,
+            logDebug( "Ignoring unsupported element '{'{0}'}'{1} (bundle {2})",
                     uri, localName, m_bundle.getLocation()  );
         }
     }
@@ -540,6 +540,15 @@ public class XmlHandler implements KXml2SAXHandler
     }
 
 
+    private void logDebug( String pattern, Object... arguments )
+    {
+        if ( m_logger != null )
+        {
+            m_logger.log( LogService.LOG_DEBUG, pattern, null, arguments );
+        }
+    }
+
+
     /**
      * Reads the name property file from the bundle owning this descriptor. All
      * properties read from the properties file are added to the current
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.scr.impl.logger.MockScrLogger;
+
+
+public class ComponentActorTest extends TestCase
+{
+
+    public void test_tasks_of_a_key_run_in_order() throws Exception
+    {
+        final ComponentActor actor = new ComponentActor( new MockScrLogger(), 4 );
+        final List<Integer> first = Collections.synchronizedList( new ArrayList<Integer>() );
+        final List<Integer> second = Collections.synchronizedList( new ArrayList<Integer>() );
+        final List<Integer> expected = new ArrayList<>();
+        for ( int i = 0; i < 100; i++ )
+        {
+            actor.schedule( "first", add( first, i ) );
+            actor.schedule( "second", add( second, i ) );
+            expected.add( i );
+        }
+        actor.terminate();
+
+        assertEquals( expected, first );
+        assertEquals( expected, second );
+        assertEquals( 200, actor.getCompletedTasks() );
+        assertEquals( 0, actor.getQueueDepth() );
+    }
+
+
+    public void test_keys_run_in_parallel() throws Exception
+    {
+        final ComponentActor actor = new ComponentActor( new MockScrLogger(), 2 );
+        final CountDownLatch blocked = new CountDownLatch( 1 );
+        final CountDownLatch other = new CountDownLatch( 1 );
+        actor.schedule( "blocked", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    other.await( 10, TimeUnit.SECONDS );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt();
+                }
+                blocked.countDown();
+            }
+        } );
+        actor.schedule( "other", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                other.countDown();
+            }
+        } );
+
+        // the task of the other key runs while the first task waits for it
+        assertTrue( blocked.await( 10, TimeUnit.SECONDS ) );
+        actor.terminate();
+    }
+
+
+    public void test_failing_task_does_not_stop_queue() throws Exception
+    {
+        final ComponentActor actor = new ComponentActor( new MockScrLogger(), 1 );
+        final List<Integer> ran = Collections.synchronizedList( new ArrayList<Integer>() );
+        actor.schedule( "key", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                throw new IllegalStateException( "failure" );
+            }
+        } );
+        actor.schedule( "key", add( ran, 1 ) );
+        actor.terminate();
+
+        // tasks scheduled after terminating are not run
+        actor.schedule( "key", add( ran, 2 ) );
+        assertEquals( Collections.singletonList( 1 ), ran );
+    }
+
+
+    public void test_delayed_task_runs_after_delay() throws Exception
+    {
+        final ComponentActor actor = new ComponentActor( new MockScrLogger(), 1 );
+        final List<Integer> ran = Collections.synchronizedList( new ArrayList<Integer>() );
+        final CountDownLatch done = new CountDownLatch( 1 );
+        final long start = System.nanoTime();
+        actor.schedule( "key", add( ran, 2 ), 100 );
+        actor.schedule( "key", add( ran, 1 ) );
+        actor.schedule( "key", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                done.countDown();
+            }
+        }, 200 );
+
+        assertTrue( done.await( 10, TimeUnit.SECONDS ) );
+        assertTrue( System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos( 200 ) );
+        assertEquals( Arrays.asList( 1, 2 ), ran );
+
+        // delayed tasks not queued yet are dropped on terminate
+        actor.schedule( "key", add( ran, 3 ), 10000 );
+        actor.terminate();
+        assertEquals( Arrays.asList( 1, 2 ), ran );
+    }
+
+
+    private static Runnable add( final List<Integer> list, final int value )
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                list.add( value );
+            }
+        };
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl;
+
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.felix.scr.impl.metadata.ComponentMetadata;
+import org.apache.felix.scr.impl.metadata.DSVersion;
+import org.apache.felix.scr.impl.metadata.ReferenceMetadata;
+import org.apache.felix.scr.impl.metadata.ServiceMetadata;
+
+
+public class ComponentDependencyGraphTest extends TestCase
+{
+
+    private final MockBundle bundle = new MockBundle();
+
+    private final ComponentDependencyGraph graph = new ComponentDependencyGraph();
+
+
+    public void test_activation_order()
+    {
+        // a -> b -> c, d unrelated
+        final ComponentRegistryKey a = add( "a", "A", "B" );
+        final ComponentRegistryKey b = add( "b", "B", "C" );
+        final ComponentRegistryKey c = add( "c", "C" );
+        final ComponentRegistryKey d = add( "d", null, "Missing" );
+
+        assertEquals( Arrays.asList( c, b, a, d ), graph.getActivationOrder() );
+        assertEquals( Collections.singletonList( b ), graph.getDependencies( a ) );
+        assertTrue( graph.getActivationRank( c ) < graph.getActivationRank( a ) );
+        assertTrue( graph.getCycles().isEmpty() );
+
+        // without c, b does not depend on anything anymore
+        graph.remove( c );
+        assertEquals( Arrays.asList( b, a, d ), graph.getActivationOrder() );
+        assertEquals( Integer.MAX_VALUE, graph.getActivationRank( c ) );
+    }
+
+
+    public void test_unrelated_components_keep_declaration_order()
+    {
+        final ComponentRegistryKey z = add( "z", null );
+        final ComponentRegistryKey m = add( "m", null, "A" );
+        final ComponentRegistryKey b = add( "b", "B" );
+        final ComponentRegistryKey a = add( "a", "A" );
+
+        assertEquals( Arrays.asList( z, a, m, b ), graph.getActivationOrder() );
+
+        // added after the analysis, nobody depends on it
+        final ComponentRegistryKey c = add( "c", null, "B" );
+        assertEquals( Arrays.asList( z, a, m, b, c ), graph.getActivationOrder() );
+    }
+
+
+    public void test_long_dependency_chain()
+    {
+        // each component depends on the next one declared
+        final int length = 100000;
+        for ( int i = 0; i < length; i++ )
+        {
+            add( "c" + i, "S" + i, "S" + ( i + 1 ) );
+        }
+
+        final List<ComponentRegistryKey> order = graph.getActivationOrder();
+        assertEquals( length, order.size() );
+        assertEquals( new ComponentRegistryKey( bundle, "c" + ( length - 1 ) ), order.get( 0 ) );
+        assertEquals( new ComponentRegistryKey( bundle, "c0" ), order.get( length - 1 ) );
+    }
+
+
+    public void test_cycles()
+    {
+        final ComponentRegistryKey a = add( "a", "A", "B" );
+        final ComponentRegistryKey b = add( "b", "B", "C" );
+        final ComponentRegistryKey c = add( "c", "C", "A" );
+        final ComponentRegistryKey d = add( "d", "D", "D" );
+        final ComponentRegistryKey e = add( "e", null, "A" );
+
+        final List<List<ComponentRegistryKey>> cycles = graph.getCycles();
+        assertEquals( Arrays.asList( Arrays.asList( a, b, c ), Collections.singletonList( d ) ), cycles );
+
+        // the consumer of the cycle comes after it
+        assertTrue( graph.getActivationRank( e ) > graph.getActivationRank( a ) );
+
+        // known cycles are reported once until the graph changes
+        assertTrue( graph.reportCycle( b ) );
+        assertFalse( graph.reportCycle( a ) );
+        assertTrue( graph.reportCycle( e ) );
+        assertTrue( graph.reportCycle( e ) );
+        graph.remove( e );
+        assertTrue( graph.reportCycle( a ) );
+    }
+
+
+    public void test_factory_components_provide_nothing()
+    {
+        final ComponentRegistryKey a = add( "a", null, "F" );
+        final ComponentMetadata factory = createMetadata( "f", "F" );
+        factory.setFactoryIdentifier( "factory" );
+        final ComponentRegistryKey f = new ComponentRegistryKey( bundle, "f" );
+        graph.add( f, factory );
+
+        assertTrue( graph.getDependencies( a ).isEmpty() );
+    }
+
+
+    private ComponentRegistryKey add( final String name, final String provides, final String... references )
+    {
+        final ComponentRegistryKey key = new ComponentRegistryKey( bundle, name );
+        final ComponentMetadata metadata = createMetadata( name, provides );
+        for ( final String reference : references )
+        {
+            final ReferenceMetadata ref = new ReferenceMetadata();
+            ref.setName( reference );
+            ref.setInterface( reference );
+            metadata.addDependency( ref );
+        }
+        graph.add( key, metadata );
+        return key;
+    }
+
+
+    private static ComponentMetadata createMetadata( final String name, final String provides )
+    {
+        final ComponentMetadata metadata = new ComponentMetadata( DSVersion.DS13 );
+        metadata.setName( name );
+        metadata.setImplementationClassName( name );
+        if ( provides != null )
+        {
+            final ServiceMetadata service = new ServiceMetadata();
+            service.addProvide( provides );
+            metadata.setService( service );
+        }
+        return metadata;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.inject.field;
+
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
+
+import junit.framework.TestCase;
+
+public class FieldUtilsTest extends TestCase
+{
+
+    public void test_field_handles() throws Throwable
+    {
+        final Field field = getField( "value" );
+        final MethodHandle setter = FieldUtils.createSetter( field );
+        final MethodHandle getter = FieldUtils.createGetter( field );
+        assertNotNull( setter );
+        assertNotNull( getter );
+
+        final Component component = new Component();
+        FieldUtils.setField( field, setter, component, "bound", null );
+        assertEquals( "bound", component.value );
+        assertEquals( "bound", getter.invoke( component ) );
+    }
+
+
+    public void test_final_field_set_reflectively() throws Throwable
+    {
+        final Field field = getField( "finalValue" );
+        assertNull( FieldUtils.createSetter( field ) );
+
+        final Component component = new Component();
+        FieldUtils.setField( field, null, component, "bound", null );
+        assertEquals( "bound", field.get( component ) );
+    }
+
+
+    public void test_static_field_has_no_handles() throws Exception
+    {
+        final Field field = getField( "staticValue" );
+        assertNull( FieldUtils.createSetter( field ) );
+        assertNull( FieldUtils.createGetter( field ) );
+    }
+
+
+    private static Field getField( final String name ) throws Exception
+    {
+        final Field field = Component.class.getDeclaredField( name );
+        field.setAccessible( true );
+        return field;
+    }
+
+    private static class Component
+    {
+        private String value;
+
+        private final String finalValue = null;
+
+        private static String staticValue;
+    }
+}
@@ -68,6 +68,18 @@ public class MockScrLogger extends ScrLogger
                 return 0;
             }
 
+            @Override
+            public int actorThreads()
+            {
+                return 1;
+            }
+
+            @Override
+            public long referenceCoalesceTimeout()
+            {
+                return 0;
+            }
+
             @Override
             public int getLogLevel()
             {
@@ -94,6 +94,11 @@ public class SingleComponentManagerTest
 
         }
 
+        @Override
+        public void schedule(Runnable runnable, long delay)
+        {
+        }
+
         @Override
         public long registerComponentId(AbstractComponentManager<?> sAbstractComponentManager)
         {
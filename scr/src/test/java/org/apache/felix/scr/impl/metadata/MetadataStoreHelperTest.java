@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.felix.scr.impl.metadata;
+
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.felix.scr.impl.MockBundle;
+import org.apache.felix.scr.impl.logger.MockBundleLogger;
+import org.apache.felix.scr.impl.parser.KXml2SAXParser;
+import org.apache.felix.scr.impl.xml.DescriptorCompiler;
+import org.apache.felix.scr.impl.xml.XmlHandler;
+import org.osgi.service.component.ComponentException;
+
+import junit.framework.TestCase;
+
+
+public class MetadataStoreHelperTest extends TestCase
+{
+    private static final String[] DESCRIPTORS = {
+        "components_properties_11.xml",
+        "integration_test_simple_components.xml",
+        "integration_test_simple_factory_components.xml",
+        "integration_test_persistent_factory_components.xml",
+        "integration_test_constructor.xml",
+        "integration_test_mutable_properties.xml"
+    };
+
+
+    public void test_compiled_same_as_parsed() throws Exception
+    {
+        for ( String descriptor : DESCRIPTORS )
+        {
+            for ( int global = 0; global < 4; global++ )
+            {
+                final boolean obsoleteFactoryComponentFactory = ( global & 1 ) != 0;
+                final boolean delayedKeepInstances = ( global & 2 ) != 0;
+                final List<ComponentMetadata> parsed = parse( descriptor, obsoleteFactoryComponentFactory,
+                    delayedKeepInstances );
+                final List<ComponentMetadata> loaded = MetadataStoreHelper.load(
+                    new ByteArrayInputStream( DescriptorCompiler.compile( getRoot(), descriptor ) ),
+                    read( descriptor ), obsoleteFactoryComponentFactory, delayedKeepInstances );
+
+                assertEquals( descriptor, describe( parsed ), describe( loaded ) );
+            }
+        }
+    }
+
+
+    public void test_stale_compiled_descriptor_ignored() throws Exception
+    {
+        final String descriptor = "integration_test_simple_components.xml";
+        final byte[] compiled = DescriptorCompiler.compile( getRoot(), descriptor );
+        final byte[] changed = read( descriptor );
+        changed[changed.length - 2]++;
+
+        assertNull( MetadataStoreHelper.load( new ByteArrayInputStream( compiled ), changed, false, false ) );
+        assertNotNull( MetadataStoreHelper.load( new ByteArrayInputStream( compiled ), read( descriptor ), false,
+            false ) );
+    }
+
+
+    public void test_invalid_descriptor_not_compiled() throws Exception
+    {
+        try
+        {
+            DescriptorCompiler.compile( getRoot(), "components_duplicate_implementation_11.xml" );
+            fail( "Expected validation failure for duplicate implementation element" );
+        }
+        catch ( ComponentException ce )
+        {
+            // expected
+        }
+    }
+
+
+    public void test_entries_resolved_by_resolver() throws Exception
+    {
+        final byte[] xml = ( "<scr:component xmlns:scr=\"http://www.osgi.org/xmlns/scr/v1.1.0\" name=\"test\">"
+            + "<implementation class=\"DummyClass\" />"
+            + "<properties entry=\"components_all_elements_10.properties\" />"
+            + "</scr:component>" ).getBytes( "UTF-8" );
+        final List<String> requested = new ArrayList<>();
+        final byte[] compiled = DescriptorCompiler.compile( xml, "test", new DescriptorCompiler.EntryResolver()
+        {
+            @Override
+            public URL getEntry( final String path )
+            {
+                requested.add( path );
+                return getClass().getResource( "/" + path );
+            }
+        } );
+
+        assertEquals( Arrays.asList( "components_all_elements_10.properties" ), requested );
+        final List<ComponentMetadata> loaded = MetadataStoreHelper.load( new ByteArrayInputStream( compiled ), xml,
+            false, false );
+        loaded.get( 0 ).validate();
+        assertEquals( "Property from File", loaded.get( 0 ).getProperties().get( "file.property" ) );
+    }
+
+
+    //---------- helper
+
+    private List<ComponentMetadata> parse( final String descriptor, final boolean obsoleteFactoryComponentFactory,
+        final boolean delayedKeepInstances ) throws Exception
+    {
+        final KXml2SAXParser parser = new KXml2SAXParser( new BufferedReader( new InputStreamReader(
+            new ByteArrayInputStream( read( descriptor ) ), "UTF-8" ) ) );
+        final XmlHandler handler = new XmlHandler( new MockBundle(), new MockBundleLogger(),
+            obsoleteFactoryComponentFactory, delayedKeepInstances );
+        parser.parseXML( handler );
+        return handler.getComponentMetadataList();
+    }
+
+
+    // describes the validated components by their public properties
+    private String describe( final List<ComponentMetadata> components )
+    {
+        final List<String> result = new ArrayList<>();
+        for ( ComponentMetadata cm : components )
+        {
+            cm.validate();
+            final List<Object> d = new ArrayList<>();
+            d.addAll( Arrays.asList( cm.getDSVersion(), cm.getName(), cm.getImplementationClassName(),
+                cm.isEnabled(), cm.isImmediate(), cm.getFactoryIdentifier(), cm.getConfigurationPolicy(),
+                cm.getConfigurationPid(), cm.isConfigurationPidDeclared(), cm.getActivate(),
+                cm.isActivateDeclared(), cm.getDeactivate(), cm.isDeactivateDeclared(), cm.getModified(),
+                cm.getActivationFields(), cm.getNumberOfConstructorParameters(), cm.getServiceScope(),
+                cm.isConfigurableServiceProperties(), cm.isPersistentFactoryComponent(),
+                cm.isDeleteCallsModify(), cm.isObsoleteFactoryComponentFactory(),
+                cm.isConfigureWithInterfaces(), cm.isDelayedKeepInstances(),
+                describe( cm.getProperties() ), describe( cm.getFactoryProperties() ) ) );
+            if ( cm.getServiceMetadata() != null )
+            {
+                d.add( Arrays.asList( cm.getServiceMetadata().getProvides() ) );
+            }
+            for ( ReferenceMetadata rm : cm.getDependencies() )
+            {
+                d.addAll( Arrays.asList( rm.getName(), rm.getInterface(), rm.getCardinality(), rm.getPolicy(),
+                    rm.getPolicyOption(), rm.getTarget(), rm.getBind(), rm.getUpdated(), rm.getUnbind(),
+                    rm.getField(), rm.getFieldOption(), rm.getFieldCollectionType(), rm.getParameterIndex(),
+                    rm.getScope(), rm.isStatic(), rm.isOptional(), rm.isMultiple(), rm.isReluctant(),
+                    rm.isReplace() ) );
+            }
+            result.add( d.toString() );
+        }
+        return result.toString();
+    }
+
+
+    private String describe( final Map<String, Object> properties )
+    {
+        final Map<String, String> result = new TreeMap<>();
+        for ( Map.Entry<String, Object> entry : properties.entrySet() )
+        {
+            final Object value = entry.getValue();
+            result.put( entry.getKey(), value == null ? "null" : value.getClass().getName() + ":"
+                + Arrays.deepToString( new Object[] { value } ) );
+        }
+        return result.toString();
+    }
+
+
+    private File getRoot() throws Exception
+    {
+        return new File( getClass().getResource( "/" + DESCRIPTORS[0] ).toURI() ).getParentFile();
+    }
+
+
+    private byte[] read( final String descriptor ) throws Exception
+    {
+        final InputStream in = new FileInputStream( new File( getRoot(), descriptor ) );
+        try
+        {
+            final byte[] data = new byte[in.available()];
+            int off = 0;
+            while ( off < data.length )
+            {
+                off += in.read( data, off, data.length - off );
+            }
+            return data;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
@@ -22,10 +22,14 @@ import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -36,6 +40,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.felix.scr.impl.metadata.MetadataStoreHelper;
+import org.apache.felix.scr.impl.xml.DescriptorCompiler;
 import org.apache.felix.scrplugin.Options;
 import org.apache.felix.scrplugin.Result;
 import org.apache.felix.scrplugin.SCRDescriptorGenerator;
@@ -47,6 +53,7 @@ import aQute.bnd.osgi.Clazz;
 import aQute.bnd.osgi.Clazz.QUERY;
 import aQute.bnd.osgi.EmbeddedResource;
 import aQute.bnd.osgi.Jar;
+import aQute.bnd.osgi.Resource;
 import aQute.bnd.service.AnalyzerPlugin;
 import aQute.bnd.service.Plugin;
 import aQute.service.reporter.Reporter;
@@ -90,6 +97,12 @@ public class SCRDescriptorBndPlugin implements AnalyzerPlugin, Plugin {
      */
     private static final String LOGTOFILE = "logToFile";
 
+    /**
+     * "compileDescriptors" parameter, which may be set to true to add the compiled form of the generated descriptors,
+     * which SCR loads instead of parsing the descriptors. Default: false.
+     */
+    private static final String COMPILE_DESCRIPTORS = "compileDescriptors";
+
 	/**
 	 * The name of the directory where the descriptor files are generated into.
 	 */
@@ -110,6 +123,11 @@ public class SCRDescriptorBndPlugin implements AnalyzerPlugin, Plugin {
 	 */
 	private boolean strictMode = false;
 
+	/**
+	 * This flag controls the compilation of the generated descriptors.
+	 */
+	private boolean compileDescriptors = false;
+
 	/**
 	 * The version of the DS spec this plugin generates a descriptor for. By
 	 * default the version is detected by the used tags.
@@ -187,6 +205,9 @@ public class SCRDescriptorBndPlugin implements AnalyzerPlugin, Plugin {
 					sb.append(scrFile);
 					sb.append(",");
 					putResource(analyzer, scrFile);
+					if (compileDescriptors) {
+						compileDescriptor(analyzer, scrFile);
+					}
 				}
 				sb.setLength(sb.length() - 1);
 				addServiceComponentHeader(analyzer, sb.toString());
@@ -253,6 +274,7 @@ public class SCRDescriptorBndPlugin implements AnalyzerPlugin, Plugin {
 		generateAccessor = parseOption(properties, GENERATE_ACCESSOR,
 				generateAccessor);
 		strictMode = parseOption(properties, STRICT_MODE, strictMode);
+		compileDescriptors = parseOption(properties, COMPILE_DESCRIPTORS, compileDescriptors);
 		String version = parseOption(properties, SPECVERSION, null);
 		specVersion = SpecVersion.fromName(version);
 		if (version != null && specVersion == null) {
@@ -263,6 +285,7 @@ public class SCRDescriptorBndPlugin implements AnalyzerPlugin, Plugin {
 		if (log.isInfoEnabled()) {
 			log.info("Initialized Bnd ScrPlugin: destDir=" + destDir
 					+ ", strictMode=" + strictMode
+					+ ", compileDescriptors=" + compileDescriptors
 					+ ", specVersion=" + specVersion);
 		}
 	}
@@ -312,6 +335,59 @@ public class SCRDescriptorBndPlugin implements AnalyzerPlugin, Plugin {
 		return path.toArray(new URL[path.size()]);
 	}
 
+	private void compileDescriptor(final Analyzer analyzer, String scrFile) throws Exception {
+		String compiledFile = scrFile + MetadataStoreHelper.COMPILED_DESCRIPTOR_SUFFIX;
+		log.info("Compiled SCR descriptor result file: " + compiledFile);
+		// the entries referred to by the descriptor are resolved against the
+		// bundle being built, as SCR resolves them against the installed bundle
+		byte[] xml = readResource(analyzer.getJar().getResource(scrFile));
+		byte[] compiled = DescriptorCompiler.compile(xml, analyzer.getBsn(),
+				new DescriptorCompiler.EntryResolver() {
+					public URL getEntry(String path) {
+						Resource resource = analyzer.getJar().getResource(path);
+						return resource == null ? null : getURL(path, resource);
+					}
+				});
+		OutputStream out = new FileOutputStream(new File(destDir, compiledFile));
+		try {
+			out.write(compiled);
+		} finally {
+			out.close();
+		}
+		putResource(analyzer, compiledFile);
+	}
+
+	private static byte[] readResource(Resource resource) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		resource.write(out);
+		return out.toByteArray();
+	}
+
+	private static URL getURL(String path, final Resource resource) {
+		try {
+			return new URL("bnd", null, -1, "/" + path, new URLStreamHandler() {
+				protected URLConnection openConnection(URL u) {
+					return new URLConnection(u) {
+						public void connect() {
+						}
+
+						public InputStream getInputStream() throws IOException {
+							try {
+								return resource.openInputStream();
+							} catch (IOException e) {
+								throw e;
+							} catch (Exception e) {
+								throw new IOException(e.toString());
+							}
+						}
+					};
+				}
+			});
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Invalid entry " + path);
+		}
+	}
+
 	private void putResource(Analyzer analyzer, String path) throws IOException {
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		File f = new File(destDir, path);